@@ -0,0 +1,219 @@
+package tics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.concurrent.ExecutionException;
+
+import tics.ai.AgentType;
+import tics.ai.Evaluator;
+import tics.sim.ColumnarResultWriter;
+import tics.sim.MatchResult;
+import tics.sim.MatchScheduler;
+import tics.sim.MatchSetup;
+import tics.sim.SimulatedMatch;
+import tics.util.load.PropertiesLoader;
+
+/**
+ * A command line entry point that plays batches of headless matches between agents, and writes one line of results per match.
+ * Matches are played by a MatchScheduler, which interleaves their turns on a fixed number of threads.
+ *
+ * Usage:
+ *   BatchRunner --scenario scenarios/duel.json [options]
+ *   BatchRunner --generate width height players units abilities [options]
+ * Options:
+ *   --agents greedy,random   the agent for each player, in order (the last one plays for any remaining players.)
+ *   --matches 1000           the number of matches to play.
+ *   --seed 0                 the seed of the first match. Match n is played with seed + n, so any match can be replayed alone.
+ *   --threads 4              the number of matches played at once (defaults to the number of processors.)
+ *   --rounds 100             the number of rounds after which a match is called a draw.
+ *   --in-flight 16           the most matches in progress at once (defaults to a few per thread.)
+ *   --think-time 0           milliseconds each agent waits before its turn, to stand in for slow or remote agents.
+ *                            Waiting matches don't hold threads, so raise --in-flight to keep the threads busy.
+ *   --output results.tsv     the file to write results to (defaults to standard output.)
+ *   --columnar               write results in the binary format of ColumnarResultWriter, which needs --output.
+ *                            This is much faster than text for millions of matches; ColumnarResultReader summarises it.
+ *   --replays replays        record a seekable replay of every match in a folder, which ReplayReader can read.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class BatchRunner {
+	/** The default number of matches in flight per thread, which keeps threads busy without holding every match in memory. */
+	private static final int MATCHES_IN_FLIGHT_PER_THREAD = 4;
+	/** How often, in matches, progress is reported. */
+	private static final int PROGRESS_INTERVAL = 1000;
+
+	/**
+	 * Plays a batch of matches.
+	 *
+	 * @param args the command line arguments, as described above.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		System.setProperty("java.awt.headless", "true");
+
+		MatchSetup setup = null;
+		AgentType[] agentTypes = { AgentType.GREEDY };
+		long matches = 1000, seed = 0;
+		int threads = Runtime.getRuntime().availableProcessors(), rounds = 100, inFlight = 0;
+		long thinkTime = 0;
+		String outputPath = null;
+		boolean columnar = false;
+		String replayFolder = null;
+
+		try {
+			for (int index = 0; index < args.length; index++) {
+				String option = args[index];
+				if (option.equals("--scenario")) {
+					setup = new MatchSetup(args[++index]);
+				} else if (option.equals("--generate")) {
+					setup = new MatchSetup(Integer.parseInt(args[++index]), Integer.parseInt(args[++index]), Integer.parseInt(args[++index]),
+							Integer.parseInt(args[++index]), Integer.parseInt(args[++index]));
+				} else if (option.equals("--agents")) {
+					agentTypes = parseAgentTypes(args[++index]);
+				} else if (option.equals("--matches")) {
+					matches = Long.parseLong(args[++index]);
+				} else if (option.equals("--seed")) {
+					seed = Long.parseLong(args[++index]);
+				} else if (option.equals("--threads")) {
+					threads = Integer.parseInt(args[++index]);
+				} else if (option.equals("--rounds")) {
+					rounds = Integer.parseInt(args[++index]);
+				} else if (option.equals("--in-flight")) {
+					inFlight = Integer.parseInt(args[++index]);
+				} else if (option.equals("--think-time")) {
+					thinkTime = Long.parseLong(args[++index]);
+				} else if (option.equals("--output")) {
+					outputPath = args[++index];
+				} else if (option.equals("--columnar")) {
+					columnar = true;
+				} else if (option.equals("--replays")) {
+					replayFolder = args[++index];
+				} else {
+					throw new IllegalArgumentException("Unknown option " + option + ".");
+				}
+			}
+			if (setup == null) {
+				throw new IllegalArgumentException("Either --scenario or --generate is needed.");
+			}
+			if (columnar && outputPath == null) {
+				throw new IllegalArgumentException("Columnar results need an --output file.");
+			}
+			if (matches < 1 || threads < 1 || rounds < 1) {
+				throw new IllegalArgumentException("The numbers of matches, threads and rounds must all be at least 1.");
+			}
+		} catch (RuntimeException exception) { //Covers bad numbers, bad agent names and missing values alike.
+			System.err.println(exception.getMessage());
+			printUsage();
+			return;
+		}
+
+		preload(setup);
+		if (replayFolder != null) {
+			new File(replayFolder).mkdirs();
+		}
+
+		BufferedWriter textOutput = null;
+		ColumnarResultWriter columnarOutput = null;
+		if (columnar) {
+			columnarOutput = new ColumnarResultWriter(outputPath, new String[] { setup.toString() }, setup.getPlayerCount());
+		} else {
+			textOutput = new BufferedWriter(outputPath == null ? new OutputStreamWriter(System.out) : new FileWriter(outputPath));
+			textOutput.write(MatchResult.HEADER);
+			textOutput.newLine();
+		}
+
+		if (inFlight <= 0) {
+			inFlight = threads * MATCHES_IN_FLIGHT_PER_THREAD;
+		}
+		MatchScheduler scheduler = new MatchScheduler(threads, inFlight, thinkTime);
+		try {
+			run(scheduler, inFlight, setup, agentTypes, matches, seed, rounds, replayFolder, textOutput, columnarOutput);
+		} finally {
+			scheduler.shutdown();
+			if (textOutput != null) {
+				textOutput.close();
+			} else {
+				columnarOutput.close();
+			}
+		}
+	}
+
+	/**
+	 * Plays the matches, submitting only as many as can be in flight, and writes each result as soon as it's ready.
+	 * Results are written in the order matches finish, so they're numbered rather than sorted.
+	 * Exactly one of the outputs should be given.
+	 */
+	private static void run(MatchScheduler scheduler, int inFlight, MatchSetup setup, AgentType[] agentTypes, long matches, long seed,
+			int rounds, String replayFolder, BufferedWriter textOutput, ColumnarResultWriter columnarOutput) throws IOException, InterruptedException, ExecutionException {
+		long submitted = 0, finished = 0, draws = 0;
+
+		while (finished < matches) {
+			while (submitted < matches && submitted - finished < inFlight) {
+				SimulatedMatch simulation = new SimulatedMatch(setup, agentTypes, submitted, seed + submitted, rounds);
+				simulation.setReplayFolder(replayFolder);
+				scheduler.submit(simulation);
+				submitted++;
+			}
+
+			MatchResult result = scheduler.take();
+			if (textOutput != null) {
+				textOutput.write(result.toLine());
+				textOutput.newLine();
+			} else {
+				columnarOutput.add(result, 0);
+			}
+			finished++;
+			if (result.getWinner() < 0) {
+				draws++;
+			}
+
+			if (finished % PROGRESS_INTERVAL == 0 || finished == matches) {
+				System.err.println(finished + "/" + matches + " matches, " + draws + " draws, " + scheduler.getStatus() + ".");
+			}
+		}
+	}
+
+	/**
+	 * Loads shared files on this thread, before any matches start, so that the matches don't all wait for them at once.
+	 *
+	 * @param setup the setup that matches will be made from.
+	 * @throws IOException if the scenario can't be loaded.
+	 */
+	private static void preload(MatchSetup setup) throws IOException {
+		PropertiesLoader.get("settings/Colours");
+		Evaluator.getDefault();
+		setup.preload();
+	}
+
+	/**
+	 * Reads a comma separated list of agent names.
+	 *
+	 * @param list the list, such as "greedy,random".
+	 * @return the agent types in the list.
+	 * @throws IllegalArgumentException if a name isn't an AgentType.
+	 */
+	private static AgentType[] parseAgentTypes(String list) {
+		String[] names = list.split(",");
+		AgentType[] agentTypes = new AgentType[names.length];
+		for (int index = 0; index < names.length; index++) {
+			agentTypes[index] = AgentType.valueOf(names[index].trim().toUpperCase());
+		}
+		return agentTypes;
+	}
+
+	/** Prints the command line options. */
+	private static void printUsage() {
+		System.err.println("Usage: BatchRunner (--scenario <file.json> | --generate <width> <height> <players> <units> <abilities>)");
+		System.err.println("       [--agents <agent,agent,...>] [--matches <count>] [--seed <seed>] [--threads <count>]");
+		System.err.println("       [--rounds <count>] [--in-flight <count>] [--think-time <milliseconds>]");
+		System.err.println("       [--output <file>] [--columnar] [--replays <folder>]");
+		System.err.print("Agents:");
+		for (AgentType agentType : AgentType.values()) {
+			System.err.print(" " + agentType.name().toLowerCase());
+		}
+		System.err.println();
+	}
+}
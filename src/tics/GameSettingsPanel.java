@@ -4,15 +4,12 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
 
 import javax.swing.BoxLayout;
+import javax.swing.DefaultComboBoxModel;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
@@ -26,19 +23,16 @@ import javax.swing.event.ChangeListener;
 
 import tics.match.Match;
 import tics.util.load.ImageLoader;
-import tics.util.load.JSONLoader;
 import tics.util.load.PropertiesLoader;
 import tics.util.load.MatchLoader;
+import tics.util.load.ScenarioCatalog;
+import tics.util.load.ScenarioHeader;
 
 @SuppressWarnings("serial")
 public class GameSettingsPanel extends JPanel {
 	
 	public static final String SCENARIO_FOLDER = "scenarios/";
 	
-	private String[] scenarioFiles;
-	private String[] scenarioNames;
-	private String[] scenarioDescriptions;
-	
 	protected JPanel settingsPanel;
 	
 	protected JPanel generatorPanel;
@@ -130,9 +124,14 @@ public class GameSettingsPanel extends JPanel {
 				Match match;
 				
 				if (GameSettingsPanel.this.gameTypeBox.getSelectedItem() == "Scenario") {
+					ScenarioHeader header = (ScenarioHeader) scenarioBox.getSelectedItem();
+					if (header == null) {
+						return; // The catalog hasn't found any scenarios yet.
+					}
+					
 					try {
-						match = MatchLoader.loadFromJSON(GameSettingsPanel.this.scenarioFiles[scenarioBox.getSelectedIndex()]);
-					} catch (FileNotFoundException e) {
+						match = MatchLoader.loadFromJSON(header.getFilePath()); // Only now is the scenario's setup loaded.
+					} catch (IOException e) {
 						// TODO Auto-generated catch block
 						e.printStackTrace();
 						return;
@@ -200,47 +199,53 @@ public class GameSettingsPanel extends JPanel {
 		this.scenarioPanel = new JPanel();
 		this.scenarioPanel.setLayout(new BoxLayout(this.scenarioPanel, BoxLayout.PAGE_AXIS));
 		
-		File folder = new File(SCENARIO_FOLDER);
-		scenarioFiles = folder.list(new FilenameFilter() {
-			@Override
-			public boolean accept(File dir, String name) {
-				return name.endsWith(".json");
-			}
-		});
-		scenarioNames = new String[scenarioFiles.length];
-		scenarioDescriptions = new String[scenarioFiles.length];
-		
-		for (int index = 0; index < scenarioFiles.length; index++) {
-	        Map<String, Object> scenario = JSONLoader.get(SCENARIO_FOLDER + scenarioFiles[index]);
-	        
-	        scenarioNames[index] = scenario.get("title").toString();
-	        scenarioDescriptions[index] = "";
-	        scenarioDescriptions[index] += "Author: "+scenario.get("author")+"\n";
-	        scenarioDescriptions[index] += "Players: "+scenario.get("players")+"\n";
-	        scenarioDescriptions[index] += "Size: "+scenario.get("width")+"x"+scenario.get("height")+"\n\n";
-	        scenarioDescriptions[index] += scenario.get("description");
-	    }
-		
-		this.scenarioBox = new JComboBox(scenarioNames);
+		this.scenarioBox = new JComboBox(new DefaultComboBoxModel());
 		this.scenarioBox.setAlignmentX( JComboBox.LEFT_ALIGNMENT );
-		this.scenarioBox.addActionListener(new ActionListener() {
-			@Override
-			public void actionPerformed(ActionEvent event) {
-				int index = GameSettingsPanel.this.scenarioBox.getSelectedIndex();
-				String description = GameSettingsPanel.this.scenarioDescriptions[index];
-				GameSettingsPanel.this.scenarioDescription.setText(description);
-				((Main) GameSettingsPanel.this.getTopLevelAncestor()).pack();
-			}
-		});
 		this.scenarioPanel.add(this.scenarioBox);
 
-		this.scenarioDescription = new JTextArea(this.scenarioDescriptions[0]);
+		this.scenarioDescription = new JTextArea("Looking for scenarios...");
 		this.setSize(JSlider.WIDTH, JTextArea.HEIGHT); // TODO: Make this work.
 		this.scenarioDescription.setLineWrap(true);
 		this.scenarioDescription.setEditable(false);
 		this.scenarioDescription.setAlignmentX( JLabel.LEFT_ALIGNMENT );
 		this.scenarioPanel.add(this.scenarioDescription);
 		
+		this.scenarioBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				ScenarioHeader header = (ScenarioHeader) GameSettingsPanel.this.scenarioBox.getSelectedItem();
+				if (header == null) {
+					return;
+				}
+				
+				String description = "";
+				description += "Author: "+header.getAuthor()+"\n";
+				description += "Players: "+header.getPlayerCount()+"\n";
+				description += "Size: "+header.getWidth()+"x"+header.getHeight()+"\n\n";
+				description += header.getDescription();
+				GameSettingsPanel.this.scenarioDescription.setText(description);
+				
+				if (GameSettingsPanel.this.getTopLevelAncestor() instanceof Main) {
+					((Main) GameSettingsPanel.this.getTopLevelAncestor()).pack();
+				}
+			}
+		});
+		
+		// Only the headers are read, in the background, and each scenario is listed as soon as it has been read.
+		ScenarioCatalog.load(SCENARIO_FOLDER, new ScenarioCatalog.Listener() {
+			@Override
+			public void scenarioFound(ScenarioHeader header) {
+				GameSettingsPanel.this.scenarioBox.addItem(header); // The first scenario is selected as it's added.
+			}
+			
+			@Override
+			public void catalogFinished() {
+				if (GameSettingsPanel.this.scenarioBox.getItemCount() == 0) {
+					GameSettingsPanel.this.scenarioDescription.setText("There are no scenarios in "+SCENARIO_FOLDER);
+				}
+			}
+		});
+		
 		this.settingsPanel.add(this.scenarioPanel, BorderLayout.EAST);
 	}
 	
@@ -13,9 +13,14 @@ import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import tics.ai.Evaluator;
 import tics.match.Match;
+import tics.match.MatchJournal;
 import tics.match.MatchSaveData;
+import tics.match.SaveWriter;
+import tics.match.view.SavePreviewPanel;
 import tics.util.load.PropertiesLoader;
+import tics.util.load.SpriteAtlas;
 import tics.util.load.MatchLoader;
 
 /**
@@ -38,10 +43,27 @@ public class Main extends JFrame implements ActionListener {
 	/* This constant is for testing, if it is set to anything except null, the game will try to load that scenario. */
 	public static String TEST_LOAD_SCENARIO = null;
 	
+	/** The longest the window waits for saves to finish writing when it closes, in milliseconds. */
+	private static final long EXIT_SAVE_TIMEOUT = 5000;
+	
 	/** The game currently being played. */
 	private Match currentMatch;
 	//EXTRA: Add a variable for the starting state of the current match, to allow rematches and saving fun setups after the game.
 	
+	/** Autosaves the current match after every action, or null if it isn't being autosaved. */
+	private MatchJournal journal;
+	
+	/** Reports saves that failed in the background. */
+	private final SaveWriter.Listener saveListener = new SaveWriter.Listener() {
+		@Override
+		public void saveFinished(String filePath, IOException exception) {
+			if (exception != null) {
+				exception.printStackTrace();
+				JOptionPane.showMessageDialog(Main.this, "Error: Failed to save the game.");
+			}
+		}
+	};
+	
 	/** The new game panel */
 	private GameSettingsPanel newGamePanel;
 	
@@ -81,12 +103,16 @@ public class Main extends JFrame implements ActionListener {
 		displaySettingsPanel();
 		
 		super.setVisible(true);
+		
+		offerRecovery();
 	}
 	
 	private void preload() {
 		// Preload the game's properties files.
 		PropertiesLoader.get("settings/Colours");
 		PropertiesLoader.get("settings/Game");
+		Evaluator.getDefault(); // Loads settings/Weights, if the weights have been tuned.
+		SpriteAtlas.preload(); // Decodes the unit images on background threads, so the first match doesn't wait for them.
 	}
 	
 	/** Sets some basic options for the main game frame. */
@@ -102,9 +128,10 @@ public class Main extends JFrame implements ActionListener {
 		//EXTRA: Include an easy way of navigating back to the original saves directory.
 		matchFileChooser = new JFileChooser(new File(MatchSaveData.SAVE_FILE_FOLDER)); 
 		//Note that the file chooser won't break if the saves directory doesn't exist - it'll just default to My Documents or some equivalent.
-		matchFileChooser.setFileFilter(new FileNameExtensionFilter("Tics games (.tcs)", MatchSaveData.SAVE_FILE_EXTENSION));
+		matchFileChooser.setFileFilter(new FileNameExtensionFilter("Tics games (." + MatchSaveData.SAVE_FILE_EXTENSION + ")", MatchSaveData.SAVE_FILE_EXTENSION));
 		matchFileChooser.setAcceptAllFileFilterUsed(false);
 		matchFileChooser.setMultiSelectionEnabled(false);
+		matchFileChooser.setAccessory(new SavePreviewPanel(matchFileChooser)); //Describes the selected save from the start of its file.
 	}
 	
 	/**
@@ -115,10 +142,15 @@ public class Main extends JFrame implements ActionListener {
 	public void setMatch(Match match) {
 		if (this.currentMatch != null) {
 			super.remove(this.currentMatch.getPanel());
-			// TODO: Dispose of the old match.
+			this.currentMatch.dispose(); //Stop the old match's background work, so switching games stays quick.
+		}
+		if (this.journal != null) {
+			this.journal.close();
+			this.journal = null;
 		}
 		
 		this.currentMatch = match;
+		this.journal = new MatchJournal(match); //It's written in the background, and the game can still be played if that fails.
 		match.getPanel().setVisible(false);
 		super.add(match.getPanel(), BorderLayout.CENTER);
 	}
@@ -155,8 +187,12 @@ public class Main extends JFrame implements ActionListener {
 		try {
 			if (event.getID() == WindowEvent.WINDOW_CLOSING) { //Quicksave the game if the window closes.
 				if (doesCurrentMatchNeedSaving()) {
-					new MatchSaveData(currentMatch).quicksave();
+					SaveWriter.quicksave(currentMatch, null);
+				}
+				if (journal != null) {
+					journal.close(); //The program is closing cleanly, so there's nothing to recover.
 				}
+				SaveWriter.awaitPending(EXIT_SAVE_TIMEOUT); //Saves and the journal are written in the background, so let them finish first.
 			}
 		} catch (Exception exception) {
 			exception.printStackTrace();
@@ -188,29 +224,44 @@ public class Main extends JFrame implements ActionListener {
 		}
 	}
 	
-	/** Opens a JFileChooser window that can be used to save a match as a .tcs file. */
+	/** Opens a JFileChooser window that can be used to save a match as a .tsv file. */
 	private void showSaveDialog() {
 		//TODO: Prevent saving (grey out this option) when the game is over.
 		if (matchFileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+			String filePath = matchFileChooser.getSelectedFile().getPath();
+			if (!filePath.endsWith("." + MatchSaveData.SAVE_FILE_EXTENSION)) {
+				filePath = filePath.concat("." + MatchSaveData.SAVE_FILE_EXTENSION); //Let users specify names without ".tsv", but add it anyway.
+			}
+			if (new File(filePath).exists()) { //Prompt for overwriting files, and be sure to check the file with ".tsv" at the end.
+				int chosenOption = JOptionPane.showConfirmDialog(this, "Really overwite the existing file?", "Overwrite file?",
+				        JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+				if (chosenOption == JOptionPane.YES_OPTION) {
+					SaveWriter.save(currentMatch, filePath, saveListener);
+				} //Don't do anything if the user didn't hit "Yes" at the prompt.
+			} else {
+				SaveWriter.save(currentMatch, filePath, saveListener); //Creating new files can be done without prompting.
+			}
+		}
+	}
+	
+	/** If the program stopped in the middle of a match last time, offers to recover it from the autosave. */
+	private void offerRecovery() {
+		if (!MatchJournal.hasRecovery()) {
+			return;
+		}
+		int chosenOption = JOptionPane.showConfirmDialog(this, "The last game wasn't closed properly. Recover it?", "Recover game?",
+		        JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+		if (chosenOption == JOptionPane.YES_OPTION) {
 			try {
-				String filePath = matchFileChooser.getSelectedFile().getPath();
-				if (!filePath.endsWith("." + MatchSaveData.SAVE_FILE_EXTENSION)) {
-					filePath = filePath.concat("." + MatchSaveData.SAVE_FILE_EXTENSION); //Let users specify names without ".tcs", but add it anyway.
-				}
-				if (new File(filePath).exists()) { //Prompt for overwriting files, and be sure to check the file with ".tcs" at the end.
-					int chosenOption = JOptionPane.showConfirmDialog(this, "Really overwite the existing file?", "Overwrite file?",
-					        JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
-					if (chosenOption == JOptionPane.YES_OPTION) {
-						new MatchSaveData(currentMatch).save(filePath);
-					} //Don't do anything if the user didn't hit "Yes" at the prompt.
-				} else {
-					new MatchSaveData(currentMatch).save(filePath); //Creating new files can be done without prompting.
-				}
+				setMatch(MatchJournal.recover(true));
+				displayMatch();
+				return;
 			} catch (IOException exception) {
 				exception.printStackTrace();
-				JOptionPane.showMessageDialog(this, "Error: Failed to save the game.");
+				JOptionPane.showMessageDialog(this, "Error: Failed to recover the game. " + exception.getMessage());
 			}
 		}
+		MatchJournal.delete();
 	}
 	
 	/** Opens a JFileChooser window that can be used to load and play a saved match. */
@@ -227,6 +278,9 @@ public class Main extends JFrame implements ActionListener {
 		} catch (FileNotFoundException exception) {
 			exception.printStackTrace();
 			JOptionPane.showMessageDialog(this, "Error: Couldn't find the selected file.");
+		} catch (IOException exception) {
+			exception.printStackTrace();
+			JOptionPane.showMessageDialog(this, "Error: Failed to load the game. " + exception.getMessage());
 		}
 	}
 	
@@ -0,0 +1,19 @@
+package tics.ai;
+
+import tics.match.Match;
+
+/**
+ * A computer player, which plays turns through the match's action methods rather than its panel.
+ * 
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public interface Agent {
+	/**
+	 * Plays the current player's turn by moving their units and using their abilities.
+	 * This doesn't end the turn; whatever is running the match is expected to do that.
+	 * 
+	 * @param match the match to play a turn in.
+	 */
+	public void playTurn(Match match);
+}
@@ -0,0 +1,73 @@
+package tics.ai;
+
+import java.util.Random;
+
+import tics.match.Match;
+
+/**
+ * The kinds of agent that can be chosen by name, for instance on the command line.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public enum AgentType {
+	/** Plays the best scoring option for each unit, with the tuned evaluation weights. */
+	GREEDY("Plays the best scoring option for each unit.") {
+		@Override
+		public Agent create(Random random) {
+			return new GreedyAgent(Evaluator.getDefault(), random, GREEDY_NOISE);
+		}
+	},
+	/** Plays solved duels perfectly, and everything else like GREEDY. */
+	TABLEBASE("Plays solved duels perfectly, and everything else greedily.") {
+		@Override
+		public Agent create(Random random) {
+			return new TablebaseAgent(GREEDY.create(random));
+		}
+	},
+	/** Makes random moves and uses random abilities. */
+	RANDOM("Makes random moves and uses random abilities.") {
+		@Override
+		public Agent create(Random random) {
+			return new RandomAgent(random);
+		}
+	},
+	/** Never does anything. */
+	IDLE("Ends every turn without acting.") {
+		@Override
+		public Agent create(Random random) {
+			return new Agent() {
+				@Override
+				public void playTurn(Match match) { }
+			};
+		}
+	};
+
+	/** The noise that greedy agents add to their scores, which is just enough to vary matches between equal options. */
+	private static final double GREEDY_NOISE = 0.005;
+
+	/** A short description of how this kind of agent plays. */
+	private String description;
+
+	/**
+	 * Constructs an agent type.
+	 *
+	 * @param description a short description of how this kind of agent plays.
+	 */
+	private AgentType(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * Creates an agent of this type. Agents may keep scratch data, so each thread should create its own.
+	 *
+	 * @param random the source of any random choices the agent makes.
+	 * @return the new agent.
+	 */
+	public abstract Agent create(Random random);
+
+	/** @return a short description of how this kind of agent plays. */
+	public String getDescription() {
+		return description;
+	}
+}
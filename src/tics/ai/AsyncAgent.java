@@ -0,0 +1,23 @@
+package tics.ai;
+
+import tics.match.Match;
+
+/**
+ * An agent that may take a long time to decide on a turn, for instance because it waits on another process or machine.
+ *
+ * Rather than blocking a thread while it waits, the agent is asked to prepare its turn and says when it's ready.
+ * Whatever is running the match then calls playTurn, which should only apply the decision that was prepared.
+ * The match doesn't change between the two calls.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public interface AsyncAgent extends Agent {
+	/**
+	 * Starts deciding on the current player's turn. This should return quickly.
+	 *
+	 * @param match the match to play a turn in. It may be read from any thread until ready is run, but not changed.
+	 * @param ready run once, from any thread, when playTurn can be called without waiting.
+	 */
+	public void prepareTurn(Match match, Runnable ready);
+}
@@ -0,0 +1,45 @@
+package tics.ai;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import tics.match.Match;
+
+/**
+ * An agent that takes a fixed time to think before each turn, and then plays like another agent.
+ * It stands in for slow or remote agents when testing how many waiting matches a scheduler can keep in flight.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class DelayedAgent implements AsyncAgent {
+	/** The agent that actually plays. */
+	private Agent agent;
+	/** The time spent thinking before each turn. */
+	private long delayMillis;
+	/** The timer that signals the end of the thinking time. */
+	private ScheduledExecutorService timer;
+
+	/**
+	 * Creates a delayed agent.
+	 *
+	 * @param agent the agent that actually plays.
+	 * @param delayMillis the time, in milliseconds, spent thinking before each turn.
+	 * @param timer the timer that signals the end of the thinking time. No thread waits while the agent thinks.
+	 */
+	public DelayedAgent(Agent agent, long delayMillis, ScheduledExecutorService timer) {
+		this.agent = agent;
+		this.delayMillis = delayMillis;
+		this.timer = timer;
+	}
+
+	@Override
+	public void prepareTurn(Match match, Runnable ready) {
+		timer.schedule(ready, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void playTurn(Match match) {
+		agent.playTurn(match);
+	}
+}
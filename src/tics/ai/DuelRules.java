@@ -0,0 +1,397 @@
+package tics.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Player;
+import tics.match.model.PlayerTheme;
+import tics.match.model.Tile;
+import tics.match.model.Unit;
+import tics.util.Range;
+
+/**
+ * The rules of a duel between two lone units on an empty board, boiled down to integers
+ * so that every position can be numbered, enumerated by the TablebaseGenerator and looked up by the Tablebase.
+ *
+ * Movement and ability ranges are worked out once, by running the game's own Range class on a scratch match,
+ * so that the tablebase always agrees with the real targeting rules.
+ * Ability effects are worked out from the same properties that Ability.affect uses.
+ *
+ * A position is stored as an int array, indexed by the field constants below.
+ * Tiles are numbered row by row, so that tile (x, y) is number y * width + x.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+class DuelRules {
+	/** The largest board, in tiles, that a duel can be solved for. */
+	static final int MAXIMUM_TILES = 100;
+
+	/** The indices of the fields in a position array. */
+	static final int SIDE = 0, FIRST_TILE = 1, SECOND_TILE = 2, FIRST_HEALTH = 3, SECOND_HEALTH = 4, DEFENDED = 5, FIELDS = 6;
+	//DEFENDED is 1 if the unit of the player who *isn't* moving is defended, 0 otherwise.
+	//The moving unit can't be defended, since its own DEFEND status wears off as its turn starts.
+
+	/** The possible results of a single turn. */
+	static final int CONTINUES = 0, WINS = 1, LOSES = 2, DRAWS = 3;
+
+	/** The abilities whose effects a duel can be solved with. */
+	private static final EnumSet<Ability> SUPPORTED_ABILITIES = EnumSet.of(Ability.ATTACK, Ability.SHOOT, Ability.SNIPE,
+			Ability.POUND, Ability.BURST, Ability.REGENERATE, Ability.DEFEND, Ability.HEAL, Ability.TELEPORT, Ability.SPRINT);
+	//HASTE, SLOW and BARRIER leave statuses with durations behind, which a position doesn't have room for.
+
+	/** The board dimensions, in tiles. */
+	final int width, height, tiles;
+	/** The abilities of each player's unit, in declaration order. */
+	final Ability[][] loadouts;
+	/** The number of distinct positions. */
+	final int positionCount;
+
+	/** The tiles a unit can end its move on (including the one it started on), indexed by origin * tiles + enemy tile. */
+	private int[][] moves;
+	/** The tiles an ability can be used on, indexed by ability ordinal and then by origin * tiles + enemy tile. */
+	private int[][][] targets;
+
+	/**
+	 * Sets up the rules for a duel.
+	 *
+	 * @param width the board's width in tiles.
+	 * @param height the board's height in tiles.
+	 * @param firstLoadout the first player's abilities, as a mask made by getLoadoutMask.
+	 * @param secondLoadout the second player's abilities, as a mask made by getLoadoutMask.
+	 * @throws IllegalArgumentException if the board is too large or an ability can't be solved for.
+	 */
+	DuelRules(int width, int height, int firstLoadout, int secondLoadout) {
+		if (width * height > MAXIMUM_TILES) {
+			throw new IllegalArgumentException("Duels can only be solved on boards of up to " + MAXIMUM_TILES + " tiles.");
+		}
+
+		this.width = width;
+		this.height = height;
+		this.tiles = width * height;
+		this.loadouts = new Ability[][] { getLoadout(firstLoadout), getLoadout(secondLoadout) };
+		this.positionCount = 2 * tiles * (tiles - 1) * Unit.BASE_HEALTH * Unit.BASE_HEALTH * 2;
+
+		for (Ability[] loadout : loadouts) {
+			for (Ability ability : loadout) {
+				checkSupported(ability);
+			}
+		}
+
+		buildRanges();
+	}
+
+	/**
+	 * Makes sure that the effects of an ability can be expressed in a duel position.
+	 *
+	 * @param ability the ability to check.
+	 * @throws IllegalArgumentException if the ability isn't supported.
+	 */
+	private static void checkSupported(Ability ability) {
+		if (!SUPPORTED_ABILITIES.contains(ability)) {
+			throw new IllegalArgumentException(ability + " can't be used in a solved duel.");
+		} else if (ability != Ability.BURST && ability.getProperty(Ability.Property.EFFECT_RADIUS) != 0) {
+			throw new IllegalArgumentException(ability + " can only be used in a solved duel without an effect radius.");
+		} else if (ability == Ability.DEFEND && ability.getProperty(Ability.Property.DURATION) != 1) {
+			throw new IllegalArgumentException(ability + " can only be used in a solved duel if it lasts for one turn.");
+		}
+	}
+
+	/** Uses Range on a scratch match to find every movement and ability range that can come up in a duel. */
+	private void buildRanges() {
+		Player[] players = new Player[2];
+		Unit[] units = new Unit[2];
+		for (int index = 0; index < 2; index++) {
+			players[index] = new Player(new HashSet<Unit>(), PlayerTheme.getThemeForIndex(index));
+			units[index] = new Unit(players[index].getTheme(), new ArrayList<Ability>());
+			players[index].getUnits().add(units[index]);
+		}
+		//The scratch match is never started, so player 0 stays the current player and owns the unit that ranges are found for.
+		Match match = new Match(width, height, players, false);
+
+		Set<Ability> usedAbilities = EnumSet.noneOf(Ability.class);
+		usedAbilities.addAll(Arrays.asList(loadouts[0]));
+		usedAbilities.addAll(Arrays.asList(loadouts[1]));
+
+		moves = new int[tiles * tiles][];
+		targets = new int[Ability.values().length][][];
+		for (Ability ability : usedAbilities) {
+			targets[ability.ordinal()] = new int[tiles * tiles][];
+		}
+
+		for (int origin = 0; origin < tiles; origin++) {
+			for (int enemy = 0; enemy < tiles; enemy++) {
+				if (origin == enemy) {
+					continue;
+				}
+
+				Tile originTile = getTile(match.getBoard(), origin);
+				Tile enemyTile = getTile(match.getBoard(), enemy);
+				originTile.setUnit(units[0]);
+				enemyTile.setUnit(units[1]);
+				units[0].setCurrentMove(Unit.BASE_MOVE);
+
+				ArrayList<Tile> destinations = new ArrayList<Tile>(new Range(match, originTile, null).getValidTargetPaths().keySet());
+				destinations.add(originTile); //Staying put is a move too.
+				moves[origin * tiles + enemy] = getTileNumbers(destinations);
+
+				for (Ability ability : usedAbilities) {
+					ArrayList<Tile> abilityTargets = new ArrayList<Tile>();
+					for (Tile tile : new Range(match, originTile, ability).getValidTargetPaths().keySet()) {
+						//These are the same checks that Match makes before using an ability.
+						if (tile.isOfType(ability.getTargetType(), match.getCurrentPlayer(), match.getTileOwner(tile))) {
+							abilityTargets.add(tile);
+						}
+					}
+					targets[ability.ordinal()][origin * tiles + enemy] = getTileNumbers(abilityTargets);
+				}
+
+				originTile.setUnit(null);
+				enemyTile.setUnit(null);
+			}
+		}
+	}
+
+	/**
+	 * Finds the index of a position, which is unique and between 0 and positionCount.
+	 *
+	 * @param position the position, as an array of fields.
+	 * @return the position's index.
+	 */
+	int getIndex(int[] position) {
+		return getIndex(position[SIDE], position[FIRST_TILE], position[SECOND_TILE],
+				position[FIRST_HEALTH], position[SECOND_HEALTH], position[DEFENDED] != 0);
+	}
+
+	/**
+	 * Finds the index of a position, which is unique and between 0 and positionCount.
+	 *
+	 * @param side the index of the player who is moving.
+	 * @param firstTile the tile the first player's unit is on.
+	 * @param secondTile the tile the second player's unit is on. This can't be the first unit's tile.
+	 * @param firstHealth the first player's unit's health, which must be positive.
+	 * @param secondHealth the second player's unit's health, which must be positive.
+	 * @param defended true if the unit of the player who isn't moving is defended.
+	 * @return the position's index.
+	 */
+	int getIndex(int side, int firstTile, int secondTile, int firstHealth, int secondHealth, boolean defended) {
+		int secondRank = secondTile < firstTile ? secondTile : secondTile - 1; //The units can't share a tile, so skip that case.
+		int index = side;
+		index = index * tiles + firstTile;
+		index = index * (tiles - 1) + secondRank;
+		index = index * Unit.BASE_HEALTH + firstHealth - 1;
+		index = index * Unit.BASE_HEALTH + secondHealth - 1;
+		return index * 2 + (defended ? 1 : 0);
+	}
+
+	/**
+	 * Works out the position with a given index.
+	 *
+	 * @param index the position's index.
+	 * @param position the array to store the position's fields in.
+	 */
+	void getPosition(int index, int[] position) {
+		position[DEFENDED] = index % 2;
+		index /= 2;
+		position[SECOND_HEALTH] = index % Unit.BASE_HEALTH + 1;
+		index /= Unit.BASE_HEALTH;
+		position[FIRST_HEALTH] = index % Unit.BASE_HEALTH + 1;
+		index /= Unit.BASE_HEALTH;
+		int secondRank = index % (tiles - 1);
+		index /= tiles - 1;
+		position[FIRST_TILE] = index % tiles;
+		position[SECOND_TILE] = secondRank < position[FIRST_TILE] ? secondRank : secondRank + 1;
+		position[SIDE] = index / tiles;
+	}
+
+	/**
+	 * Runs through every turn that the moving player can take in a position.
+	 *
+	 * @param position the position, as an array of fields.
+	 * @param visitor the visitor to report each turn to.
+	 */
+	void forEachTurn(int[] position, TurnVisitor visitor) {
+		int side = position[SIDE];
+		int moverTile = position[FIRST_TILE + side], enemyTile = position[SECOND_TILE - side];
+		int moverHealth = position[FIRST_HEALTH + side], enemyHealth = position[SECOND_HEALTH - side];
+		boolean enemyDefended = position[DEFENDED] != 0;
+
+		for (int destination : moves[moverTile * tiles + enemyTile]) {
+			//Just moving and ending the turn. The enemy's DEFEND status wears off as their turn starts.
+			if (!visitor.visit(destination, null, -1, CONTINUES, getSuccessor(side, destination, enemyTile, moverHealth, enemyHealth, false))) {
+				return;
+			}
+
+			for (Ability ability : loadouts[side]) {
+				for (int target : targets[ability.ordinal()][destination * tiles + enemyTile]) {
+					int newMoverTile = destination, newMoverHealth = moverHealth, newEnemyHealth = enemyHealth;
+					boolean moverDefended = false;
+
+					switch (ability) {
+						case ATTACK : case SHOOT : case SNIPE :
+							newEnemyHealth = changeHealth(enemyHealth, -ability.getProperty(Ability.Property.DAMAGE), enemyDefended);
+							break;
+						case POUND :
+							newEnemyHealth = changeHealth(enemyHealth, -ability.getProperty(Ability.Property.DAMAGE), enemyDefended);
+							newMoverHealth = changeHealth(moverHealth, -ability.getProperty(Ability.Property.HP_COST), false);
+							break;
+						case BURST : //Everything in the radius is hit, including the user.
+							int radius = ability.getProperty(Ability.Property.EFFECT_RADIUS);
+							if (getDistance(target, destination) <= radius) {
+								newMoverHealth = changeHealth(moverHealth, -ability.getProperty(Ability.Property.DAMAGE), false);
+							}
+							if (getDistance(target, enemyTile) <= radius) {
+								newEnemyHealth = changeHealth(enemyHealth, -ability.getProperty(Ability.Property.DAMAGE), enemyDefended);
+							}
+							break;
+						case REGENERATE : case HEAL : //The user is the only ally, so it's the only possible target.
+							newMoverHealth = changeHealth(moverHealth, ability.getProperty(Ability.Property.HP_RESTORED), false);
+							break;
+						case DEFEND :
+							moverDefended = true;
+							break;
+						case TELEPORT : case SPRINT :
+							newMoverTile = target;
+							break;
+						default :
+							throw new IllegalStateException(ability + " can't be used in a solved duel.");
+					}
+
+					int result, successor = -1;
+					if (newEnemyHealth <= 0) {
+						result = newMoverHealth <= 0 ? DRAWS : WINS;
+					} else if (newMoverHealth <= 0) {
+						result = LOSES;
+					} else {
+						result = CONTINUES;
+						successor = getSuccessor(side, newMoverTile, enemyTile, newMoverHealth, newEnemyHealth, moverDefended);
+					}
+
+					if (!visitor.visit(destination, ability, target, result, successor)) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the index of the position that the other player starts their turn in.
+	 *
+	 * @param side the player who just moved.
+	 * @param moverTile the tile that player's unit ended its turn on.
+	 * @param enemyTile the tile the other player's unit is on.
+	 * @param moverHealth the health of the unit that just moved.
+	 * @param enemyHealth the health of the other unit.
+	 * @param moverDefended true if the unit that just moved used DEFEND.
+	 * @return the index of the resulting position.
+	 */
+	private int getSuccessor(int side, int moverTile, int enemyTile, int moverHealth, int enemyHealth, boolean moverDefended) {
+		if (side == 0) {
+			return getIndex(1, moverTile, enemyTile, moverHealth, enemyHealth, moverDefended);
+		} else {
+			return getIndex(0, enemyTile, moverTile, enemyHealth, moverHealth, moverDefended);
+		}
+	}
+
+	/**
+	 * Adjusts a unit's health the same way Unit.changeHealth does.
+	 *
+	 * @param health the unit's current health.
+	 * @param adjustment the positive or negative change to make.
+	 * @param defended true if the unit is defended and the change can be mitigated.
+	 * @return the unit's new health.
+	 */
+	private static int changeHealth(int health, int adjustment, boolean defended) {
+		if (defended && adjustment < 0) {
+			adjustment += Ability.DEFEND.getProperty(Ability.Property.DAMAGE_REDUCTION);
+		}
+		return Math.min(health + adjustment, Unit.BASE_HEALTH);
+	}
+
+	/** @return the orthogonal distance between two numbered tiles. */
+	private int getDistance(int first, int second) {
+		return Math.abs(first % width - second % width) + Math.abs(first / width - second / width);
+	}
+
+	/** @return the number of a tile. */
+	int getTileNumber(Tile tile) {
+		return tile.getGridY() * width + tile.getGridX();
+	}
+
+	/** @return the tile on a board with a given number. */
+	Tile getTile(Board board, int number) {
+		return board.getTile(number % width, number / width);
+	}
+
+	/** @return the numbers of a collection of tiles, in ascending order. */
+	private int[] getTileNumbers(Collection<Tile> tiles) {
+		int[] numbers = new int[tiles.size()];
+		int index = 0;
+		for (Tile tile : tiles) {
+			numbers[index++] = getTileNumber(tile);
+		}
+		Arrays.sort(numbers); //Range hands back tiles in no particular order, and we want the same turns in the same order every time.
+		return numbers;
+	}
+
+	/**
+	 * Turns a collection of abilities into a mask, with one bit set for each ability.
+	 *
+	 * @param abilities the abilities to include.
+	 * @return the mask for the abilities.
+	 */
+	static int getLoadoutMask(Collection<Ability> abilities) {
+		int mask = 0;
+		for (Ability ability : abilities) {
+			mask |= 1 << ability.ordinal();
+		}
+		return mask;
+	}
+
+	/** @return the abilities in a mask made by getLoadoutMask, in declaration order. */
+	static Ability[] getLoadout(int mask) {
+		ArrayList<Ability> abilities = new ArrayList<Ability>();
+		for (Ability ability : Ability.values()) {
+			if ((mask & (1 << ability.ordinal())) != 0) {
+				abilities.add(ability);
+			}
+		}
+		return abilities.toArray(new Ability[abilities.size()]);
+	}
+
+	/** @return a hash of every value that the duel rules depend on, so that out of date tablebases can be recognised. */
+	static int getRulesHash() {
+		int hash = 17;
+		hash = 31 * hash + Unit.BASE_MOVE;
+		hash = 31 * hash + Unit.BASE_HEALTH;
+		for (Ability ability : Ability.values()) {
+			for (Ability.Property property : Ability.Property.values()) {
+				hash = 31 * hash + ability.getProperty(property);
+			}
+		}
+		return hash;
+	}
+
+	/** Receives the turns found by forEachTurn. */
+	static abstract class TurnVisitor {
+		/**
+		 * Handles one possible turn.
+		 *
+		 * @param destination the tile the moving unit ends its move on.
+		 * @param ability the ability used afterwards, or null if none is used.
+		 * @param target the tile the ability is used on, or -1 if none is used.
+		 * @param result CONTINUES, WINS, LOSES or DRAWS, for the player who is moving.
+		 * @param successor the index of the resulting position if the duel continues, -1 otherwise.
+		 * @return true to keep going, false to stop looking at turns.
+		 */
+		abstract boolean visit(int destination, Ability ability, int target, int result, int successor);
+	}
+}
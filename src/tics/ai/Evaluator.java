@@ -0,0 +1,202 @@
+package tics.ai;
+
+import java.io.File;
+import java.util.Properties;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Player;
+import tics.match.model.Tile;
+import tics.match.model.Unit;
+import tics.match.model.UnitStatus;
+import tics.util.load.PropertiesLoader;
+
+/**
+ * Scores a match from one player's point of view, as a weighted sum of simple features.
+ * Each feature is measured as the player's own value minus the average of their remaining opponents' values.
+ *
+ * The weights are loaded from settings/Weights.properties, which is written by the WeightTuner.
+ * A score of 0 means an even match. Since the tuner fits the weights with a logistic model,
+ * a score can be read as a win probability of 1 / (1 + e^-score).
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class Evaluator {
+	/** The file that the tuned weights are stored in. */
+	public static final String WEIGHTS_FILE = "settings/Weights";
+
+	/** The evaluator with the weights from the weights file. */
+	private static Evaluator defaultEvaluator;
+
+	/** The weight of each feature, indexed by ordinal. */
+	private final double[] weights;
+
+	/**
+	 * Creates an evaluator with chosen weights.
+	 *
+	 * @param weights the weight of each feature, indexed by ordinal. This array is copied.
+	 */
+	public Evaluator(double[] weights) {
+		this.weights = weights.clone();
+	}
+
+	/**
+	 * Accesses the evaluator that uses the weights in the weights file, loading it if necessary.
+	 * Any weight that is missing from the file takes its feature's default value.
+	 *
+	 * @return the default evaluator.
+	 */
+	public static synchronized Evaluator getDefault() {
+		if (defaultEvaluator == null) {
+			double[] weights = new double[Feature.values().length];
+			Properties properties = new File(WEIGHTS_FILE + ".properties").isFile() ? PropertiesLoader.get(WEIGHTS_FILE) : null;
+			for (Feature feature : Feature.values()) {
+				String value = properties == null ? null : properties.getProperty(feature.getKey());
+				weights[feature.ordinal()] = value == null ? feature.getDefaultWeight() : Double.parseDouble(value);
+			}
+			defaultEvaluator = new Evaluator(weights);
+		}
+		return defaultEvaluator;
+	}
+
+	/**
+	 * Scores a match.
+	 *
+	 * @param match the match to score.
+	 * @param playerIndex the index of the player to score the match for.
+	 * @return the score, which is higher when the match is going well for the player.
+	 */
+	public double evaluate(Match match, int playerIndex) {
+		double[] features = new double[weights.length];
+		measure(match, playerIndex, features);
+		return evaluate(features);
+	}
+
+	/**
+	 * Scores a set of features that have already been measured.
+	 *
+	 * @param features the features, indexed by ordinal.
+	 * @return the weighted sum of the features.
+	 */
+	public double evaluate(double[] features) {
+		double score = 0;
+		for (int index = 0; index < weights.length; index++) {
+			score += weights[index] * features[index];
+		}
+		return score;
+	}
+
+	/**
+	 * Measures every feature of a match. Units with no health left count as dead, even if they're still on the board.
+	 *
+	 * @param match the match to measure.
+	 * @param playerIndex the index of the player to measure the match for.
+	 * @param features the array to store the features in, indexed by ordinal.
+	 */
+	public static void measure(Match match, int playerIndex, double[] features) {
+		Player[] players = match.getPlayers();
+		Board board = match.getBoard();
+		double[][] totals = new double[players.length][Feature.values().length];
+		int weakHealth = Ability.ATTACK.getProperty(Ability.Property.DAMAGE);
+
+		for (int x = 0; x < board.getGridWidth(); x++) {
+			for (int y = 0; y < board.getGridHeight(); y++) {
+				Tile tile = board.getTile(x, y);
+				Unit unit = tile.getUnit();
+				if (unit == null || unit.getCurrentHealth() <= 0) {
+					continue;
+				}
+
+				int owner = getPlayerIndex(players, match.getTileOwner(tile));
+				if (owner < 0) {
+					continue; //Units of surrendered players are only scenery.
+				}
+
+				double[] total = totals[owner];
+				total[Feature.UNITS.ordinal()]++;
+				total[Feature.HEALTH.ordinal()] += unit.getCurrentHealth();
+				total[Feature.ABILITIES.ordinal()] += unit.getAbilities().size();
+				if (unit.getCurrentHealth() <= weakHealth) {
+					total[Feature.WEAK_UNITS.ordinal()]++;
+				}
+				for (UnitStatus status : unit.getStatuses()) {
+					total[Feature.STATUSES.ordinal()] += status.getType().isPositive() ? 1 : -1;
+				}
+			}
+		}
+
+		int opponents = 0;
+		for (int index = 0; index < players.length; index++) {
+			if (index != playerIndex && totals[index][Feature.UNITS.ordinal()] > 0) {
+				opponents++;
+			}
+		}
+
+		for (Feature feature : Feature.values()) {
+			double opponentTotal = 0;
+			for (int index = 0; index < players.length; index++) {
+				if (index != playerIndex && totals[index][Feature.UNITS.ordinal()] > 0) {
+					opponentTotal += totals[index][feature.ordinal()];
+				}
+			}
+			features[feature.ordinal()] = totals[playerIndex][feature.ordinal()] - (opponents == 0 ? 0 : opponentTotal / opponents);
+		}
+	}
+
+	/** @return the index of a player in an array of players, or -1 if they aren't in it or have surrendered. */
+	private static int getPlayerIndex(Player[] players, Player player) {
+		for (int index = 0; index < players.length; index++) {
+			if (players[index] == player) {
+				return player.isDefeated() ? -1 : index;
+			}
+		}
+		return -1;
+	}
+
+	/** @return the weight of each feature, indexed by ordinal. */
+	public double[] getWeights() {
+		return weights.clone();
+	}
+
+	/** Something about a match that the evaluator scores. */
+	public enum Feature {
+		/** The number of living units. */
+		UNITS("units", 0.6),
+		/** The total health of living units. */
+		HEALTH("health", 0.08),
+		/** The total number of abilities that living units have, including ATTACK. */
+		ABILITIES("abilities", 0.05),
+		/** The number of units that a single ATTACK would kill. */
+		WEAK_UNITS("weak_units", -0.2),
+		/** The number of helpful statuses on units, minus the number of harmful ones. */
+		STATUSES("statuses", 0.1);
+
+		/** The name of this feature's weight in the weights file. */
+		private String key;
+		/** The weight used if the weights file doesn't have one. */
+		private double defaultWeight;
+
+		/**
+		 * Constructs a feature.
+		 *
+		 * @param key the name of this feature's weight in the weights file.
+		 * @param defaultWeight the weight used if the weights file doesn't have one.
+		 */
+		private Feature(String key, double defaultWeight) {
+			this.key = key;
+			this.defaultWeight = defaultWeight;
+		}
+
+		/** @return the name of this feature's weight in the weights file. */
+		public String getKey() {
+			return key;
+		}
+
+		/** @return the weight used if the weights file doesn't have one. */
+		public double getDefaultWeight() {
+			return defaultWeight;
+		}
+	}
+}
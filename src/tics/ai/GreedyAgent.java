@@ -0,0 +1,236 @@
+package tics.ai;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Tile;
+import tics.match.model.TileStatus;
+import tics.match.model.Unit;
+import tics.match.model.UnitStatus;
+import tics.util.FlowField;
+import tics.util.Range;
+import tics.util.Util;
+
+/**
+ * An agent that plays each of its units in turn, picking whichever move and ability scores best with an Evaluator.
+ *
+ * Every option is tried out on the real board and then undone, so that the evaluator sees exactly what the ability would do.
+ * Options are also nudged towards the nearest enemy, so that units close in when none of their abilities can reach anything.
+ * Some random noise can be added to the scores, so that self-play doesn't repeat the same match over and over.
+ * Since the undo information is kept between calls, each thread needs its own agent.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class GreedyAgent implements Agent {
+	/** The score given up for each tile between a unit and the nearest enemy. This is kept small, so it only breaks ties. */
+	private static final double APPROACH_WEIGHT = 0.01;
+
+	/** The evaluator that scores options. */
+	private Evaluator evaluator;
+	/** The source of noise. */
+	private Random random;
+	/** The standard deviation of the noise added to each score. */
+	private double noise;
+	/** The distances to the nearest enemies, used to close in on them when nothing else changes the score. */
+	private FlowField flowField = new FlowField();
+
+	/** The tiles changed by the option being tried, and what they held before it. */
+	private ArrayList<Tile> changedTiles = new ArrayList<Tile>();
+	private ArrayList<Unit> tileUnits = new ArrayList<Unit>();
+	private ArrayList<HashSet<TileStatus>> tileStatuses = new ArrayList<HashSet<TileStatus>>();
+	/** The units changed by the option being tried, and their state before it. */
+	private ArrayList<Unit> changedUnits = new ArrayList<Unit>();
+	private ArrayList<int[]> unitValues = new ArrayList<int[]>();
+	private ArrayList<HashSet<UnitStatus>> unitStatuses = new ArrayList<HashSet<UnitStatus>>();
+
+	/**
+	 * Creates an agent that always picks the best scoring option.
+	 *
+	 * @param evaluator the evaluator to score options with.
+	 */
+	public GreedyAgent(Evaluator evaluator) {
+		this(evaluator, null, 0);
+	}
+
+	/**
+	 * Creates an agent that adds random noise to its scores.
+	 *
+	 * @param evaluator the evaluator to score options with.
+	 * @param random the source of noise.
+	 * @param noise the standard deviation of the noise.
+	 */
+	public GreedyAgent(Evaluator evaluator, Random random, double noise) {
+		this.evaluator = evaluator;
+		this.random = random;
+		this.noise = noise;
+	}
+
+	@Override
+	public void playTurn(Match match) {
+		//Units act in board order, and options are tried in board order,
+		//so that a match plays out the same way every time it's given the same noise.
+		Board board = match.getBoard();
+		ArrayList<Tile> unitTiles = new ArrayList<Tile>();
+		for (int y = 0; y < board.getGridHeight(); y++) {
+			for (int x = 0; x < board.getGridWidth(); x++) {
+				Tile tile = board.getTile(x, y);
+				if (tile.hasUnit() && tile.getUnit().isActive() && match.getTileOwner(tile) == match.getCurrentPlayer()) {
+					unitTiles.add(tile);
+				}
+			}
+		}
+
+		for (Tile tile : unitTiles) {
+			if (!match.isInProgress()) {
+				return;
+			}
+			if (tile.hasUnit() && tile.getUnit().isActive()) { //Another unit's ability may have moved or killed this one.
+				findBestPlan(match, tile).execute(match);
+			}
+		}
+	}
+
+	/**
+	 * Tries out every option for a unit and picks the best one.
+	 *
+	 * @param match the match being played.
+	 * @param origin the tile with the unit to plan for.
+	 * @return the best plan.
+	 */
+	public TurnPlan findBestPlan(Match match, Tile origin) {
+		int playerIndex = match.getCurrentPlayerIndex();
+		Unit unit = origin.getUnit();
+		flowField.build(match);
+
+		ArrayList<Tile> destinations = Util.sortTiles(new Range(match, origin, null).getValidTargetPaths().keySet());
+		destinations.add(origin);
+
+		TurnPlan bestPlan = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (Tile destination : destinations) {
+			moveUnit(origin, destination);
+			double approach = getApproachScore(match, destination);
+
+			double score = evaluator.evaluate(match, playerIndex) + approach + getNoise();
+			if (score > bestScore) {
+				bestScore = score;
+				bestPlan = new TurnPlan(origin, destination, null, null, null);
+			}
+
+			for (Ability ability : unit.getAbilities()) {
+				for (Tile target : Util.sortTiles(new Range(match, destination, ability).getValidTargetPaths().keySet())) {
+					if (!target.isOfType(ability.getTargetType(), match.getCurrentPlayer(), match.getTileOwner(target))) {
+						continue;
+					}
+
+					remember(target);
+					HashSet<Tile> affectedTiles = match.getBoard().getTileRadius(target, ability.getProperty(Ability.Property.EFFECT_RADIUS));
+					for (Tile affectedTile : affectedTiles) {
+						remember(affectedTile);
+					}
+					for (Tile affectedTile : affectedTiles) {
+						ability.affect(destination, affectedTile, playerIndex);
+					}
+
+					score = evaluator.evaluate(match, playerIndex) + approach + getNoise();
+					if (score > bestScore) {
+						bestScore = score;
+						bestPlan = new TurnPlan(origin, destination, ability, target, null);
+					}
+
+					restore();
+					moveUnit(origin, destination);
+				}
+			}
+
+			restore();
+		}
+
+		return bestPlan;
+	}
+
+	/**
+	 * Tries out a move, remembering the tiles involved.
+	 *
+	 * @param origin the tile with the unit to move.
+	 * @param destination the tile to move the unit to.
+	 */
+	private void moveUnit(Tile origin, Tile destination) {
+		remember(origin);
+		remember(destination);
+		if (destination != origin) {
+			Util.moveUnit(origin, destination);
+		}
+	}
+
+	/**
+	 * Scores how close a tile is to the nearest enemy.
+	 *
+	 * @param match the match being played.
+	 * @param tile the tile a unit would end its move on.
+	 * @return a small score that grows as the tile gets closer to an enemy.
+	 */
+	private double getApproachScore(Match match, Tile tile) {
+		int distance = flowField.getDistance(match.getCurrentPlayerIndex(), tile.getGridX(), tile.getGridY());
+		if (distance == FlowField.UNREACHABLE) {
+			distance = match.getBoard().getGridWidth() * match.getBoard().getGridHeight(); //Further than any real path.
+		}
+		return -APPROACH_WEIGHT * distance;
+	}
+
+	/** @return a random adjustment to a score. */
+	private double getNoise() {
+		return random == null ? 0 : random.nextGaussian() * noise;
+	}
+
+	/**
+	 * Records the state of a tile, and of the unit on it, so that it can be restored after trying out an option.
+	 *
+	 * @param tile the tile that's about to change.
+	 */
+	private void remember(Tile tile) {
+		if (!changedTiles.contains(tile)) {
+			changedTiles.add(tile);
+			tileUnits.add(tile.getUnit());
+			tileStatuses.add(new HashSet<TileStatus>(tile.getStatuses()));
+		}
+
+		Unit unit = tile.getUnit();
+		if (unit != null && !changedUnits.contains(unit)) {
+			changedUnits.add(unit);
+			unitValues.add(new int[] { unit.getCurrentHealth(), unit.getCurrentMove(), unit.isActive() ? 1 : 0 });
+			unitStatuses.add(new HashSet<UnitStatus>(unit.getStatuses()));
+		}
+	}
+
+	/** Puts every remembered tile and unit back the way it was. */
+	private void restore() {
+		for (int index = 0; index < changedTiles.size(); index++) {
+			Tile tile = changedTiles.get(index);
+			tile.setUnit(tileUnits.get(index));
+			tile.getStatuses().clear();
+			tile.getStatuses().addAll(tileStatuses.get(index));
+		}
+		for (int index = 0; index < changedUnits.size(); index++) {
+			Unit unit = changedUnits.get(index);
+			int[] values = unitValues.get(index);
+			unit.setCurrentHealth(values[0]);
+			unit.setCurrentMove(values[1]);
+			unit.setActive(values[2] != 0);
+			unit.getStatuses().clear();
+			unit.getStatuses().addAll(unitStatuses.get(index));
+		}
+
+		changedTiles.clear();
+		tileUnits.clear();
+		tileStatuses.clear();
+		changedUnits.clear();
+		unitValues.clear();
+		unitStatuses.clear();
+	}
+}
@@ -0,0 +1,57 @@
+package tics.ai;
+
+import tics.match.Match;
+import tics.match.model.Player;
+
+/**
+ * Plays a match to the end with an agent in control of each player.
+ * Subclasses can watch the match by overriding turnStarted.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class MatchRunner {
+	/** The match being played. */
+	protected final Match match;
+	/** The agent that plays for each player, indexed like the match's players. */
+	protected final Agent[] agents;
+	/** The number of rounds after which the match is called a draw. */
+	protected final int maximumRounds;
+
+	/**
+	 * Sets up a match to be played.
+	 *
+	 * @param match the match to play, which must already be started.
+	 * @param agents the agent that plays for each player, indexed like the match's players.
+	 * @param maximumRounds the number of rounds after which the match is called a draw.
+	 */
+	public MatchRunner(Match match, Agent[] agents, int maximumRounds) {
+		this.match = match;
+		this.agents = agents;
+		this.maximumRounds = maximumRounds;
+	}
+
+	/**
+	 * Plays the match until someone wins or the round limit is reached.
+	 *
+	 * @return the player who won, or null if the match was a draw.
+	 */
+	public Player run() {
+		while (match.isInProgress() && match.getCurrentRound() <= maximumRounds) {
+			turnStarted();
+			agents[match.getCurrentPlayerIndex()].playTurn(match);
+			if (match.isInProgress()) {
+				match.endTurn();
+			}
+		}
+		return match.getVictor();
+	}
+
+	/** Called at the start of every turn, before the current player's agent plays. */
+	protected void turnStarted() { }
+
+	/** @return the match being played. */
+	public Match getMatch() {
+		return match;
+	}
+}
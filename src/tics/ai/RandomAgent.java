@@ -0,0 +1,77 @@
+package tics.ai;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Tile;
+import tics.util.Range;
+import tics.util.Util;
+
+/**
+ * An agent that moves each of its units to a random tile in range, then uses a random ability on a random target, or none at all.
+ * This makes a baseline for other agents to be measured against.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class RandomAgent implements Agent {
+	/** The source of every choice this agent makes. */
+	private Random random;
+
+	/**
+	 * Creates a random agent.
+	 *
+	 * @param random the source of every choice this agent makes.
+	 */
+	public RandomAgent(Random random) {
+		this.random = random;
+	}
+
+	@Override
+	public void playTurn(Match match) {
+		Board board = match.getBoard();
+		ArrayList<Tile> unitTiles = new ArrayList<Tile>();
+		for (int y = 0; y < board.getGridHeight(); y++) {
+			for (int x = 0; x < board.getGridWidth(); x++) {
+				Tile tile = board.getTile(x, y);
+				if (tile.hasUnit() && tile.getUnit().isActive() && match.getTileOwner(tile) == match.getCurrentPlayer()) {
+					unitTiles.add(tile);
+				}
+			}
+		}
+
+		for (Tile origin : unitTiles) {
+			if (!match.isInProgress()) {
+				return;
+			}
+			if (!origin.hasUnit() || !origin.getUnit().isActive()) {
+				continue;
+			}
+
+			ArrayList<Tile> destinations = Util.sortTiles(new Range(match, origin, null).getValidTargetPaths().keySet());
+			destinations.add(origin);
+			Tile destination = destinations.get(random.nextInt(destinations.size()));
+			if (destination != origin) {
+				match.moveUnit(origin, destination);
+			}
+
+			ArrayList<TurnPlan> options = new ArrayList<TurnPlan>();
+			options.add(null); //Using no ability at all.
+			for (Ability ability : destination.getUnit().getAbilities()) {
+				for (Tile target : Util.sortTiles(new Range(match, destination, ability).getValidTargetPaths().keySet())) {
+					if (target.isOfType(ability.getTargetType(), match.getCurrentPlayer(), match.getTileOwner(target))) {
+						options.add(new TurnPlan(destination, destination, ability, target, null));
+					}
+				}
+			}
+
+			TurnPlan plan = options.get(random.nextInt(options.size()));
+			if (plan != null) {
+				plan.execute(match);
+			}
+		}
+	}
+}
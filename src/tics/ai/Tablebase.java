@@ -0,0 +1,303 @@
+package tics.ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Player;
+import tics.match.model.Tile;
+import tics.match.model.TileStatus;
+import tics.match.model.Unit;
+import tics.match.model.UnitStatus;
+
+/**
+ * A solved endgame: the result of perfect play from every position of a duel
+ * between two lone units with fixed abilities on a small, empty board.
+ *
+ * Tablebases are created by the TablebaseGenerator and read through a memory-mapped file,
+ * which holds a small header followed by one byte per position, in DuelRules index order.
+ * A positive value means that the moving player wins within that many turns (counting both players' turns),
+ * a negative value means that they lose within that many turns, and 0 means that the duel is a draw.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class Tablebase {
+	/** The relative path to the tablebase directory. */
+	public static final String TABLEBASE_FOLDER = "tablebases/";
+
+	/** The extension for files of this type. */
+	public static final String FILE_EXTENSION = "ttb";
+	//TTB = Tics TableBase
+
+	/** The value that identifies a tablebase file. These are the characters "TTB1". */
+	static final int MAGIC_NUMBER = 0x54544231;
+	/** The version of the file format. */
+	static final int VERSION = 1;
+
+	/** The positions of the fields in the file header. */
+	static final int MAGIC_OFFSET = 0, VERSION_OFFSET = 4, WIDTH_OFFSET = 8, HEIGHT_OFFSET = 12,
+			FIRST_LOADOUT_OFFSET = 16, SECOND_LOADOUT_OFFSET = 20, RULES_HASH_OFFSET = 24, PASSES_OFFSET = 28, COMPLETE_OFFSET = 32;
+	/** The size of the file header. The position values start right after it. */
+	static final int HEADER_SIZE = 64;
+
+	/** Every tablebase that has been opened, mapped to the path to its file. */
+	private static HashMap<String, Tablebase> tablebases = new HashMap<String, Tablebase>();
+
+	/** The rules of the duel that this tablebase solves. */
+	private DuelRules rules;
+	/** The tablebase file's contents. */
+	private MappedByteBuffer buffer;
+	/** The hash of the ability properties that the tablebase was generated for. */
+	private int rulesHash;
+
+	/**
+	 * Wraps an opened tablebase file.
+	 *
+	 * @param rules the rules of the duel that the file solves.
+	 * @param buffer the file's contents.
+	 */
+	private Tablebase(DuelRules rules, MappedByteBuffer buffer) {
+		this.rules = rules;
+		this.buffer = buffer;
+		this.rulesHash = buffer.getInt(RULES_HASH_OFFSET);
+	}
+
+	/**
+	 * Finds the path of the file that holds a tablebase.
+	 *
+	 * @param width the board's width in tiles.
+	 * @param height the board's height in tiles.
+	 * @param firstLoadout the mask of the first player's abilities.
+	 * @param secondLoadout the mask of the second player's abilities.
+	 * @return the relative path to the tablebase file.
+	 */
+	static String getFilePath(int width, int height, int firstLoadout, int secondLoadout) {
+		return TABLEBASE_FOLDER + "duel-" + width + "x" + height + "-"
+				+ Integer.toHexString(firstLoadout) + "-" + Integer.toHexString(secondLoadout) + "." + FILE_EXTENSION;
+	}
+
+	/**
+	 * Accesses the tablebase for a duel, opening its file if that hasn't been done already.
+	 *
+	 * @param width the board's width in tiles.
+	 * @param height the board's height in tiles.
+	 * @param firstLoadout the mask of the first player's abilities.
+	 * @param secondLoadout the mask of the second player's abilities.
+	 * @return the tablebase, or null if it hasn't been generated, isn't finished, or was generated for different ability properties.
+	 */
+	public static synchronized Tablebase get(int width, int height, int firstLoadout, int secondLoadout) {
+		String filePath = getFilePath(width, height, firstLoadout, secondLoadout);
+		Tablebase cachedTablebase = tablebases.get(filePath);
+		if (cachedTablebase != null && cachedTablebase.rulesHash == DuelRules.getRulesHash()) {
+			return cachedTablebase;
+		}
+		//If ability properties have been overridden since the tablebase was opened, the file has to be checked again.
+
+		File file = new File(filePath);
+		if (!file.isFile()) {
+			return null; //Don't remember this, in case the tablebase gets generated while the game is running.
+		}
+
+		try {
+			RandomAccessFile input = new RandomAccessFile(file, "r");
+			MappedByteBuffer buffer;
+			try {
+				buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+			} finally {
+				input.close(); //The mapping stays valid after the file is closed.
+			}
+
+			if (buffer.capacity() < HEADER_SIZE || !isHeaderValid(buffer, width, height, firstLoadout, secondLoadout)
+					|| buffer.getInt(COMPLETE_OFFSET) == 0) {
+				tablebases.remove(filePath);
+				return null;
+			}
+
+			Tablebase tablebase = new Tablebase(new DuelRules(width, height, firstLoadout, secondLoadout), buffer);
+			if (buffer.capacity() < HEADER_SIZE + tablebase.rules.positionCount) {
+				return null;
+			}
+
+			tablebases.put(filePath, tablebase);
+			return tablebase;
+		} catch (IOException exception) {
+			exception.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Checks that a tablebase header describes the expected duel, under the current ability properties.
+	 *
+	 * @param buffer the tablebase file's contents.
+	 * @return true if the header matches.
+	 */
+	static boolean isHeaderValid(MappedByteBuffer buffer, int width, int height, int firstLoadout, int secondLoadout) {
+		return buffer.getInt(MAGIC_OFFSET) == MAGIC_NUMBER
+				&& buffer.getInt(VERSION_OFFSET) == VERSION
+				&& buffer.getInt(WIDTH_OFFSET) == width
+				&& buffer.getInt(HEIGHT_OFFSET) == height
+				&& buffer.getInt(FIRST_LOADOUT_OFFSET) == firstLoadout
+				&& buffer.getInt(SECOND_LOADOUT_OFFSET) == secondLoadout
+				&& buffer.getInt(RULES_HASH_OFFSET) == DuelRules.getRulesHash();
+	}
+
+	/**
+	 * Finds the best turn for the current player, if the match is a solved duel.
+	 * That means that each of the two players has a single unit left, no tiles have statuses,
+	 * the current player's unit hasn't acted yet, and the tablebase for the units' abilities has been generated.
+	 *
+	 * @param match the match to find a turn for.
+	 * @return the best turn, or null if the position isn't in a tablebase.
+	 */
+	public static TurnPlan findPlan(Match match) {
+		Player[] players = match.getPlayers();
+		Board board = match.getBoard();
+		int width = board.getGridWidth(), height = board.getGridHeight();
+		if (!match.isInProgress() || players.length != 2 || width * height > DuelRules.MAXIMUM_TILES) {
+			return null;
+		}
+
+		Tile[] unitTiles = new Tile[2];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				Tile tile = board.getTile(x, y);
+				if (tile.hasStatus(TileStatus.Type.BLOCKED)) {
+					return null;
+				} else if (tile.hasUnit()) {
+					int owner = tile.getUnit() == null ? -1 : getPlayerIndex(players, match.getTileOwner(tile));
+					if (owner < 0 || unitTiles[owner] != null) {
+						return null; //Only duels between one unit each are solved.
+					}
+					unitTiles[owner] = tile;
+				}
+			}
+		}
+		if (unitTiles[0] == null || unitTiles[1] == null) {
+			return null;
+		}
+
+		int side = match.getCurrentPlayerIndex();
+		Unit mover = unitTiles[side].getUnit(), enemy = unitTiles[1 - side].getUnit();
+		if (!mover.isActive() || mover.getCurrentMove() != Unit.BASE_MOVE || !mover.getStatuses().isEmpty()) {
+			return null;
+		}
+
+		boolean defended = false;
+		for (UnitStatus status : enemy.getStatuses()) {
+			if (status.getType() != UnitStatus.Type.DEFENDED || status.getRemainingDuration() != 1) {
+				return null;
+			}
+			defended = true;
+		}
+
+		Tablebase tablebase = get(width, height,
+				DuelRules.getLoadoutMask(unitTiles[0].getUnit().getAbilities()),
+				DuelRules.getLoadoutMask(unitTiles[1].getUnit().getAbilities()));
+		if (tablebase == null) {
+			return null;
+		}
+
+		int[] position = new int[DuelRules.FIELDS];
+		position[DuelRules.SIDE] = side;
+		position[DuelRules.FIRST_TILE] = tablebase.rules.getTileNumber(unitTiles[0]);
+		position[DuelRules.SECOND_TILE] = tablebase.rules.getTileNumber(unitTiles[1]);
+		position[DuelRules.FIRST_HEALTH] = unitTiles[0].getUnit().getCurrentHealth();
+		position[DuelRules.SECOND_HEALTH] = unitTiles[1].getUnit().getCurrentHealth();
+		position[DuelRules.DEFENDED] = defended ? 1 : 0;
+		return tablebase.createPlan(board, unitTiles[side], position);
+	}
+
+	/** @return the index of a player in an array of players, or -1 if they aren't in it. */
+	private static int getPlayerIndex(Player[] players, Player player) {
+		for (int index = 0; index < players.length; index++) {
+			if (players[index] == player) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks up the value of a position.
+	 *
+	 * @param index the position's index.
+	 * @return the number of turns until the moving player wins (if positive) or loses (if negative), or 0 for a draw.
+	 */
+	public int getValue(int index) {
+		return buffer.get(HEADER_SIZE + index);
+	}
+
+	/**
+	 * Picks the best turn in a position by looking up the value of every turn's result.
+	 *
+	 * @param board the board the duel is being played on.
+	 * @param origin the tile with the moving unit.
+	 * @param position the position, as an array of DuelRules fields.
+	 * @return the best turn.
+	 */
+	private TurnPlan createPlan(Board board, Tile origin, int[] position) {
+		BestTurnVisitor visitor = new BestTurnVisitor();
+		rules.forEachTurn(position, visitor);
+
+		String outcome;
+		if (visitor.bestScore == BestTurnVisitor.WIN) {
+			outcome = "This wins the duel.";
+		} else if (visitor.bestScore > 0) {
+			outcome = "This wins the duel within " + (BestTurnVisitor.WIN - visitor.bestScore + 1) / 2 + " more of your turns.";
+		} else if (visitor.bestScore == 0) {
+			outcome = "With best play from here, the duel is a draw.";
+		} else {
+			outcome = "With best play from here, the duel is lost, but this holds out the longest.";
+		}
+
+		Ability ability = visitor.bestAbility;
+		return new TurnPlan(origin, rules.getTile(board, visitor.bestDestination), ability,
+				ability == null ? null : rules.getTile(board, visitor.bestTarget), outcome);
+	}
+
+	/** Scores every turn from the moving player's point of view, and remembers the best one. */
+	private class BestTurnVisitor extends DuelRules.TurnVisitor {
+		/** The scores of winning and losing immediately. Wins and losses in more turns score closer to 0. */
+		static final int WIN = 1000, LOSS = -1000;
+
+		int bestScore = Integer.MIN_VALUE, bestDestination, bestTarget;
+		Ability bestAbility;
+
+		@Override
+		boolean visit(int destination, Ability ability, int target, int result, int successor) {
+			int score;
+			if (result == DuelRules.WINS) {
+				score = WIN;
+			} else if (result == DuelRules.LOSES) {
+				score = LOSS;
+			} else if (result == DuelRules.DRAWS) {
+				score = 0;
+			} else {
+				int value = getValue(successor); //This is from the other player's point of view.
+				if (value < 0) {
+					score = WIN + value; //Win as quickly as possible.
+				} else if (value > 0) {
+					score = LOSS + value; //Lose as slowly as possible.
+				} else {
+					score = 0;
+				}
+			}
+
+			if (score > bestScore) {
+				bestScore = score;
+				bestDestination = destination;
+				bestAbility = ability;
+				bestTarget = target;
+			}
+			return score != WIN; //Nothing beats winning right away.
+		}
+	}
+}
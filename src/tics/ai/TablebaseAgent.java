@@ -0,0 +1,34 @@
+package tics.ai;
+
+import tics.match.Match;
+
+/**
+ * An agent that plays solved endgames perfectly, by looking them up in a Tablebase,
+ * and leaves every other position to another agent.
+ * 
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class TablebaseAgent implements Agent {
+	/** The agent that plays positions which aren't in a tablebase, or null to just end the turn. */
+	private Agent fallback;
+	
+	/**
+	 * Creates a tablebase agent.
+	 * 
+	 * @param fallback the agent to use for positions that aren't in a tablebase, or null to simply pass those turns.
+	 */
+	public TablebaseAgent(Agent fallback) {
+		this.fallback = fallback;
+	}
+	
+	@Override
+	public void playTurn(Match match) {
+		TurnPlan plan = Tablebase.findPlan(match);
+		if (plan != null) {
+			plan.execute(match);
+		} else if (fallback != null) {
+			fallback.playTurn(match);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package tics.ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tics.match.model.Ability;
+import tics.util.load.JSONLoader;
+
+/**
+ * A command line tool that solves a duel by retrograde analysis and writes the result as a Tablebase.
+ *
+ * Every position starts out unresolved. Each pass then looks at every unresolved position:
+ * on pass N, a position is won in N turns if some turn reaches a position that the other player loses in N - 1 turns,
+ * and lost in N turns if every turn reaches a position that the other player has already been found to win.
+ * Positions that are still unresolved once a pass finds nothing new are draws.
+ *
+ * Passes are split between several threads, which write straight into the memory-mapped tablebase file.
+ * The header records how many passes are finished, so an interrupted generation picks up where it left off.
+ *
+ * Usage:
+ *   TablebaseGenerator scenario.json [threads]
+ *   TablebaseGenerator width height abilities abilities [threads]
+ * where abilities are comma separated lists, such as POUND,DEFEND. Every unit can ATTACK, so it doesn't need to be listed.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class TablebaseGenerator {
+	/** The number of positions that a thread claims at a time. */
+	private static final int CHUNK_SIZE = 1 << 14;
+	/** The most turns a result can be stored for, since each position's value is a single byte. */
+	private static final int MAXIMUM_PASSES = Byte.MAX_VALUE;
+
+	/**
+	 * Generates the tablebase described by the command line arguments.
+	 *
+	 * @param args the command line arguments, as described above.
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true"); //The scratch match used by DuelRules never needs a window.
+
+		int width, height, firstLoadout, secondLoadout, threadIndex;
+		if (args.length == 1 || args.length == 2) {
+			int[] scenario = readScenario(args[0]);
+			width = scenario[0];
+			height = scenario[1];
+			firstLoadout = scenario[2];
+			secondLoadout = scenario[3];
+			threadIndex = 1;
+		} else if (args.length == 4 || args.length == 5) {
+			width = Integer.parseInt(args[0]);
+			height = Integer.parseInt(args[1]);
+			firstLoadout = parseLoadout(args[2]);
+			secondLoadout = parseLoadout(args[3]);
+			threadIndex = 4;
+		} else {
+			System.err.println("Usage: TablebaseGenerator <scenario.json> [threads]");
+			System.err.println("   or: TablebaseGenerator <width> <height> <abilities> <abilities> [threads]");
+			return;
+		}
+
+		int threads = args.length > threadIndex ? Integer.parseInt(args[threadIndex]) : Runtime.getRuntime().availableProcessors();
+
+		try {
+			generate(width, height, firstLoadout, secondLoadout, threads);
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads the duel set up by a scenario.
+	 *
+	 * @param filePath the path to the scenario's file.
+	 * @return the board width, board height, and both players' loadout masks.
+	 * @throws IllegalArgumentException if the scenario isn't a duel with fully listed abilities.
+	 */
+	private static int[] readScenario(String filePath) {
+		Map<String, Object> data = JSONLoader.get(filePath);
+		if (data == null) {
+			throw new IllegalArgumentException("The scenario " + filePath + " could not be loaded.");
+		}
+
+		int abilityCount = data.containsKey("abilities") ? Integer.decode((String) data.get("abilities")) : 0;
+		int[] loadouts = new int[2];
+		int units = 0;
+
+		@SuppressWarnings("unchecked")
+		ArrayList<Map<String, Object>> setup = (ArrayList<Map<String, Object>>) data.get("setup");
+		for (Map<String, Object> instruction : setup) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> unitInstruction = (Map<String, Object>) instruction.get("unit");
+			if (unitInstruction == null) {
+				continue;
+			}
+
+			int owner = Integer.decode((String) unitInstruction.get("owner"));
+			@SuppressWarnings("unchecked")
+			ArrayList<String> abilityList = (ArrayList<String>) unitInstruction.get("abilities");
+			if (owner < 1 || owner > 2 || loadouts[owner - 1] != 0) {
+				throw new IllegalArgumentException("The scenario " + filePath + " must have exactly one unit for each of two players.");
+			} else if (abilityList == null || abilityList.size() < abilityCount) {
+				throw new IllegalArgumentException("The scenario " + filePath + " must list every ability, since random abilities can't be solved for.");
+			}
+
+			ArrayList<Ability> abilities = new ArrayList<Ability>();
+			abilities.add(Ability.ATTACK);
+			for (String abilityString : abilityList) {
+				abilities.add(Ability.valueOf(abilityString));
+			}
+			loadouts[owner - 1] = DuelRules.getLoadoutMask(abilities);
+			units++;
+		}
+
+		if (units != 2) {
+			throw new IllegalArgumentException("The scenario " + filePath + " must have exactly one unit for each of two players.");
+		}
+
+		return new int[] { Integer.decode((String) data.get("width")), Integer.decode((String) data.get("height")), loadouts[0], loadouts[1] };
+	}
+
+	/**
+	 * Turns a comma separated list of abilities into a loadout mask. ATTACK is always included.
+	 *
+	 * @param list the list of ability names.
+	 * @return the loadout mask.
+	 */
+	private static int parseLoadout(String list) {
+		ArrayList<Ability> abilities = new ArrayList<Ability>();
+		abilities.add(Ability.ATTACK);
+		for (String abilityString : list.split(",")) {
+			if (abilityString.trim().length() > 0) {
+				abilities.add(Ability.valueOf(abilityString.trim().toUpperCase()));
+			}
+		}
+		return DuelRules.getLoadoutMask(abilities);
+	}
+
+	/**
+	 * Generates a tablebase, or finishes generating it if an earlier attempt was interrupted.
+	 *
+	 * @param width the board's width in tiles.
+	 * @param height the board's height in tiles.
+	 * @param firstLoadout the mask of the first player's abilities.
+	 * @param secondLoadout the mask of the second player's abilities.
+	 * @param threads the number of threads to work with.
+	 * @throws IOException if the tablebase file can't be written.
+	 */
+	public static void generate(int width, int height, int firstLoadout, int secondLoadout, int threads) throws IOException {
+		final DuelRules rules = new DuelRules(width, height, firstLoadout, secondLoadout);
+		String filePath = Tablebase.getFilePath(width, height, firstLoadout, secondLoadout);
+		new File(Tablebase.TABLEBASE_FOLDER).mkdirs();
+
+		long fileSize = Tablebase.HEADER_SIZE + (long) rules.positionCount;
+		RandomAccessFile file = new RandomAccessFile(filePath, "rw");
+		try {
+			boolean resuming = file.length() == fileSize;
+			final MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+			resuming = resuming && Tablebase.isHeaderValid(buffer, width, height, firstLoadout, secondLoadout);
+
+			if (resuming && buffer.getInt(Tablebase.COMPLETE_OFFSET) != 0) {
+				System.out.println(filePath + " is already complete.");
+				return;
+			} else if (!resuming) {
+				for (int index = 0; index < fileSize; index++) {
+					buffer.put(index, (byte) 0);
+				}
+				buffer.putInt(Tablebase.MAGIC_OFFSET, Tablebase.MAGIC_NUMBER);
+				buffer.putInt(Tablebase.VERSION_OFFSET, Tablebase.VERSION);
+				buffer.putInt(Tablebase.WIDTH_OFFSET, width);
+				buffer.putInt(Tablebase.HEIGHT_OFFSET, height);
+				buffer.putInt(Tablebase.FIRST_LOADOUT_OFFSET, firstLoadout);
+				buffer.putInt(Tablebase.SECOND_LOADOUT_OFFSET, secondLoadout);
+				buffer.putInt(Tablebase.RULES_HASH_OFFSET, DuelRules.getRulesHash());
+				buffer.force();
+			}
+
+			int firstPass = buffer.getInt(Tablebase.PASSES_OFFSET) + 1;
+			System.out.println((resuming ? "Resuming " : "Generating ") + filePath + " (" + rules.positionCount + " positions, "
+					+ threads + " threads) from pass " + firstPass + ".");
+
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				for (int pass = firstPass; pass <= MAXIMUM_PASSES; pass++) {
+					int resolved = runPass(executor, threads, rules, buffer, pass);
+					buffer.force(); //Make sure every result is on disk before the pass is recorded as finished.
+					buffer.putInt(Tablebase.PASSES_OFFSET, pass);
+					buffer.force();
+
+					System.out.println("Pass " + pass + ": " + resolved + " positions resolved.");
+					if (resolved == 0) {
+						break; //Nothing can change from here on, so everything left is a draw.
+					}
+				}
+			} finally {
+				executor.shutdown();
+			}
+
+			buffer.putInt(Tablebase.COMPLETE_OFFSET, 1);
+			buffer.force();
+			System.out.println(filePath + " is complete.");
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Resolves every position that can be resolved on a given pass.
+	 *
+	 * @return the number of positions resolved.
+	 * @throws IOException if a thread fails.
+	 */
+	private static int runPass(ExecutorService executor, int threads, final DuelRules rules, final MappedByteBuffer buffer, final int pass)
+			throws IOException {
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final AtomicInteger resolved = new AtomicInteger();
+
+		ArrayList<Future<?>> futures = new ArrayList<Future<?>>(threads);
+		for (int thread = 0; thread < threads; thread++) {
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					int[] position = new int[DuelRules.FIELDS];
+					PassVisitor visitor = new PassVisitor(buffer, pass);
+					int chunk;
+					while ((chunk = nextChunk.getAndIncrement()) * (long) CHUNK_SIZE < rules.positionCount) {
+						int end = (int) Math.min((long) (chunk + 1) * CHUNK_SIZE, rules.positionCount);
+						for (int index = chunk * CHUNK_SIZE; index < end; index++) {
+							if (buffer.get(Tablebase.HEADER_SIZE + index) != 0) {
+								continue; //Already resolved.
+							}
+
+							rules.getPosition(index, position);
+							visitor.won = false;
+							visitor.lost = true;
+							rules.forEachTurn(position, visitor);
+
+							if (visitor.won || visitor.lost) {
+								buffer.put(Tablebase.HEADER_SIZE + index, (byte) (visitor.won ? pass : -pass));
+								resolved.incrementAndGet();
+							}
+						}
+					}
+				}
+			}));
+		}
+
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException exception) {
+				throw new IOException("Tablebase generation was interrupted.");
+			} catch (ExecutionException exception) {
+				throw new IOException("Tablebase generation failed: " + exception.getCause());
+			}
+		}
+
+		return resolved.get();
+	}
+
+	/** Decides whether a position is won or lost on a given pass. */
+	private static class PassVisitor extends DuelRules.TurnVisitor {
+		/** The tablebase being generated. */
+		private final MappedByteBuffer buffer;
+		/** The current pass. */
+		private final int pass;
+		/** True if a winning turn was found. */
+		boolean won;
+		/** True if every turn so far loses. */
+		boolean lost;
+
+		PassVisitor(MappedByteBuffer buffer, int pass) {
+			this.buffer = buffer;
+			this.pass = pass;
+		}
+
+		@Override
+		boolean visit(int destination, Ability ability, int target, int result, int successor) {
+			if (result == DuelRules.WINS) {
+				won = pass == 1; //Winning right away is only news on the first pass.
+				lost = false;
+				return !won;
+			} else if (result == DuelRules.DRAWS) {
+				lost = false;
+			} else if (result == DuelRules.CONTINUES) {
+				int value = buffer.get(Tablebase.HEADER_SIZE + successor);
+				if (value == 0 || Math.abs(value) >= pass) {
+					lost = false; //Unresolved, or only resolved by another thread during this pass.
+				} else if (value < 0) {
+					won = true; //The other player loses, and they must do so in pass - 1 turns, or this would have been found already.
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package tics.ai;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Tile;
+
+/**
+ * The turn of a single unit: an optional move, followed by an optional ability.
+ * 
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class TurnPlan {
+	/** The tile that the acting unit starts its turn on. */
+	private Tile origin;
+	/** The tile that the acting unit moves to, which is the origin if it doesn't move. */
+	private Tile destination;
+	/** The ability that the unit uses after moving, or null if it doesn't use one. */
+	private Ability ability;
+	/** The tile that the ability is used on, or null if no ability is used. */
+	private Tile target;
+	/** A short explanation of what playing this turn will lead to, or null if there is none. */
+	private String outcome;
+	
+	/**
+	 * Creates a plan for a unit's turn.
+	 * 
+	 * @param origin the tile with the unit that will act.
+	 * @param destination the tile the unit will move to, which can be the origin.
+	 * @param ability the ability the unit will use, or null.
+	 * @param target the tile the ability will be used on, or null.
+	 * @param outcome a short explanation of what the turn leads to, or null.
+	 */
+	public TurnPlan(Tile origin, Tile destination, Ability ability, Tile target, String outcome) {
+		this.origin = origin;
+		this.destination = destination;
+		this.ability = ability;
+		this.target = target;
+		this.outcome = outcome;
+	}
+	
+	/**
+	 * Plays this turn in a match.
+	 * 
+	 * @param match the match to play the turn in.
+	 * @return true if every part of the turn could be played.
+	 */
+	public boolean execute(Match match) {
+		if (destination != origin && !match.moveUnit(origin, destination)) {
+			return false;
+		}
+		
+		if (ability != null) {
+			return match.useAbility(destination, ability, target);
+		}
+		return true;
+	}
+	
+	/** @return the tile that the acting unit starts on. */
+	public Tile getOrigin() {
+		return origin;
+	}
+	
+	/** @return the tile that the acting unit will move to. */
+	public Tile getDestination() {
+		return destination;
+	}
+	
+	/** @return the ability the unit will use, or null if it won't use one. */
+	public Ability getAbility() {
+		return ability;
+	}
+	
+	/** @return the tile the ability will be used on, or null if no ability will be used. */
+	public Tile getTarget() {
+		return target;
+	}
+	
+	/** @return a description of this turn that can be shown to a player. */
+	public String getDescription() {
+		String description = origin.getUnit().getName();
+		if (destination != origin) {
+			description += " should move to (" + destination.getGridX() + ", " + destination.getGridY() + ")";
+		} else {
+			description += " should stay where it is";
+		}
+		
+		if (ability != null) {
+			description += ", then use " + ability + " on (" + target.getGridX() + ", " + target.getGridY() + ").";
+		} else {
+			description += " and end its turn.";
+		}
+		
+		if (outcome != null) {
+			description += "\n" + outcome;
+		}
+		return description;
+	}
+}
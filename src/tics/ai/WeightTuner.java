@@ -0,0 +1,259 @@
+package tics.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tics.match.Match;
+import tics.match.model.Player;
+import tics.util.MathUtil;
+import tics.util.load.PropertiesLoader;
+
+/**
+ * A command line tool that tunes the Evaluator's weights by self-play, in the style of Texel tuning.
+ *
+ * Each generation plays a batch of headless matches between GreedyAgents using the current weights,
+ * recording the features at the start of every turn along with whether the player to move went on to win.
+ * The weights are then fitted so that a logistic function of the evaluation predicts those results as closely as possible,
+ * by a local search that keeps any single weight change that lowers the mean squared error.
+ * Matches, and the error calculations during fitting, are spread over a thread pool.
+ *
+ * Usage: WeightTuner [matches per generation] [generations] [threads]
+ * The result is written to settings/Weights.properties, which the game reads at startup.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class WeightTuner {
+	/** The number of rounds after which a self-play match is called a draw. */
+	private static final int MAXIMUM_ROUNDS = 60;
+	/** The standard deviation of the noise that agents add to their scores, so that matches vary. */
+	private static final double AGENT_NOISE = 0.1;
+	/** The largest number of passes the local search makes over the weights in a generation. */
+	private static final int MAXIMUM_SEARCH_PASSES = 200;
+	/** The step size at which the local search gives up on a weight. */
+	private static final double MINIMUM_STEP = 0.0005;
+
+	/**
+	 * Runs the tuner.
+	 *
+	 * @param args the number of matches per generation, the number of generations, and the number of threads, all optional.
+	 */
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		System.setProperty("java.awt.headless", "true");
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		//Load the settings before starting any threads, since the loaders' caches aren't built to be filled concurrently.
+		PropertiesLoader.get("settings/Colours");
+		double[] weights = Evaluator.getDefault().getWeights();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int generation = 1; generation <= generations; generation++) {
+				long startTime = System.currentTimeMillis();
+				List<Sample> samples = playMatches(executor, new Evaluator(weights), matches, generation);
+				System.out.println("Generation " + generation + ": " + samples.size() + " positions from " + matches + " matches in "
+						+ (System.currentTimeMillis() - startTime) / 1000.0 + "s.");
+
+				weights = fit(executor, threads, samples, weights);
+				System.out.println("Generation " + generation + " weights: " + describe(weights));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Properties properties = new Properties();
+		for (Evaluator.Feature feature : Evaluator.Feature.values()) {
+			properties.setProperty(feature.getKey(), Double.toString(weights[feature.ordinal()]));
+		}
+		PropertiesLoader.set(properties, Evaluator.WEIGHTS_FILE);
+		System.out.println("Saved the weights to " + Evaluator.WEIGHTS_FILE + ".properties.");
+	}
+
+	/**
+	 * Plays a batch of self-play matches on randomly generated boards.
+	 *
+	 * @param executor the thread pool to play the matches on.
+	 * @param evaluator the evaluator both sides play with.
+	 * @param matches the number of matches to play.
+	 * @param generation the current generation, used to seed the matches.
+	 * @return a sample from the start of every turn that was played.
+	 */
+	private static List<Sample> playMatches(ExecutorService executor, final Evaluator evaluator, int matches, final int generation)
+			throws InterruptedException, ExecutionException {
+		ArrayList<Future<List<Sample>>> futures = new ArrayList<Future<List<Sample>>>(matches);
+		for (int index = 0; index < matches; index++) {
+			final long seed = (long) generation << 32 | index;
+			futures.add(executor.submit(new Callable<List<Sample>>() {
+				@Override
+				public List<Sample> call() {
+					return playMatch(evaluator, seed);
+				}
+			}));
+		}
+
+		ArrayList<Sample> samples = new ArrayList<Sample>();
+		for (Future<List<Sample>> future : futures) {
+			samples.addAll(future.get());
+		}
+		return samples;
+	}
+
+	/**
+	 * Plays a single self-play match.
+	 *
+	 * @param evaluator the evaluator both sides play with.
+	 * @param seed the seed for everything random about the match: the board, the units, and the agents' noise.
+	 * @return a sample from the start of every turn, labelled with the match's result.
+	 */
+	private static List<Sample> playMatch(Evaluator evaluator, long seed) {
+		MathUtil.setSeed(seed); //The board and units come from this thread's generator, whichever thread plays the match.
+		Random random = new Random(seed);
+		int width = MathUtil.randomInteger(6, 12), height = MathUtil.randomInteger(6, 12);
+		Match match = new Match(width, height, 2, MathUtil.randomInteger(1, 4), MathUtil.randomInteger(1, 3), false);
+		GreedyAgent agent = new GreedyAgent(evaluator, random, AGENT_NOISE);
+
+		final ArrayList<Sample> samples = new ArrayList<Sample>();
+		Player victor = new MatchRunner(match, new Agent[] { agent, agent }, MAXIMUM_ROUNDS) {
+			@Override
+			protected void turnStarted() {
+				Sample sample = new Sample(match.getCurrentPlayerIndex());
+				Evaluator.measure(match, sample.playerIndex, sample.features);
+				samples.add(sample);
+			}
+		}.run();
+
+		for (Sample sample : samples) {
+			if (victor == null) {
+				sample.result = 0.5;
+			} else {
+				sample.result = match.getPlayers()[sample.playerIndex] == victor ? 1 : 0;
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * Fits the weights to a set of samples.
+	 *
+	 * @param executor the thread pool to calculate errors on.
+	 * @param threads the number of threads in the pool.
+	 * @param samples the samples to fit.
+	 * @param initialWeights the weights to start from.
+	 * @return the fitted weights.
+	 */
+	private static double[] fit(ExecutorService executor, int threads, List<Sample> samples, double[] initialWeights)
+			throws InterruptedException, ExecutionException {
+		double[] weights = initialWeights.clone();
+		double[] steps = new double[weights.length];
+		for (int index = 0; index < weights.length; index++) {
+			steps[index] = Math.max(Math.abs(weights[index]) / 4, 0.01);
+		}
+
+		double bestError = getError(executor, threads, samples, weights);
+		System.out.println("Starting error: " + bestError);
+
+		for (int pass = 0; pass < MAXIMUM_SEARCH_PASSES; pass++) {
+			boolean searching = false;
+			for (int index = 0; index < weights.length; index++) {
+				if (steps[index] < MINIMUM_STEP) {
+					continue;
+				}
+				searching = true;
+
+				double original = weights[index];
+				boolean improved = false;
+				for (int direction = 1; direction >= -1 && !improved; direction -= 2) {
+					weights[index] = original + direction * steps[index];
+					double error = getError(executor, threads, samples, weights);
+					if (error < bestError) {
+						bestError = error;
+						improved = true;
+					}
+				}
+
+				if (improved) {
+					steps[index] *= 1.5; //Keep going, a little faster.
+				} else {
+					weights[index] = original;
+					steps[index] /= 2;
+				}
+			}
+
+			if (!searching) {
+				break;
+			}
+		}
+
+		System.out.println("Final error: " + bestError);
+		return weights;
+	}
+
+	/**
+	 * Calculates the mean squared error between the samples' results and the win probabilities predicted by a set of weights.
+	 *
+	 * @return the mean squared error.
+	 */
+	private static double getError(ExecutorService executor, int threads, final List<Sample> samples, double[] weights)
+			throws InterruptedException, ExecutionException {
+		final Evaluator evaluator = new Evaluator(weights);
+		int chunkSize = (samples.size() + threads - 1) / threads;
+
+		ArrayList<Future<Double>> futures = new ArrayList<Future<Double>>(threads);
+		for (int start = 0; start < samples.size(); start += chunkSize) {
+			final int first = start, last = Math.min(start + chunkSize, samples.size());
+			futures.add(executor.submit(new Callable<Double>() {
+				@Override
+				public Double call() {
+					double error = 0;
+					for (int index = first; index < last; index++) {
+						Sample sample = samples.get(index);
+						double prediction = 1 / (1 + Math.exp(-evaluator.evaluate(sample.features)));
+						error += (sample.result - prediction) * (sample.result - prediction);
+					}
+					return error;
+				}
+			}));
+		}
+
+		double error = 0;
+		for (Future<Double> future : futures) {
+			error += future.get();
+		}
+		return samples.isEmpty() ? 0 : error / samples.size();
+	}
+
+	/** @return a readable list of weights. */
+	private static String describe(double[] weights) {
+		StringBuilder description = new StringBuilder();
+		for (Evaluator.Feature feature : Evaluator.Feature.values()) {
+			if (description.length() > 0) {
+				description.append(", ");
+			}
+			description.append(feature.getKey()).append(" = ").append(String.format("%.4f", weights[feature.ordinal()]));
+		}
+		return description.toString();
+	}
+
+	/** The features at the start of a turn, from the point of view of the player to move, and how the match turned out for them. */
+	private static class Sample {
+		/** The player to move. */
+		final int playerIndex;
+		/** The features, indexed by ordinal. */
+		final double[] features = new double[Evaluator.Feature.values().length];
+		/** 1 if the player went on to win, 0 if they lost, and 0.5 for a draw. */
+		double result;
+
+		Sample(int playerIndex) {
+			this.playerIndex = playerIndex;
+		}
+	}
+}
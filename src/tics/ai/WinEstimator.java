@@ -0,0 +1,206 @@
+package tics.ai;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import tics.match.Match;
+import tics.match.MatchSnapshot;
+import tics.match.model.Player;
+
+/**
+ * Estimates each player's chance of winning a match in the background, by playing it out many times from its current state.
+ *
+ * Each estimate starts from a snapshot, which is cheap enough to take on the event dispatch thread.
+ * Rollouts are then played on background threads with noisy greedy agents, and the estimate is handed back to the
+ * listener on the event dispatch thread every few rollouts, so it gets more accurate the longer the state stays the same.
+ * Restarting the estimate cancels any rollouts for the old state.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class WinEstimator {
+	/** The most rollouts played for one state. */
+	private static final int MAXIMUM_ROLLOUTS = 400;
+	/** How often, in rollouts, the estimate is reported. */
+	private static final int REPORT_INTERVAL = 10;
+	/** The number of rounds each rollout is played for before it's called a draw. */
+	private static final int ROLLOUT_ROUNDS = 30;
+	/** The noise that rollout agents add to their scores, which is enough to play out a range of likely matches. */
+	private static final double ROLLOUT_NOISE = 0.05;
+
+	/** The number of threads that play rollouts, which leaves one processor free for the interface. */
+	private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	/** The threads that play rollouts. */
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Win estimator");
+				thread.setDaemon(true); //Don't keep the program open just to finish an estimate.
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+
+	/** Receives estimates on the event dispatch thread. */
+	public interface Listener {
+		/**
+		 * Handles a new or refined estimate.
+		 *
+		 * @param winProbabilities each player's chance of winning, indexed by player.
+		 * @param drawProbability the chance of nobody winning within the rollout limit.
+		 * @param rollouts the number of rollouts the estimate is based on.
+		 */
+		void estimateChanged(double[] winProbabilities, double drawProbability, int rollouts);
+	}
+
+	/** The listener that is told about estimates. */
+	private final Listener listener;
+	/** The tally for the state currently being estimated, or null if nothing is. */
+	private Tally tally;
+	/** The rollout tasks for the current state. */
+	private ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+
+	/**
+	 * Creates an estimator.
+	 *
+	 * @param listener the listener that is told about estimates, on the event dispatch thread.
+	 */
+	public WinEstimator(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts estimating a match's current state, cancelling any estimate for an earlier state.
+	 * This should be called on the event dispatch thread, and only takes as long as copying the match.
+	 *
+	 * @param match the match to estimate.
+	 */
+	public void restart(Match match) {
+		stop();
+		if (!match.isInProgress()) {
+			return;
+		}
+
+		final MatchSnapshot snapshot = new MatchSnapshot(match);
+		final Tally tally = new Tally(snapshot.getPlayerCount());
+		this.tally = tally;
+		final long seed = System.nanoTime();
+		for (int worker = 0; worker < THREADS; worker++) {
+			final Random random = new Random(seed + worker);
+			futures.add(EXECUTOR.submit(new Runnable() {
+				@Override
+				public void run() {
+					playRollouts(snapshot, tally, random);
+				}
+			}));
+		}
+	}
+
+	/** Cancels the current estimate, if there is one. Estimates that are already on their way to the listener are ignored. */
+	public void stop() {
+		if (tally != null) {
+			tally.cancelled = true;
+			tally = null;
+		}
+		for (Future<?> future : futures) {
+			future.cancel(false); //Rollouts check for cancellation themselves, so they're never interrupted halfway.
+		}
+		futures.clear();
+	}
+
+	/**
+	 * Plays rollouts from a snapshot until the estimate is cancelled or has enough rollouts.
+	 *
+	 * @param snapshot the state to play from.
+	 * @param tally the shared results for the state.
+	 * @param random the source of this thread's agents' noise.
+	 */
+	private void playRollouts(MatchSnapshot snapshot, Tally tally, Random random) {
+		Agent[] agents = new Agent[snapshot.getPlayerCount()];
+		for (int playerIndex = 0; playerIndex < agents.length; playerIndex++) {
+			agents[playerIndex] = new GreedyAgent(Evaluator.getDefault(), random, ROLLOUT_NOISE);
+		}
+
+		while (!tally.cancelled && tally.startRollout()) {
+			Match match = snapshot.createMatch(false);
+			new MatchRunner(match, agents, snapshot.getCurrentRound() + ROLLOUT_ROUNDS).run();
+
+			int winner = -1;
+			Player[] players = match.getPlayers();
+			for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+				if (players[playerIndex] == match.getVictor()) {
+					winner = playerIndex;
+				}
+			}
+			if (tally.finishRollout(winner)) {
+				report(tally);
+			}
+		}
+	}
+
+	/** Hands the current estimate to the listener, unless it's been cancelled by the time the event dispatch thread gets to it. */
+	private void report(final Tally tally) {
+		final double[] winProbabilities = new double[tally.wins.length];
+		final double drawProbability;
+		final int rollouts;
+		synchronized (tally) {
+			rollouts = tally.finished;
+			for (int playerIndex = 0; playerIndex < winProbabilities.length; playerIndex++) {
+				winProbabilities[playerIndex] = (double) tally.wins[playerIndex] / rollouts;
+			}
+			drawProbability = (double) tally.draws / rollouts;
+		}
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (!tally.cancelled) {
+					listener.estimateChanged(winProbabilities, drawProbability, rollouts);
+				}
+			}
+		});
+	}
+
+	/** The rollout results for one state, shared by every thread estimating it. */
+	private static class Tally {
+		/** Set once the state has changed, so that rollouts stop and their results are ignored. */
+		volatile boolean cancelled;
+		int started, finished, draws;
+		final int[] wins;
+
+		Tally(int playerCount) {
+			wins = new int[playerCount];
+		}
+
+		/** @return true if another rollout should be played. */
+		synchronized boolean startRollout() {
+			if (started >= MAXIMUM_ROLLOUTS) {
+				return false;
+			}
+			started++;
+			return true;
+		}
+
+		/**
+		 * Records a rollout's result.
+		 *
+		 * @param winner the index of the winning player, or -1 for a draw.
+		 * @return true if the estimate should be reported now.
+		 */
+		synchronized boolean finishRollout(int winner) {
+			finished++;
+			if (winner < 0) {
+				draws++;
+			} else {
+				wins[winner]++;
+			}
+			return finished % REPORT_INTERVAL == 0 || finished == MAXIMUM_ROLLOUTS;
+		}
+	}
+}
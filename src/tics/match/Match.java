@@ -1,6 +1,9 @@
 package tics.match;
 
 import java.awt.Dimension;
+import java.util.ArrayList;
+
+import javax.swing.JOptionPane;
 
 import tics.match.model.Ability;
 import tics.match.model.Board;
@@ -8,6 +11,9 @@ import tics.match.model.Player;
 import tics.match.model.PlayerTheme;
 import tics.match.model.Tile;
 import tics.match.model.Unit;
+import tics.ai.Tablebase;
+import tics.ai.TurnPlan;
+import tics.ai.WinEstimator;
 import tics.match.view.MatchPanel;
 import tics.util.MathUtil;
 import tics.util.Range;
@@ -26,6 +32,10 @@ public class Match {
 	private MatchPanel panel;
 	/** The board that this match is played on. */
 	private Board board;
+	/** Estimates each player's chance of winning for the panel, or null if the match isn't displayed. */
+	private WinEstimator winEstimator;
+	/** Told about every action taken in this match, or null if nothing is recording it. */
+	private MatchRecorder recorder;
 	
 	/** A list of the players participating in this match. */
 	private Player[] players;
@@ -36,6 +46,10 @@ public class Match {
 	
 	/** True if the match is being played, false if it has ended. */
 	private boolean inProgress;
+	/** The player who won the match, or null if it hasn't been won (yet). */
+	private Player victor;
+	/** The number of times each player has used each ability, indexed by player and then by ability ordinal. */
+	private int[][] abilityUses;
 	/** The number of rounds passed in this match (plus one). */
 	private int currentRound;
 	/** The tile selected by a player, if any. If this tile has one of the current player's units on it, it can be controlled. */
@@ -52,11 +66,16 @@ public class Match {
 	 * 
 	 */
 	public Match(int width, int height, int playerCount, int unitCount, int abilityCount) {
-		MatchCommandListener commandListener = new MatchCommandListener(this);
-		board = new Board(width, height, commandListener);
-		panel = new MatchPanel(commandListener, commandListener, board);
-		
-		this.players = new Player[playerCount];
+		this(width, height, playerCount, unitCount, abilityCount, true);
+	}
+	
+	/**
+	 * Creates a new match with chosen settings, which may or may not be displayed.
+	 * 
+	 * @param displayed false to create the match without a panel, for matches that are played by Agents rather than people.
+	 */
+	public Match(int width, int height, int playerCount, int unitCount, int abilityCount, boolean displayed) {
+		this(width, height, new Player[playerCount], displayed);
 		for (int index = 0; index < playerCount; index++) {
 			this.players[index] = new Player(unitCount, abilityCount, PlayerTheme.getThemeForIndex(index));
 		}
@@ -76,19 +95,85 @@ public class Match {
 		startMatch();
 	}
 	
+	/**
+	 * Creates a match on an empty board, for an existing set of players.
+	 * The match isn't started: units should be placed on the board before calling startMatch.
+	 * 
+	 * @param width the board's width in tiles.
+	 * @param height the board's height in tiles.
+	 * @param players the players participating in this match.
+	 * @param displayed false to create the match without a panel.
+	 */
+	public Match(int width, int height, Player[] players, boolean displayed) {
+		MatchCommandListener commandListener = new MatchCommandListener(this);
+		board = new Board(width, height, commandListener);
+		if (displayed) {
+			panel = new MatchPanel(commandListener, commandListener, board);
+			winEstimator = new WinEstimator(new WinEstimator.Listener() {
+				@Override
+				public void estimateChanged(double[] winProbabilities, double drawProbability, int rollouts) {
+					panel.getMatchInfoPanel().setWinProbabilities(Match.this.players, winProbabilities, drawProbability, rollouts);
+				}
+			});
+		}
+		
+		this.players = players;
+		abilityUses = new int[players.length][Ability.values().length];
+	}
+	
 	
 	
 	// =========================================================================
 	
 	/** Runs the match, giving a random player the first turn. */
-	private void startMatch() {
-		currentPlayerIndex = MathUtil.randomInteger(0, players.length-1);
-		firstPlayerIndex = currentPlayerIndex;
+	public void startMatch() {
+		startMatch(MathUtil.randomInteger(0, players.length-1));
+	}
+	
+	/**
+	 * Runs the match, giving a chosen player the first turn.
+	 * 
+	 * @param firstPlayerIndex the index of the player who will move first.
+	 */
+	public void startMatch(int firstPlayerIndex) {
+		currentPlayerIndex = firstPlayerIndex;
+		this.firstPlayerIndex = currentPlayerIndex;
 		inProgress = true;
 		currentRound = 1;
 		beginTurn();
 	}
-	
+
+	/**
+	 * Puts the turn order back the way it was when a snapshot was taken, without starting anyone's turn over.
+	 * Units should already be on the board, with their remaining moves restored.
+	 *
+	 * @param currentPlayerIndex the index of the player who has the turn.
+	 * @param firstPlayerIndex the index of the player who moved first.
+	 * @param currentRound the number of the current round.
+	 * @param abilityUses the number of times each player has used each ability, indexed by player and then by ability ordinal.
+	 * @param victorIndex the index of the player who won, or -1 if nobody has.
+	 * @param inProgress true if the match was still being played.
+	 */
+	void resume(int currentPlayerIndex, int firstPlayerIndex, int currentRound, int[][] abilityUses, int victorIndex, boolean inProgress) {
+		this.currentPlayerIndex = currentPlayerIndex;
+		this.firstPlayerIndex = firstPlayerIndex;
+		this.currentRound = currentRound;
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			this.abilityUses[playerIndex] = abilityUses[playerIndex].clone();
+		}
+		this.victor = victorIndex < 0 ? null : players[victorIndex];
+		this.inProgress = inProgress;
+
+		if (panel != null) {
+			panel.getMatchInfoPanel().changeTurn(getCurrentPlayer(), currentRound);
+			if (!inProgress) {
+				panel.endMatch();
+			}
+			board.repaint();
+		}
+		stateChanged();
+	}
+
 	/**
 	 * Indicates to the players that the match is over, and stops receiving input.
 	 * 
@@ -96,37 +181,70 @@ public class Match {
 	 */
 	public void endMatch(Player victor) {
 		inProgress = false;
-		if (victor == null) {
-			System.out.println("A draw has occurred.");
-		} else {
-			System.out.println(victor.getTheme().toString()+" is victorious.");
-		}
+		this.victor = victor;
 		cancelCurrentAction();
-		panel.endMatch();
-		board.repaint();
+		if (recorder != null) {
+			recorder.matchEnded(this);
+		}
+		if (panel != null) {
+			if (victor == null) {
+				System.out.println("A draw has occurred.");
+			} else {
+				System.out.println(victor.getTheme().toString()+" is victorious.");
+			}
+			//Headless matches are played in large batches, so they don't announce their results.
+			panel.endMatch();
+			board.repaint();
+		}
+		if (winEstimator != null) {
+			winEstimator.stop();
+		}
 		//TODO: Display victory on the match panel.
 		//TODO: Add a button for going back to the title screen.
 		//TODO: dispose() of the match panel when returning to the title screen (elsewhere.)
 	}
 
+	/** Stops any background work for this match, such as estimating win probabilities, once it's no longer displayed. */
+	public void dispose() {
+		if (winEstimator != null) {
+			winEstimator.stop();
+			winEstimator = null;
+		}
+	}
+	
 	/** 
 	 * Sets up the current player's turn. 
 	 * This shouldn't be called until currentPlayer has changed.
 	 */
 	private void beginTurn() {
-		panel.getMatchInfoPanel().changeTurn(getCurrentPlayer(), currentRound);
-		board.repaint(); //Update the UI on the tiles themselves.
+		if (panel != null) {
+			panel.getMatchInfoPanel().changeTurn(getCurrentPlayer(), currentRound);
+			board.repaint(); //Update the UI on the tiles themselves.
+		}
 		getCurrentPlayer().beginTurn();
+		stateChanged();
 		//EXTRA: Some sort of flashy turn changing animation over the board.
 		//Then wait for input.
 	}
 	
+	/** Handles anything that changes the state of the match, by starting a new estimate of each player's chances. */
+	private void stateChanged() {
+		if (winEstimator != null && inProgress) {
+			panel.getMatchInfoPanel().clearWinProbabilities();
+			winEstimator.restart(this);
+		}
+	}
+	
 	/** Passes the turn on to the next player. */
 	public void endTurn() {
-		panel.getMatchInfoPanel().setSurrenderPending(false);
+		if (panel != null) {
+			panel.getMatchInfoPanel().setSurrenderPending(false);
+		}
 		getCurrentPlayer().endTurn();
 		cancelCurrentAction(); //Don't let the next player use the previous player's selections.
-		panel.setTile(null, null, null, null, true);
+		if (panel != null) {
+			panel.setTile(null, null, null, null, true);
+		}
 		if (inProgress) {
 			do {
 				currentPlayerIndex++;
@@ -144,6 +262,9 @@ public class Match {
 			
 			beginTurn();
 		}
+		if (recorder != null) {
+			recorder.turnEnded(this);
+		}
 	}
 	
 	/** 
@@ -153,8 +274,13 @@ public class Match {
 	 * and if it isn't, the remaining players can continue to use the surrendered units as a kind of terrain.
 	 */
 	public void surrender() {
-		panel.getMatchInfoPanel().setSurrenderPending(false);
-		panel.setTile(null, null, null, null, true);
+		if (recorder != null) {
+			recorder.surrendering(this);
+		}
+		if (panel != null) {
+			panel.getMatchInfoPanel().setSurrenderPending(false);
+			panel.setTile(null, null, null, null, true);
+		}
 		getCurrentPlayer().setDefeated(true);
 		checkVictoryConditions();
 		endTurn(); //Deactivate the surrendering units and pass the turn on.
@@ -217,14 +343,12 @@ public class Match {
 	 */
 	private void handleMoveTargetClick(Tile target) {
 		//EXTRA: Allow undoing moves.
-		Unit unit = selectedTile.getUnit();
-		unit.setCurrentMove(unit.getCurrentMove() - range.getValidTargetPaths().get(target).size());
-
-		Util.moveUnit(selectedTile, target);
+		applyMove(selectedTile, target, range.getValidTargetPaths().get(target).size());
 		selectedTile = target;
 		panel.setTile(selectedTile, selectedTile, getTileOwner(selectedTile), getTileOwner(selectedTile), false);
 		setRange(new Range(this, selectedTile, null));
 		//Refresh the unit display to update its status.
+		stateChanged();
 	}
 
 	/**
@@ -234,15 +358,7 @@ public class Match {
 	 * @param tile the tile that the selected unit will act on.
 	 */
 	private void handleAbilityTargetClick(Tile tile) {
-		selectedTile.getUnit().endTurn();
-		
-		for (Tile target : board.getTileRadius(tile, range.getAbility().getProperty(Ability.Property.EFFECT_RADIUS))) {
-			//Affect every tile in the ability's area of affect - usually, this is just the target tile.
-			range.getAbility().affect(selectedTile, target, currentPlayerIndex);
-			target.repaint();
-			checkForDeath(target);
-		}
-		checkForDeath(selectedTile);
+		applyAbility(selectedTile, range.getAbility(), tile);
 		
 		selectedTile.repaint(); //Make sure the selected tile redraws itself immediately.
 		setRange(null); //Don't allow further action.
@@ -250,6 +366,7 @@ public class Match {
 		//Refresh the unit display to grey out the ability buttons and update status.
 		
 		checkVictoryConditions();
+		stateChanged();
 	}
 	
 	/**
@@ -280,6 +397,113 @@ public class Match {
 			setRange(new Range(this, selectedTile, ability));
 		}
 	}
+
+	/**
+	 * Handles a request for a hint: if the position is a solved endgame,
+	 * selects the unit that should act and tells the player how to play the turn.
+	 */
+	public void showHint() {
+		if (!inProgress || panel == null) {
+			return;
+		}
+
+		TurnPlan plan = Tablebase.findPlan(this);
+		if (plan == null) {
+			JOptionPane.showMessageDialog(panel, "No hint is available for this position.");
+		} else {
+			handleTileSelectClick(plan.getOrigin());
+			JOptionPane.showMessageDialog(panel, plan.getDescription());
+		}
+	}
+
+	// ================================= ACTIONS =======================================
+	
+	/**
+	 * Moves one of the current player's units, exactly as clicking on a movement target would.
+	 * This lets Agents play the match without going through its panel.
+	 * 
+	 * @param origin the tile with the unit to move. The unit must be active.
+	 * @param target the tile to move the unit to.
+	 * @return true if the move was valid and has been made, false if nothing happened.
+	 */
+	public boolean moveUnit(Tile origin, Tile target) {
+		if (!inProgress || !origin.hasUnit() || !origin.getUnit().isActive()) {
+			return false;
+		}
+		
+		ArrayList<Tile> path = new Range(this, origin, null).getValidTargetPaths().get(target);
+		if (path == null) {
+			return false;
+		}
+		
+		applyMove(origin, target, path.size());
+		stateChanged();
+		return true;
+	}
+	
+	/**
+	 * Makes one of the current player's units use an ability, exactly as clicking on an ability target would.
+	 * 
+	 * @param origin the tile with the unit that will act. The unit must be active.
+	 * @param ability the ability to use, which must be one of the unit's abilities.
+	 * @param target the tile to use the ability on.
+	 * @return true if the ability was used, false if nothing happened.
+	 */
+	public boolean useAbility(Tile origin, Ability ability, Tile target) {
+		if (!inProgress || !origin.hasUnit() || !origin.getUnit().isActive() || !origin.getUnit().getAbilities().contains(ability)) {
+			return false;
+		}
+		
+		if (!new Range(this, origin, ability).getValidTargetPaths().containsKey(target) ||
+				!target.isOfType(ability.getTargetType(), getCurrentPlayer(), getTileOwner(target))) {
+			return false;
+		}
+		
+		applyAbility(origin, ability, target);
+		checkVictoryConditions();
+		stateChanged();
+		return true;
+	}
+	
+	/**
+	 * Moves a unit and uses up the move it spent doing so.
+	 * 
+	 * @param origin the tile with the unit to move.
+	 * @param target the tile to move the unit to.
+	 * @param distance the length of the path between the two tiles.
+	 */
+	private void applyMove(Tile origin, Tile target, int distance) {
+		Unit unit = origin.getUnit();
+		unit.setCurrentMove(unit.getCurrentMove() - distance);
+		
+		Util.moveUnit(origin, target);
+		if (recorder != null) {
+			recorder.unitMoved(this, origin, target);
+		}
+	}
+	
+	/**
+	 * Uses an ability and removes any units that it killed. This doesn't check for victory.
+	 * 
+	 * @param origin the tile with the unit that is acting.
+	 * @param ability the ability being used.
+	 * @param target the tile the ability is being used on.
+	 */
+	private void applyAbility(Tile origin, Ability ability, Tile target) {
+		origin.getUnit().endTurn();
+		abilityUses[currentPlayerIndex][ability.ordinal()]++;
+		
+		for (Tile affectedTile : board.getTileRadius(target, ability.getProperty(Ability.Property.EFFECT_RADIUS))) {
+			//Affect every tile in the ability's area of affect - usually, this is just the target tile.
+			ability.affect(origin, affectedTile, currentPlayerIndex);
+			affectedTile.repaint();
+			checkForDeath(affectedTile);
+		}
+		checkForDeath(origin);
+		if (recorder != null) {
+			recorder.abilityUsed(this, origin, ability, target);
+		}
+	}
 	
 	// =========================================================================
 	
@@ -292,10 +516,13 @@ public class Match {
 		if (tile.hasUnit()) {
 			Unit unit = tile.getUnit();
 			if (unit.getCurrentHealth() <= 0) {
-				getCurrentPlayer().getUnits().remove(unit);
-				if (getCurrentPlayer().getUnits().isEmpty()) {
-					getCurrentPlayer().setDefeated(true);
-					//EXTRA: Change this to check for rout being a victory condition.
+				Player owner = getTileOwner(tile); //The dead unit isn't necessarily the current player's.
+				if (owner != null) {
+					owner.getUnits().remove(unit);
+					if (owner.getUnits().isEmpty()) {
+						owner.setDefeated(true);
+						//EXTRA: Change this to check for rout being a victory condition.
+					}
 				}
 				tile.setUnit(null);
 			}
@@ -351,6 +578,20 @@ public class Match {
 		return panel;
 	}
 	
+	/** @return the recorder that is told about every action in this match, or null if there isn't one. */
+	public MatchRecorder getRecorder() {
+		return recorder;
+	}
+	
+	/**
+	 * Starts or stops recording this match's actions.
+	 * 
+	 * @param recorder the recorder to tell about every action from now on, or null to stop recording.
+	 */
+	public void setRecorder(MatchRecorder recorder) {
+		this.recorder = recorder;
+	}
+	
 	/** @return the board this match is played on. */
 	public Board getBoard() {
 		return board;
@@ -366,6 +607,20 @@ public class Match {
 		return inProgress;
 	}
 	
+	/** @return the player who won the match, or null if the match is still going or ended in a draw. */
+	public Player getVictor() {
+		return victor;
+	}
+	
+	/**
+	 * @param playerIndex the index of a player.
+	 * @param ability an ability.
+	 * @return the number of times the player's units have used the ability in this match.
+	 */
+	public int getAbilityUses(int playerIndex, Ability ability) {
+		return abilityUses[playerIndex][ability.ordinal()];
+	}
+	
 	/** @return the number of the current round. */
 	public int getCurrentRound() {
 		return currentRound;
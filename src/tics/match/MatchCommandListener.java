@@ -2,14 +2,13 @@ package tics.match;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
 
 import javax.swing.JButton;
 
 import tics.match.model.Ability;
+import tics.match.model.Board;
 import tics.match.model.Tile;
 import tics.match.view.AbilityPanel;
 import tics.match.view.GameInfoPanel;
@@ -20,7 +19,7 @@ import tics.match.view.GameInfoPanel;
  * @author Michael D'Andrea
  * @author Devindra Payment
  */
-public class MatchCommandListener extends MouseAdapter implements ActionListener, KeyListener {
+public class MatchCommandListener extends KeyAdapter implements ActionListener, Board.Listener {
 	/** The match that this class will handle input for. */
 	private Match match;
 	
@@ -41,17 +40,12 @@ public class MatchCommandListener extends MouseAdapter implements ActionListener
 			case KeyEvent.VK_E : if (event.isControlDown()) { //Ctrl-E : end turn.
 				match.endTurn();
 			} break;
+			case KeyEvent.VK_H : if (event.isControlDown()) { //Ctrl-H : show a hint for solved endgames.
+				match.showHint();
+			} break;
 			//TODO: Add more hotkeys if necessary.
 		}
 	}
-
-	//These methods need to be implemented since this class is a KeyListener, but are unused.
-	//KeyAdapter can't be used here because MouseAdapter already is.
-	@Override
-	public void keyReleased(KeyEvent event) { }
-
-	@Override
-	public void keyTyped(KeyEvent event) { }
 	
 	@Override
 	public void actionPerformed(ActionEvent event) {
@@ -74,40 +68,25 @@ public class MatchCommandListener extends MouseAdapter implements ActionListener
 	}
 	
 	@Override
-	public void mouseReleased(MouseEvent event) {
-		//Handle tile clicks.
-		if (event.getSource() instanceof Tile) {
-			Tile sourceTile = (Tile)event.getSource();
-	        if(match.isInProgress() &&
-	        		//Make sure the mouse was released while still on the tile,
-	        		//by checking the event's position relative to the tile.
-	        		event.getX() >= 0 && 
-	        		event.getX() < sourceTile.getWidth() &&
-	        		event.getY() >= 0 &&
-	        		event.getY() < sourceTile.getHeight()) {
-	        	//This way, pressing, dragging out of the tile, and releasing has no effect.
-	        	match.handleTileClick((Tile)event.getSource());
-	        }
+	public void tileClicked(Tile tile) {
+		//Handle tile clicks. The board only reports a click if the mouse was released on the tile it was pressed on.
+		if (match.isInProgress()) {
+			match.handleTileClick(tile);
 		}
 	}
 	
 	@Override
-	public void mouseEntered(MouseEvent event) {
+	public void tileEntered(Tile tile) {
 		//Handle tile mouse hovering.
-		if (event.getSource() instanceof Tile) {
-			Tile tile = (Tile)event.getSource();
-			Tile selectedTile = match.getSelectedTile();
-			match.getPanel().setTile(tile, selectedTile, match.getTileOwner(tile), match.getTileOwner(selectedTile), false);
-		}
+		Tile selectedTile = match.getSelectedTile();
+		match.getPanel().setTile(tile, selectedTile, match.getTileOwner(tile), match.getTileOwner(selectedTile), false);
 		//Always display data on the tile being moused over, but don't replace selected unit data by a blank panel.
 	}
 	
 	@Override
-	public void mouseExited(MouseEvent event) {
+	public void tileExited(Tile tile) {
 		//When hovering off the board, only display data for the selected tile.
-		if (event.getSource() instanceof Tile) {
-			Tile selectedTile = match.getSelectedTile();
-			match.getPanel().setTile(null, selectedTile, null, match.getTileOwner(selectedTile), true);
-		}
+		Tile selectedTile = match.getSelectedTile();
+		match.getPanel().setTile(null, selectedTile, null, match.getTileOwner(selectedTile), true);
 	}
 }
@@ -0,0 +1,288 @@
+package tics.match;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Tile;
+
+/**
+ * Keeps the match being played safe from crashes, by appending every action to a small journal file.
+ *
+ * Actions are encoded in memory as they happen, and each turn's actions are appended to the journal in a single write
+ * when the turn ends, so autosaving costs almost nothing per action, and a crash loses at most the turn being played.
+ * Every few turns, the journal is compacted: a full save of the match is written, and the journal starts over from it.
+ * The disk is only touched on SaveWriter's thread, in order with the saves, so the interface never waits for it:
+ * the match is copied when it's compacted, and the copy is written in the background.
+ * After a crash, recover loads that save and replays the journal on top of it.
+ *
+ * The journal starts with an int MAGIC and the long StateChecksum of the save it continues from,
+ * so a journal that belongs to an older save (if the program stopped partway through compacting) is ignored.
+ * After that come the actions, each a byte code followed by varints:
+ *   MOVE originX originY targetX targetY
+ *   ABILITY originX originY abilityOrdinal targetX targetY
+ *   SURRENDER (which also ends the turn, so the END_TURN after it is only a marker)
+ *   END_TURN
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class MatchJournal implements MatchRecorder {
+	/** The save that the journal continues from. */
+	public static final String SNAPSHOT_FILE = MatchSaveData.SAVE_FILE_FOLDER + "autosave." + MatchSaveData.SAVE_FILE_EXTENSION;
+	/** The journal of actions since that save. */
+	public static final String JOURNAL_FILE = MatchSaveData.SAVE_FILE_FOLDER + "autosave.journal";
+	/** The first four bytes of every journal: "TICJ". */
+	private static final int MAGIC = 0x5449434a;
+	/** The number of turns between compactions. */
+	private static final int COMPACT_INTERVAL = 10;
+
+	/** The codes that start each action in the journal. */
+	private static final int MOVE = 0, ABILITY = 1, SURRENDER = 2, END_TURN = 3;
+
+	/** The journal file, or null if it isn't open. It's only used on SaveWriter's thread. */
+	private FileOutputStream output;
+	/** The actions of the turn being played, encoded but not yet written. */
+	private final SaveBuffer pendingActions = new SaveBuffer();
+	/** The number of turns ended since the last compaction. */
+	private int turnsSinceCompaction;
+	/** True once journaling has stopped for good. */
+	private boolean closed;
+
+	/**
+	 * Starts journaling a match, beginning with a full save of its current state, which is written in the background.
+	 *
+	 * @param match the match to journal.
+	 */
+	public MatchJournal(Match match) {
+		compact(match);
+		match.setRecorder(this);
+	}
+
+	@Override
+	public void unitMoved(Match match, Tile origin, Tile target) {
+		pendingActions.writeByte(MOVE);
+		pendingActions.writeVarInt(origin.getGridX());
+		pendingActions.writeVarInt(origin.getGridY());
+		pendingActions.writeVarInt(target.getGridX());
+		pendingActions.writeVarInt(target.getGridY());
+	}
+
+	@Override
+	public void abilityUsed(Match match, Tile origin, Ability ability, Tile target) {
+		pendingActions.writeByte(ABILITY);
+		pendingActions.writeVarInt(origin.getGridX());
+		pendingActions.writeVarInt(origin.getGridY());
+		pendingActions.writeVarInt(ability.ordinal());
+		pendingActions.writeVarInt(target.getGridX());
+		pendingActions.writeVarInt(target.getGridY());
+	}
+
+	@Override
+	public void surrendering(Match match) {
+		pendingActions.writeByte(SURRENDER);
+	}
+
+	@Override
+	public void turnEnded(Match match) {
+		pendingActions.writeByte(END_TURN);
+		flush(); //Write the turn to the old journal first, in case the program stops before the new save replaces the old one.
+
+		turnsSinceCompaction++;
+		if (match.isInProgress() && turnsSinceCompaction >= COMPACT_INTERVAL) {
+			compact(match);
+		}
+	}
+
+	@Override
+	public void matchEnded(Match match) {
+		close(); //There's nothing left to recover.
+	}
+
+	/** Stops journaling, and deletes the autosave once everything already asked for has been written, since it's no longer needed. */
+	public void close() {
+		closed = true;
+		pendingActions.clear();
+		SaveWriter.submit(new Runnable() {
+			@Override
+			public void run() {
+				stop();
+				delete();
+			}
+		});
+	}
+
+	/**
+	 * Copies the match, then writes it as a full save and starts a new journal that continues from it, in the background.
+	 * Saves replace the old file in one step, so a crash partway through leaves the old save and journal intact.
+	 */
+	private void compact(Match match) {
+		if (closed) {
+			return;
+		}
+		final MatchSaveData saveData = new MatchSaveData(match);
+		final SaveBuffer header = new SaveBuffer();
+		header.writeInt(MAGIC);
+		long checksum = StateChecksum.compute(match);
+		header.writeInt((int) (checksum >>> 32));
+		header.writeInt((int) checksum);
+		pendingActions.clear(); //Anything not yet written is already part of the copy.
+		turnsSinceCompaction = 0;
+
+		SaveWriter.submit(new Runnable() {
+			@Override
+			public void run() {
+				stop();
+				try {
+					File saveFolder = new File(MatchSaveData.SAVE_FILE_FOLDER);
+					if (!saveFolder.isDirectory()) {
+						saveFolder.mkdir();
+					}
+					saveData.save(SNAPSHOT_FILE);
+					output = new FileOutputStream(JOURNAL_FILE);
+					output.write(header.getBytes(), 0, header.size());
+				} catch (IOException exception) {
+					exception.printStackTrace();
+					stop(); //A broken autosave shouldn't interrupt the game. The next compaction will try again.
+				}
+			}
+		});
+	}
+
+	/** Appends the actions that haven't been written yet to the journal in a single write, in the background. */
+	private void flush() {
+		if (closed || pendingActions.size() == 0) {
+			return;
+		}
+		final byte[] actions = Arrays.copyOf(pendingActions.getBytes(), pendingActions.size());
+		pendingActions.clear();
+
+		SaveWriter.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (output != null) {
+						output.write(actions);
+					}
+				} catch (IOException exception) {
+					exception.printStackTrace();
+					stop();
+				}
+			}
+		});
+	}
+
+	/** Closes the journal file, if it's open. This is only called on SaveWriter's thread. */
+	private void stop() {
+		if (output != null) {
+			try {
+				output.close();
+			} catch (IOException exception) {
+				exception.printStackTrace();
+			}
+			output = null;
+		}
+	}
+
+	// =========================================================================
+
+	/** @return true if there's an autosave left behind by a match that didn't finish cleanly. */
+	public static boolean hasRecovery() {
+		return new File(SNAPSHOT_FILE).isFile();
+	}
+
+	/** Deletes the autosave and its journal. */
+	public static void delete() {
+		new File(JOURNAL_FILE).delete();
+		new File(SNAPSHOT_FILE).delete();
+	}
+
+	/**
+	 * Rebuilds the match that was being played when the program stopped, by loading the autosave and replaying its journal.
+	 * An action that was only partly written, or that can't be replayed, ends the replay there.
+	 *
+	 * @param displayed false to create the match without a panel.
+	 * @return the recovered match, which isn't being journaled.
+	 * @throws IOException if the autosave couldn't be loaded.
+	 */
+	public static Match recover(boolean displayed) throws IOException {
+		Match match = MatchSaveData.load(SNAPSHOT_FILE).createMatch(displayed);
+		File journalFile = new File(JOURNAL_FILE);
+		if (!journalFile.isFile()) {
+			return match;
+		}
+
+		byte[] journal = new byte[(int) journalFile.length()];
+		RandomAccessFile file = new RandomAccessFile(journalFile, "r");
+		try {
+			file.readFully(journal);
+		} finally {
+			file.close();
+		}
+
+		SaveBuffer buffer = new SaveBuffer(journal, 0, journal.length);
+		try {
+			if (buffer.readInt() != MAGIC) {
+				return match;
+			}
+			long checksum = ((long) buffer.readInt() << 32) | (buffer.readInt() & 0xffffffffL);
+			if (checksum != StateChecksum.compute(match)) {
+				return match; //The journal was for the save before this one, which already includes its actions.
+			}
+			replay(match, buffer);
+		} catch (EOFException exception) {
+			//The program stopped partway through writing an action, so everything before it has been replayed.
+		}
+		return match;
+	}
+
+	/** Replays journaled actions on a match until the journal ends or an action can't be replayed. */
+	private static void replay(Match match, SaveBuffer buffer) throws IOException {
+		Board board = match.getBoard();
+		Ability[] abilities = Ability.values();
+		boolean surrendered = false;
+		while (buffer.hasRemaining()) {
+			int action = buffer.readByte();
+			boolean replayed = true;
+			if (action == MOVE) {
+				Tile origin = readTile(board, buffer);
+				Tile target = readTile(board, buffer);
+				replayed = origin != null && target != null && match.moveUnit(origin, target);
+			} else if (action == ABILITY) {
+				Tile origin = readTile(board, buffer);
+				int ability = buffer.readVarInt();
+				Tile target = readTile(board, buffer);
+				replayed = origin != null && target != null && ability < abilities.length && match.useAbility(origin, abilities[ability], target);
+			} else if (action == SURRENDER) {
+				match.surrender();
+				surrendered = true;
+			} else if (action == END_TURN) {
+				if (!surrendered) {
+					match.endTurn();
+				}
+				surrendered = false;
+			} else {
+				replayed = false;
+			}
+
+			if (!replayed) {
+				return;
+			}
+		}
+	}
+
+	/** @return the tile at the next pair of coordinates, or null if they're off the board. */
+	private static Tile readTile(Board board, SaveBuffer buffer) throws IOException {
+		int x = buffer.readVarInt();
+		int y = buffer.readVarInt();
+		if (x >= board.getGridWidth() || y >= board.getGridHeight()) {
+			return null;
+		}
+		return board.getTile(x, y);
+	}
+}
@@ -0,0 +1,53 @@
+package tics.match;
+
+import tics.match.model.Ability;
+import tics.match.model.Tile;
+
+/**
+ * Something that is told about every action taken in a match, such as a replay log.
+ * Actions are reported after they've been applied, except for surrenders, which are reported first.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public interface MatchRecorder {
+	/**
+	 * Handles a unit moving.
+	 *
+	 * @param match the match the unit moved in.
+	 * @param origin the tile the unit moved from.
+	 * @param target the tile the unit moved to.
+	 */
+	public void unitMoved(Match match, Tile origin, Tile target);
+
+	/**
+	 * Handles a unit using an ability.
+	 *
+	 * @param match the match the ability was used in.
+	 * @param origin the tile of the unit that acted.
+	 * @param ability the ability that was used.
+	 * @param target the tile the ability was used on.
+	 */
+	public void abilityUsed(Match match, Tile origin, Ability ability, Tile target);
+
+	/**
+	 * Handles the current player surrendering, before the surrender takes effect.
+	 *
+	 * @param match the match being surrendered.
+	 */
+	public void surrendering(Match match);
+
+	/**
+	 * Handles a turn ending, after the next player's turn has begun.
+	 *
+	 * @param match the match whose turn ended.
+	 */
+	public void turnEnded(Match match);
+
+	/**
+	 * Handles the match ending.
+	 *
+	 * @param match the match that ended.
+	 */
+	public void matchEnded(Match match);
+}
@@ -1,28 +1,34 @@
 package tics.match;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-
-import tics.match.model.Board;
-import tics.match.model.Player;
-import tics.match.model.Unit;
+import java.io.RandomAccessFile;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
 
 /**
  * Contains the data needed to restart a match mid-game.
  * This can also be used to save the start of an interesting match.
  * 
+ * Saves are written in a compact binary format rather than with Java serialization,
+ * so they stay small and fast, and don't break when the classes of the match change:
+ *   int MAGIC, varint VERSION, varint COMPATIBLE_VERSION, int preview length and the SavePreview,
+ *   then the sections described in MatchSnapshot.write.
+ * The preview comes first so that file choosers can describe a save by reading only its first few bytes.
+ * A save can be read by any version of the format from its COMPATIBLE_VERSION onwards,
+ * since sections and fields that a reader doesn't know about are skipped.
+ * Saves from before a change to the layout are upgraded by SaveMigration as they're loaded,
+ * as are saves from before this format, which were MatchSaveData objects written with Java serialization.
+ * 
+ * Saving takes a few hundred microseconds, but it still touches the disk, so the interface saves through SaveWriter,
+ * which does it on a background thread.
+ * 
  * @author Michael D'Andrea
  * @author Devindra Payment
  */
-public class MatchSaveData implements Serializable {
-	/** A randomly generated value, used by Java to identify saved instances of this class. */
-	private static final long serialVersionUID = 3227064219798143659L;
-
+public class MatchSaveData {
 	/** The relative path to the save file directory. */
 	public static final String SAVE_FILE_FOLDER = "saves/";
 	//This should be a file path and not a classpath, 
@@ -32,23 +38,24 @@ public class MatchSaveData implements Serializable {
 	public static final String SAVE_FILE_EXTENSION = "tsv";
 	//TSV = Tics SaVe
 	
-	/** The grid of units for the match, without their underlying tiles. */
-	private Unit[][] unitPositions;
-	//private Terrain[][] terrainPositions;
+	/** The start of the name of every quicksave, which is followed by the time it was saved. */
+	public static final String QUICKSAVE_PREFIX = "quicksave-";
+	/** The number of quicksaves kept. Older ones are deleted as new ones are made. */
+	public static final int MAXIMUM_QUICKSAVES = 5;
+	/** The end of the name an old save is moved aside to while it's replaced, on systems that won't rename over it. */
+	private static final String BACKUP_SUFFIX = ".bak";
 	
-	/** The number of rounds passed (plus one) when the game was saved. */
-	private int roundNumber;
+	/** The first four bytes of every save file: "TICS". */
+	public static final int MAGIC = 0x54494353;
+	/** The version of the save format that this class writes. */
+	public static final int VERSION = 2;
+	/** The oldest version of the format that can read the files this class writes. This only goes up if older readers would misread them. */
+	public static final int COMPATIBLE_VERSION = 2;
+	/** The first version of the format to start with a SavePreview. */
+	public static final int FIRST_PREVIEW_VERSION = 2;
 	
-	/** 
-	 * The collections of units each player has to work with.
-	 * This is an ordered collection of unordered collections of units.
-	 * This is not a HashSet<Unit>[] because those seem to cause issues.
-	 */
-	private Player[] players;
-	/** The index in the array of the player who had the turn when the match was saved. */
-	private int currentPlayerIndex;
-	/** The index in the array of the player who moved first in the saved match. */
-	private int firstPlayerIndex;
+	/** The state of the saved match. */
+	private final MatchSnapshot snapshot;
 
 	/**
 	 * Constructs the save data for a match.
@@ -56,95 +63,204 @@ public class MatchSaveData implements Serializable {
 	 * @param match the match to construct save data for.
 	 */
 	public MatchSaveData(Match match) {
-		Board board = match.getBoard();
-		unitPositions = new Unit[board.getGridWidth()][board.getGridHeight()];
-		for (int i = 0; i < board.getGridWidth(); i++) {
-			for (int j = 0; j < board.getGridHeight(); j++) {
-				if (board.getTile(i, j).hasUnit()) {
-					unitPositions[i][j] = board.getTile(i, j).getUnit();
-				}
-				//TODO: Save terrain here, if applicable.
-			}
-		}
-		
-		players = match.getPlayers();
-		currentPlayerIndex = match.getCurrentPlayerIndex();
-		roundNumber = match.getCurrentRound();
-		firstPlayerIndex = match.getFirstPlayerIndex();
+		this(new MatchSnapshot(match));
+	}
+	
+	/**
+	 * Constructs save data from a snapshot that has already been taken.
+	 * 
+	 * @param snapshot the state of the match to save.
+	 */
+	public MatchSaveData(MatchSnapshot snapshot) {
+		this.snapshot = snapshot;
 	}
 	
 	/** 
-	 * Saves this match data to a specific file, without prompting the user.
+	 * Saves this match data to a new, time-stamped file, without prompting the user.
+	 * Only the most recent few quicksaves are kept.
 	 * 
+	 * @return the path to the new quicksave.
 	 * @throws IOException if the file couldn't be saved.
 	 */
-	public void quicksave() throws IOException {
+	public String quicksave() throws IOException {
 		File saveFolder = new File(SAVE_FILE_FOLDER);
 		if (!saveFolder.isDirectory()) { //If the save folder doesn't exist, create it when quicksaving.
 			saveFolder.mkdir(); //mkdir = make directory
 		}
-		//EXTRA: Allow multiple, maybe time-stamped, quicksaves.
-		save(SAVE_FILE_FOLDER + "quicksave.tcs");
+		String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()); //Sorting the names sorts them by age.
+		String filePath = SAVE_FILE_FOLDER + QUICKSAVE_PREFIX + timestamp + "." + SAVE_FILE_EXTENSION;
+		//Use the usual extension, so the load dialog shows quicksaves.
+		save(filePath);
+		
+		String[] quicksaves = saveFolder.list();
+		Arrays.sort(quicksaves);
+		int kept = 0;
+		for (int index = quicksaves.length - 1; index >= 0; index--) {
+			if (quicksaves[index].startsWith(QUICKSAVE_PREFIX) && quicksaves[index].endsWith("." + SAVE_FILE_EXTENSION)) {
+				kept++;
+				if (kept > MAXIMUM_QUICKSAVES) {
+					new File(saveFolder, quicksaves[index]).delete();
+				}
+			}
+		}
+		return filePath;
 	}
 	
 	/** 
 	 * Saves this match data to a given file.
+	 * The data is written to a temporary file and forced to disk before it replaces the old file,
+	 * so if the program stops partway through, the old save is left as it was, or moved aside where load still finds it.
 	 * 
 	 * @param filePath the path to the file to save to.
 	 * @throws IOException if the file couldn't be saved.
 	 */
 	public void save(String filePath) throws IOException {
-		ObjectOutputStream objectOutputStream = 
-				new ObjectOutputStream(new FileOutputStream(filePath));
-		objectOutputStream.writeObject(this);
+		SaveBuffer buffer = encode();
+		writeFile(filePath, buffer.getBytes(), buffer.size());
+	}
+	
+	/**
+	 * Replaces a file's contents, through a temporary file that's forced to disk and renamed into place.
+	 * Where the old file can't be renamed over, it's moved aside first and only deleted once the new one is in place,
+	 * so there's always a whole save on the disk.
+	 * 
+	 * @param filePath the path to the file to write.
+	 * @param data the array holding the new contents.
+	 * @param length the length of the new contents, from the start of the array.
+	 * @throws IOException if the file couldn't be written.
+	 */
+	static void writeFile(String filePath, byte[] data, int length) throws IOException {
+		File file = new File(filePath);
+		File temporaryFile = new File(filePath + ".tmp");
+		FileOutputStream output = new FileOutputStream(temporaryFile);
+		try {
+			output.write(data, 0, length); //The whole save goes to disk in a single write.
+			output.getFD().sync(); //Don't replace the old save until the new one is really on the disk.
+		} finally {
+			output.close();
+		}
+		
+		if (!temporaryFile.renameTo(file)) { //Renaming is atomic, but some systems won't rename over an existing file.
+			File backupFile = new File(filePath + BACKUP_SUFFIX);
+			backupFile.delete(); //Left by an earlier save that stopped partway, whose file has been replaced since.
+			if (!file.renameTo(backupFile)) {
+				throw new IOException("The old save couldn't be moved aside.");
+			}
+			if (!temporaryFile.renameTo(file)) {
+				backupFile.renameTo(file);
+				throw new IOException("The save couldn't be moved into place.");
+			}
+			backupFile.delete();
+		}
+	}
+	
+	/** @return this match data, encoded as it would be saved to a file. */
+	public byte[] toByteArray() {
+		return encode().toByteArray();
+	}
+	
+	/** @return a buffer holding the encoded match data. */
+	private SaveBuffer encode() {
+		SaveBuffer buffer = new SaveBuffer();
+		writeVersions(buffer);
+		
+		SaveBuffer preview = new SaveBuffer();
+		new SavePreview(snapshot, System.currentTimeMillis()).write(preview);
+		buffer.writeInt(preview.size()); //A fixed size length, so the preview's position doesn't depend on its size.
+		buffer.writeBytes(preview.getBytes(), 0, preview.size());
 		
-		objectOutputStream.close();
+		snapshot.write(buffer);
+		return buffer;
+	}
+	
+	/** Writes the start of a save in this version: MAGIC, VERSION and COMPATIBLE_VERSION. */
+	static void writeVersions(SaveBuffer buffer) {
+		buffer.writeInt(MAGIC);
+		buffer.writeVarInt(VERSION);
+		buffer.writeVarInt(COMPATIBLE_VERSION);
 	}
 	
 	/**
 	 * Loads a match from data previously saved to a file.
+	 * If the program stopped while the file was being replaced, after the old save was moved aside, the old save is loaded.
 	 * 
 	 * @param filePath the path to the match data file.
-	 * @return the match corresponding to the loaded data.
-	 * @throws IOException if the file couldn't be loaded or if it didn't contain a Match.
-	 * @throws ClassNotFoundException if no Match could be loaded because the MatchSaveData class is unavailable.
+	 * @return the loaded match data.
+	 * @throws IOException if the file couldn't be loaded or if it didn't contain a match that this version can read.
 	 */
-	public static MatchSaveData load(String filePath) throws IOException, ClassNotFoundException {
-		ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(filePath));
-		Object loadedObject = objectInputStream.readObject();
-		
-		objectInputStream.close();
-		
-		if (loadedObject instanceof MatchSaveData) {
-			return (MatchSaveData) loadedObject;
+	public static MatchSaveData load(String filePath) throws IOException {
+		File backupFile = new File(filePath + BACKUP_SUFFIX);
+		if (!new File(filePath).exists() && backupFile.exists()) {
+			filePath = backupFile.getPath();
+		}
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		byte[] data;
+		try {
+			data = new byte[(int) file.length()];
+			file.readFully(data);
+		} finally {
+			file.close();
+		}
+		return fromByteArray(data, 0, data.length);
+	}
+	
+	/**
+	 * Decodes match data that was encoded by toByteArray or saved to a file.
+	 * 
+	 * @param data the array holding the encoded data.
+	 * @param offset the position of the data in the array.
+	 * @param length the length of the data.
+	 * @return the decoded match data.
+	 * @throws IOException if the data isn't a match that this version can read.
+	 */
+	public static MatchSaveData fromByteArray(byte[] data, int offset, int length) throws IOException {
+		SaveBuffer buffer = new SaveBuffer(data, offset, length);
+		if (SerializedSaveMigration.isSerialized(data, offset, length)) {
+			buffer = SaveMigration.upgrade(buffer, SaveMigration.SERIALIZED_VERSION, 0); //The preview is skipped, so its save time doesn't matter.
 		} else {
-			throw new IOException("The loaded file doesn't seem to contain Tics game data.");
+			if (length < 4 || buffer.readInt() != MAGIC) {
+				throw new IOException("The loaded file doesn't seem to contain Tics game data.");
+			}
+			int version = buffer.readVarInt();
+			if (buffer.readVarInt() > VERSION) {
+				throw new IOException("The game was saved by a newer version of Tics.");
+			}
+			if (version < VERSION) {
+				buffer = SaveMigration.upgrade(buffer, version, 0);
+			}
 		}
-		
+		buffer.skip(buffer.readInt()); //The preview only repeats what's in the snapshot.
+		return new MatchSaveData(MatchSnapshot.read(buffer));
 	}
 	
-	/** @return the grid of unit positions for the match. */
-	public Unit[][] getUnitPositions() {
-		return unitPositions;
+	/**
+	 * Creates a match in exactly the state it was saved in.
+	 * Nothing is generated and no turn is started over, so units keep their remaining moves, statuses and activity.
+	 * 
+	 * @param displayed false to create the match without a panel.
+	 * @return the new match.
+	 */
+	public Match createMatch(boolean displayed) {
+		return snapshot.createMatch(displayed);
 	}
-
-	/** @return the players in the match. */
-	public Player[] getPlayers() {
-		return players;
+	
+	/** @return the saved state of the match. */
+	public MatchSnapshot getSnapshot() {
+		return snapshot;
 	}
 
 	/** @return the array index of the player who had the turn when the match was saved. */
 	public int getCurrentPlayerIndex() {
-		return currentPlayerIndex;
+		return snapshot.getCurrentPlayerIndex();
 	}
 	
 	/** @return the number of rounds passed in the match. */
 	public int getRoundNumber() {
-		return roundNumber;
+		return snapshot.getCurrentRound();
 	}
 	
 	/** @return the number of the player who moved first in the match. */
 	public int getFirstPlayerIndex() {
-		return firstPlayerIndex;
+		return snapshot.getFirstPlayerIndex();
 	}
 }
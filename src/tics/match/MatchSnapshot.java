@@ -0,0 +1,556 @@
+package tics.match;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Player;
+import tics.match.model.PlayerTheme;
+import tics.match.model.Tile;
+import tics.match.model.TileStatus;
+import tics.match.model.Unit;
+import tics.match.model.UnitStatus;
+
+/**
+ * An unchanging copy of everything about a match that affects how it plays out.
+ *
+ * A snapshot only holds plain values, so it can be taken quickly on the event dispatch thread
+ * and then read from any other thread, where it can be turned back into as many independent matches as needed.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class MatchSnapshot {
+	/** The tags of the sections of encoded snapshots. Sections with other tags are skipped, so newer saves can add more. */
+	static final int HEADER_SECTION = 1, NAMES_SECTION = 2, PLAYERS_SECTION = 3, UNITS_SECTION = 4,
+			TILE_STATUSES_SECTION = 5, TURN_SECTION = 6;
+
+	/** The board's size in tiles. */
+	private final int width, height;
+	/** The turn order when the snapshot was taken. */
+	private final int currentPlayerIndex, firstPlayerIndex, currentRound;
+	/** True if the match was still being played. */
+	private final boolean inProgress;
+	/** The index of the player who won, or -1 if nobody has. */
+	private final int victorIndex;
+	/** Each player's theme, indexed by player. */
+	private final PlayerTheme[] themes;
+	/** Whether each player was defeated, indexed by player. */
+	private final boolean[] defeated;
+	/** The number of times each player had used each ability, indexed by player and then by ability ordinal. */
+	private final int[][] abilityUses;
+	/** Every unit on the board, in board order. */
+	private final UnitState[] units;
+	/** Every tile status on the board, in board order. */
+	private final StatusState[] tileStatuses;
+
+	/**
+	 * Copies the state of a match.
+	 *
+	 * @param match the match to copy. It shouldn't change while the snapshot is being taken.
+	 */
+	public MatchSnapshot(Match match) {
+		Board board = match.getBoard();
+		Player[] players = match.getPlayers();
+		width = board.getGridWidth();
+		height = board.getGridHeight();
+		currentPlayerIndex = match.getCurrentPlayerIndex();
+		firstPlayerIndex = match.getFirstPlayerIndex();
+		currentRound = match.getCurrentRound();
+		inProgress = match.isInProgress();
+
+		themes = new PlayerTheme[players.length];
+		defeated = new boolean[players.length];
+		abilityUses = new int[players.length][Ability.values().length];
+		int victorIndex = -1;
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			themes[playerIndex] = players[playerIndex].getTheme();
+			defeated[playerIndex] = players[playerIndex].isDefeated();
+			for (Ability ability : Ability.values()) {
+				abilityUses[playerIndex][ability.ordinal()] = match.getAbilityUses(playerIndex, ability);
+			}
+			if (players[playerIndex] == match.getVictor()) {
+				victorIndex = playerIndex;
+			}
+		}
+		this.victorIndex = victorIndex;
+
+		ArrayList<UnitState> units = new ArrayList<UnitState>();
+		ArrayList<StatusState> tileStatuses = new ArrayList<StatusState>();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Tile tile = board.getTile(x, y);
+				if (tile.hasUnit()) {
+					units.add(new UnitState(x, y, indexOf(players, match.getTileOwner(tile)), tile.getUnit()));
+				}
+				for (TileStatus status : tile.getStatuses()) {
+					tileStatuses.add(new StatusState(x, y, status.getType().ordinal(), status.getRemainingDuration(), status.getCreatorIndex()));
+				}
+			}
+		}
+		this.units = units.toArray(new UnitState[units.size()]);
+		this.tileStatuses = tileStatuses.toArray(new StatusState[tileStatuses.size()]);
+	}
+
+	/** Creates a snapshot from decoded values. */
+	private MatchSnapshot(int width, int height, int currentPlayerIndex, int firstPlayerIndex, int currentRound, boolean inProgress,
+			int victorIndex, PlayerTheme[] themes, boolean[] defeated, int[][] abilityUses, UnitState[] units, StatusState[] tileStatuses) {
+		this.width = width;
+		this.height = height;
+		this.currentPlayerIndex = currentPlayerIndex;
+		this.firstPlayerIndex = firstPlayerIndex;
+		this.currentRound = currentRound;
+		this.inProgress = inProgress;
+		this.victorIndex = victorIndex;
+		this.themes = themes;
+		this.defeated = defeated;
+		this.abilityUses = abilityUses;
+		this.units = units;
+		this.tileStatuses = tileStatuses;
+	}
+
+	/**
+	 * Creates a new match in the state this snapshot was taken in.
+	 * Nothing is shared with the original match, so the new one can be played on any thread.
+	 *
+	 * @param displayed false to create the match without a panel.
+	 * @return the new match, which is already started unless the original had ended.
+	 */
+	public Match createMatch(boolean displayed) {
+		Player[] players = new Player[themes.length];
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			players[playerIndex] = new Player(new LinkedHashSet<Unit>(), themes[playerIndex]);
+			players[playerIndex].setDefeated(defeated[playerIndex]);
+		}
+
+		Match match = new Match(width, height, players, displayed);
+		Board board = match.getBoard();
+		for (UnitState state : units) {
+			Unit unit = state.createUnit();
+			board.getTile(state.x, state.y).setUnit(unit);
+			if (state.owner >= 0) {
+				players[state.owner].getUnits().add(unit);
+			}
+		}
+		for (StatusState state : tileStatuses) {
+			board.getTile(state.x, state.y).applyStatus(
+					new TileStatus(TileStatus.Type.values()[state.type], state.remainingDuration, state.creatorIndex));
+		}
+
+		match.resume(currentPlayerIndex, firstPlayerIndex, currentRound, abilityUses, victorIndex, inProgress);
+		return match;
+	}
+
+	/**
+	 * Encodes this snapshot as a series of sections, each a varint tag followed by a section written by SaveBuffer.writeSection:
+	 *   HEADER: width, height, players, current round, current player index.
+	 *   NAMES: the names of every Ability, UnitStatus.Type, TileStatus.Type and PlayerTheme, each list preceded by its length.
+	 *     Everything else refers to these by their index in this list, so reordering or adding constants doesn't break saves.
+	 *     Names that a reader doesn't know are only a problem if a unit or status uses them.
+	 *   PLAYERS: for each player, their theme, whether they're defeated, and their use of each ability.
+	 *   UNITS: the unit count, then for each unit a section with its position, owner (-1 for none), name, torso image,
+	 *     abilities, health, current move, whether it's active, and its statuses (type, remaining duration, creator index).
+	 *   TILE_STATUSES: the status count, then each status's position, type, remaining duration and creator index.
+	 *   TURN: first player index, victor index (-1 for none), whether the match is in progress.
+	 * Numbers that can't be negative are varints, and the rest are zigzag encoded.
+	 * A reader reads the fields it knows from each section and skips the rest, so new sections can be added,
+	 * and fields can be added to the end of the HEADER, NAMES and TURN sections and of each unit's section.
+	 * Players, unit statuses and tile statuses are written one after another without lengths of their own,
+	 * so adding fields to them would break older readers: anything new about them needs a section of its own.
+	 *
+	 * @param buffer the buffer to write to.
+	 */
+	void write(SaveBuffer buffer) {
+		SaveBuffer section = new SaveBuffer();
+		section.writeVarInt(width);
+		section.writeVarInt(height);
+		section.writeVarInt(themes.length);
+		section.writeVarInt(currentRound);
+		section.writeVarInt(currentPlayerIndex);
+		writeSection(buffer, HEADER_SECTION, section);
+
+		writeNames(section, Ability.values());
+		writeNames(section, UnitStatus.Type.values());
+		writeNames(section, TileStatus.Type.values());
+		writeNames(section, PlayerTheme.values());
+		writeSection(buffer, NAMES_SECTION, section);
+
+		for (int playerIndex = 0; playerIndex < themes.length; playerIndex++) {
+			section.writeVarInt(themes[playerIndex].ordinal());
+			section.writeBoolean(defeated[playerIndex]);
+			for (int uses : abilityUses[playerIndex]) {
+				section.writeVarInt(uses);
+			}
+		}
+		writeSection(buffer, PLAYERS_SECTION, section);
+
+		section.writeVarInt(units.length);
+		SaveBuffer record = new SaveBuffer();
+		for (UnitState unit : units) {
+			unit.write(record);
+			section.writeSection(record);
+			record.clear();
+		}
+		writeSection(buffer, UNITS_SECTION, section);
+
+		section.writeVarInt(tileStatuses.length);
+		for (StatusState status : tileStatuses) {
+			status.write(section, true);
+		}
+		writeSection(buffer, TILE_STATUSES_SECTION, section);
+
+		section.writeVarInt(firstPlayerIndex);
+		section.writeSignedVarInt(victorIndex);
+		section.writeBoolean(inProgress);
+		writeSection(buffer, TURN_SECTION, section);
+	}
+
+	/**
+	 * Decodes a snapshot written by write.
+	 *
+	 * @param buffer the buffer to read from, which is read to the end.
+	 * @return the snapshot.
+	 * @throws IOException if the data is incomplete or doesn't make sense.
+	 */
+	static MatchSnapshot read(SaveBuffer buffer) throws IOException {
+		int width = -1, height = 0, playerCount = 0, currentRound = 1, currentPlayerIndex = 0, firstPlayerIndex = 0, victorIndex = -1;
+		boolean inProgress = true;
+		Ability[] abilities = null;
+		UnitStatus.Type[] unitStatusTypes = null;
+		TileStatus.Type[] tileStatusTypes = null;
+		PlayerTheme[] themeNames = null;
+		PlayerTheme[] themes = null;
+		boolean[] defeated = null;
+		int[][] abilityUses = null;
+		UnitState[] units = null;
+		StatusState[] tileStatuses = new StatusState[0];
+
+		while (buffer.hasRemaining()) {
+			int tag = buffer.readVarInt();
+			SaveBuffer section = buffer.readSection();
+			if (tag != HEADER_SECTION && tag != NAMES_SECTION && (width < 0 || abilities == null)) {
+				throw new IOException("The save data doesn't start with its header and names.");
+			}
+
+			if (tag == HEADER_SECTION) {
+				width = section.readVarInt();
+				height = section.readVarInt();
+				playerCount = section.readVarInt();
+				currentRound = section.readVarInt();
+				currentPlayerIndex = checkIndex(section.readVarInt(), playerCount);
+				if (width == 0 || height == 0 || playerCount == 0) {
+					throw new IOException("The saved board or player list is empty.");
+				}
+			} else if (tag == NAMES_SECTION) {
+				abilities = readNames(section, Ability.class);
+				unitStatusTypes = readNames(section, UnitStatus.Type.class);
+				tileStatusTypes = readNames(section, TileStatus.Type.class);
+				themeNames = readNames(section, PlayerTheme.class);
+			} else if (tag == PLAYERS_SECTION) {
+				themes = new PlayerTheme[playerCount];
+				defeated = new boolean[playerCount];
+				abilityUses = new int[playerCount][Ability.values().length];
+				for (int playerIndex = 0; playerIndex < playerCount; playerIndex++) {
+					themes[playerIndex] = getNamed(themeNames, section.readVarInt());
+					defeated[playerIndex] = section.readBoolean();
+					for (Ability ability : abilities) {
+						int uses = section.readVarInt();
+						if (ability != null) { //Uses of abilities from newer versions are dropped along with the abilities.
+							abilityUses[playerIndex][ability.ordinal()] = uses;
+						}
+					}
+				}
+			} else if (tag == UNITS_SECTION) {
+				units = new UnitState[section.readVarInt()];
+				for (int index = 0; index < units.length; index++) {
+					units[index] = UnitState.read(section.readSection(), width, height, playerCount, abilities, unitStatusTypes);
+				}
+			} else if (tag == TILE_STATUSES_SECTION) {
+				tileStatuses = new StatusState[section.readVarInt()];
+				for (int index = 0; index < tileStatuses.length; index++) {
+					tileStatuses[index] = StatusState.read(section, section.readVarInt(), section.readVarInt(), width, height, tileStatusTypes);
+				}
+			} else if (tag == TURN_SECTION) {
+				firstPlayerIndex = checkIndex(section.readVarInt(), playerCount);
+				victorIndex = section.readSignedVarInt();
+				if (victorIndex >= 0) {
+					checkIndex(victorIndex, playerCount);
+				}
+				inProgress = section.readBoolean();
+			}
+		}
+
+		if (themes == null || units == null) {
+			throw new IOException("The save data is missing its players or units.");
+		}
+		return new MatchSnapshot(width, height, currentPlayerIndex, firstPlayerIndex, currentRound, inProgress, victorIndex,
+				themes, defeated, abilityUses, units, tileStatuses);
+	}
+
+	/**
+	 * Draws a tiny map of the board on a preview's thumbnail: a pixel for each unit's owner, and for each tile status.
+	 *
+	 * @param preview the preview of this snapshot.
+	 */
+	void drawThumbnail(SavePreview preview) {
+		for (StatusState status : tileStatuses) {
+			preview.drawStatus(status.x, status.y);
+		}
+		for (UnitState unit : units) {
+			if (unit.owner >= 0) {
+				preview.drawUnit(unit.x, unit.y, unit.owner);
+			}
+		}
+	}
+
+	/** Writes a finished section with its tag, and clears it for the next one. */
+	private static void writeSection(SaveBuffer buffer, int tag, SaveBuffer section) {
+		buffer.writeVarInt(tag);
+		buffer.writeSection(section);
+		section.clear();
+	}
+
+	/** Writes the names of every constant of an enum. */
+	private static void writeNames(SaveBuffer buffer, Enum<?>[] values) {
+		buffer.writeVarInt(values.length);
+		for (Enum<?> value : values) {
+			buffer.writeString(value.name());
+		}
+	}
+
+	/**
+	 * Reads a list of enum constant names written by writeNames.
+	 *
+	 * @return the current constants with those names, indexed as in the list, with null for names this version doesn't have.
+	 * @throws IOException if a name is missing.
+	 */
+	private static <E extends Enum<E>> E[] readNames(SaveBuffer buffer, Class<E> type) throws IOException {
+		@SuppressWarnings("unchecked")
+		E[] values = (E[]) Array.newInstance(type, buffer.readVarInt());
+		for (int index = 0; index < values.length; index++) {
+			String name = buffer.readString();
+			if (name == null) {
+				throw new IOException("The save data has a missing name.");
+			}
+			try {
+				values[index] = Enum.valueOf(type, name);
+			} catch (IllegalArgumentException exception) {
+				//Left null, since newer versions write every constant they have, whether or not the match uses it.
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return the constant at an index in a list read by readNames.
+	 * @throws IOException if the index is out of range, or the constant was added in a newer version of Tics.
+	 */
+	private static <E> E getNamed(E[] values, int index) throws IOException {
+		E value = values[checkIndex(index, values.length)];
+		if (value == null) {
+			throw new IOException("The save data uses something that this version of Tics doesn't have.");
+		}
+		return value;
+	}
+
+	/** @return an index, after checking that it's within a list of a given size. */
+	private static int checkIndex(int index, int size) throws IOException {
+		if (index < 0 || index >= size) {
+			throw new IOException("The save data refers to something that doesn't exist.");
+		}
+		return index;
+	}
+
+	/** @return the board's width in tiles. */
+	public int getWidth() {
+		return width;
+	}
+
+	/** @return the board's height in tiles. */
+	public int getHeight() {
+		return height;
+	}
+
+	/** @return the index of the player who had the turn. */
+	public int getCurrentPlayerIndex() {
+		return currentPlayerIndex;
+	}
+
+	/** @return the index of the player who moved first. */
+	public int getFirstPlayerIndex() {
+		return firstPlayerIndex;
+	}
+
+	/** @return the number of players in the match. */
+	public int getPlayerCount() {
+		return themes.length;
+	}
+
+	/** @return true if the match was still being played when the snapshot was taken. */
+	public boolean isInProgress() {
+		return inProgress;
+	}
+
+	/** @return the number of the round the snapshot was taken in. */
+	public int getCurrentRound() {
+		return currentRound;
+	}
+
+	/** @return the index of an object in an array, or -1 if it isn't there. */
+	private static int indexOf(Object[] array, Object object) {
+		return object == null ? -1 : Arrays.asList(array).indexOf(object);
+	}
+
+	/** A copy of a unit, and where it stood. */
+	private static class UnitState {
+		final int x, y;
+		/** The index of the player who owned the unit, or -1 if nobody did. */
+		final int owner;
+		final String name, torsoImagePath;
+		final Ability[] abilities;
+		final int currentHealth, currentMove;
+		final boolean active;
+		final StatusState[] statuses;
+
+		UnitState(int x, int y, int owner, Unit unit) {
+			this.x = x;
+			this.y = y;
+			this.owner = owner;
+			name = unit.getName();
+			torsoImagePath = unit.getTorsoImagePath();
+			abilities = unit.getAbilities().toArray(new Ability[unit.getAbilities().size()]);
+			currentHealth = unit.getCurrentHealth();
+			currentMove = unit.getCurrentMove();
+			active = unit.isActive();
+
+			statuses = new StatusState[unit.getStatuses().size()];
+			int index = 0;
+			for (UnitStatus status : unit.getStatuses()) {
+				statuses[index++] = new StatusState(x, y, status.getType().ordinal(), status.getRemainingDuration(), status.getCreatorIndex());
+			}
+		}
+
+		/** Creates a unit's state from decoded values. */
+		UnitState(int x, int y, int owner, String name, String torsoImagePath, Ability[] abilities,
+				int currentHealth, int currentMove, boolean active, StatusState[] statuses) {
+			this.x = x;
+			this.y = y;
+			this.owner = owner;
+			this.name = name;
+			this.torsoImagePath = torsoImagePath;
+			this.abilities = abilities;
+			this.currentHealth = currentHealth;
+			this.currentMove = currentMove;
+			this.active = active;
+			this.statuses = statuses;
+		}
+
+		/** Writes the unit, as described in MatchSnapshot.write. */
+		void write(SaveBuffer buffer) {
+			buffer.writeVarInt(x);
+			buffer.writeVarInt(y);
+			buffer.writeSignedVarInt(owner);
+			buffer.writeString(name);
+			buffer.writeString(torsoImagePath);
+			buffer.writeVarInt(abilities.length);
+			for (Ability ability : abilities) {
+				buffer.writeVarInt(ability.ordinal());
+			}
+			buffer.writeSignedVarInt(currentHealth);
+			buffer.writeSignedVarInt(currentMove);
+			buffer.writeBoolean(active);
+			buffer.writeVarInt(statuses.length);
+			for (StatusState status : statuses) {
+				status.write(buffer, false);
+			}
+		}
+
+		/**
+		 * Reads a unit written by write.
+		 *
+		 * @param abilities the saved ability names, indexed as in the save.
+		 * @param statusTypes the saved unit status type names, indexed as in the save.
+		 */
+		static UnitState read(SaveBuffer buffer, int width, int height, int playerCount,
+				Ability[] abilities, UnitStatus.Type[] statusTypes) throws IOException {
+			int x = checkIndex(buffer.readVarInt(), width);
+			int y = checkIndex(buffer.readVarInt(), height);
+			int owner = buffer.readSignedVarInt();
+			if (owner >= 0) {
+				checkIndex(owner, playerCount);
+			}
+			String name = buffer.readString();
+			String torsoImagePath = buffer.readString();
+			Ability[] unitAbilities = new Ability[buffer.readVarInt()];
+			for (int index = 0; index < unitAbilities.length; index++) {
+				unitAbilities[index] = getNamed(abilities, buffer.readVarInt());
+			}
+			int currentHealth = buffer.readSignedVarInt();
+			int currentMove = buffer.readSignedVarInt();
+			boolean active = buffer.readBoolean();
+			StatusState[] statuses = new StatusState[buffer.readVarInt()];
+			for (int index = 0; index < statuses.length; index++) {
+				statuses[index] = StatusState.read(buffer, x, y, width, height, statusTypes);
+			}
+			return new UnitState(x, y, owner, name, torsoImagePath, unitAbilities, currentHealth, currentMove, active, statuses);
+		}
+
+		Unit createUnit() {
+			Unit unit = new Unit(name, torsoImagePath, new ArrayList<Ability>(Arrays.asList(abilities)));
+			unit.setCurrentHealth(currentHealth);
+			unit.setCurrentMove(currentMove);
+			unit.setActive(active);
+			for (StatusState status : statuses) {
+				unit.applyStatus(new UnitStatus(UnitStatus.Type.values()[status.type], status.remainingDuration, status.creatorIndex));
+			}
+			return unit;
+		}
+	}
+
+	/** A copy of a unit or tile status, and where it was. */
+	private static class StatusState {
+		final int x, y;
+		/** The ordinal of the status type. */
+		final int type;
+		final int remainingDuration, creatorIndex;
+
+		StatusState(int x, int y, int type, int remainingDuration, int creatorIndex) {
+			this.x = x;
+			this.y = y;
+			this.type = type;
+			this.remainingDuration = remainingDuration;
+			this.creatorIndex = creatorIndex;
+		}
+
+		/**
+		 * Writes the status, as described in MatchSnapshot.write.
+		 *
+		 * @param positioned true to write the status's position, for tile statuses.
+		 */
+		void write(SaveBuffer buffer, boolean positioned) {
+			if (positioned) {
+				buffer.writeVarInt(x);
+				buffer.writeVarInt(y);
+			}
+			buffer.writeVarInt(type);
+			buffer.writeSignedVarInt(remainingDuration);
+			buffer.writeSignedVarInt(creatorIndex);
+		}
+
+		/**
+		 * Reads a status written by write, once its position is known.
+		 *
+		 * @param types the saved status type names, indexed as in the save.
+		 */
+		static StatusState read(SaveBuffer buffer, int x, int y, int width, int height, Enum<?>[] types) throws IOException {
+			checkIndex(x, width);
+			checkIndex(y, height);
+			int type = getNamed(types, buffer.readVarInt()).ordinal();
+			return new StatusState(x, y, type, buffer.readSignedVarInt(), buffer.readSignedVarInt());
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package tics.match;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Player;
+import tics.match.model.Tile;
+import tics.match.model.Unit;
+
+/**
+ * Reads a replay file written by ReplayRecorder, and rebuilds the match as it was at any turn.
+ *
+ * The file is memory mapped rather than read, so only the parts that are looked at are brought in from disk.
+ * Jumping to a turn restores the nearest keyframe before it and replays the actions from there,
+ * which is never more than a keyframe interval's worth of turns, however long the match is.
+ *
+ * Run on its own, it describes a replay, or the state of the match at a turn:
+ *   ReplayReader replay.tcp [turn]
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class ReplayReader {
+	/** The mapped file. */
+	private final MappedByteBuffer buffer;
+	/** The number of turns between keyframes. */
+	private final int keyframeInterval;
+	/** The turn of each keyframe, in order, and the offset of its record. */
+	private final int[] keyframeTurns;
+	private final long[] keyframeOffsets;
+	/** The offset of the index, which is where the records end. */
+	private final long indexOffset;
+	/** The number of turns recorded, including a last turn that the match ended partway through. */
+	private final int turnCount;
+
+	/**
+	 * Opens a replay file and reads its index.
+	 *
+	 * @param filePath the path to the replay file.
+	 * @throws IOException if the file can't be read, or isn't a finished replay.
+	 */
+	public ReplayReader(String filePath) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		try {
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} finally {
+			file.close(); //The mapping stays valid after the file is closed.
+		}
+
+		int trailer = 8 + 4;
+		if (buffer.capacity() < 12 + trailer || buffer.getInt(0) != ReplayRecorder.MAGIC
+				|| buffer.getInt(buffer.capacity() - 4) != ReplayRecorder.MAGIC) {
+			throw new IOException(filePath + " isn't a finished replay.");
+		}
+		if (buffer.getInt(4) != ReplayRecorder.VERSION) {
+			throw new IOException(filePath + " isn't a replay of version " + ReplayRecorder.VERSION + ".");
+		}
+		keyframeInterval = buffer.getInt(8);
+		if (keyframeInterval < 1) {
+			throw new IOException(filePath + " has a damaged header.");
+		}
+
+		indexOffset = buffer.getLong(buffer.capacity() - trailer);
+		if (indexOffset < 12 || indexOffset > buffer.capacity() - trailer - 8) {
+			throw new IOException(filePath + " has a damaged index.");
+		}
+		buffer.position((int) indexOffset);
+		int keyframeCount = buffer.getInt();
+		if (keyframeCount < 0 || keyframeCount != (buffer.capacity() - trailer - indexOffset - 8) / 12) { //Each keyframe takes 12 bytes.
+			throw new IOException(filePath + " has a damaged index.");
+		}
+		keyframeTurns = new int[keyframeCount];
+		keyframeOffsets = new long[keyframeCount];
+		for (int keyframe = 0; keyframe < keyframeCount; keyframe++) {
+			keyframeTurns[keyframe] = buffer.getInt();
+			keyframeOffsets[keyframe] = buffer.getLong();
+			if (keyframe > 0 && (keyframeTurns[keyframe] <= keyframeTurns[keyframe - 1]
+					|| keyframeOffsets[keyframe] <= keyframeOffsets[keyframe - 1])) {
+				throw new IOException(filePath + " has a damaged index.");
+			}
+		}
+		turnCount = buffer.getInt();
+		if (keyframeCount == 0 || keyframeTurns[0] != 0) {
+			throw new IOException(filePath + " has no starting keyframe.");
+		}
+		if (turnCount < keyframeTurns[keyframeCount - 1]) {
+			throw new IOException(filePath + " has a damaged index.");
+		}
+	}
+
+	/** @return the number of turns in the replay. Turn 0 is the start, and the last turn is the end of the match. */
+	public int getTurnCount() {
+		return turnCount;
+	}
+
+	/** @return the number of turns between keyframes. */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Rebuilds the match as it was at the end of a turn.
+	 *
+	 * @param turn the number of turns that have been played, from 0 for the start of the match up to getTurnCount.
+	 * @param displayed false to create the match without a panel.
+	 * @return the match, which can be played on from there.
+	 * @throws IOException if the replay is damaged.
+	 */
+	public Match getMatchAt(int turn, boolean displayed) throws IOException {
+		if (turn < 0 || turn > turnCount) {
+			throw new IllegalArgumentException("The replay only has turns 0 to " + turnCount + ".");
+		}
+
+		int keyframe = 0;
+		while (keyframe + 1 < keyframeTurns.length && keyframeTurns[keyframe + 1] <= turn) {
+			keyframe++; //There are only a few keyframes per thousand turns, so a linear search is plenty.
+		}
+		long end = keyframe + 1 < keyframeOffsets.length ? keyframeOffsets[keyframe + 1] : indexOffset;
+		SaveBuffer records = copy(keyframeOffsets[keyframe], end);
+
+		if (records.readByte() != ReplayRecorder.KEYFRAME) {
+			throw new IOException("The replay has a damaged keyframe.");
+		}
+		int playedTurns = records.readVarInt();
+		if (playedTurns != keyframeTurns[keyframe]) {
+			throw new IOException("The replay has a damaged keyframe.");
+		}
+		int length = records.readVarInt();
+		int start = records.getPosition();
+		records.skip(length);
+		Match match = MatchSaveData.fromByteArray(records.getBytes(), start, length).createMatch(displayed);
+		replay(match, records, turn - playedTurns);
+		return match;
+	}
+
+	/**
+	 * Replays a number of turns of actions.
+	 *
+	 * @throws IOException if the actions run out first, or can't be played.
+	 */
+	private static void replay(Match match, SaveBuffer records, int turns) throws IOException {
+		Board board = match.getBoard();
+		Ability[] abilities = Ability.values();
+		boolean surrendered = false;
+		while (turns > 0) {
+			int action = records.readByte();
+			boolean replayed = true;
+			if (action == ReplayRecorder.MOVE) {
+				Tile origin = readTile(board, records);
+				Tile target = readTile(board, records);
+				replayed = match.moveUnit(origin, target);
+			} else if (action == ReplayRecorder.ABILITY) {
+				Tile origin = readTile(board, records);
+				int ability = records.readVarInt();
+				if (ability < 0 || ability >= abilities.length) {
+					throw new IOException("The replay has an unknown ability.");
+				}
+				Tile target = readTile(board, records);
+				replayed = match.useAbility(origin, abilities[ability], target);
+			} else if (action == ReplayRecorder.SURRENDER) {
+				match.surrender();
+				surrendered = true;
+			} else if (action == ReplayRecorder.END_TURN) {
+				if (!surrendered) {
+					match.endTurn();
+				}
+				surrendered = false;
+				turns--;
+			} else if (action == ReplayRecorder.FINISH) {
+				turns--;
+			} else {
+				throw new IOException("The replay has an unknown action.");
+			}
+
+			if (!replayed) {
+				throw new IOException("The replay has an action that can't be played. It may have been recorded with different rules.");
+			}
+		}
+	}
+
+	/**
+	 * Reads the position of a tile that an action was taken on.
+	 *
+	 * @throws IOException if the position isn't on the board.
+	 */
+	private static Tile readTile(Board board, SaveBuffer records) throws IOException {
+		Tile tile = board.getTile(records.readVarInt(), records.readVarInt());
+		if (tile == null) {
+			throw new IOException("The replay has an action off the board.");
+		}
+		return tile;
+	}
+
+	/**
+	 * Copies part of the mapped file onto the heap, so it can be decoded.
+	 * Only the records between two keyframes are ever copied, so this stays small however long the replay is.
+	 */
+	private SaveBuffer copy(long start, long end) throws IOException {
+		if (start < 0 || end > indexOffset || start >= end) {
+			throw new EOFException("The replay has a damaged index.");
+		}
+		byte[] bytes = new byte[(int) (end - start)];
+		synchronized (buffer) { //The buffer's position is shared, so reads from several threads take turns.
+			buffer.position((int) start);
+			buffer.get(bytes);
+		}
+		return new SaveBuffer(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Describes a replay, or the state of its match at a turn.
+	 *
+	 * @param args the path to the replay file, and optionally a turn.
+	 */
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: ReplayReader <replay file> [turn]");
+			return;
+		}
+
+		ReplayReader reader = new ReplayReader(args[0]);
+		System.out.println(reader.getTurnCount() + " turns, with a keyframe every " + reader.getKeyframeInterval() + " turns.");
+		int turn = args.length > 1 ? Integer.parseInt(args[1]) : reader.getTurnCount();
+
+		long startTime = System.nanoTime();
+		Match match = reader.getMatchAt(turn, false);
+		double milliseconds = (System.nanoTime() - startTime) / 1000000.0;
+
+		System.out.println("Turn " + turn + " (round " + match.getCurrentRound() + ", restored in " + String.format("%.2f", milliseconds) + " ms):");
+		for (Player player : match.getPlayers()) {
+			int health = 0;
+			for (Unit unit : player.getUnits()) {
+				health += unit.getCurrentHealth();
+			}
+			System.out.println("  " + player.getTheme() + ": " + player.getUnits().size() + " units, " + health + " health"
+					+ (player.isDefeated() ? ", defeated" : "") + (player == match.getCurrentPlayer() && match.isInProgress() ? ", to play" : ""));
+		}
+		if (!match.isInProgress()) {
+			System.out.println("  " + (match.getVictor() == null ? "The match was a draw." : match.getVictor().getTheme() + " won."));
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package tics.match;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import tics.match.model.Ability;
+import tics.match.model.Tile;
+
+/**
+ * Records a whole match to a replay file, which ReplayReader can jump around in.
+ *
+ * The file holds a stream of actions, with a full save of the match (a keyframe) every few turns,
+ * so any turn can be rebuilt from the nearest keyframe before it plus at most a few turns of actions.
+ *
+ * The file starts with int MAGIC, int VERSION and int keyframe interval. Then come records, each a byte code:
+ *   MOVE originX originY targetX targetY
+ *   ABILITY originX originY abilityOrdinal targetX targetY
+ *   SURRENDER (which also ends the turn, so the END_TURN after it is only a marker)
+ *   END_TURN
+ *   FINISH (the end of a last turn that the match ended partway through)
+ *   KEYFRAME turn length, then length bytes of MatchSaveData
+ * All numbers in records are varints. The first record is the keyframe for turn 0, before anyone has acted.
+ * After the records comes the index: int keyframe count, then each keyframe's int turn and long file offset,
+ * then int turn count, and finally a long with the index's own offset and the int MAGIC again.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class ReplayRecorder implements MatchRecorder {
+	/** The first four bytes of every replay file: "TICP". */
+	static final int MAGIC = 0x54494350;
+	/** The version of the file format. */
+	static final int VERSION = 1;
+	/** The default number of turns between keyframes. */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 10;
+
+	/** The codes that start each record. */
+	static final int MOVE = 0, ABILITY = 1, SURRENDER = 2, END_TURN = 3, FINISH = 4, KEYFRAME = 5;
+
+	/** The file being written. */
+	private final OutputStream output;
+	/** The number of bytes written so far, which is the offset of the next record. */
+	private long position;
+	/** The number of turns between keyframes. */
+	private final int keyframeInterval;
+	/** The buffer each record is encoded in. */
+	private final SaveBuffer record = new SaveBuffer();
+	/** The index, encoded as it goes: each keyframe's turn and offset. */
+	private final SaveBuffer index = new SaveBuffer();
+	private int keyframeCount;
+	/** The number of turns recorded so far. */
+	private int turnCount;
+
+	/**
+	 * Starts recording a match that nobody has acted in yet.
+	 *
+	 * @param match the match to record.
+	 * @param filePath the path to the replay file, which is replaced if it exists.
+	 * @param keyframeInterval the number of turns between keyframes, which must be at least 1. Seeking replays up to this many turns of actions.
+	 * @throws IOException if the file couldn't be written.
+	 * @throws IllegalArgumentException if the keyframe interval is less than 1.
+	 */
+	public ReplayRecorder(Match match, String filePath, int keyframeInterval) throws IOException {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("Replays need a keyframe at least every turn, not every " + keyframeInterval + ".");
+		}
+		this.keyframeInterval = keyframeInterval;
+		output = new BufferedOutputStream(new FileOutputStream(filePath));
+		boolean started = false;
+		try {
+			record.writeInt(MAGIC);
+			record.writeInt(VERSION);
+			record.writeInt(keyframeInterval);
+			writeRecord();
+			writeKeyframe(match);
+			started = true;
+		} finally {
+			if (!started) {
+				output.close(); //Nothing else can close the file if the recorder was never made.
+			}
+		}
+		match.setRecorder(this);
+	}
+
+	@Override
+	public void unitMoved(Match match, Tile origin, Tile target) {
+		record.writeByte(MOVE);
+		record.writeVarInt(origin.getGridX());
+		record.writeVarInt(origin.getGridY());
+		record.writeVarInt(target.getGridX());
+		record.writeVarInt(target.getGridY());
+		writeRecordQuietly();
+	}
+
+	@Override
+	public void abilityUsed(Match match, Tile origin, Ability ability, Tile target) {
+		record.writeByte(ABILITY);
+		record.writeVarInt(origin.getGridX());
+		record.writeVarInt(origin.getGridY());
+		record.writeVarInt(ability.ordinal());
+		record.writeVarInt(target.getGridX());
+		record.writeVarInt(target.getGridY());
+		writeRecordQuietly();
+	}
+
+	@Override
+	public void surrendering(Match match) {
+		record.writeByte(SURRENDER);
+		writeRecordQuietly();
+	}
+
+	@Override
+	public void turnEnded(Match match) {
+		record.writeByte(END_TURN);
+		writeRecordQuietly();
+		turnCount++;
+		if (turnCount % keyframeInterval == 0 && match.isInProgress()) {
+			try {
+				writeKeyframe(match);
+			} catch (IOException exception) {
+				throw new IllegalStateException("The replay couldn't be written.", exception);
+			}
+		}
+	}
+
+	@Override
+	public void matchEnded(Match match) {
+		//The match can end partway through a turn, so the last turn is closed off in finish.
+	}
+
+	/**
+	 * Stops recording, and writes the index that makes the replay seekable.
+	 *
+	 * @param match the recorded match, once it's been played.
+	 * @throws IOException if the file couldn't be written.
+	 */
+	public void finish(Match match) throws IOException {
+		match.setRecorder(null);
+		try {
+			record.writeByte(FINISH);
+			writeRecord();
+			turnCount++;
+
+			long indexOffset = position;
+			record.writeInt(keyframeCount);
+			record.writeBytes(index.getBytes(), 0, index.size());
+			record.writeInt(turnCount);
+			record.writeInt((int) (indexOffset >>> 32));
+			record.writeInt((int) indexOffset);
+			record.writeInt(MAGIC);
+			writeRecord();
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Stops recording a match that couldn't be played to the end, and closes the file without its index,
+	 * so ReplayReader rejects it rather than showing a replay that stops partway.
+	 *
+	 * @param match the recorded match.
+	 * @throws IOException if the file couldn't be closed.
+	 */
+	public void abandon(Match match) throws IOException {
+		match.setRecorder(null);
+		output.close();
+	}
+
+	/** Writes a full save of the match, and adds it to the index. */
+	private void writeKeyframe(Match match) throws IOException {
+		index.writeInt(turnCount);
+		index.writeInt((int) (position >>> 32));
+		index.writeInt((int) position);
+		keyframeCount++;
+
+		byte[] keyframe = new MatchSaveData(match).toByteArray();
+		record.writeByte(KEYFRAME);
+		record.writeVarInt(turnCount);
+		record.writeVarInt(keyframe.length);
+		record.writeBytes(keyframe, 0, keyframe.length);
+		writeRecord();
+	}
+
+	/** Writes the encoded record, and clears it for the next one. */
+	private void writeRecord() throws IOException {
+		output.write(record.getBytes(), 0, record.size());
+		position += record.size();
+		record.clear();
+	}
+
+	/** Writes the encoded record from a MatchRecorder method, which can't throw IOExceptions. */
+	private void writeRecordQuietly() {
+		try {
+			writeRecord();
+		} catch (IOException exception) {
+			throw new IllegalStateException("The replay couldn't be written.", exception);
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package tics.match;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * A growable array of bytes that numbers and strings can be packed into and read back out of, for compact save files.
+ *
+ * Unsigned numbers are written as varints: seven bits per byte, least significant first, with the top bit set on every
+ * byte but the last, so small numbers like coordinates take a single byte. Signed numbers are zigzag encoded first,
+ * so that small negative numbers stay small. Strings are a varint length followed by UTF-8 bytes.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+class SaveBuffer {
+	/** The bytes written so far, or the bytes being read. */
+	private byte[] bytes;
+	/** The number of bytes written, or the end of the bytes being read. */
+	private int limit;
+	/** The position of the next byte to read. */
+	private int position;
+
+	/** Creates an empty buffer to write to. */
+	SaveBuffer() {
+		bytes = new byte[256];
+	}
+
+	/**
+	 * Creates a buffer to read from.
+	 *
+	 * @param bytes the bytes to read, which aren't copied.
+	 * @param offset the position of the first byte to read.
+	 * @param length the number of bytes that can be read.
+	 */
+	SaveBuffer(byte[] bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	// ================================= WRITING =======================================
+
+	/** Writes a single byte. */
+	void writeByte(int value) {
+		ensureCapacity(1);
+		bytes[limit++] = (byte) value;
+	}
+
+	/** Writes a four byte, big-endian int, for fields that must have a fixed size. */
+	void writeInt(int value) {
+		ensureCapacity(4);
+		bytes[limit++] = (byte) (value >>> 24);
+		bytes[limit++] = (byte) (value >>> 16);
+		bytes[limit++] = (byte) (value >>> 8);
+		bytes[limit++] = (byte) value;
+	}
+
+	/** Writes a number that isn't negative as a varint. */
+	void writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7f) != 0) {
+			bytes[limit++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		bytes[limit++] = (byte) value;
+	}
+
+	/** Writes a number that may be negative as a zigzag encoded varint. */
+	void writeSignedVarInt(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	/** Writes a long as a zigzag encoded varint. */
+	void writeSignedVarLong(long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		ensureCapacity(10);
+		while ((zigzag & ~0x7fL) != 0) {
+			bytes[limit++] = (byte) ((zigzag & 0x7f) | 0x80);
+			zigzag >>>= 7;
+		}
+		bytes[limit++] = (byte) zigzag;
+	}
+
+	/** Writes a boolean as a single byte. */
+	void writeBoolean(boolean value) {
+		writeByte(value ? 1 : 0);
+	}
+
+	/** Writes a string, or null, as a varint length (plus one, so that null is 0) and its UTF-8 bytes. */
+	void writeString(String value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		byte[] encoded = encode(value);
+		writeVarInt(encoded.length + 1);
+		writeBytes(encoded, 0, encoded.length);
+	}
+
+	/** Writes raw bytes. */
+	void writeBytes(byte[] source, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(source, offset, bytes, limit, length);
+		limit += length;
+	}
+
+	/**
+	 * Writes the contents of another buffer, preceded by their length, so that a reader can skip them as a whole.
+	 *
+	 * @param section the buffer to write.
+	 */
+	void writeSection(SaveBuffer section) {
+		writeVarInt(section.limit);
+		writeBytes(section.bytes, 0, section.limit);
+	}
+
+	/**
+	 * Writes the part of a buffer that hasn't been read yet, preceded by its length, as writeSection would.
+	 * This copies a section that was read with readSection without decoding it.
+	 *
+	 * @param section the buffer to copy.
+	 */
+	void copySection(SaveBuffer section) {
+		writeVarInt(section.limit - section.position);
+		writeRemaining(section);
+	}
+
+	/** Writes the part of a buffer that hasn't been read yet, as raw bytes. */
+	void writeRemaining(SaveBuffer source) {
+		writeBytes(source.bytes, source.position, source.limit - source.position);
+	}
+
+	/** Forgets everything written, so the buffer can be reused. */
+	void clear() {
+		limit = 0;
+		position = 0;
+	}
+
+	/** @return the number of bytes written. */
+	int size() {
+		return limit;
+	}
+
+	/** @return the array the buffer writes to, which is only valid up to size. */
+	byte[] getBytes() {
+		return bytes;
+	}
+
+	/** @return a copy of the bytes written. */
+	byte[] toByteArray() {
+		return Arrays.copyOf(bytes, limit);
+	}
+
+	/** Makes room for a number of bytes. */
+	private void ensureCapacity(int extra) {
+		if (limit + extra > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, limit + extra));
+		}
+	}
+
+	// ================================= READING =======================================
+
+	/** @return the next byte, from 0 to 255. */
+	int readByte() throws IOException {
+		if (position >= limit) {
+			throw new EOFException("The save data ends unexpectedly.");
+		}
+		return bytes[position++] & 0xff;
+	}
+
+	/** @return the next four byte, big-endian int. */
+	int readInt() throws IOException {
+		return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+	}
+
+	/** @return the next varint. */
+	int readVarInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int next = readByte();
+			value |= (next & 0x7f) << shift;
+			if ((next & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("The save data has a malformed number.");
+	}
+
+	/** @return the next zigzag encoded varint. */
+	int readSignedVarInt() throws IOException {
+		int zigzag = readVarInt();
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	/** @return the next zigzag encoded long. */
+	long readSignedVarLong() throws IOException {
+		long zigzag = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int next = readByte();
+			zigzag |= (long) (next & 0x7f) << shift;
+			if ((next & 0x80) == 0) {
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+		}
+		throw new IOException("The save data has a malformed number.");
+	}
+
+	/** @return the next boolean. */
+	boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	/** @return the next string, which may be null. */
+	String readString() throws IOException {
+		int length = readVarInt() - 1;
+		if (length < 0) {
+			return null;
+		}
+		checkRemaining(length);
+		String value = new String(bytes, position, length, "UTF-8");
+		position += length;
+		return value;
+	}
+
+	/**
+	 * Reads a section written by writeSection, and moves past it.
+	 *
+	 * @return a buffer that reads only the section's contents.
+	 */
+	SaveBuffer readSection() throws IOException {
+		return readBytes(readVarInt());
+	}
+
+	/**
+	 * Reads a number of raw bytes, and moves past them.
+	 *
+	 * @return a buffer that reads only those bytes.
+	 */
+	SaveBuffer readBytes(int length) throws IOException {
+		checkRemaining(length);
+		SaveBuffer bytesRead = new SaveBuffer(bytes, position, length);
+		position += length;
+		return bytesRead;
+	}
+
+	/** Moves past a number of bytes without reading them. */
+	void skip(int length) throws IOException {
+		checkRemaining(length);
+		position += length;
+	}
+
+	/** @return true if there's anything left to read. */
+	boolean hasRemaining() {
+		return position < limit;
+	}
+
+	/** @return the position of the next byte to read. */
+	int getPosition() {
+		return position;
+	}
+
+	/** Checks that a number of bytes can still be read. */
+	private void checkRemaining(int length) throws IOException {
+		if (length < 0 || length > limit - position) {
+			throw new EOFException("The save data ends unexpectedly.");
+		}
+	}
+
+	/** @return a string's UTF-8 bytes. */
+	private static byte[] encode(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException exception) {
+			throw new IllegalStateException(exception); //Every Java platform supports UTF-8.
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package tics.match;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Upgrades saves written in older versions of the save format to the current one, so that changing the format never strands a game.
+ *
+ * Each migration upgrades a save from one version to the next, and older saves go through every migration after theirs in turn.
+ * Saves from before the binary format, which were written with Java serialization, count as version 0.
+ * Migrations work on the encoded save a section at a time, without creating a match: sections whose layout didn't change
+ * are copied as they are, without being decoded, and only the ones that did are rewritten.
+ * When the save format changes in a way that old readers can't skip over, VERSION goes up and a migration is added to MIGRATIONS.
+ *
+ * Old saves are upgraded in memory whenever they're loaded, so they can always be played. Run on its own, this rewrites every
+ * old save in a folder to the current version, on several threads at once, so that they don't have to be upgraded each time:
+ *   SaveMigration [folder] [--threads 4]
+ * Each upgraded save is checked by loading it before it replaces the old file, and keeps the old file's modification time.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class SaveMigration {
+	/** The version that saves written with Java serialization, before the binary format, are treated as. */
+	static final int SERIALIZED_VERSION = 0;
+	/** Every migration, indexed by the version it upgrades: the first upgrades serialized saves to version 1, and so on up to MatchSaveData.VERSION. */
+	private static final SaveMigration[] MIGRATIONS = { new SerializedSaveMigration(), new PreviewMigration() };
+
+	/** The version of the saves that this migration upgrades. */
+	private final int version;
+
+	/** @param version the version of the saves that the migration upgrades, to the version after it. */
+	SaveMigration(int version) {
+		this.version = version;
+	}
+
+	/**
+	 * Upgrades the body of a save to the next version.
+	 * By default, the preview is copied as it is, and each section is passed to upgradeSection.
+	 *
+	 * @param body the save after its version numbers, in this migration's version.
+	 * @param upgraded the buffer to write the body in the next version to.
+	 * @param savedAt the time the save was written, in milliseconds since 1970, or 0 if it isn't known.
+	 * @throws IOException if the save is damaged.
+	 */
+	void upgrade(SaveBuffer body, SaveBuffer upgraded, long savedAt) throws IOException {
+		if (version >= MatchSaveData.FIRST_PREVIEW_VERSION) {
+			int length = body.readInt();
+			upgraded.writeInt(length);
+			upgraded.writeRemaining(body.readBytes(length));
+		}
+		while (body.hasRemaining()) {
+			int tag = body.readVarInt();
+			upgradeSection(tag, body.readSection(), upgraded);
+		}
+	}
+
+	/**
+	 * Upgrades one section of a save to the next version. By default, it's copied as it is.
+	 *
+	 * @param tag the section's tag, from MatchSnapshot.
+	 * @param section the section, in this migration's version.
+	 * @param upgraded the buffer to write the tag and the section in the next version to.
+	 * @throws IOException if the section is damaged.
+	 */
+	void upgradeSection(int tag, SaveBuffer section, SaveBuffer upgraded) throws IOException {
+		upgraded.writeVarInt(tag);
+		upgraded.copySection(section);
+	}
+
+	/**
+	 * Upgrades the body of a save to the current version.
+	 *
+	 * @param body the save after its version numbers, or the whole save if it was written with Java serialization.
+	 * @param version the version the save was written in, which must be older than MatchSaveData.VERSION.
+	 * @param savedAt the time the save was written, in milliseconds since 1970, or 0 if it isn't known.
+	 * @return a buffer holding the body in the current version.
+	 * @throws IOException if the save is damaged, or its version is unknown.
+	 */
+	static SaveBuffer upgrade(SaveBuffer body, int version, long savedAt) throws IOException {
+		if (version < SERIALIZED_VERSION) {
+			throw new IOException("The game was saved in an unknown version of Tics.");
+		}
+		for (; version < MatchSaveData.VERSION; version++) {
+			SaveBuffer upgraded = new SaveBuffer();
+			MIGRATIONS[version].upgrade(body, upgraded, savedAt);
+			body = new SaveBuffer(upgraded.getBytes(), 0, upgraded.size());
+		}
+		return body;
+	}
+
+	/**
+	 * Rewrites a save in the current version, if it was written in an older one.
+	 *
+	 * @param filePath the path to the save.
+	 * @return true if the save was upgraded, or false if it was already current.
+	 * @throws IOException if the save couldn't be read, upgraded or written, in which case the file is left as it was.
+	 */
+	public static boolean migrate(String filePath) throws IOException {
+		File file = new File(filePath);
+		long savedAt = file.lastModified();
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		byte[] data;
+		try {
+			data = new byte[(int) input.length()];
+			input.readFully(data);
+		} finally {
+			input.close();
+		}
+
+		SaveBuffer buffer = new SaveBuffer(data, 0, data.length);
+		int version = SERIALIZED_VERSION;
+		if (!SerializedSaveMigration.isSerialized(data, 0, data.length)) {
+			if (data.length < 4 || buffer.readInt() != MatchSaveData.MAGIC) {
+				throw new IOException("The file doesn't seem to contain Tics game data.");
+			}
+			version = buffer.readVarInt();
+			if (buffer.readVarInt() > MatchSaveData.VERSION) {
+				throw new IOException("The game was saved by a newer version of Tics.");
+			}
+			if (version >= MatchSaveData.VERSION) {
+				return false;
+			}
+		}
+
+		SaveBuffer upgraded = new SaveBuffer();
+		MatchSaveData.writeVersions(upgraded);
+		upgraded.writeRemaining(upgrade(buffer, version, savedAt));
+		MatchSaveData.fromByteArray(upgraded.getBytes(), 0, upgraded.size()); //Never replace a save with one that can't be loaded.
+
+		MatchSaveData.writeFile(filePath, upgraded.getBytes(), upgraded.size());
+		file.setLastModified(savedAt); //Upgrading a save doesn't make it any newer.
+		return true;
+	}
+
+	/**
+	 * Upgrades every save in a folder.
+	 *
+	 * @param args the folder, which is the save folder if it's left out, and optionally --threads and the number of threads.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String folderPath = MatchSaveData.SAVE_FILE_FOLDER;
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int index = 0; index < args.length; index++) {
+				if (args[index].equals("--threads")) {
+					threads = Integer.parseInt(args[++index]);
+				} else {
+					folderPath = args[index];
+				}
+			}
+			if (threads < 1) {
+				throw new IllegalArgumentException("The number of threads must be at least 1.");
+			}
+		} catch (RuntimeException exception) { //Covers bad or non-positive numbers and missing values alike.
+			System.err.println("Usage: SaveMigration [folder] [--threads 4]");
+			return;
+		}
+
+		File folder = new File(folderPath);
+		File[] saves = folder.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith("." + MatchSaveData.SAVE_FILE_EXTENSION);
+			}
+		});
+		if (saves == null) {
+			System.err.println(folder + " isn't a folder.");
+			return;
+		}
+		Arrays.sort(saves);
+
+		long startTime = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (final File save : saves) {
+			futures.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws IOException {
+					return migrate(save.getPath());
+				}
+			}));
+		}
+
+		int migrated = 0, failed = 0;
+		try {
+			for (int index = 0; index < saves.length; index++) {
+				try {
+					if (futures.get(index).get()) {
+						migrated++;
+						System.out.println(saves[index].getName() + "  upgraded");
+					}
+				} catch (ExecutionException exception) {
+					failed++;
+					System.out.println(saves[index].getName() + "  failed: " + exception.getCause().getMessage());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		System.out.println(migrated + " of " + saves.length + " saves upgraded, " + failed + " failed, in "
+				+ String.format("%.1f", (System.nanoTime() - startTime) / 1000000.0) + " ms.");
+	}
+
+	/**
+	 * Upgrades version 1 saves, which have no preview, by adding one.
+	 * The sections are the same in version 2, so they're copied as they are, and the preview is built from the few fields
+	 * it needs as they go past, without decoding the rest of the match.
+	 */
+	private static class PreviewMigration extends SaveMigration {
+		private PreviewMigration() {
+			super(1);
+		}
+
+		@Override
+		void upgrade(SaveBuffer body, SaveBuffer upgraded, long savedAt) throws IOException {
+			SaveBuffer sections = new SaveBuffer();
+			int width = -1, height = -1, playerCount = 0, currentRound = 1, currentPlayerIndex = 0;
+			boolean inProgress = true;
+			ArrayList<int[]> units = new ArrayList<int[]>(), tileStatuses = new ArrayList<int[]>();
+			while (body.hasRemaining()) {
+				int tag = body.readVarInt();
+				SaveBuffer section = body.readSection();
+				sections.writeVarInt(tag);
+				sections.copySection(section); //This leaves the section where it was, so its fields can still be read.
+
+				if (tag == MatchSnapshot.HEADER_SECTION) {
+					width = section.readVarInt();
+					height = section.readVarInt();
+					playerCount = section.readVarInt();
+					currentRound = section.readVarInt();
+					currentPlayerIndex = section.readVarInt();
+				} else if (tag == MatchSnapshot.UNITS_SECTION) {
+					for (int count = section.readVarInt(); count > 0; count--) {
+						SaveBuffer unit = section.readSection();
+						units.add(new int[] { unit.readVarInt(), unit.readVarInt(), unit.readSignedVarInt() });
+					}
+				} else if (tag == MatchSnapshot.TILE_STATUSES_SECTION) {
+					for (int count = section.readVarInt(); count > 0; count--) {
+						tileStatuses.add(new int[] { section.readVarInt(), section.readVarInt() });
+						section.readVarInt(); //The type,
+						section.readSignedVarInt(); //duration
+						section.readSignedVarInt(); //and creator don't show in the preview.
+					}
+				} else if (tag == MatchSnapshot.TURN_SECTION) {
+					section.readVarInt(); //The first player.
+					section.readSignedVarInt(); //The victor.
+					inProgress = section.readBoolean();
+				}
+			}
+			if (width <= 0 || height <= 0) {
+				throw new IOException("The save has no board.");
+			}
+
+			SavePreview savePreview = new SavePreview(width, height, playerCount, currentRound, currentPlayerIndex, inProgress, savedAt);
+			for (int[] status : tileStatuses) {
+				if (isOnBoard(status[0], status[1], width, height)) {
+					savePreview.drawStatus(status[0], status[1]);
+				}
+			}
+			for (int[] unit : units) {
+				if (isOnBoard(unit[0], unit[1], width, height) && unit[2] >= 0) {
+					savePreview.drawUnit(unit[0], unit[1], unit[2]);
+				}
+			}
+
+			SaveBuffer preview = new SaveBuffer();
+			savePreview.write(preview);
+			upgraded.writeInt(preview.size());
+			upgraded.writeBytes(preview.getBytes(), 0, preview.size());
+			upgraded.writeBytes(sections.getBytes(), 0, sections.size());
+		}
+
+		/** @return true if a tile is on a board of the given size. */
+		private static boolean isOnBoard(int x, int y, int width, int height) {
+			return x >= 0 && y >= 0 && x < width && y < height;
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package tics.match;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import tics.util.load.ColourRole;
+
+/**
+ * The header at the start of every save, which describes the match without having to load it:
+ * its board size, players, round and current player, when it was saved, and a tiny map of the board.
+ *
+ * A save starts with int MAGIC, varint VERSION and varint COMPATIBLE_VERSION, then a four byte length and the preview,
+ * so the preview is always within the first few bytes of the file. read fetches it with a single positional read,
+ * so listing thousands of saves reads a couple of kilobytes from each, however large they are.
+ *
+ * The preview's fields are varints, in this order, and fields can be added to the end, since readers skip the rest:
+ *   width, height, players, current round, current player index, whether the match is in progress,
+ *   the time it was saved (a zigzag encoded long, in milliseconds since 1970), thumbnail width, thumbnail height,
+ *   then a byte per thumbnail pixel.
+ *
+ * Run on its own, it lists the saves in a folder, which is the quickest way to browse a large folder of saves:
+ *   SavePreview [folder]
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class SavePreview {
+	/** The largest width or height of a thumbnail, in pixels. */
+	public static final int MAXIMUM_THUMBNAIL_SIZE = 32;
+	/** The values of thumbnail pixels: nothing, a tile status, or a unit, whose owner's index is added to FIRST_PLAYER. */
+	public static final byte EMPTY = 0, STATUS = 1, FIRST_PLAYER = 2;
+	/** The number of bytes fetched from the start of a save, which holds every preview that has the largest thumbnail. */
+	private static final int READ_SIZE = 2048;
+
+	private final int width, height, playerCount, currentRound, currentPlayerIndex;
+	private final boolean inProgress;
+	/** The time the match was saved, in milliseconds since 1970. */
+	private final long savedAt;
+	private final int thumbnailWidth, thumbnailHeight;
+	/** The thumbnail's pixels, row by row. */
+	private final byte[] thumbnail;
+
+	/**
+	 * Creates the preview of a snapshot.
+	 *
+	 * @param snapshot the match to preview.
+	 * @param savedAt the time the match is being saved.
+	 */
+	SavePreview(MatchSnapshot snapshot, long savedAt) {
+		this(snapshot.getWidth(), snapshot.getHeight(), snapshot.getPlayerCount(), snapshot.getCurrentRound(),
+				snapshot.getCurrentPlayerIndex(), snapshot.isInProgress(), savedAt);
+		snapshot.drawThumbnail(this);
+	}
+
+	/**
+	 * Creates a preview with an empty thumbnail, which drawStatus and drawUnit then fill in.
+	 *
+	 * @param savedAt the time the match was saved.
+	 */
+	SavePreview(int width, int height, int playerCount, int currentRound, int currentPlayerIndex, boolean inProgress, long savedAt) {
+		this.width = width;
+		this.height = height;
+		this.playerCount = playerCount;
+		this.currentRound = currentRound;
+		this.currentPlayerIndex = currentPlayerIndex;
+		this.inProgress = inProgress;
+		this.savedAt = savedAt;
+
+		int longestSide = Math.max(width, height);
+		int scale = (longestSide + MAXIMUM_THUMBNAIL_SIZE - 1) / MAXIMUM_THUMBNAIL_SIZE; //The number of tiles per pixel.
+		thumbnailWidth = (width + scale - 1) / scale;
+		thumbnailHeight = (height + scale - 1) / scale;
+		thumbnail = new byte[thumbnailWidth * thumbnailHeight];
+	}
+
+	/** Creates a preview from decoded values. */
+	private SavePreview(int width, int height, int playerCount, int currentRound, int currentPlayerIndex, boolean inProgress,
+			long savedAt, int thumbnailWidth, int thumbnailHeight, byte[] thumbnail) {
+		this.width = width;
+		this.height = height;
+		this.playerCount = playerCount;
+		this.currentRound = currentRound;
+		this.currentPlayerIndex = currentPlayerIndex;
+		this.inProgress = inProgress;
+		this.savedAt = savedAt;
+		this.thumbnailWidth = thumbnailWidth;
+		this.thumbnailHeight = thumbnailHeight;
+		this.thumbnail = thumbnail;
+	}
+
+	/** @return the board's width in tiles. */
+	public int getWidth() {
+		return width;
+	}
+
+	/** @return the board's height in tiles. */
+	public int getHeight() {
+		return height;
+	}
+
+	/** @return the number of players. */
+	public int getPlayerCount() {
+		return playerCount;
+	}
+
+	/** @return the round the match was saved in. */
+	public int getCurrentRound() {
+		return currentRound;
+	}
+
+	/** @return the index of the player whose turn it was. */
+	public int getCurrentPlayerIndex() {
+		return currentPlayerIndex;
+	}
+
+	/** @return true if the match was still being played. */
+	public boolean isInProgress() {
+		return inProgress;
+	}
+
+	/** @return the time the match was saved, in milliseconds since 1970. */
+	public long getSavedAt() {
+		return savedAt;
+	}
+
+	/** @return a one line description of the saved match. */
+	public String getSummary() {
+		return width + "x" + height + ", " + playerCount + " players, round " + currentRound
+				+ (inProgress ? ", player " + (currentPlayerIndex + 1) + " to play" : ", finished");
+	}
+
+	/**
+	 * Draws the thumbnail, with each pixel scaled up to a square.
+	 *
+	 * @param pixelSize the width and height of each pixel's square.
+	 * @return the image.
+	 */
+	public BufferedImage createThumbnailImage(int pixelSize) {
+		int[] colours = new int[FIRST_PLAYER + playerCount];
+		colours[EMPTY] = ColourRole.NORMAL_TILE.get().getRGB();
+		colours[STATUS] = ColourRole.BLOCKED_TILE.get().getRGB();
+		for (int playerIndex = 0; playerIndex < playerCount; playerIndex++) {
+			colours[FIRST_PLAYER + playerIndex] = Color.HSBtoRGB((float) playerIndex / playerCount, 0.8f, 0.8f); //Evenly spaced hues.
+		}
+
+		BufferedImage image = new BufferedImage(thumbnailWidth * pixelSize, thumbnailHeight * pixelSize, BufferedImage.TYPE_INT_RGB);
+		int[] row = new int[image.getWidth()];
+		for (int y = 0; y < thumbnailHeight; y++) {
+			for (int x = 0; x < thumbnailWidth; x++) {
+				int pixel = thumbnail[y * thumbnailWidth + x];
+				Arrays.fill(row, x * pixelSize, (x + 1) * pixelSize, pixel < colours.length ? colours[pixel] : colours[EMPTY]);
+			}
+			for (int line = 0; line < pixelSize; line++) {
+				image.setRGB(0, y * pixelSize + line, row.length, 1, row, 0, row.length);
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Marks a tile with a status on the thumbnail, unless a unit has been drawn on the same pixel.
+	 *
+	 * @param x the tile's x coordinate, which must be on the board.
+	 * @param y the tile's y coordinate, which must be on the board.
+	 */
+	void drawStatus(int x, int y) {
+		int pixel = getPixel(x, y);
+		if (thumbnail[pixel] == EMPTY) {
+			thumbnail[pixel] = STATUS;
+		}
+	}
+
+	/**
+	 * Marks a tile with a unit on the thumbnail, which takes priority over statuses and earlier units on the same pixel.
+	 *
+	 * @param x the tile's x coordinate, which must be on the board.
+	 * @param y the tile's y coordinate, which must be on the board.
+	 * @param owner the index of the unit's owner.
+	 */
+	void drawUnit(int x, int y, int owner) {
+		thumbnail[getPixel(x, y)] = (byte) (FIRST_PLAYER + owner);
+	}
+
+	/** @return the index of the thumbnail pixel that covers a tile. */
+	private int getPixel(int x, int y) {
+		return (y * thumbnailHeight / height) * thumbnailWidth + x * thumbnailWidth / width;
+	}
+
+	/** Encodes the preview, as described above. */
+	void write(SaveBuffer buffer) {
+		buffer.writeVarInt(width);
+		buffer.writeVarInt(height);
+		buffer.writeVarInt(playerCount);
+		buffer.writeVarInt(currentRound);
+		buffer.writeVarInt(currentPlayerIndex);
+		buffer.writeBoolean(inProgress);
+		buffer.writeSignedVarLong(savedAt);
+		buffer.writeVarInt(thumbnailWidth);
+		buffer.writeVarInt(thumbnailHeight);
+		buffer.writeBytes(thumbnail, 0, thumbnail.length);
+	}
+
+	/** Decodes a preview written by write. */
+	static SavePreview read(SaveBuffer buffer) throws IOException {
+		int width = buffer.readVarInt();
+		int height = buffer.readVarInt();
+		int playerCount = buffer.readVarInt();
+		int currentRound = buffer.readVarInt();
+		int currentPlayerIndex = buffer.readVarInt();
+		boolean inProgress = buffer.readBoolean();
+		long savedAt = buffer.readSignedVarLong();
+		int thumbnailWidth = buffer.readVarInt();
+		int thumbnailHeight = buffer.readVarInt();
+		if (thumbnailWidth > MAXIMUM_THUMBNAIL_SIZE || thumbnailHeight > MAXIMUM_THUMBNAIL_SIZE) {
+			throw new IOException("The save's thumbnail is too large.");
+		}
+		byte[] thumbnail = new byte[thumbnailWidth * thumbnailHeight];
+		for (int index = 0; index < thumbnail.length; index++) {
+			thumbnail[index] = (byte) buffer.readByte();
+		}
+		return new SavePreview(width, height, playerCount, currentRound, currentPlayerIndex, inProgress,
+				savedAt, thumbnailWidth, thumbnailHeight, thumbnail);
+	}
+
+	/**
+	 * Reads the preview of a save, without reading the rest of the file.
+	 *
+	 * @param filePath the path to the save.
+	 * @return the preview, or null if the save was written before saves had previews.
+	 * @throws IOException if the file couldn't be read, or isn't a save.
+	 */
+	public static SavePreview read(String filePath) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer head = ByteBuffer.allocate(READ_SIZE);
+			readFully(channel, head, 0);
+
+			SaveBuffer buffer = new SaveBuffer(head.array(), 0, head.position());
+			if (SerializedSaveMigration.isSerialized(head.array(), 0, head.position())) {
+				return null;
+			}
+			if (head.position() < 4 || buffer.readInt() != MatchSaveData.MAGIC) {
+				throw new IOException("The file doesn't seem to contain Tics game data.");
+			}
+			if (buffer.readVarInt() < MatchSaveData.FIRST_PREVIEW_VERSION) {
+				return null;
+			}
+			buffer.readVarInt(); //The compatible version doesn't matter, since every version starts with the preview.
+			int length = buffer.readInt();
+			int start = buffer.getPosition();
+			if (length < 0 || length > READ_SIZE * 16) {
+				throw new IOException("The save's preview is damaged.");
+			}
+
+			if (start + length <= head.position()) {
+				return read(new SaveBuffer(head.array(), start, length));
+			}
+			ByteBuffer preview = ByteBuffer.allocate(length); //Only a preview from a future version could be this long.
+			readFully(channel, preview, start);
+			if (preview.hasRemaining()) {
+				throw new EOFException("The save ends in the middle of its preview.");
+			}
+			return read(new SaveBuffer(preview.array(), 0, length));
+		} finally {
+			file.close();
+		}
+	}
+
+	/** Fills a buffer from a position in a file, stopping early only at the end of the file. */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				return;
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Lists the saves in a folder, with their previews.
+	 *
+	 * @param args the folder, which is the save folder if it's left out.
+	 */
+	public static void main(String[] args) {
+		File folder = new File(args.length > 0 ? args[0] : MatchSaveData.SAVE_FILE_FOLDER);
+		File[] saves = folder.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith("." + MatchSaveData.SAVE_FILE_EXTENSION);
+			}
+		});
+		if (saves == null) {
+			System.err.println(folder + " isn't a folder.");
+			return;
+		}
+		Arrays.sort(saves);
+
+		long startTime = System.nanoTime();
+		DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+		for (File save : saves) {
+			String description;
+			try {
+				SavePreview preview = read(save.getPath());
+				description = preview == null ? "saved before previews" : dateFormat.format(new Date(preview.getSavedAt())) + "  " + preview.getSummary();
+			} catch (IOException exception) {
+				description = "unreadable: " + exception.getMessage();
+			}
+			System.out.println(save.getName() + "  " + description);
+		}
+		System.out.println(saves.length + " saves read in " + String.format("%.1f", (System.nanoTime() - startTime) / 1000000.0) + " ms.");
+	}
+}
@@ -0,0 +1,142 @@
+package tics.match;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Saves matches on a background thread, so the interface never waits for the disk.
+ *
+ * The match is copied into a snapshot straight away, on the calling thread, which only takes as long as copying its values.
+ * The snapshot is then encoded and written by a single background thread, so saves happen in the order they were asked for.
+ * MatchSaveData.save writes to a temporary file and renames it into place, so a crash never leaves a half-written save.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class SaveWriter {
+	/** The thread that writes saves. */
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Save writer");
+				thread.setDaemon(true); //Closing the window waits for saves with awaitPending instead.
+				return thread;
+			}
+		});
+
+	/** Is told how saves went, on the event dispatch thread. */
+	public interface Listener {
+		/**
+		 * Handles a save finishing.
+		 *
+		 * @param filePath the path the match was saved to, or null if a quicksave failed before it had one.
+		 * @param exception the reason the save failed, or null if it succeeded.
+		 */
+		void saveFinished(String filePath, IOException exception);
+	}
+
+	/**
+	 * Saves a match to a file in the background.
+	 *
+	 * @param match the match to save, which is copied before this returns.
+	 * @param filePath the path to save to.
+	 * @param listener told how the save went, or null.
+	 * @return the pending save.
+	 */
+	public static Future<String> save(Match match, final String filePath, final Listener listener) {
+		final MatchSaveData saveData = new MatchSaveData(match);
+		return EXECUTOR.submit(new Callable<String>() {
+			@Override
+			public String call() throws IOException {
+				try {
+					saveData.save(filePath);
+				} catch (IOException exception) {
+					report(listener, filePath, exception);
+					throw exception;
+				}
+				report(listener, filePath, null);
+				return filePath;
+			}
+		});
+	}
+
+	/**
+	 * Quicksaves a match in the background, to a new time-stamped file.
+	 *
+	 * @param match the match to save, which is copied before this returns.
+	 * @param listener told how the save went, or null.
+	 * @return the pending save, which gives the quicksave's path.
+	 */
+	public static Future<String> quicksave(Match match, final Listener listener) {
+		final MatchSaveData saveData = new MatchSaveData(match);
+		return EXECUTOR.submit(new Callable<String>() {
+			@Override
+			public String call() throws IOException {
+				String filePath;
+				try {
+					filePath = saveData.quicksave();
+				} catch (IOException exception) {
+					report(listener, null, exception);
+					throw exception;
+				}
+				report(listener, filePath, null);
+				return filePath;
+			}
+		});
+	}
+
+	/**
+	 * Runs other disk work on the thread that writes saves, in order with them, such as MatchJournal's writes.
+	 *
+	 * @param task the work to run, which should deal with its own errors.
+	 * @return the pending work.
+	 */
+	static Future<?> submit(Runnable task) {
+		return EXECUTOR.submit(task);
+	}
+
+	/**
+	 * Waits for every save asked for so far to be written, for instance before the program closes.
+	 *
+	 * @param timeoutMillis the longest to wait, in milliseconds.
+	 * @return true if every save was written in time.
+	 */
+	public static boolean awaitPending(long timeoutMillis) {
+		Future<?> marker = EXECUTOR.submit(new Runnable() {
+			@Override
+			public void run() { } //Saves are written in order, so this finishes once every earlier save has.
+		});
+		try {
+			marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException exception) {
+			//Nothing can go wrong with the marker itself.
+		} catch (TimeoutException exception) {
+			//Give up on saves that are taking too long.
+		}
+		return false;
+	}
+
+	/** Tells a listener how a save went, on the event dispatch thread. */
+	private static void report(final Listener listener, final String filePath, final IOException exception) {
+		if (listener != null) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					listener.saveFinished(filePath, exception);
+				}
+			});
+		}
+	}
+}
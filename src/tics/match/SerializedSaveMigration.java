@@ -0,0 +1,474 @@
+package tics.match;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Upgrades saves from before the binary format, which were MatchSaveData objects written with Java serialization,
+ * to version 1 of the binary format.
+ *
+ * The serialization stream is walked record by record, without loading any of its classes or creating any of the match's objects,
+ * so it works however much MatchSaveData, Player and Unit have changed since, and a damaged or hostile file can't run any code.
+ * Each object's fields are kept by name, along with anything its class wrote itself, such as a collection's elements.
+ * Every unit was written twice, once in the grid and once in its owner's set, and the stream's back references are
+ * what tie the two together, which is how each unit's owner is found.
+ *
+ * Those saves held the units on the board, each player's theme, units and defeat, the round, and the current and first players.
+ * Unit statuses couldn't be serialized and tile statuses weren't saved, so the upgraded match has none,
+ * and nothing records how many times each ability had been used. A match with only one undefeated player is treated as won by them.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+class SerializedSaveMigration extends SaveMigration {
+	/** The first four bytes of every Java serialization stream: its magic number and version. */
+	private static final int STREAM_HEADER = ObjectStreamConstants.STREAM_MAGIC << 16 | ObjectStreamConstants.STREAM_VERSION;
+	/** The most objects that can be nested inside each other. Old saves nest about six deep. */
+	private static final int MAXIMUM_DEPTH = 32;
+
+	SerializedSaveMigration() {
+		super(SERIALIZED_VERSION);
+	}
+
+	/**
+	 * @param data the array holding a save.
+	 * @param offset the position of the save in the array.
+	 * @param length the number of bytes of the save that are in the array, which can be only its start.
+	 * @return true if the save was written with Java serialization, before the binary format.
+	 */
+	static boolean isSerialized(byte[] data, int offset, int length) {
+		return length >= 4 && ((data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16
+				| (data[offset + 2] & 0xff) << 8 | (data[offset + 3] & 0xff)) == STREAM_HEADER;
+	}
+
+	/**
+	 * Writes the sections of version 1 from a serialized save.
+	 *
+	 * @param body the whole save, starting with the serialization stream's header.
+	 */
+	@Override
+	void upgrade(SaveBuffer body, SaveBuffer upgraded, long savedAt) throws IOException {
+		Object root;
+		try {
+			root = new StreamWalker(body).readContent();
+		} catch (EOFException exception) { //DataInputStream's have no message.
+			throw new EOFException("The save data ends unexpectedly.");
+		}
+		if (!(root instanceof SerializedObject) || !((SerializedObject) root).className.equals("tics.match.MatchSaveData")) {
+			throw new IOException("The loaded file doesn't seem to contain Tics game data.");
+		}
+		SerializedObject saveData = (SerializedObject) root;
+
+		Object[] columns = getField(saveData, "unitPositions", Object[].class); //The grid was indexed by x, then y.
+		Object[] players = getField(saveData, "players", Object[].class);
+		int width = columns.length;
+		int height = width > 0 && columns[0] instanceof Object[] ? ((Object[]) columns[0]).length : 0;
+		if (width == 0 || height == 0 || players.length == 0) {
+			throw new IOException("The saved board or player list is empty.");
+		}
+
+		//Enum constants are written by name, and these tables of names become the NAMES section, so nothing here depends on the current enums.
+		List<String> abilityNames = new ArrayList<String>();
+		List<String> themeNames = new ArrayList<String>();
+		IdentityHashMap<Object, Integer> owners = new IdentityHashMap<Object, Integer>();
+		int[] themes = new int[players.length];
+		boolean[] defeated = new boolean[players.length];
+		int undefeatedCount = 0, lastUndefeated = -1;
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			SerializedObject player = getElement(players, playerIndex);
+			themes[playerIndex] = getNameIndex(themeNames, getField(player, "theme", EnumConstant.class));
+			defeated[playerIndex] = getField(player, "defeated", Boolean.class);
+			if (!defeated[playerIndex]) {
+				undefeatedCount++;
+				lastUndefeated = playerIndex;
+			}
+			for (Object unit : getField(player, "units", SerializedObject.class).written) {
+				owners.put(unit, playerIndex);
+			}
+		}
+		int victorIndex = players.length > 1 && undefeatedCount == 1 ? lastUndefeated : -1;
+
+		SaveBuffer units = new SaveBuffer();
+		SaveBuffer record = new SaveBuffer();
+		int unitCount = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Object[] column = getElement(columns, x, Object[].class);
+				if (column.length != height) {
+					throw new IOException("The old save's board isn't rectangular.");
+				}
+				if (column[y] == null) {
+					continue;
+				}
+				SerializedObject unit = getElement(column, y);
+				Integer owner = owners.get(unit);
+				record.writeVarInt(x);
+				record.writeVarInt(y);
+				record.writeSignedVarInt(owner == null ? -1 : owner);
+				record.writeString(getField(unit, "name", String.class));
+				record.writeString(getField(unit, "torsoImagePath", String.class));
+				Object[] abilities = getField(unit, "abilities", SerializedObject.class).written.toArray();
+				record.writeVarInt(abilities.length);
+				for (int index = 0; index < abilities.length; index++) {
+					record.writeVarInt(getNameIndex(abilityNames, getElement(abilities, index, EnumConstant.class)));
+				}
+				record.writeSignedVarInt(getField(unit, "currentHealth", Integer.class));
+				record.writeSignedVarInt(getField(unit, "currentMove", Integer.class));
+				record.writeBoolean(getField(unit, "active", Boolean.class));
+				record.writeVarInt(0); //No statuses.
+				units.writeSection(record);
+				record.clear();
+				unitCount++;
+			}
+		}
+
+		SaveBuffer section = new SaveBuffer();
+		section.writeVarInt(width);
+		section.writeVarInt(height);
+		section.writeVarInt(players.length);
+		section.writeVarInt(getIntField(saveData, "roundNumber", 1));
+		section.writeVarInt(getIntField(saveData, "currentPlayerIndex", 0));
+		writeSection(upgraded, MatchSnapshot.HEADER_SECTION, section);
+
+		writeNames(section, abilityNames);
+		writeNames(section, new ArrayList<String>()); //Unit status types.
+		writeNames(section, new ArrayList<String>()); //Tile status types.
+		writeNames(section, themeNames);
+		writeSection(upgraded, MatchSnapshot.NAMES_SECTION, section);
+
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			section.writeVarInt(themes[playerIndex]);
+			section.writeBoolean(defeated[playerIndex]);
+			for (int index = 0; index < abilityNames.size(); index++) {
+				section.writeVarInt(0); //Ability uses weren't saved.
+			}
+		}
+		writeSection(upgraded, MatchSnapshot.PLAYERS_SECTION, section);
+
+		section.writeVarInt(unitCount);
+		section.writeBytes(units.getBytes(), 0, units.size());
+		writeSection(upgraded, MatchSnapshot.UNITS_SECTION, section);
+
+		section.writeVarInt(0);
+		writeSection(upgraded, MatchSnapshot.TILE_STATUSES_SECTION, section);
+
+		section.writeVarInt(getIntField(saveData, "firstPlayerIndex", 0));
+		section.writeSignedVarInt(victorIndex);
+		section.writeBoolean(victorIndex < 0);
+		writeSection(upgraded, MatchSnapshot.TURN_SECTION, section);
+	}
+
+	/** Writes a finished section with its tag, and clears it for the next one. */
+	private static void writeSection(SaveBuffer buffer, int tag, SaveBuffer section) {
+		buffer.writeVarInt(tag);
+		buffer.writeSection(section);
+		section.clear();
+	}
+
+	/** Writes a table of names, as MatchSnapshot writes the names of an enum's constants. */
+	private static void writeNames(SaveBuffer buffer, List<String> names) {
+		buffer.writeVarInt(names.size());
+		for (String name : names) {
+			buffer.writeString(name);
+		}
+	}
+
+	/** @return the index of an enum constant's name in a table of names, adding it if it isn't there yet. */
+	private static int getNameIndex(List<String> names, EnumConstant constant) {
+		int index = names.indexOf(constant.name);
+		if (index < 0) {
+			names.add(constant.name);
+			index = names.size() - 1;
+		}
+		return index;
+	}
+
+	/**
+	 * @return the value of one of an object's fields.
+	 * @throws IOException if the object doesn't have the field, or it holds something else.
+	 */
+	private static <T> T getField(SerializedObject object, String name, Class<T> type) throws IOException {
+		Object value = object.fields.get(name);
+		if (!type.isInstance(value)) {
+			throw new IOException("The old save's " + object.className + " is missing its " + name + ".");
+		}
+		return type.cast(value);
+	}
+
+	/** @return the value of one of an object's int fields, or a default if the object's class didn't have the field yet. */
+	private static int getIntField(SerializedObject object, String name, int defaultValue) throws IOException {
+		return object.fields.containsKey(name) ? getField(object, name, Integer.class) : defaultValue;
+	}
+
+	/** @return an element of an array, which must be an object. */
+	private static SerializedObject getElement(Object[] array, int index) throws IOException {
+		return getElement(array, index, SerializedObject.class);
+	}
+
+	/**
+	 * @return an element of an array.
+	 * @throws IOException if the element holds something other than the given type.
+	 */
+	private static <T> T getElement(Object[] array, int index, Class<T> type) throws IOException {
+		if (!type.isInstance(array[index])) {
+			throw new IOException("The old save has something unexpected where a " + type.getSimpleName() + " should be.");
+		}
+		return type.cast(array[index]);
+	}
+
+	/**
+	 * Reads the records of a Java serialization stream, as described in the Java Object Serialization Specification,
+	 * and turns them into plain values: Strings, boxed primitives, Object arrays, SerializedObjects and EnumConstants.
+	 */
+	private static class StreamWalker {
+		private final DataInputStream input;
+		/** Everything that can be referred back to, indexed by handle, less the first handle's number. */
+		private final ArrayList<Object> handles = new ArrayList<Object>();
+		/** The number of objects currently being read inside each other. */
+		private int depth;
+
+		/** @param body the stream, which must start with its header. */
+		StreamWalker(SaveBuffer body) throws IOException {
+			input = new DataInputStream(new ByteArrayInputStream(body.getBytes(), body.getPosition(), body.size() - body.getPosition()));
+			if (input.readInt() != STREAM_HEADER) {
+				throw new IOException("The loaded file doesn't seem to contain Tics game data.");
+			}
+		}
+
+		/** @return the next value in the stream. */
+		Object readContent() throws IOException {
+			return readContent(input.readUnsignedByte());
+		}
+
+		/**
+		 * @param code the record code, which has already been read.
+		 * @return the value that the record holds.
+		 */
+		private Object readContent(int code) throws IOException {
+			if (++depth > MAXIMUM_DEPTH) {
+				throw new IOException("The old save is nested too deeply to be a Tics game.");
+			}
+			try {
+				switch (code) {
+				case ObjectStreamConstants.TC_NULL:
+					return null;
+				case ObjectStreamConstants.TC_REFERENCE:
+					return readReference();
+				case ObjectStreamConstants.TC_STRING:
+					return addHandle(input.readUTF());
+				case ObjectStreamConstants.TC_OBJECT:
+					return readObject();
+				case ObjectStreamConstants.TC_ARRAY:
+					return readArray();
+				case ObjectStreamConstants.TC_ENUM:
+					return readEnum();
+				case ObjectStreamConstants.TC_CLASS:
+					return addHandle(readClassDescription());
+				case ObjectStreamConstants.TC_CLASSDESC:
+					return readClassDescriptionBody();
+				case ObjectStreamConstants.TC_RESET:
+					handles.clear();
+					return readContent();
+				default: //Long strings, proxies and exceptions never appear in saves.
+					throw new IOException("The old save has a record that Tics saves never had, so it may be damaged.");
+				}
+			} finally {
+				depth--;
+			}
+		}
+
+		/** @return the value that a back reference refers to. */
+		private Object readReference() throws IOException {
+			int handle = input.readInt() - ObjectStreamConstants.baseWireHandle;
+			if (handle < 0 || handle >= handles.size()) {
+				throw new IOException("The old save refers to something that doesn't exist.");
+			}
+			return handles.get(handle);
+		}
+
+		/** Reads an object's class description, then the fields of each class from the topmost superclass down. */
+		private SerializedObject readObject() throws IOException {
+			ClassDescription description = readClassDescription();
+			if (description == null) {
+				throw new IOException("The old save has an object without a class.");
+			}
+			SerializedObject object = addHandle(new SerializedObject(description.name)); //Added first, since its fields can refer back to it.
+
+			ArrayList<ClassDescription> hierarchy = new ArrayList<ClassDescription>();
+			for (ClassDescription superclass = description; superclass != null; superclass = superclass.superclass) {
+				hierarchy.add(0, superclass);
+			}
+			for (ClassDescription superclass : hierarchy) {
+				if ((superclass.flags & ObjectStreamConstants.SC_EXTERNALIZABLE) != 0) {
+					throw new IOException("The old save has an object that Tics saves never had, so it may be damaged.");
+				}
+				for (int index = 0; index < superclass.fieldNames.length; index++) {
+					object.fields.put(superclass.fieldNames[index], readValue(superclass.fieldTypes[index]));
+				}
+				if ((superclass.flags & ObjectStreamConstants.SC_WRITE_METHOD) != 0) {
+					readAnnotation(object.written);
+				}
+			}
+			return object;
+		}
+
+		/** @return an array's elements, with primitive elements boxed. */
+		private Object[] readArray() throws IOException {
+			ClassDescription description = readClassDescription();
+			if (description == null || description.name.length() < 2) {
+				throw new IOException("The old save has an array without a type.");
+			}
+			int handle = handles.size();
+			addHandle(null);
+			int length = input.readInt();
+			if (length < 0 || length > input.available()) {
+				throw new IOException("The old save has an array longer than the file.");
+			}
+			Object[] elements = new Object[length];
+			handles.set(handle, elements);
+			for (int index = 0; index < length; index++) {
+				elements[index] = readValue(description.name.charAt(1));
+			}
+			return elements;
+		}
+
+		/** @return an enum constant, by its class's name and its own. */
+		private EnumConstant readEnum() throws IOException {
+			ClassDescription description = readClassDescription();
+			int handle = handles.size();
+			addHandle(null);
+			Object name = readContent();
+			if (description == null || !(name instanceof String)) {
+				throw new IOException("The old save has an enum constant without a name.");
+			}
+			EnumConstant constant = new EnumConstant(description.name, (String) name);
+			handles.set(handle, constant);
+			return constant;
+		}
+
+		/** @return the next class description, which may be null or a back reference. */
+		private ClassDescription readClassDescription() throws IOException {
+			Object description = readContent();
+			if (description != null && !(description instanceof ClassDescription)) {
+				throw new IOException("The old save has something unexpected where a class should be.");
+			}
+			return (ClassDescription) description;
+		}
+
+		/** Reads a new class description, after its record code. */
+		private ClassDescription readClassDescriptionBody() throws IOException {
+			ClassDescription description = new ClassDescription(input.readUTF());
+			input.readLong(); //The serialVersionUID doesn't matter, since no classes are loaded.
+			addHandle(description);
+			description.flags = input.readUnsignedByte();
+			int fieldCount = input.readUnsignedShort();
+			description.fieldTypes = new char[fieldCount];
+			description.fieldNames = new String[fieldCount];
+			for (int index = 0; index < fieldCount; index++) {
+				description.fieldTypes[index] = (char) input.readUnsignedByte();
+				description.fieldNames[index] = input.readUTF();
+				if (description.fieldTypes[index] == 'L' || description.fieldTypes[index] == '[') {
+					readContent(); //The field's class name.
+				}
+			}
+			readAnnotation(new ArrayList<Object>());
+			description.superclass = readClassDescription();
+			return description;
+		}
+
+		/** @return a field or array element of a given type code, with primitives boxed. */
+		private Object readValue(char type) throws IOException {
+			switch (type) {
+			case 'B':
+				return input.readByte();
+			case 'C':
+				return input.readChar();
+			case 'D':
+				return input.readDouble();
+			case 'F':
+				return input.readFloat();
+			case 'I':
+				return input.readInt();
+			case 'J':
+				return input.readLong();
+			case 'S':
+				return input.readShort();
+			case 'Z':
+				return input.readBoolean();
+			case 'L':
+			case '[':
+				return readContent();
+			default:
+				throw new IOException("The old save has a field of an unknown type.");
+			}
+		}
+
+		/**
+		 * Reads what a class wrote for itself, up to its end marker, skipping raw data such as a collection's size.
+		 *
+		 * @param objects the list to add the objects that were written to.
+		 */
+		private void readAnnotation(List<Object> objects) throws IOException {
+			while (true) {
+				int code = input.readUnsignedByte();
+				if (code == ObjectStreamConstants.TC_ENDBLOCKDATA) {
+					return;
+				} else if (code == ObjectStreamConstants.TC_BLOCKDATA) {
+					input.skipBytes(input.readUnsignedByte());
+				} else if (code == ObjectStreamConstants.TC_BLOCKDATALONG) {
+					input.skipBytes(input.readInt());
+				} else {
+					objects.add(readContent(code));
+				}
+			}
+		}
+
+		/** Gives a value the next handle, so later records can refer back to it. @return the value. */
+		private <T> T addHandle(T value) {
+			handles.add(value);
+			return value;
+		}
+	}
+
+	/** A class from the stream: its name, the names and type codes of its serialized fields, and its superclass. */
+	private static class ClassDescription {
+		final String name;
+		int flags;
+		char[] fieldTypes;
+		String[] fieldNames;
+		ClassDescription superclass;
+
+		ClassDescription(String name) {
+			this.name = name;
+		}
+	}
+
+	/** An object from the stream: its class's name, its fields by name, and the objects that its class wrote itself. */
+	private static class SerializedObject {
+		final String className;
+		final HashMap<String, Object> fields = new HashMap<String, Object>();
+		/** For collections, their elements. */
+		final List<Object> written = new ArrayList<Object>();
+
+		SerializedObject(String className) {
+			this.className = className;
+		}
+	}
+
+	/** An enum constant from the stream, which is written as its class and its name. */
+	private static class EnumConstant {
+		final String className, name;
+
+		EnumConstant(String className, String name) {
+			this.className = className;
+			this.name = name;
+		}
+	}
+}
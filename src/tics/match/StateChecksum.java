@@ -0,0 +1,109 @@
+package tics.match;
+
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.match.model.Player;
+import tics.match.model.Tile;
+import tics.match.model.TileStatus;
+import tics.match.model.Unit;
+import tics.match.model.UnitStatus;
+
+/**
+ * Static methods for reducing the whole state of a match to a single number,
+ * so that two runs of the same match can be compared turn by turn.
+ *
+ * The checksum covers the turn order, every player, every unit (including where it stands and what it can still do),
+ * and every status. Statuses are kept in hash sets, whose order can change from run to run,
+ * so they're combined in a way that doesn't depend on order. Names and images don't affect play, so they're left out.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class StateChecksum {
+	/** The starting value of a 64 bit FNV-1a hash. */
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	/** The multiplier of a 64 bit FNV-1a hash. */
+	private static final long PRIME = 0x100000001b3L;
+
+	/**
+	 * Computes the checksum of a match's current state.
+	 *
+	 * @param match the match to compute a checksum for.
+	 * @return the checksum.
+	 */
+	public static long compute(Match match) {
+		Board board = match.getBoard();
+		Player[] players = match.getPlayers();
+
+		long hash = OFFSET_BASIS;
+		hash = mix(hash, board.getGridWidth());
+		hash = mix(hash, board.getGridHeight());
+		hash = mix(hash, match.getCurrentPlayerIndex());
+		hash = mix(hash, match.getFirstPlayerIndex());
+		hash = mix(hash, match.getCurrentRound());
+		hash = mix(hash, match.isInProgress() ? 1 : 0);
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			hash = mix(hash, players[playerIndex].isDefeated() ? 1 : 0);
+			hash = mix(hash, players[playerIndex].getUnits().size());
+			hash = mix(hash, players[playerIndex] == match.getVictor() ? 1 : 0);
+			for (Ability ability : Ability.values()) {
+				hash = mix(hash, match.getAbilityUses(playerIndex, ability));
+			}
+		}
+
+		for (int y = 0; y < board.getGridHeight(); y++) {
+			for (int x = 0; x < board.getGridWidth(); x++) {
+				Tile tile = board.getTile(x, y);
+				long statusSum = 0;
+				for (TileStatus status : tile.getStatuses()) {
+					statusSum += hashStatus(status.getType().ordinal(), status.getRemainingDuration(), status.getCreatorIndex());
+				}
+				hash = mix(hash, statusSum);
+
+				if (!tile.hasUnit()) {
+					hash = mix(hash, -1);
+					continue;
+				}
+				Unit unit = tile.getUnit();
+				Player owner = match.getTileOwner(tile);
+				for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+					if (players[playerIndex] == owner) {
+						hash = mix(hash, playerIndex);
+					}
+				}
+				hash = mix(hash, unit.getCurrentHealth());
+				hash = mix(hash, unit.getCurrentMove());
+				hash = mix(hash, unit.isActive() ? 1 : 0);
+				for (Ability ability : unit.getAbilities()) {
+					hash = mix(hash, ability.ordinal());
+				}
+				statusSum = 0;
+				for (UnitStatus status : unit.getStatuses()) {
+					statusSum += hashStatus(status.getType().ordinal(), status.getRemainingDuration(), status.getCreatorIndex());
+				}
+				hash = mix(hash, statusSum);
+			}
+		}
+		return hash;
+	}
+
+	/** @return a hash of one status, to be summed with the others on the same tile or unit. */
+	private static long hashStatus(int type, int remainingDuration, int creatorIndex) {
+		return mix(mix(mix(OFFSET_BASIS, type), remainingDuration), creatorIndex);
+	}
+
+	/**
+	 * Folds a value into a hash, a byte at a time.
+	 *
+	 * @param hash the hash so far.
+	 * @param value the value to fold in.
+	 * @return the new hash.
+	 */
+	private static long mix(long hash, long value) {
+		for (int shift = 0; shift < 64; shift += 8) {
+			hash ^= (value >>> shift) & 0xff;
+			hash *= PRIME;
+		}
+		return hash;
+	}
+}
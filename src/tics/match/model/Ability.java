@@ -295,6 +295,25 @@ public enum Ability {
 		}
 	}
 	
+	/**
+	 * Overrides a stat for this ability, for instance while testing balance changes.
+	 * Abilities are shared by every match, so this shouldn't be called while a match is being played on another thread.
+	 * 
+	 * @param property the type of stat to change.
+	 * @param value the new numerical value for the property.
+	 */
+	public void setProperty(Ability.Property property, int value) {
+		properties.put(property, value);
+	}
+	
+	/** Undoes every call to setProperty, putting all abilities' stats back to the values they're defined with. */
+	public static void resetProperties() {
+		for (Ability ability : values()) {
+			ability.properties.clear();
+			ability.initProperties();
+		}
+	}
+	
 	/** @return the type of tile this ability targets. */
 	public TargetType getTargetType() {
 		return targetType;
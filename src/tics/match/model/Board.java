@@ -1,53 +1,225 @@
 package tics.match.model;
 
+import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
-import java.awt.event.MouseListener;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.HashSet;
 
-import javax.swing.JPanel;
+import javax.swing.JComponent;
 
 import tics.util.MathUtil;
+import tics.util.load.ColourRole;
 
 /** 
  * Stores and draws the grid of tiles that the game is played on. 
  * 
+ * The board is a single lightweight component: it paints every tile itself, in one pass over the tiles that need repainting,
+ * and works out which tile the mouse is over from its position. This keeps layout, painting and mouse handling
+ * just as quick on the largest boards as on small ones, and makes boards in undisplayed matches cheap to create.
+ * 
  * Note that this class is currently not WindowBuilder compatible.
  * 
  * @author Michael D'Andrea
  * @author Devindra Payment
  */
 @SuppressWarnings("serial")
-public class Board extends JPanel {
+public class Board extends JComponent {
+	/** The colour of the line around each tile. */
+	private static final Color TILE_BORDER_COLOUR = Color.LIGHT_GRAY;
+	
+	/** Is told when the mouse moves over tiles or clicks them. */
+	public interface Listener {
+		/**
+		 * Handles the mouse moving onto a tile.
+		 * 
+		 * @param tile the tile the mouse is now over.
+		 */
+		void tileEntered(Tile tile);
+		
+		/**
+		 * Handles the mouse moving off the board, or to a part of it without a tile.
+		 * 
+		 * @param tile the tile the mouse was over.
+		 */
+		void tileExited(Tile tile);
+		
+		/**
+		 * Handles a tile being clicked: the mouse was pressed and released on the same tile.
+		 * 
+		 * @param tile the tile that was clicked.
+		 */
+		void tileClicked(Tile tile);
+	}
+	
 	/** The game grid. */
 	private Tile[][] grid;
+	/** The tile the mouse is over, and the tile the mouse was pressed on, if any. */
+	private Tile hoveredTile, pressedTile;
 	
 	/**
 	 * Generates an empty board.
 	 * 
 	 * @param width the board's width in tiles.
 	 * @param height the board's height in tiles.
-	 * @param mouseListener the current game, which needs to handle some tile mouse events.
+	 * @param listener the current game, which needs to handle some tile mouse events.
 	 */
-	public Board(int width, int height, MouseListener mouseListener) {
+	public Board(int width, int height, final Listener listener) {
 		grid = new Tile[width][height];
-		
-		super.setLayout(new GridBagLayout());
-		GridBagConstraints constraints = new GridBagConstraints();
-		
 		for (int y = 0; y < height; y++) {
 			for (int x = 0; x < width; x++) {
-				grid[x][y] = new Tile(x, y, mouseListener);
-				constraints.gridx = x;
-				constraints.gridy = y;
+				grid[x][y] = new Tile(x, y, this);
+			}
+		}
+		
+		super.setPreferredSize(new Dimension(width * Tile.WIDTH, height * Tile.HEIGHT));
+		super.setOpaque(true); //Every pixel is painted, so nothing behind the board has to be.
+		
+		MouseAdapter mouseAdapter = new MouseAdapter() {
+			@Override
+			public void mouseMoved(MouseEvent event) {
+				setHoveredTile(getTileAt(event.getX(), event.getY()), listener);
+			}
+			
+			@Override
+			public void mouseDragged(MouseEvent event) {
+				setHoveredTile(getTileAt(event.getX(), event.getY()), listener);
+			}
+			
+			@Override
+			public void mouseExited(MouseEvent event) {
+				setHoveredTile(null, listener);
+			}
+			
+			@Override
+			public void mousePressed(MouseEvent event) {
+				pressedTile = getTileAt(event.getX(), event.getY());
+				if (pressedTile != null) {
+					pressedTile.repaint();
+				}
+			}
+			
+			@Override
+			public void mouseReleased(MouseEvent event) {
+				Tile clickedTile = pressedTile;
+				pressedTile = null;
+				if (clickedTile != null) {
+					clickedTile.repaint();
+					//Only count a click if the mouse was released on the tile it was pressed on,
+					//so pressing, dragging off the tile, and releasing has no effect.
+					if (getTileAt(event.getX(), event.getY()) == clickedTile) {
+						listener.tileClicked(clickedTile);
+					}
+				}
+			}
+		};
+		addMouseListener(mouseAdapter);
+		addMouseMotionListener(mouseAdapter);
+	}
+	
+	@Override
+	protected void paintComponent(Graphics graphics) {
+		int left = getGridLeft(), top = getGridTop();
+		Rectangle clip = graphics.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		
+		//Anything outside the grid, when the board is shown in a larger space than it needs.
+		graphics.setColor(getBackground());
+		graphics.fillRect(clip.x, clip.y, clip.width, clip.height);
+		
+		if (clip.x + clip.width <= left || clip.y + clip.height <= top) {
+			return; //The area being repainted is entirely before the grid.
+		}
+		//Only the tiles that overlap the area being repainted are drawn, so repainting one tile costs the same on any board.
+		int firstX = Math.max(0, (clip.x - left) / Tile.WIDTH);
+		int firstY = Math.max(0, (clip.y - top) / Tile.HEIGHT);
+		int lastX = Math.min(getGridWidth() - 1, (clip.x + clip.width - 1 - left) / Tile.WIDTH);
+		int lastY = Math.min(getGridHeight() - 1, (clip.y + clip.height - 1 - top) / Tile.HEIGHT);
+		
+		for (int y = firstY; y <= lastY; y++) {
+			for (int x = firstX; x <= lastX; x++) {
+				Tile tile = grid[x][y];
+				int tileLeft = left + x * Tile.WIDTH, tileTop = top + y * Tile.HEIGHT;
+				
+				if (!tile.hasUnit() && tile.hasStatus(TileStatus.Type.BLOCKED)) {
+					graphics.setColor(ColourRole.BLOCKED_TILE.get()); //Barriers show through any range that's displayed.
+				} else if (tile.getBackground() != null) {
+					graphics.setColor(tile.getBackground().get());
+				} else {
+					graphics.setColor(ColourRole.NORMAL_TILE.get());
+				}
+				graphics.fillRect(tileLeft, tileTop, Tile.WIDTH, Tile.HEIGHT);
+				graphics.setColor(TILE_BORDER_COLOUR);
+				graphics.drawRect(tileLeft, tileTop, Tile.WIDTH - 1, Tile.HEIGHT - 1);
 				
-				this.add(grid[x][y], constraints);
+				graphics.translate(tileLeft, tileTop);
+				tile.paint(graphics, tile == hoveredTile, tile == pressedTile);
+				graphics.translate(-tileLeft, -tileTop);
 			}
 		}
 	}
 	
+	/**
+	 * Finds the tile at a point on the board.
+	 * 
+	 * @param pixelX the x coordinate of the point, in pixels from the board's left edge.
+	 * @param pixelY the y coordinate of the point, in pixels from the board's top edge.
+	 * @return the tile at that point, or null if there's no tile there.
+	 */
+	public Tile getTileAt(int pixelX, int pixelY) {
+		int gridPixelX = pixelX - getGridLeft(), gridPixelY = pixelY - getGridTop();
+		if (gridPixelX < 0 || gridPixelY < 0) {
+			return null; //Dividing would round these towards the first row or column, rather than off the board.
+		}
+		int x = gridPixelX / Tile.WIDTH, y = gridPixelY / Tile.HEIGHT;
+		if (x >= getGridWidth() || y >= getGridHeight()) {
+			return null;
+		}
+		return grid[x][y];
+	}
+	
+	/**
+	 * Redraws a single tile soon, after it has changed.
+	 * 
+	 * @param tile the tile to redraw.
+	 */
+	void repaintTile(Tile tile) {
+		repaint(getGridLeft() + tile.getGridX() * Tile.WIDTH, getGridTop() + tile.getGridY() * Tile.HEIGHT, Tile.WIDTH, Tile.HEIGHT);
+	}
+	
+	/** Changes which tile the mouse is over, and tells the listener if it has changed. */
+	private void setHoveredTile(Tile tile, Listener listener) {
+		if (tile == hoveredTile) {
+			return;
+		}
+		Tile previousTile = hoveredTile;
+		hoveredTile = tile;
+		if (previousTile != null) {
+			previousTile.repaint(); //Stop showing the targeting cursor.
+		}
+		if (tile != null) {
+			tile.repaint(); //Show the targeting cursor.
+			listener.tileEntered(tile);
+		} else {
+			listener.tileExited(previousTile);
+		}
+	}
+	
+	/** @return the position of the grid's left edge, which is centred when the board is wider than it needs to be. */
+	private int getGridLeft() {
+		return Math.max(0, (getWidth() - getGridWidth() * Tile.WIDTH) / 2);
+	}
+	
+	/** @return the position of the grid's top edge, which is centred when the board is taller than it needs to be. */
+	private int getGridTop() {
+		return Math.max(0, (getHeight() - getGridHeight() * Tile.HEIGHT) / 2);
+	}
+	
 	/**
 	 * Create units for a player.
 	 * 
@@ -163,7 +335,7 @@ public class Board extends JPanel {
 	 * Defines each direction as the x and y coordinate change 
 	 * required to reach the adjacent tile in that direction.
 	 */
-	private enum Direction { 
+	public enum Direction { 
 		NORTH(0, -1), 
 		SOUTH(0, +1), 
 		EAST(+1, 0), 
@@ -2,6 +2,7 @@ package tics.match.model;
 
 import java.io.Serializable;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 
 /** 
  * A faction in a match.
@@ -14,7 +15,7 @@ public class Player implements Serializable {
 	private static final long serialVersionUID = 4147598720532175778L;
 	
 	/** The units owned by this player. */
-	private HashSet<Unit> units; //TODO: Possibly order this collection to allow for predictable unit placement.
+	private HashSet<Unit> units; //Generated units are kept in a LinkedHashSet, so that they're placed in a predictable order.
 	/** The generator used to create images and names for this player's units. */
 	private PlayerTheme theme;
 	/** True if this player has surrendered or lost the match, false otherwise. */
@@ -30,7 +31,7 @@ public class Player implements Serializable {
 	public Player(int numberOfUnits, int abilitiesPerUnit, PlayerTheme theme) 
 	{
 		this.theme = theme;
-		units = new HashSet<Unit>();
+		units = new LinkedHashSet<Unit>();
 		for (int i = 0; i < numberOfUnits; i++) {
 			units.add(new Unit(theme, abilitiesPerUnit));
 		}
@@ -130,6 +130,11 @@ public enum PlayerTheme {
 		//EXTRA: Ideally figure out why this is giving a NullPointer of all things when a theme folder doesn't exist.
 	}
 	
+	/** @return the paths to every torso image this theme can give its units. */
+	public String[] getImagePaths() {
+		return torsoImagePaths.clone();
+	}
+	
 	/** @return the theme for a player of a given index number. Themes are handed out in order, so every index always gets the same theme. */
 	public static PlayerTheme getThemeForIndex(int index) {
 		int modifiedIndex = index % PlayerTheme.values().length;
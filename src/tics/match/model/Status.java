@@ -32,4 +32,9 @@ public abstract class Status {
 	public int getRemainingDuration() {
 		return remainingDuration;
 	}
+	
+	/** @return the index of the player who caused this status, whose turns it counts down on. */
+	public int getCreatorIndex() {
+		return creatorIndex;
+	}
 }
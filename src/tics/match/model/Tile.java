@@ -1,30 +1,25 @@
 package tics.match.model;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.HashSet;
-
-import javax.swing.BorderFactory;
-import javax.swing.JPanel;
+import java.util.Iterator;
 
 import tics.util.TargetType;
-import tics.util.load.PropertiesLoader;
+import tics.util.load.ColourRole;
 
 /** 
  * A tile on the game board, including information about what's ON the tile.
+ * Tiles aren't components: the board draws every tile itself, and works out which tile the mouse is over.
  * 
  * @author Michael D'Andrea
  * @author Devindra Payment
  */
-@SuppressWarnings("serial")
-public class Tile extends JPanel implements MouseListener {
-	//TODO: Commenting.
+public class Tile {
+	/** The space between the edge of a tile and the unit drawn on it, in pixels. */
 	public static final int PADDING = 3;
+	/** The size of a tile on the board, in pixels. */
 	public static final int WIDTH = PADDING*2 + 48;
 	public static final int HEIGHT = WIDTH;
 	
@@ -35,48 +30,33 @@ public class Tile extends JPanel implements MouseListener {
 	private Unit unit;
 	/** The "status effects" that this tile currently has, mapped to their remaining duration. */
 	private HashSet<TileStatus> statuses;
-	
-	private BufferedImage selectorIcon, selectorPressIcon;
-	
-	private boolean mouseHovering, mouseClicking;
+	/** The board this tile is on, which draws it. */
+	private final Board board;
+	/** The colour the tile is filled with, or null for the normal tile colour. */
+	private ColourRole background;
 	
 	/**
 	 * @param x the x position of this tile in the Match's tile grid.
 	 * @param y the y position of this tile in the Match's tile grid.
-	 * @param mouseListener the game this tile is in, which will need to know about some of its mouse events.
+	 * @param board the board this tile is on.
 	 */
-	public Tile(int x, int y, MouseListener mouseListener) {
-		super();
-		
-		Dimension size = new Dimension(Tile.WIDTH, Tile.HEIGHT);
-		super.setPreferredSize(size);
-		
+	Tile(int x, int y, Board board) {
 		this.gridX = x;
 		this.gridY = y;
-		
-		this.addMouseListener(this);
-		this.addMouseListener(mouseListener);
+		this.board = board;
 		statuses = new HashSet<TileStatus>();
-		super.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY, 1));
-		super.setBackground(PropertiesLoader.getColour("normal_tile"));
-		//try {
-			//TODO: Load these via ImageLoader, if at all.
-			//selectorIcon = ImageIO.read(new File("img/selector-hover.png"));
-			//selectorPressIcon = ImageIO.read(new File("img/selector-press.png"));
-		//} catch (IOException e) {
-			//TODO: Handle if we're using this code.
-		//}
-		
-		mouseHovering = false;
-		mouseClicking = false;
 	}
 	
-	@Override
-	public void paintComponent(Graphics graphics) {
+	/**
+	 * Draws what's on the tile. The board has already filled in the tile's background and border.
+	 * 
+	 * @param graphics the graphics to draw with, translated so that the tile's top left corner is at 0, 0.
+	 * @param mouseHovering true if the mouse is over the tile.
+	 * @param mouseClicking true if the mouse was pressed on the tile, and hasn't been released yet.
+	 */
+	void paint(Graphics graphics, boolean mouseHovering, boolean mouseClicking) {
 		//EXTRA: If implementing crashing, find a way to crash from exceptions thrown here.
 		//TODO: Split this up.
-		super.paintComponent(graphics);
-		
 		if (this.hasUnit()) {
 			//EXTRA: Grey out unowned units.
 			
@@ -90,11 +70,11 @@ public class Tile extends JPanel implements MouseListener {
 				//Don't draw a move square for units who's player has lost.
 				//TODO: different inactive colour for enemies. This means getting currentPlayer here somehow.
 				if (!unit.isActive()) {
-					graphics.setColor(PropertiesLoader.getColour("inactive"));
+					graphics.setColor(ColourRole.INACTIVE.get());
 				} else if (unit.getCurrentMove() < unit.getMove()) {
-					graphics.setColor(PropertiesLoader.getColour("partially_active"));
+					graphics.setColor(ColourRole.PARTIALLY_ACTIVE.get());
 				} else {
-					graphics.setColor(PropertiesLoader.getColour("fully_active"));
+					graphics.setColor(ColourRole.FULLY_ACTIVE.get());
 				}
 				
 				graphics.fillRect(activeIndicatorX, activeIndicatorY, activeSize, activeSize);
@@ -107,11 +87,11 @@ public class Tile extends JPanel implements MouseListener {
 			int hpBarHeight = 5;
 
 			if (unit.getCurrentHealth() < Ability.ATTACK.getProperty(Ability.Property.DAMAGE)) {
-				graphics.setColor(PropertiesLoader.getColour("very_low_health")); //If a unit will die from one attack, make that obvious.
+				graphics.setColor(ColourRole.VERY_LOW_HEALTH.get()); //If a unit will die from one attack, make that obvious.
 			} else if (unit.getCurrentHealth() < 2*Ability.ATTACK.getProperty(Ability.Property.DAMAGE)) {
-				graphics.setColor(PropertiesLoader.getColour("low_health"));
+				graphics.setColor(ColourRole.LOW_HEALTH.get());
 			} else {
-				graphics.setColor(PropertiesLoader.getColour("health"));
+				graphics.setColor(ColourRole.HEALTH.get());
 			}
 			graphics.fillRect(hpBarX, hpBarY, hpBarPartialWidth, hpBarHeight);
 			
@@ -126,25 +106,15 @@ public class Tile extends JPanel implements MouseListener {
 			}
 			*/
 			
-			graphics.setColor(PropertiesLoader.getColour("buff"));
+			graphics.setColor(ColourRole.BUFF.get());
 			try {
-				graphics.drawImage(getUnit().getImage(), PADDING, PADDING, null);
+				getUnit().draw(graphics, PADDING, PADDING); //Drawn straight from the sprite atlas.
 			} catch (NullPointerException e) {
 				e.printStackTrace();
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
-		} else if (this.hasStatus(TileStatus.Type.BLOCKED)) {
-			this.setBackground(PropertiesLoader.getColour("blocked_tile"));
 		}
-		
-		/* Old Selector Implementation
-		if (mouseClicking) {
-			graphics.drawImage(selectorPressIcon, Tile.PADDING, Tile.PADDING, this);
-		} else if (mouseHovering) {
-			graphics.drawImage(selectorIcon, Tile.PADDING, Tile.PADDING, this);
-		}
-		*/
 
 		if (mouseClicking) {
 			graphics.setColor(Color.RED);
@@ -163,12 +133,14 @@ public class Tile extends JPanel implements MouseListener {
 	 */
 	public void tickDownStatuses(int currentPlayerIndex) {
 		// Tick down all of the tile's status effects.
-		for (TileStatus status : statuses) {
+		Iterator<TileStatus> iterator = statuses.iterator();
+		while (iterator.hasNext()) {
+			TileStatus status = iterator.next();
 			status.tickDown(currentPlayerIndex);
 			if (status.getRemainingDuration() <= 0) {
-				statuses.remove(status);
+				iterator.remove(); //Removing through the set itself would break the loop.
 				//TODO: If we had multiple statuses, then this would cause visual problems.
-				this.setBackground(PropertiesLoader.getColour("normal_tile"));
+				this.setBackground(null);
 			}
 		}
 	}
@@ -219,33 +191,27 @@ public class Tile extends JPanel implements MouseListener {
 		}
 	}
 
-	@Override
-	public void mouseClicked(MouseEvent event) {
-		//No response to clicks in this class - Match handles that.
-	}
-
-	@Override
-	public void mouseEntered(MouseEvent event) {
-		mouseHovering = true; //Show the targeting cursor.
+	/** 
+	 * Changes the colour the tile is filled with, for instance to show that it's in range.
+	 * Tiles with barriers are always drawn in the blocked tile colour.
+	 * 
+	 * The colour is kept as a role, so the tile follows the palette if it's edited.
+	 * 
+	 * @param background the new colour, or null for the normal tile colour.
+	 */
+	public void setBackground(ColourRole background) {
+		this.background = background;
 		repaint();
 	}
-
-	@Override
-	public void mouseExited(MouseEvent event) {
-		mouseHovering = false;
-		repaint(); //Stop showing the targeting cursor.
-	}
-
-	@Override
-	public void mousePressed(MouseEvent event) {
-		mouseClicking = true;
-		repaint();
+	
+	/** @return the colour the tile is filled with, or null for the normal tile colour. */
+	public ColourRole getBackground() {
+		return background;
 	}
-
-	@Override
-	public void mouseReleased(MouseEvent event) {
-		mouseClicking = false;
-		repaint();
+	
+	/** Redraws the tile on its board soon, after it has changed. */
+	public void repaint() {
+		board.repaintTile(this);
 	}
 	
 	/** @return true if this tile is passable and unoccupied. */
@@ -262,6 +228,11 @@ public class Tile extends JPanel implements MouseListener {
 		this.statuses.add(status);
 	}
 	
+	/** @return the tile's status effects. */
+	public HashSet<TileStatus> getStatuses() {
+		return statuses;
+	}
+	
 	/** 
 	 * Checks whether this tile has a certain type of status.
 	 * @param type the type of status to check for.
@@ -1,5 +1,6 @@
 package tics.match.model;
 
+import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -7,10 +8,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 
 import tics.util.MathUtil;
-import tics.util.Util;
-import tics.util.load.ImageLoader;
+import tics.util.load.SpriteAtlas;
 
 /** 
  * A creature, controlled by a player, which participates in combat.
@@ -40,6 +41,10 @@ public class Unit implements Serializable {
 	private String torsoImagePath;
 	/** True if it's the unit's turn to move. This becomes false when the unit uses an ability. */
 	private boolean active;
+	/** The unit's appearance, as last drawn by getImage, or null if it hasn't been drawn. */
+	private transient BufferedImage image;
+	/** The atlas, and the paths to the torso, left tool and right tool images, that image was drawn from. */
+	private transient Object[] imageParts;
 	
 	
 	/**
@@ -57,6 +62,22 @@ public class Unit implements Serializable {
 		torsoImagePath = theme.getRandomImagePath();
 	}
 	
+	/**
+	 * Recreates a unit exactly, for instance from a snapshot or a save file.
+	 * The unit starts with full health and no statuses, so those should be restored afterwards.
+	 * 
+	 * @param name the unit's name.
+	 * @param torsoImagePath the path to the unit's torso image.
+	 * @param abilities the unit's abilities.
+	 */
+	public Unit(String name, String torsoImagePath, ArrayList<Ability> abilities) {
+		this.name = name;
+		this.torsoImagePath = torsoImagePath;
+		this.abilities = abilities;
+		currentHealth = BASE_HEALTH;
+		statuses = new HashSet<UnitStatus>();
+	}
+	
 	/** 
 	 * Creates a unit with a number of random abilities, as well as a normal attack. 
 	 * 
@@ -98,41 +119,76 @@ public class Unit implements Serializable {
 	}
 	
 	/**
-	 * Generates and returns the unit's appearance.
+	 * Returns the unit's appearance, which is generated from its torso and the tools for its abilities.
+	 * The image is drawn once and reused, and only drawn again when one of its parts changes:
+	 * when the unit's abilities or torso change, or when the sprite atlas is made again because an image file was edited.
+	 * This should only be called from the event dispatch thread.
 	 * 
 	 * @return the image that represents the unit.
 	 * @throws IOException if part of the image couldn't be loaded.
 	 * @throws IllegalArgumentException if an image classpath couldn't be used for loading.
 	 */
 	public BufferedImage getImage() throws IOException, IllegalArgumentException {
-		BufferedImage leftTool = null, rightTool = null;
-		//Note that some of this code currently shows up as dead, 
-		//but is necessary if reducing ABILITIES_PER_UNIT is to be possible.
-		if (abilities.size() > 1) {
-			leftTool = ImageLoader.getImage(abilities.get(1).getImagePath());
+		SpriteAtlas atlas = SpriteAtlas.get();
+		Object[] parts = { atlas, torsoImagePath, getLeftToolPath(), getRightToolPath() };
+		if (image != null && Arrays.equals(parts, imageParts)) {
+			return image;
 		}
-		if (abilities.size() > 2) {
-			rightTool = Util.flipImageHorizontally(ImageLoader.getImage(abilities.get(2).getImagePath()));
-		} else {
-			rightTool = ImageLoader.getImage(Ability.ATTACK.getImagePath());
-		}
-        
-        BufferedImage torsoImage = ImageLoader.getImage(torsoImagePath);
-        
-        BufferedImage image = new BufferedImage(Tile.WIDTH - 2*Tile.PADDING, Tile.HEIGHT - 2*Tile.PADDING,
+		
+		BufferedImage image = new BufferedImage(Tile.WIDTH - 2*Tile.PADDING, Tile.HEIGHT - 2*Tile.PADDING,
 				BufferedImage.TYPE_INT_ARGB);
-        Graphics2D imageDrawingGraphics = image.createGraphics();
-        //Use a new image's graphics object to draw the partial images on it.
-        
-        int torsoPositionX = image.getWidth()/2 - torsoImage.getWidth()/2;
-        int torsoPositionY = image.getHeight()/2 - torsoImage.getHeight()/2;
-        
-        imageDrawingGraphics.drawImage(torsoImage, torsoPositionX, torsoPositionY, null);
-        if (leftTool != null) {
-        	imageDrawingGraphics.drawImage(leftTool, torsoPositionX - leftTool.getWidth(), image.getHeight()/2 - leftTool.getHeight()/2, null);
-        }
-        imageDrawingGraphics.drawImage(rightTool, torsoPositionX + torsoImage.getWidth(), image.getHeight()/2 - rightTool.getHeight()/2, null);
-        return image;
+		Graphics2D imageDrawingGraphics = image.createGraphics();
+		//Use a new image's graphics object to draw the partial images on it.
+		draw(imageDrawingGraphics, atlas, 0, 0);
+		imageDrawingGraphics.dispose();
+		
+		this.image = image;
+		this.imageParts = parts;
+		return image;
+	}
+	
+	/**
+	 * Draws the unit's appearance straight from the sprite atlas, without making an image of it.
+	 * It's drawn the same as getImage, in a square the size of a tile without its padding.
+	 * 
+	 * @param graphics the graphics to draw with.
+	 * @param x the x coordinate of the square's left edge.
+	 * @param y the y coordinate of the square's top edge.
+	 * @throws IOException if part of the image couldn't be loaded.
+	 * @throws IllegalArgumentException if an image classpath couldn't be used for loading.
+	 */
+	public void draw(Graphics graphics, int x, int y) throws IOException, IllegalArgumentException {
+		draw(graphics, SpriteAtlas.get(), x, y);
+	}
+	
+	/** Draws the unit's torso and tools from an atlas, in a square the size of a tile without its padding. */
+	private void draw(Graphics graphics, SpriteAtlas atlas, int x, int y) throws IOException {
+		int size = Tile.WIDTH - 2*Tile.PADDING;
+		String leftToolPath = getLeftToolPath(), rightToolPath = getRightToolPath();
+		
+		int torsoWidth = atlas.getWidth(torsoImagePath);
+		int torsoPositionX = x + size/2 - torsoWidth/2;
+		int torsoPositionY = y + size/2 - atlas.getHeight(torsoImagePath)/2;
+		
+		atlas.drawImage(graphics, torsoImagePath, torsoPositionX, torsoPositionY, false);
+		if (leftToolPath != null) {
+			atlas.drawImage(graphics, leftToolPath, torsoPositionX - atlas.getWidth(leftToolPath), y + size/2 - atlas.getHeight(leftToolPath)/2, false);
+		}
+		//The right hand tool faces the other way, unless it's the unit's default attack.
+		atlas.drawImage(graphics, rightToolPath, torsoPositionX + torsoWidth, y + size/2 - atlas.getHeight(rightToolPath)/2, abilities.size() > 2);
+	}
+	
+	//Note that some of this code currently shows up as dead, 
+	//but is necessary if reducing ABILITIES_PER_UNIT is to be possible.
+	
+	/** @return the path to the image of the tool in the unit's left hand, or null if it has no second ability. */
+	private String getLeftToolPath() {
+		return abilities.size() > 1 ? abilities.get(1).getImagePath() : null;
+	}
+	
+	/** @return the path to the image of the tool in the unit's right hand, which is an attack if it has no third ability. */
+	private String getRightToolPath() {
+		return abilities.size() > 2 ? abilities.get(2).getImagePath() : Ability.ATTACK.getImagePath();
 	}
 	
 	/** 
@@ -153,10 +209,12 @@ public class Unit implements Serializable {
 	 */
 	public void tickDownStatuses(int currentPlayerIndex) {
 		// Tick down all statuses caused by the player who is starting their turn.
-		for (Status status : statuses) {
+		Iterator<UnitStatus> iterator = statuses.iterator();
+		while (iterator.hasNext()) {
+			Status status = iterator.next();
 			status.tickDown(currentPlayerIndex);
 			if (status.getRemainingDuration() <= 0) {
-				statuses.remove(status);
+				iterator.remove(); //Removing through the set itself would break the loop.
 			}
 		}
 	}
@@ -254,6 +312,11 @@ public class Unit implements Serializable {
 		return active;
 	}
 	
+	/** @return the path to the unit's torso image. */
+	public String getTorsoImagePath() {
+		return torsoImagePath;
+	}
+	
 	/** @return the unit's randomly generated name. */
 	public String getName() {
 		return name;
@@ -43,6 +43,8 @@ public class GameInfoPanel extends JPanel {
 	private JLabel currentPlayerLabel;
 	/** The label that displays the round number. */
 	private JLabel currentRoundLabel;
+	/** The label that displays each player's estimated chance of winning. */
+	private JLabel winProbabilityLabel;
 	/** A button that a player can click to concede the match. */
 	private JButton surrenderButton;
 	
@@ -67,6 +69,8 @@ public class GameInfoPanel extends JPanel {
 		super.add(new JLabel("Round:"));
 		super.add(currentRoundLabel = new JLabel("0"));
 		super.add(new JLabel("|"));
+		super.add(winProbabilityLabel = new JLabel(""));
+		super.add(new JLabel("|"));
 		
 		endTurnButton = new JButton(END_TURN_BUTTON_TEXT);
 		endTurnButton.setPreferredSize(BUTTON_DIMENSION);
@@ -94,6 +98,33 @@ public class GameInfoPanel extends JPanel {
 		currentRoundLabel.setText(String.valueOf(currentRound));
 	}
 	
+	/**
+	 * Shows each player's estimated chance of winning.
+	 * 
+	 * @param players the players in the match.
+	 * @param winProbabilities each player's chance of winning, indexed like players.
+	 * @param drawProbability the chance that nobody wins.
+	 * @param rollouts the number of played out matches the estimate is based on.
+	 */
+	public void setWinProbabilities(Player[] players, double[] winProbabilities, double drawProbability, int rollouts) {
+		StringBuilder text = new StringBuilder("Odds:");
+		for (int index = 0; index < players.length; index++) {
+			if (!players[index].isDefeated()) {
+				text.append(" ").append(players[index].getTheme().toString()).append(" ")
+						.append(Math.round(winProbabilities[index] * 100)).append("%");
+			}
+		}
+		winProbabilityLabel.setText(text.toString());
+		winProbabilityLabel.setToolTipText("Estimated from " + rollouts + " simulated matches, "
+				+ Math.round(drawProbability * 100) + "% of which nobody won.");
+	}
+	
+	/** Hides the estimated chances of winning, for instance while a new estimate is being made. */
+	public void clearWinProbabilities() {
+		winProbabilityLabel.setText("Odds: ...");
+		winProbabilityLabel.setToolTipText(null);
+	}
+	
 	/**
 	 * Sets whether a surrender is pending confirmation right now.
 	 * 
@@ -117,5 +148,7 @@ public class GameInfoPanel extends JPanel {
 		endTurnButton.setEnabled(false);
 		surrenderButton.setEnabled(false);
 		playerTurnLabel.setText("Last turn:");
+		winProbabilityLabel.setText("");
+		winProbabilityLabel.setToolTipText(null);
 	}
 }
@@ -0,0 +1,87 @@
+package tics.match.view;
+
+import java.awt.Dimension;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.ImageIcon;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import tics.match.SavePreview;
+
+/**
+ * A file chooser accessory that shows the preview of the selected save: a map of the board, when it was saved, and how far the match got.
+ * Only the preview at the start of the file is read, so moving through a large folder of saves stays instant.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+@SuppressWarnings("serial")
+public class SavePreviewPanel extends JPanel implements PropertyChangeListener {
+	/** The width and height, in screen pixels, of each pixel of the thumbnail. */
+	private static final int PIXEL_SIZE = 4;
+
+	/** Shows the thumbnail. */
+	private JLabel thumbnailLabel;
+	/** Shows the rest of the preview. */
+	private JLabel detailsLabel;
+
+	/**
+	 * Creates the panel, and starts following a file chooser's selection.
+	 *
+	 * @param fileChooser the chooser to show the accessory in.
+	 */
+	public SavePreviewPanel(JFileChooser fileChooser) {
+		setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
+		setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 0));
+		setPreferredSize(new Dimension(SavePreview.MAXIMUM_THUMBNAIL_SIZE * PIXEL_SIZE + 30, SavePreview.MAXIMUM_THUMBNAIL_SIZE * PIXEL_SIZE + 80));
+
+		thumbnailLabel = new JLabel();
+		add(thumbnailLabel);
+		detailsLabel = new JLabel();
+		add(detailsLabel);
+
+		fileChooser.addPropertyChangeListener(JFileChooser.SELECTED_FILE_CHANGED_PROPERTY, this);
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent event) {
+		displayPreview((File) event.getNewValue());
+	}
+
+	/**
+	 * Shows the preview of a save.
+	 *
+	 * @param file the save, or null to show nothing.
+	 */
+	public void displayPreview(File file) {
+		thumbnailLabel.setIcon(null);
+		if (file == null || !file.isFile()) {
+			detailsLabel.setText("");
+			return;
+		}
+
+		try {
+			SavePreview preview = SavePreview.read(file.getPath());
+			if (preview == null) {
+				detailsLabel.setText("<html>This game was saved<br>before saves had previews.</html>");
+				return;
+			}
+			thumbnailLabel.setIcon(new ImageIcon(preview.createThumbnailImage(PIXEL_SIZE)));
+			detailsLabel.setText("<html>" + DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT).format(new Date(preview.getSavedAt()))
+					+ "<br>" + preview.getWidth() + "x" + preview.getHeight() + ", " + preview.getPlayerCount() + " players"
+					+ "<br>Round " + preview.getCurrentRound()
+					+ (preview.isInProgress() ? ", player " + (preview.getCurrentPlayerIndex() + 1) + " to play" : ", finished") + "</html>");
+		} catch (IOException exception) {
+			detailsLabel.setText("<html>This isn't a save<br>that can be loaded.</html>");
+		}
+	}
+}
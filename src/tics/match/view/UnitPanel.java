@@ -1,5 +1,6 @@
 package tics.match.view;
 
+import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JPanel;
 import javax.swing.JLabel;
@@ -17,6 +18,7 @@ import javax.swing.BoxLayout;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 
 import javax.swing.JScrollPane;
@@ -34,7 +36,7 @@ import tics.match.model.Ability;
 import tics.match.model.Player;
 import tics.match.model.Unit;
 import tics.match.model.UnitStatus;
-import tics.util.load.PropertiesLoader;
+import tics.util.load.ColourRole;
 
 import java.awt.Insets;
 
@@ -69,6 +71,8 @@ public class UnitPanel extends JPanel {
 	private JPanel statusPanel;
 	private JProgressBar moveBar;
 	private JPanel portraitPanel;
+	/** Shows the unit's image. It's kept between units, and only given a new icon when the image changes. */
+	private JLabel portraitLabel;
 	private JPanel informationPanel;
 	private JLabel factionLabel;
 
@@ -110,6 +114,9 @@ public class UnitPanel extends JPanel {
 		portraitPanelConstraints.gridy = 0;
 		informationPanel.add(portraitPanel, portraitPanelConstraints);
 		
+		portraitLabel = new JLabel("", JLabel.CENTER);
+		portraitPanel.add(portraitLabel);
+		
 		factionLabel = new JLabel("faction");
 		factionLabel.setHorizontalAlignment(SwingConstants.LEFT);
 		factionLabel.setFont(new Font("Tahoma", Font.PLAIN, 14));
@@ -253,12 +260,17 @@ public class UnitPanel extends JPanel {
 				factionLabel.setText(" (independant) ");
 			}
 			
-			portraitPanel.removeAll();
 			try {
-				portraitPanel.add(new JLabel("", new ImageIcon(unit.getImage()), JLabel.CENTER));
+				BufferedImage portrait = unit.getImage(); //Units keep their images, so hovering between units doesn't draw anything new.
+				Icon icon = portraitLabel.getIcon();
+				if (!(icon instanceof ImageIcon) || ((ImageIcon) icon).getImage() != portrait) {
+					portraitLabel.setIcon(new ImageIcon(portrait));
+				}
 			} catch (IllegalArgumentException exception) {
+				portraitLabel.setIcon(null);
 				exception.printStackTrace();
 			} catch (IOException exception) {
+				portraitLabel.setIcon(null);
 				exception.printStackTrace();
 			}
 			
@@ -301,14 +313,14 @@ public class UnitPanel extends JPanel {
 		healthBar.setValue(unit.getCurrentHealth());
 		
 		if (unit.getCurrentHealth() < Ability.ATTACK.getProperty(Ability.Property.DAMAGE)) {
-			healthBar.setForeground(PropertiesLoader.getColour("very_low_health"));//If a unit will die from one attack, make that obvious.
-			currentHealthLabel.setForeground(PropertiesLoader.getColour("very_low_health_text"));
+			healthBar.setForeground(ColourRole.VERY_LOW_HEALTH.get());//If a unit will die from one attack, make that obvious.
+			currentHealthLabel.setForeground(ColourRole.VERY_LOW_HEALTH_TEXT.get());
 		} else if (unit.getCurrentHealth() < 2*Ability.ATTACK.getProperty(Ability.Property.DAMAGE)) {
-			healthBar.setForeground(PropertiesLoader.getColour("low_health")); //Similarly if two attacks will kill it.
-			currentHealthLabel.setForeground(PropertiesLoader.getColour("low_health_text"));
+			healthBar.setForeground(ColourRole.LOW_HEALTH.get()); //Similarly if two attacks will kill it.
+			currentHealthLabel.setForeground(ColourRole.LOW_HEALTH_TEXT.get());
 		} else {
-			healthBar.setForeground(PropertiesLoader.getColour("health"));
-			currentHealthLabel.setForeground(PropertiesLoader.getColour("default_text"));
+			healthBar.setForeground(ColourRole.HEALTH.get());
+			currentHealthLabel.setForeground(ColourRole.DEFAULT_TEXT.get());
 		}		
 	}
 
@@ -327,14 +339,14 @@ public class UnitPanel extends JPanel {
 		
 		if (unit.getCurrentMove() == unit.getMove()) {
 			if (unit.getMove() > Unit.BASE_MOVE) {
-				moveBar.setForeground(PropertiesLoader.getColour("buff"));
+				moveBar.setForeground(ColourRole.BUFF.get());
 			} else if (unit.getMove() < Unit.BASE_MOVE){
-				moveBar.setForeground(PropertiesLoader.getColour("debuff"));
+				moveBar.setForeground(ColourRole.DEBUFF.get());
 			} else {
-				moveBar.setForeground(PropertiesLoader.getColour("full_move"));
+				moveBar.setForeground(ColourRole.FULL_MOVE.get());
 			}
 		} else if (unit.getCurrentMove() < unit.getMove()) {
-			moveBar.setForeground(PropertiesLoader.getColour("partial_move")); //The unit has finished *part* of its turn.
+			moveBar.setForeground(ColourRole.PARTIAL_MOVE.get()); //The unit has finished *part* of its turn.
 		}
 	}
 	
@@ -351,9 +363,9 @@ public class UnitPanel extends JPanel {
 		statusLabel.setToolTipText(status.getDescription());
 		
 		if (status.isPositive()) {
-			statusLabel.setForeground(PropertiesLoader.getColour("buff"));
+			statusLabel.setForeground(ColourRole.BUFF.get());
 		} else {
-			statusLabel.setForeground(PropertiesLoader.getColour("debuff"));
+			statusLabel.setForeground(ColourRole.DEBUFF.get());
 		}
 		
 		statusPanel.add(statusLabel);
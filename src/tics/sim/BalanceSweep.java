@@ -0,0 +1,381 @@
+package tics.sim;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tics.ai.AgentType;
+import tics.ai.Evaluator;
+import tics.match.model.Ability;
+import tics.util.load.PropertiesLoader;
+
+/**
+ * A command line tool that tries out changes to ability properties by playing batches of headless matches with each change.
+ *
+ * Each swept property is given a list of values, and the sweep covers either every combination of them (a grid)
+ * or a random sample of combinations. Configurations are played one after another, since ability properties are shared
+ * by every match, but the matches for each configuration are spread over a thread pool.
+ * Every configuration is played with the same seeds, so the differences between them come from the properties rather than luck.
+ *
+ * Matches are played in batches. After each batch, if any seat's win rate is confidently outside its fair share
+ * by more than the tolerance, the configuration is clearly unbalanced and the rest of its matches are skipped.
+ *
+ * Usage:
+ *   BalanceSweep (--scenario file.json | --generate width height players units abilities)
+ *                --sweep ABILITY.PROPERTY=values [--sweep ...] [options]
+ * where values are a comma separated list (3,4,6) or an inclusive range with an optional step (2:8 or 2:8:2).
+ * Options:
+ *   --random 20            sample this many configurations instead of playing the whole grid.
+ *   --matches 400          the most matches to play per configuration.
+ *   --batch 50             the number of matches between checks for imbalance.
+ *   --tolerance 0.1        how far from a fair share a win rate must confidently be to stop early.
+ *   --agents greedy        the agent for each player, as for BatchRunner.
+ *   --seed 0, --threads 4, --rounds 100, --output report.tsv
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class BalanceSweep {
+	/** The column names of the report. */
+	private static final String HEADER = "configuration\tmatches\tstopped_early\tdraws\tseat_win_rates\trounds\tability_uses_per_match";
+
+	/**
+	 * Runs a sweep.
+	 *
+	 * @param args the command line arguments, as described above.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		System.setProperty("java.awt.headless", "true");
+
+		MatchSetup setup = null;
+		AgentType[] agentTypes = { AgentType.GREEDY };
+		ArrayList<Dimension> dimensions = new ArrayList<Dimension>();
+		int sampleCount = 0, matches = 400, batchSize = 50, rounds = 100, threads = Runtime.getRuntime().availableProcessors();
+		long seed = 0;
+		double tolerance = 0.1;
+		String outputPath = null;
+
+		try {
+			for (int index = 0; index < args.length; index++) {
+				String option = args[index];
+				if (option.equals("--scenario")) {
+					setup = new MatchSetup(args[++index]);
+				} else if (option.equals("--generate")) {
+					setup = new MatchSetup(Integer.parseInt(args[++index]), Integer.parseInt(args[++index]), Integer.parseInt(args[++index]),
+							Integer.parseInt(args[++index]), Integer.parseInt(args[++index]));
+				} else if (option.equals("--sweep")) {
+					dimensions.add(Dimension.parse(args[++index]));
+				} else if (option.equals("--random")) {
+					sampleCount = Integer.parseInt(args[++index]);
+				} else if (option.equals("--matches")) {
+					matches = Integer.parseInt(args[++index]);
+				} else if (option.equals("--batch")) {
+					batchSize = Integer.parseInt(args[++index]);
+				} else if (option.equals("--tolerance")) {
+					tolerance = Double.parseDouble(args[++index]);
+				} else if (option.equals("--agents")) {
+					String[] names = args[++index].split(",");
+					agentTypes = new AgentType[names.length];
+					for (int agent = 0; agent < names.length; agent++) {
+						agentTypes[agent] = AgentType.valueOf(names[agent].trim().toUpperCase());
+					}
+				} else if (option.equals("--seed")) {
+					seed = Long.parseLong(args[++index]);
+				} else if (option.equals("--threads")) {
+					threads = Integer.parseInt(args[++index]);
+				} else if (option.equals("--rounds")) {
+					rounds = Integer.parseInt(args[++index]);
+				} else if (option.equals("--output")) {
+					outputPath = args[++index];
+				} else {
+					throw new IllegalArgumentException("Unknown option " + option + ".");
+				}
+			}
+			if (setup == null || dimensions.isEmpty()) {
+				throw new IllegalArgumentException("A scenario or generator settings, and at least one --sweep, are needed.");
+			}
+			if (matches < 1 || batchSize < 1 || threads < 1 || rounds < 1) {
+				throw new IllegalArgumentException("The numbers of matches, matches per batch, threads and rounds must all be at least 1.");
+			}
+		} catch (RuntimeException exception) {
+			System.err.println(exception.getMessage());
+			System.err.println("Usage: BalanceSweep (--scenario <file.json> | --generate <width> <height> <players> <units> <abilities>)");
+			System.err.println("       --sweep <ABILITY.PROPERTY=values> [--sweep ...] [--random <count>] [--matches <count>] [--batch <count>]");
+			System.err.println("       [--tolerance <rate>] [--agents <agent,...>] [--seed <seed>] [--threads <count>] [--rounds <count>] [--output <file>]");
+			return;
+		}
+
+		PropertiesLoader.get("settings/Colours");
+		Evaluator.getDefault();
+		setup.preload();
+
+		List<int[]> configurations = sampleCount > 0 ? sampleConfigurations(dimensions, sampleCount, new Random(seed))
+				: getGridConfigurations(dimensions);
+
+		PrintWriter output = outputPath == null ? null : new PrintWriter(new FileWriter(outputPath));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			printLine(output, HEADER);
+			for (int[] configuration : configurations) {
+				String line = sweepConfiguration(executor, setup, agentTypes, dimensions, configuration,
+						matches, batchSize, tolerance, seed, rounds);
+				printLine(output, line);
+			}
+		} finally {
+			executor.shutdown();
+			Ability.resetProperties();
+			if (output != null) {
+				output.close();
+			}
+		}
+	}
+
+	/**
+	 * Plays the matches for one configuration.
+	 *
+	 * @param configuration the index of the chosen value in each dimension.
+	 * @return the configuration's line of the report.
+	 */
+	private static String sweepConfiguration(ExecutorService executor, MatchSetup setup, AgentType[] agentTypes,
+			List<Dimension> dimensions, int[] configuration, int matches, int batchSize, double tolerance, long seed, int rounds)
+			throws InterruptedException, ExecutionException, IOException {
+		Ability.resetProperties();
+		StringBuilder description = new StringBuilder();
+		for (int index = 0; index < dimensions.size(); index++) {
+			Dimension dimension = dimensions.get(index);
+			int value = dimension.values[configuration[index]];
+			dimension.ability.setProperty(dimension.property, value);
+			description.append(index == 0 ? "" : " ").append(dimension.getName()).append('=').append(value);
+		}
+
+		Tally tally = null;
+		boolean stoppedEarly = false;
+		for (int played = 0; played < matches && !stoppedEarly; ) {
+			int batch = Math.min(batchSize, matches - played);
+			ArrayList<Future<MatchResult>> futures = new ArrayList<Future<MatchResult>>(batch);
+			for (int index = played; index < played + batch; index++) {
+				futures.add(executor.submit(new SimulatedMatch(setup, agentTypes, index, seed + index, rounds)));
+			}
+
+			for (Future<MatchResult> future : futures) {
+				MatchResult result = future.get();
+				if (tally == null) {
+					tally = new Tally(result.getPlayerCount());
+				}
+				tally.add(result);
+			}
+			played += batch;
+			stoppedEarly = played < matches && tally.isClearlyUnbalanced(tolerance);
+		}
+
+		String line = description + "\t" + tally.getMatches() + "\t" + stoppedEarly + "\t" + tally.describe();
+		System.err.println(description + ": " + tally.getMatches() + " matches" + (stoppedEarly ? ", clearly unbalanced." : "."));
+		return line;
+	}
+
+	/** Writes a line of the report to the output file, or to standard output if there isn't one. */
+	private static void printLine(PrintWriter output, String line) {
+		if (output == null) {
+			System.out.println(line);
+		} else {
+			output.println(line);
+			output.flush();
+		}
+	}
+
+	/**
+	 * Lists every combination of values.
+	 *
+	 * @param dimensions the swept properties.
+	 * @return the index of the chosen value in each dimension, for every combination.
+	 */
+	private static List<int[]> getGridConfigurations(List<Dimension> dimensions) {
+		ArrayList<int[]> configurations = new ArrayList<int[]>();
+		int[] configuration = new int[dimensions.size()];
+		while (true) {
+			configurations.add(configuration.clone());
+
+			int index = 0; //Count up like an odometer, with each dimension as a digit.
+			while (index < configuration.length && ++configuration[index] == dimensions.get(index).values.length) {
+				configuration[index] = 0;
+				index++;
+			}
+			if (index == configuration.length) {
+				return configurations;
+			}
+		}
+	}
+
+	/**
+	 * Picks random combinations of values, without repeats.
+	 *
+	 * @param dimensions the swept properties.
+	 * @param count the number of combinations to pick. If the grid is smaller than this, all of it is used.
+	 * @param random the source of the sample.
+	 * @return the index of the chosen value in each dimension, for every sampled combination.
+	 */
+	private static List<int[]> sampleConfigurations(List<Dimension> dimensions, int count, Random random) {
+		long gridSize = 1;
+		for (Dimension dimension : dimensions) {
+			gridSize *= dimension.values.length;
+		}
+		if (gridSize <= count) {
+			return getGridConfigurations(dimensions);
+		}
+
+		ArrayList<int[]> configurations = new ArrayList<int[]>(count);
+		HashSet<String> seen = new HashSet<String>();
+		while (configurations.size() < count) {
+			int[] configuration = new int[dimensions.size()];
+			StringBuilder key = new StringBuilder();
+			for (int index = 0; index < configuration.length; index++) {
+				configuration[index] = random.nextInt(dimensions.get(index).values.length);
+				key.append(configuration[index]).append(',');
+			}
+			if (seen.add(key.toString())) {
+				configurations.add(configuration);
+			}
+		}
+		return configurations;
+	}
+
+	/** A swept property: an ability, one of its properties, and the values to try. */
+	private static class Dimension {
+		final Ability ability;
+		final Ability.Property property;
+		final int[] values;
+
+		Dimension(Ability ability, Ability.Property property, int[] values) {
+			this.ability = ability;
+			this.property = property;
+			this.values = values;
+		}
+
+		/**
+		 * Reads a dimension from the command line.
+		 *
+		 * @param text the dimension, as in "POUND.DAMAGE=4:8" or "SNIPE.RANGE=3,4,6".
+		 * @return the dimension.
+		 * @throws IllegalArgumentException if the text can't be read.
+		 */
+		static Dimension parse(String text) {
+			int dot = text.indexOf('.'), equals = text.indexOf('=');
+			if (dot < 0 || equals < dot) {
+				throw new IllegalArgumentException("Sweeps look like ABILITY.PROPERTY=values, not " + text + ".");
+			}
+			Ability ability = Ability.valueOf(text.substring(0, dot).toUpperCase());
+			Ability.Property property = Ability.Property.valueOf(text.substring(dot + 1, equals).toUpperCase());
+			String values = text.substring(equals + 1);
+
+			ArrayList<Integer> valueList = new ArrayList<Integer>();
+			if (values.contains(":")) {
+				String[] bounds = values.split(":");
+				int step = bounds.length > 2 ? Integer.parseInt(bounds[2]) : 1;
+				for (int value = Integer.parseInt(bounds[0]); value <= Integer.parseInt(bounds[1]); value += Math.max(step, 1)) {
+					valueList.add(value);
+				}
+			} else {
+				for (String value : values.split(",")) {
+					valueList.add(Integer.parseInt(value.trim()));
+				}
+			}
+
+			int[] valueArray = new int[valueList.size()];
+			for (int index = 0; index < valueArray.length; index++) {
+				valueArray[index] = valueList.get(index);
+			}
+			return new Dimension(ability, property, valueArray);
+		}
+
+		/** @return the dimension's name, as in "POUND.DAMAGE". */
+		String getName() {
+			return ability.name() + "." + property.name();
+		}
+	}
+
+	/** The results of the matches played for one configuration. */
+	private static class Tally {
+		/** The number of matches each seat won, indexed by player. */
+		final long[] wins;
+		long matches, draws;
+		final Statistics.RunningMean rounds = new Statistics.RunningMean();
+		/** The number of times each ability was used per match, by every player together. */
+		final Statistics.RunningMean[] abilityUses = new Statistics.RunningMean[Ability.values().length];
+
+		Tally(int playerCount) {
+			wins = new long[playerCount];
+			for (int index = 0; index < abilityUses.length; index++) {
+				abilityUses[index] = new Statistics.RunningMean();
+			}
+		}
+
+		void add(MatchResult result) {
+			matches++;
+			if (result.getWinner() < 0) {
+				draws++;
+			} else {
+				wins[result.getWinner()]++;
+			}
+			rounds.add(result.getRounds());
+
+			for (Ability ability : Ability.values()) {
+				int uses = 0;
+				for (int playerIndex = 0; playerIndex < wins.length; playerIndex++) {
+					uses += result.getAbilityUses(playerIndex, ability);
+				}
+				abilityUses[ability.ordinal()].add(uses);
+			}
+		}
+
+		/**
+		 * Checks whether any seat wins confidently more or less often than its fair share, by more than a tolerance.
+		 * Only decisive matches count, so a configuration that produces lots of draws isn't mistaken for an unfair one.
+		 */
+		boolean isClearlyUnbalanced(double tolerance) {
+			long decisive = matches - draws;
+			double fairShare = 1.0 / wins.length;
+			for (long seatWins : wins) {
+				double[] interval = Statistics.getWilsonInterval(seatWins, decisive, Statistics.Z_95);
+				if (decisive > 0 && (interval[0] > fairShare + tolerance || interval[1] < fairShare - tolerance)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		long getMatches() {
+			return matches;
+		}
+
+		/** @return the draw rate, seat win rates, rounds and ability uses, as tab separated columns. */
+		String describe() {
+			StringBuilder description = new StringBuilder();
+			double[] interval = Statistics.getWilsonInterval(draws, matches, Statistics.Z_95);
+			description.append(Statistics.format((double) draws / matches, interval[0], interval[1])).append('\t');
+
+			for (int playerIndex = 0; playerIndex < wins.length; playerIndex++) {
+				interval = Statistics.getWilsonInterval(wins[playerIndex], matches, Statistics.Z_95);
+				description.append(playerIndex == 0 ? "" : ", ")
+						.append(Statistics.format((double) wins[playerIndex] / matches, interval[0], interval[1]));
+			}
+			description.append('\t').append(rounds).append('\t');
+
+			boolean first = true;
+			for (Ability ability : Ability.values()) {
+				if (abilityUses[ability.ordinal()].getMean() > 0) {
+					description.append(first ? "" : ", ").append(ability.name()).append(' ').append(abilityUses[ability.ordinal()]);
+					first = false;
+				}
+			}
+			return description.toString();
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package tics.sim;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a results file written by ColumnarResultWriter, one block at a time.
+ *
+ * Each block is read into the same buffer and decoded into the same column arrays, so reading doesn't allocate per record.
+ * After nextBlock returns true, the getters give the fields of each record in the block, by its position in the block.
+ *
+ * Run on its own, it prints a summary of a results file:
+ *   ColumnarResultReader results.tcr
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class ColumnarResultReader {
+	/** The channel the file is read through. */
+	private final FileChannel channel;
+	/** The buffer that blocks are read into. */
+	private final ByteBuffer buffer;
+	/** The number of player columns. */
+	private final int playerCount;
+	/** The names of the abilities, in the order of their columns. */
+	private final String[] abilityNames;
+	/** The names of the scenarios that records refer to. */
+	private final String[] scenarioNames;
+
+	/** The columns of the current block, laid out as in ColumnarResultWriter. */
+	private final long[] indices, seeds;
+	private final short[] scenarios;
+	private final byte[] players, winners;
+	private final int[] rounds;
+	private final int[][] unitsLeft, healthLeft, abilityUses;
+	/** The number of records in the current block. */
+	private int size;
+
+	/**
+	 * Opens a results file and reads its header.
+	 *
+	 * @param filePath the path to the file.
+	 * @throws IOException if the file can't be read, or isn't a results file this reader understands.
+	 */
+	public ColumnarResultReader(String filePath) throws IOException {
+		channel = new FileInputStream(filePath).getChannel();
+		ByteBuffer header = ByteBuffer.allocate(16);
+		readFully(header);
+		header.flip();
+		if (header.getInt() != ColumnarResultWriter.MAGIC || header.getInt() != ColumnarResultWriter.VERSION) {
+			channel.close();
+			throw new IOException(filePath + " isn't a results file of version " + ColumnarResultWriter.VERSION + ".");
+		}
+		playerCount = header.getInt();
+		abilityNames = readNames(header.getInt());
+		header.clear().limit(4);
+		readFully(header);
+		header.flip();
+		scenarioNames = readNames(header.getInt());
+
+		indices = new long[ColumnarResultWriter.BLOCK_RECORDS];
+		seeds = new long[ColumnarResultWriter.BLOCK_RECORDS];
+		scenarios = new short[ColumnarResultWriter.BLOCK_RECORDS];
+		players = new byte[ColumnarResultWriter.BLOCK_RECORDS];
+		winners = new byte[ColumnarResultWriter.BLOCK_RECORDS];
+		rounds = new int[ColumnarResultWriter.BLOCK_RECORDS];
+		unitsLeft = new int[playerCount][ColumnarResultWriter.BLOCK_RECORDS];
+		healthLeft = new int[playerCount][ColumnarResultWriter.BLOCK_RECORDS];
+		abilityUses = new int[playerCount * abilityNames.length][ColumnarResultWriter.BLOCK_RECORDS];
+		buffer = ByteBuffer.allocateDirect(ColumnarResultWriter.BLOCK_RECORDS
+				* ColumnarResultWriter.getRecordBytes(playerCount, abilityNames.length));
+	}
+
+	/**
+	 * Reads the next block of records.
+	 *
+	 * @return true if a block was read, or false at the end of the file.
+	 * @throws IOException if the file can't be read, ends partway through a block, or is damaged.
+	 */
+	public boolean nextBlock() throws IOException {
+		buffer.clear().limit(4);
+		if (channel.read(buffer) <= 0) {
+			size = 0;
+			return false;
+		}
+		readFully(buffer);
+		buffer.flip();
+		int blockSize = buffer.getInt();
+		if (blockSize < 0 || blockSize > ColumnarResultWriter.BLOCK_RECORDS) {
+			size = 0;
+			throw new IOException("The results file has a damaged block, of " + blockSize + " records.");
+		}
+		size = blockSize;
+
+		buffer.clear().limit(size * ColumnarResultWriter.getRecordBytes(playerCount, abilityNames.length));
+		readFully(buffer);
+		buffer.flip();
+		buffer.asLongBuffer().get(indices, 0, size);
+		buffer.position(buffer.position() + 8 * size); //Bulk gets through a view don't move the buffer's own position.
+		buffer.asLongBuffer().get(seeds, 0, size);
+		buffer.position(buffer.position() + 8 * size);
+		buffer.asShortBuffer().get(scenarios, 0, size);
+		buffer.position(buffer.position() + 2 * size);
+		buffer.get(players, 0, size);
+		buffer.get(winners, 0, size);
+		getColumn(rounds);
+		for (int playerIndex = 0; playerIndex < playerCount; playerIndex++) {
+			getColumn(unitsLeft[playerIndex]);
+			getColumn(healthLeft[playerIndex]);
+		}
+		for (int[] column : abilityUses) {
+			getColumn(column);
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the file.
+	 *
+	 * @throws IOException if the file couldn't be closed.
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/** @return the number of records in the current block. */
+	public int getBlockSize() {
+		return size;
+	}
+
+	/** @return the number of player columns, which is the most players any match in the file has. */
+	public int getPlayerCount() {
+		return playerCount;
+	}
+
+	/** @return the names of the abilities, in the order of their columns. */
+	public String[] getAbilityNames() {
+		return abilityNames.clone();
+	}
+
+	/** @return the number of the record's match within its batch. */
+	public long getIndex(int record) {
+		return indices[record];
+	}
+
+	/** @return the seed the record's match was played with. */
+	public long getSeed(int record) {
+		return seeds[record];
+	}
+
+	/** @return the name of the scenario or setup the record's match was made from. */
+	public String getScenario(int record) {
+		return scenarioNames[scenarios[record]];
+	}
+
+	/** @return the number of players in the record's match. */
+	public int getPlayers(int record) {
+		return players[record];
+	}
+
+	/** @return the index of the record's winning player, or -1 for a draw. */
+	public int getWinner(int record) {
+		return winners[record];
+	}
+
+	/** @return the number of the round the record's match ended in. */
+	public int getRounds(int record) {
+		return rounds[record];
+	}
+
+	/** @return the number of living units a player had left. */
+	public int getUnitsLeft(int record, int playerIndex) {
+		return unitsLeft[playerIndex][record];
+	}
+
+	/** @return the total health of a player's living units. */
+	public int getHealthLeft(int record, int playerIndex) {
+		return healthLeft[playerIndex][record];
+	}
+
+	/**
+	 * @param record the record's position in the current block.
+	 * @param playerIndex the index of a player.
+	 * @param ability the index of an ability in getAbilityNames.
+	 * @return the number of times the player used the ability.
+	 */
+	public int getAbilityUses(int record, int playerIndex, int ability) {
+		return abilityUses[playerIndex * abilityNames.length + ability][record];
+	}
+
+	/** Copies an int column out of the block buffer. */
+	private void getColumn(int[] column) {
+		buffer.asIntBuffer().get(column, 0, size);
+		buffer.position(buffer.position() + 4 * size);
+	}
+
+	/** Fills the rest of a buffer from the file. */
+	private void readFully(ByteBuffer destination) throws IOException {
+		while (destination.hasRemaining()) {
+			if (channel.read(destination) < 0) {
+				throw new EOFException("The results file ends partway through a block.");
+			}
+		}
+	}
+
+	/** Reads a list of names, each a short length followed by UTF-8 bytes. */
+	private String[] readNames(int count) throws IOException {
+		String[] names = new String[count];
+		ByteBuffer length = ByteBuffer.allocate(2);
+		for (int index = 0; index < count; index++) {
+			length.clear();
+			readFully(length);
+			length.flip();
+			ByteBuffer bytes = ByteBuffer.allocate(length.getShort());
+			readFully(bytes);
+			names[index] = new String(bytes.array(), "UTF-8");
+		}
+		return names;
+	}
+
+	/**
+	 * Prints a summary of a results file: the number of matches, how often each seat won, the mean length,
+	 * and how often each ability was used per match.
+	 *
+	 * @param args the path to the results file.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: ColumnarResultReader <results file>");
+			return;
+		}
+
+		ColumnarResultReader reader = new ColumnarResultReader(args[0]);
+		long matches = 0, draws = 0;
+		long[] wins = new long[reader.getPlayerCount()];
+		long[] abilityUses = new long[reader.abilityNames.length];
+		Statistics.RunningMean rounds = new Statistics.RunningMean();
+		while (reader.nextBlock()) {
+			for (int record = 0; record < reader.getBlockSize(); record++) {
+				matches++;
+				if (reader.getWinner(record) < 0) {
+					draws++;
+				} else {
+					wins[reader.getWinner(record)]++;
+				}
+				rounds.add(reader.getRounds(record));
+				for (int playerIndex = 0; playerIndex < reader.getPlayers(record); playerIndex++) {
+					for (int ability = 0; ability < abilityUses.length; ability++) {
+						abilityUses[ability] += reader.getAbilityUses(record, playerIndex, ability);
+					}
+				}
+			}
+		}
+		reader.close();
+
+		System.out.println(matches + " matches, " + draws + " draws, rounds " + rounds);
+		for (int playerIndex = 0; playerIndex < wins.length; playerIndex++) {
+			double[] interval = Statistics.getWilsonInterval(wins[playerIndex], matches, Statistics.Z_95);
+			System.out.println("Player " + (playerIndex + 1) + " win rate "
+					+ Statistics.format((double) wins[playerIndex] / Math.max(matches, 1), interval[0], interval[1]));
+		}
+		for (int ability = 0; ability < abilityUses.length; ability++) {
+			if (abilityUses[ability] > 0) {
+				System.out.println(reader.abilityNames[ability] + " " + String.format("%.3f", (double) abilityUses[ability] / matches) + " uses per match");
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package tics.sim;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import tics.match.model.Ability;
+
+/**
+ * Writes match results to a compact binary file, a block of records at a time, with each field stored as a column.
+ *
+ * Results are copied into preallocated primitive arrays, one per column, so nothing is allocated per record.
+ * When a block fills up, each column is copied into one buffer in bulk and the buffer is written with a single channel write.
+ *
+ * The file starts with a header:
+ *   int MAGIC, int VERSION, int players, int abilities, then each ability's name,
+ *   int scenarios, then each scenario's name (names are written as a short length and UTF-8 bytes.)
+ * Then come the blocks, each starting with its record count n, followed by the columns in this order:
+ *   long[n] match index, long[n] seed, short[n] scenario, byte[n] player count, byte[n] winner (-1 for a draw), int[n] rounds,
+ *   for each player: int[n] units left, int[n] health left,
+ *   for each player and then each ability: int[n] uses.
+ * Columns for players beyond a match's player count hold zeroes. Numbers are big-endian.
+ * ColumnarResultReader reads these files back.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class ColumnarResultWriter {
+	/** The first four bytes of every results file: "TICR". */
+	public static final int MAGIC = 0x54494352;
+	/** The version of the file format. */
+	public static final int VERSION = 1;
+	/** The number of records in a full block. */
+	public static final int BLOCK_RECORDS = 4096;
+	/** Every ability, kept so that adding a record doesn't copy Ability.values(). */
+	private static final Ability[] ABILITIES = Ability.values();
+
+	/** The channel the file is written through. */
+	private final FileChannel channel;
+	/** The buffer that blocks are assembled in. */
+	private final ByteBuffer buffer;
+	/** The number of player columns, which is the most players any match in the file has. */
+	private final int playerCount;
+	/** The number of scenario names in the header. */
+	private final int scenarioCount;
+
+	/** The columns of the current block. */
+	private final long[] indices, seeds;
+	private final short[] scenarios;
+	private final byte[] players, winners;
+	private final int[] rounds;
+	/** Columns for each player, indexed by player and then by record. */
+	private final int[][] unitsLeft, healthLeft;
+	/** Columns for each player's use of each ability, indexed by player * abilities + ability ordinal, and then by record. */
+	private final int[][] abilityUses;
+	/** The number of records in the current block. */
+	private int size;
+
+	/**
+	 * Creates a results file and writes its header.
+	 *
+	 * @param filePath the path to the file, which is replaced if it exists.
+	 * @param scenarioNames the names of the scenarios or setups that results will come from, indexed as in add.
+	 * @param playerCount the most players any match will have.
+	 * @throws IOException if the file can't be written.
+	 */
+	public ColumnarResultWriter(String filePath, String[] scenarioNames, int playerCount) throws IOException {
+		this.playerCount = playerCount;
+		this.scenarioCount = scenarioNames.length;
+		int abilityCount = ABILITIES.length;
+
+		indices = new long[BLOCK_RECORDS];
+		seeds = new long[BLOCK_RECORDS];
+		scenarios = new short[BLOCK_RECORDS];
+		players = new byte[BLOCK_RECORDS];
+		winners = new byte[BLOCK_RECORDS];
+		rounds = new int[BLOCK_RECORDS];
+		unitsLeft = new int[playerCount][BLOCK_RECORDS];
+		healthLeft = new int[playerCount][BLOCK_RECORDS];
+		abilityUses = new int[playerCount * abilityCount][BLOCK_RECORDS];
+
+		buffer = ByteBuffer.allocateDirect(4 + BLOCK_RECORDS * getRecordBytes(playerCount, abilityCount));
+		channel = new FileOutputStream(filePath).getChannel();
+
+		String[] abilityNames = new String[abilityCount];
+		for (Ability ability : ABILITIES) {
+			abilityNames[ability.ordinal()] = ability.name();
+		}
+		ByteBuffer header = ByteBuffer.allocate(5 * 4 + 2 * (abilityCount + scenarioNames.length)
+				+ getNamesLength(abilityNames) + getNamesLength(scenarioNames));
+		header.putInt(MAGIC).putInt(VERSION).putInt(playerCount).putInt(abilityCount);
+		for (String abilityName : abilityNames) {
+			putName(header, abilityName);
+		}
+		header.putInt(scenarioNames.length);
+		for (String scenarioName : scenarioNames) {
+			putName(header, scenarioName);
+		}
+		header.flip();
+		writeFully(header);
+	}
+
+	/**
+	 * Adds a result to the current block, and writes the block if it's full.
+	 *
+	 * @param result the result to add.
+	 * @param scenarioIndex the index of the result's scenario in the names given to the constructor.
+	 * @throws IOException if a full block couldn't be written.
+	 */
+	public void add(MatchResult result, int scenarioIndex) throws IOException {
+		if (result.getPlayerCount() > playerCount || scenarioIndex < 0 || scenarioIndex >= scenarioCount) {
+			throw new IllegalArgumentException("The result doesn't fit the columns of this file.");
+		}
+
+		indices[size] = result.getIndex();
+		seeds[size] = result.getSeed();
+		scenarios[size] = (short) scenarioIndex;
+		players[size] = (byte) result.getPlayerCount();
+		winners[size] = (byte) result.getWinner();
+		rounds[size] = result.getRounds();
+
+		for (int playerIndex = 0; playerIndex < playerCount; playerIndex++) {
+			boolean playing = playerIndex < result.getPlayerCount();
+			unitsLeft[playerIndex][size] = playing ? result.getUnitsLeft(playerIndex) : 0;
+			healthLeft[playerIndex][size] = playing ? result.getHealthLeft(playerIndex) : 0;
+			for (int ability = 0; ability < ABILITIES.length; ability++) {
+				abilityUses[playerIndex * ABILITIES.length + ability][size] = playing ? result.getAbilityUses(playerIndex, ABILITIES[ability]) : 0;
+			}
+		}
+
+		size++;
+		if (size == BLOCK_RECORDS) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the current block, even if it isn't full.
+	 *
+	 * @throws IOException if the block couldn't be written.
+	 */
+	public void flush() throws IOException {
+		if (size == 0) {
+			return;
+		}
+
+		buffer.clear();
+		buffer.putInt(size);
+		buffer.asLongBuffer().put(indices, 0, size);
+		buffer.position(buffer.position() + 8 * size); //Bulk puts through a view don't move the buffer's own position.
+		buffer.asLongBuffer().put(seeds, 0, size);
+		buffer.position(buffer.position() + 8 * size);
+		buffer.asShortBuffer().put(scenarios, 0, size);
+		buffer.position(buffer.position() + 2 * size);
+		buffer.put(players, 0, size);
+		buffer.put(winners, 0, size);
+		putColumn(rounds);
+		for (int playerIndex = 0; playerIndex < playerCount; playerIndex++) {
+			putColumn(unitsLeft[playerIndex]);
+			putColumn(healthLeft[playerIndex]);
+		}
+		for (int[] column : abilityUses) {
+			putColumn(column);
+		}
+
+		buffer.flip();
+		writeFully(buffer);
+		size = 0;
+	}
+
+	/**
+	 * Writes any remaining records and closes the file.
+	 *
+	 * @throws IOException if the file couldn't be written.
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/** Copies the filled part of an int column into the block buffer. */
+	private void putColumn(int[] column) {
+		buffer.asIntBuffer().put(column, 0, size);
+		buffer.position(buffer.position() + 4 * size);
+	}
+
+	/** Writes everything remaining in a buffer, since a channel may write less than asked. */
+	private void writeFully(ByteBuffer source) throws IOException {
+		while (source.hasRemaining()) {
+			channel.write(source);
+		}
+	}
+
+	/**
+	 * Finds the size of one record.
+	 *
+	 * @param playerCount the number of player columns.
+	 * @param abilityCount the number of abilities.
+	 * @return the number of bytes each record takes up in a block.
+	 */
+	static int getRecordBytes(int playerCount, int abilityCount) {
+		return 8 + 8 + 2 + 1 + 1 + 4 + playerCount * (4 + 4) + playerCount * abilityCount * 4;
+	}
+
+	/** @return the number of bytes the names take up in UTF-8. */
+	private static int getNamesLength(String[] names) throws IOException {
+		int length = 0;
+		for (String name : names) {
+			length += name.getBytes("UTF-8").length;
+		}
+		return length;
+	}
+
+	/** Writes a name as a short length followed by its UTF-8 bytes. */
+	private static void putName(ByteBuffer header, String name) throws IOException {
+		byte[] bytes = name.getBytes("UTF-8");
+		header.putShort((short) bytes.length);
+		header.put(bytes);
+	}
+}
@@ -0,0 +1,142 @@
+package tics.sim;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Player;
+import tics.match.model.Unit;
+
+/**
+ * The outcome of a headless match: who won, how long it took, and what was left of each side.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class MatchResult {
+	/** The column names of a results file, in the order toLine writes them. */
+	public static final String HEADER = "match\tseed\twinner\trounds\tunits_left\tability_uses\thealth_left";
+
+	/** The number of the match within its batch. */
+	private final long index;
+	/** The seed the match was created and played with. */
+	private final long seed;
+	/** The index of the winning player, or -1 for a draw. */
+	private final int winner;
+	/** The number of the round the match ended in. */
+	private final int rounds;
+	/** The number of living units each player had left, indexed by player. */
+	private final int[] unitsLeft;
+	/** The total health of each player's living units, indexed by player. */
+	private final int[] healthLeft;
+	/** The number of times each player used each ability, indexed by player and then by ability ordinal. */
+	private final int[][] abilityUses;
+
+	/**
+	 * Records the outcome of a finished match.
+	 *
+	 * @param index the number of the match within its batch.
+	 * @param seed the seed the match was created and played with.
+	 * @param match the match, which has either ended or reached its round limit.
+	 */
+	public MatchResult(long index, long seed, Match match) {
+		this.index = index;
+		this.seed = seed;
+
+		Player[] players = match.getPlayers();
+		int winner = -1;
+		unitsLeft = new int[players.length];
+		healthLeft = new int[players.length];
+		abilityUses = new int[players.length][Ability.values().length];
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			if (players[playerIndex] == match.getVictor()) {
+				winner = playerIndex;
+			}
+			unitsLeft[playerIndex] = players[playerIndex].getUnits().size();
+			for (Unit unit : players[playerIndex].getUnits()) {
+				healthLeft[playerIndex] += unit.getCurrentHealth();
+			}
+			for (Ability ability : Ability.values()) {
+				abilityUses[playerIndex][ability.ordinal()] = match.getAbilityUses(playerIndex, ability);
+			}
+		}
+		this.winner = winner;
+		this.rounds = match.getCurrentRound();
+	}
+
+	/**
+	 * Writes this result as a tab separated line, matching HEADER.
+	 * Players are numbered from 1 like scenario unit owners, and 0 means a draw.
+	 * Lists for each player are separated by commas, and ability counts are written as NAME:count.
+	 *
+	 * @return the line, without a line break.
+	 */
+	public String toLine() {
+		StringBuilder line = new StringBuilder();
+		line.append(index).append('\t').append(seed).append('\t').append(winner + 1).append('\t').append(rounds).append('\t');
+
+		for (int playerIndex = 0; playerIndex < unitsLeft.length; playerIndex++) {
+			line.append(playerIndex == 0 ? "" : ",").append(unitsLeft[playerIndex]);
+		}
+		line.append('\t');
+
+		for (int playerIndex = 0; playerIndex < abilityUses.length; playerIndex++) {
+			line.append(playerIndex == 0 ? "" : ",");
+			boolean first = true;
+			for (Ability ability : Ability.values()) {
+				int uses = abilityUses[playerIndex][ability.ordinal()];
+				if (uses > 0) {
+					line.append(first ? "" : " ").append(ability.name()).append(':').append(uses);
+					first = false;
+				}
+			}
+			if (first) {
+				line.append('-'); //Nothing was used, but the column still needs an entry.
+			}
+		}
+		line.append('\t');
+
+		for (int playerIndex = 0; playerIndex < healthLeft.length; playerIndex++) {
+			line.append(playerIndex == 0 ? "" : ",").append(healthLeft[playerIndex]);
+		}
+		return line.toString();
+	}
+
+	/** @return the number of the match within its batch. */
+	public long getIndex() {
+		return index;
+	}
+
+	/** @return the seed the match was created and played with. */
+	public long getSeed() {
+		return seed;
+	}
+
+	/** @return the index of the winning player, or -1 for a draw. */
+	public int getWinner() {
+		return winner;
+	}
+
+	/** @return the number of the round the match ended in. */
+	public int getRounds() {
+		return rounds;
+	}
+
+	/** @return the number of living units a player had left. */
+	public int getUnitsLeft(int playerIndex) {
+		return unitsLeft[playerIndex];
+	}
+
+	/** @return the total health of a player's living units. */
+	public int getHealthLeft(int playerIndex) {
+		return healthLeft[playerIndex];
+	}
+
+	/** @return the number of times a player used an ability. */
+	public int getAbilityUses(int playerIndex, Ability ability) {
+		return abilityUses[playerIndex][ability.ordinal()];
+	}
+
+	/** @return the number of players in the match. */
+	public int getPlayerCount() {
+		return unitsLeft.length;
+	}
+}
@@ -0,0 +1,249 @@
+package tics.sim;
+
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tics.ai.Agent;
+import tics.ai.AsyncAgent;
+import tics.ai.DelayedAgent;
+import tics.match.Match;
+
+/**
+ * Plays many headless matches at once on a small pool of threads, a few turns at a time.
+ *
+ * Each match keeps its own place in the turn loop, so a thread can play a few turns of one match and then move on to the next.
+ * When it's the turn of an AsyncAgent, the match is set aside until the agent is ready, without holding a thread,
+ * so a large number of matches can wait on slow agents while the threads keep playing the rest.
+ * Matches are only created once they're let in, and at most a set number are in flight at once.
+ *
+ * Progress, throughput and queue depths can be read at any time from any thread.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class MatchScheduler {
+	/** The number of turns a thread plays of one match before moving on, which keeps matches progressing evenly. */
+	private static final int TURNS_PER_SLICE = 8;
+
+	/** The threads that play turns. Their queue holds the matches that are ready to play. */
+	private final ThreadPoolExecutor executor;
+	/** The timer for agents that think for a fixed time, or null if agents don't. */
+	private final ScheduledExecutorService timer;
+	/** The time each agent thinks before its turn, in milliseconds. */
+	private final long thinkTimeMillis;
+	/** The most matches in flight at once. */
+	private final int maximumInFlight;
+
+	/** Matches that have been submitted but not let in yet. */
+	private final LinkedList<SimulatedMatch> pending = new LinkedList<SimulatedMatch>();
+	/** Finished results, or the exceptions that stopped matches. */
+	private final LinkedBlockingQueue<Object> completed = new LinkedBlockingQueue<Object>();
+
+	private final AtomicLong submitted = new AtomicLong(), finished = new AtomicLong(), turns = new AtomicLong();
+	/** The number of matches let in and not yet finished. */
+	private final AtomicInteger inFlight = new AtomicInteger();
+	/** The number of matches set aside while an agent prepares its turn. */
+	private final AtomicInteger waiting = new AtomicInteger();
+	/** The time the scheduler was created, for throughput. */
+	private final long startTime = System.currentTimeMillis();
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param threads the number of threads that play turns.
+	 * @param maximumInFlight the most matches in flight at once, including ones waiting on agents.
+	 * @param thinkTimeMillis the time each agent thinks before its turn, or 0 for agents to play straight away.
+	 * Thinking agents stand in for slow or remote ones.
+	 */
+	public MatchScheduler(int threads, int maximumInFlight, long thinkTimeMillis) {
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Match scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+		timer = thinkTimeMillis > 0 ? Executors.newSingleThreadScheduledExecutor(threadFactory) : null;
+		this.thinkTimeMillis = thinkTimeMillis;
+		this.maximumInFlight = maximumInFlight;
+	}
+
+	/**
+	 * Queues a match to be played. It's created once there's room for it in flight.
+	 *
+	 * @param simulation the match to play.
+	 */
+	public void submit(SimulatedMatch simulation) {
+		synchronized (pending) {
+			pending.add(simulation);
+		}
+		submitted.incrementAndGet();
+		admit();
+	}
+
+	/**
+	 * Waits for the next match to finish. Results come in the order matches finish.
+	 *
+	 * @return the match's result.
+	 * @throws ExecutionException if the match stopped with an exception or error.
+	 */
+	public MatchResult take() throws InterruptedException, ExecutionException {
+		Object outcome = completed.take();
+		if (outcome instanceof Throwable) {
+			throw new ExecutionException((Throwable) outcome);
+		}
+		return (MatchResult) outcome;
+	}
+
+	/** Stops the scheduler's threads. Matches still in flight are abandoned. */
+	public void shutdown() {
+		executor.shutdownNow();
+		if (timer != null) {
+			timer.shutdownNow();
+		}
+	}
+
+	/** Lets in pending matches while there's room. */
+	private void admit() {
+		synchronized (pending) {
+			while (!pending.isEmpty() && inFlight.get() < maximumInFlight) {
+				inFlight.incrementAndGet();
+				executor.execute(new ScheduledMatch(pending.removeFirst()));
+			}
+		}
+	}
+
+	/** @return the number of matches submitted so far. */
+	public long getSubmitted() {
+		return submitted.get();
+	}
+
+	/** @return the number of matches finished so far. */
+	public long getFinished() {
+		return finished.get();
+	}
+
+	/** @return the number of turns played so far, across every match. */
+	public long getTurns() {
+		return turns.get();
+	}
+
+	/** @return the number of matches in flight, whether they're playing, ready to play, or waiting on agents. */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/** @return the number of matches waiting for an agent to prepare its turn. */
+	public int getWaiting() {
+		return waiting.get();
+	}
+
+	/** @return the number of matches that are ready to play and waiting for a thread. */
+	public int getReadyQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/** @return the number of submitted matches that haven't been let in yet. */
+	public int getPendingQueueDepth() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	/** @return a one line summary of progress, throughput and queue depths. */
+	public String getStatus() {
+		double seconds = Math.max(System.currentTimeMillis() - startTime, 1) / 1000.0;
+		return String.format("%d in flight (%d ready, %d waiting on agents), %d pending, %.1f matches and %.0f turns per second",
+				getInFlight(), getReadyQueueDepth(), getWaiting(), getPendingQueueDepth(), getFinished() / seconds, getTurns() / seconds);
+	}
+
+	/** A match in flight, and its place in the turn loop. */
+	private class ScheduledMatch implements Runnable {
+		/** The recipe for the match. */
+		private final SimulatedMatch simulation;
+		/** The match, which is created the first time it's played. */
+		private Match match;
+		private Agent[] agents;
+		/** True once the current player's AsyncAgent is ready to play. */
+		private boolean prepared;
+
+		ScheduledMatch(SimulatedMatch simulation) {
+			this.simulation = simulation;
+		}
+
+		/** Plays a slice of turns, then either queues the match again, sets it aside for an agent, or finishes it. */
+		@Override
+		public void run() {
+			try {
+				if (match == null) {
+					match = simulation.createMatch();
+					agents = simulation.createAgents(match);
+					if (timer != null) {
+						for (int playerIndex = 0; playerIndex < agents.length; playerIndex++) {
+							agents[playerIndex] = new DelayedAgent(agents[playerIndex], thinkTimeMillis, timer);
+						}
+					}
+				}
+
+				for (int turn = 0; turn < TURNS_PER_SLICE; turn++) {
+					if (!match.isInProgress() || match.getCurrentRound() > simulation.getMaximumRounds()) {
+						simulation.finishMatch(match);
+						finish(new MatchResult(simulation.getIndex(), simulation.getSeed(), match));
+						return;
+					}
+
+					Agent agent = agents[match.getCurrentPlayerIndex()];
+					if (agent instanceof AsyncAgent && !prepared) {
+						waiting.incrementAndGet();
+						((AsyncAgent) agent).prepareTurn(match, new Runnable() {
+							@Override
+							public void run() {
+								waiting.decrementAndGet();
+								prepared = true; //Queueing the match again makes this visible to whichever thread plays it.
+								executor.execute(ScheduledMatch.this);
+							}
+						});
+						return;
+					}
+
+					prepared = false;
+					agent.playTurn(match);
+					turns.incrementAndGet();
+					if (match.isInProgress()) {
+						match.endTurn();
+					}
+				}
+				executor.execute(this); //Go to the back of the queue, so other matches get a turn.
+			} catch (Throwable exception) { //Even errors must be delivered, or take would wait forever for this match.
+				if (match != null) {
+					simulation.abandonMatch(match);
+				}
+				finish(exception);
+			}
+		}
+
+		/**
+		 * Takes the match out of flight and lets another one in.
+		 *
+		 * @param outcome the match's result, or the exception that stopped it.
+		 */
+		private void finish(Object outcome) {
+			match = null;
+			agents = null;
+			inFlight.decrementAndGet();
+			finished.incrementAndGet();
+			completed.add(outcome);
+			admit();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package tics.sim;
+
+import java.io.IOException;
+
+import tics.match.Match;
+import tics.util.MathUtil;
+import tics.util.load.MatchLoader;
+import tics.util.load.Scenario;
+
+/**
+ * A recipe for headless matches: either a scenario file, or the settings for a randomly generated board.
+ * Every match made from the same setup and seed is identical.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class MatchSetup {
+	/** The start of the descriptors of setups that load scenarios, and of those that generate boards. */
+	private static final String SCENARIO_PREFIX = "scenario:", GENERATE_PREFIX = "generate:";
+
+	/** The path to the scenario file, or null if matches are generated. */
+	private String scenarioPath;
+	/** The loaded scenario, once preload has been called. */
+	private Scenario scenario;
+	/** The settings for generated matches. For scenarios, only players is set, by preload. */
+	private int width, height, players, units, abilities;
+
+	/**
+	 * Creates a setup that loads a scenario.
+	 *
+	 * @param scenarioPath the path to the scenario's .json file.
+	 */
+	public MatchSetup(String scenarioPath) {
+		this.scenarioPath = scenarioPath;
+	}
+
+	/**
+	 * Creates a setup that generates random matches.
+	 *
+	 * @param width the board's width in tiles.
+	 * @param height the board's height in tiles.
+	 * @param players the number of players.
+	 * @param units the number of units each player has.
+	 * @param abilities the number of random abilities each unit has, besides ATTACK.
+	 */
+	public MatchSetup(int width, int height, int players, int units, int abilities) {
+		this.width = width;
+		this.height = height;
+		this.players = players;
+		this.units = units;
+		this.abilities = abilities;
+	}
+
+	/**
+	 * Loads anything the setup needs from disk.
+	 * This should be called once before matches are created on several threads, so that problems are found before any matches start.
+	 *
+	 * For scenarios, this loads the scenario, so matches are created straight from it without going back to disk,
+	 * and creates a match once, which checks the whole scenario before any matches are played.
+	 *
+	 * @throws IOException if the scenario can't be loaded.
+	 */
+	public void preload() throws IOException {
+		if (scenarioPath != null) {
+			scenario = Scenario.load(scenarioPath);
+			try {
+				scenario.createMatch(false);
+			} catch (IllegalStateException exception) {
+				throw new IOException(exception.getMessage(), exception);
+			}
+			players = scenario.getPlayerCount();
+		}
+	}
+
+	/**
+	 * Creates a started, headless match.
+	 *
+	 * @param seed the seed for everything random about the match, such as unit placement and the first player.
+	 * @return the new match.
+	 */
+	public Match createMatch(long seed) {
+		return createMatch(seed, -1);
+	}
+
+	/**
+	 * Creates a started, headless match with a chosen first player.
+	 *
+	 * @param seed the seed for everything random about the match, such as unit placement.
+	 * @param firstPlayerIndex the index of the player who moves first, or -1 to leave it to the scenario or the seed.
+	 * @return the new match.
+	 */
+	public Match createMatch(long seed, int firstPlayerIndex) {
+		MathUtil.setSeed(seed);
+		Match match;
+		if (scenarioPath == null) {
+			match = MatchLoader.generate(width, height, players, units, abilities, false);
+		} else {
+			Scenario loaded = scenario;
+			if (loaded == null) {
+				try {
+					loaded = Scenario.load(scenarioPath);
+				} catch (IOException exception) {
+					throw new IllegalStateException("The scenario " + scenarioPath + " could not be loaded.", exception);
+				}
+			}
+			match = loaded.createMatch(false);
+		}
+
+		if (firstPlayerIndex >= 0 && match.getCurrentPlayerIndex() != firstPlayerIndex) {
+			//Creating the match already began a randomly chosen player's turn, so end it before starting over,
+			//or both players' units would be left active. The scenario's round is kept, since restarting resets it.
+			int currentRound = match.getCurrentRound();
+			match.getCurrentPlayer().endTurn();
+			match.startMatch(firstPlayerIndex);
+			match.setCurrentRound(currentRound);
+		}
+		return match;
+	}
+
+	/**
+	 * Finds the number of players in matches made from this setup.
+	 * For scenarios, this should only be called after preload.
+	 *
+	 * @return the number of players.
+	 */
+	public int getPlayerCount() {
+		return players;
+	}
+
+	/**
+	 * Describes this setup in a single line, so it can be stored alongside matches made from it.
+	 *
+	 * @return the description, which fromDescriptor turns back into an equal setup.
+	 */
+	public String getDescriptor() {
+		if (scenarioPath != null) {
+			return SCENARIO_PREFIX + scenarioPath;
+		}
+		return GENERATE_PREFIX + width + "," + height + "," + players + "," + units + "," + abilities;
+	}
+
+	/**
+	 * Recreates a setup from its description.
+	 *
+	 * @param descriptor a description made by getDescriptor.
+	 * @return the setup.
+	 * @throws IllegalArgumentException if the description isn't one getDescriptor would make.
+	 */
+	public static MatchSetup fromDescriptor(String descriptor) {
+		if (descriptor.startsWith(SCENARIO_PREFIX)) {
+			return new MatchSetup(descriptor.substring(SCENARIO_PREFIX.length()));
+		} else if (descriptor.startsWith(GENERATE_PREFIX)) {
+			String[] settings = descriptor.substring(GENERATE_PREFIX.length()).split(",");
+			if (settings.length == 5) {
+				return new MatchSetup(Integer.parseInt(settings[0]), Integer.parseInt(settings[1]), Integer.parseInt(settings[2]),
+						Integer.parseInt(settings[3]), Integer.parseInt(settings[4]));
+			}
+		}
+		throw new IllegalArgumentException("Unknown match setup " + descriptor + ".");
+	}
+
+	@Override
+	public String toString() {
+		if (scenarioPath != null) {
+			return scenarioPath;
+		}
+		return width + "x" + height + ", " + players + " players, " + units + " units, " + abilities + " abilities";
+	}
+}
@@ -0,0 +1,103 @@
+package tics.sim;
+
+/**
+ * A player's strength, kept both as an Elo rating and as a Glicko rating.
+ * Elo is the familiar single number, while Glicko also tracks how uncertain the rating is, which gives it confidence bounds.
+ * Both are updated after every game, so each game is treated as its own Glicko rating period.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class Rating {
+	/** The rating that every player starts with. */
+	public static final double INITIAL_RATING = 1500;
+	/** The Glicko rating deviation of a player who hasn't played yet. */
+	public static final double INITIAL_DEVIATION = 350;
+	/** The smallest rating deviation allowed, so that ratings can still move after many games. */
+	private static final double MINIMUM_DEVIATION = 30;
+	/** How far a single Elo game can move a rating. */
+	private static final double ELO_K_FACTOR = 16;
+	/** The Glicko constant that converts ratings to a natural logarithm scale. */
+	private static final double Q = Math.log(10) / 400;
+
+	/** The Elo rating. */
+	private double eloRating = INITIAL_RATING;
+	/** The Glicko rating. */
+	private double glickoRating = INITIAL_RATING;
+	/** The Glicko rating deviation: one standard deviation of uncertainty in the Glicko rating. */
+	private double deviation = INITIAL_DEVIATION;
+	/** The number of games played. */
+	private long games;
+
+	/**
+	 * Updates two ratings after a game between them. Both updates use the ratings from before the game.
+	 *
+	 * @param first one player's rating.
+	 * @param second the other player's rating.
+	 * @param score the first player's score: 1 for a win, 0.5 for a draw, and 0 for a loss.
+	 */
+	public static void update(Rating first, Rating second, double score) {
+		double firstElo = first.eloRating, firstGlicko = first.glickoRating, firstDeviation = first.deviation;
+		first.update(second.eloRating, second.glickoRating, second.deviation, score);
+		second.update(firstElo, firstGlicko, firstDeviation, 1 - score);
+	}
+
+	/**
+	 * Updates this rating after one game.
+	 *
+	 * @param opponentElo the opponent's Elo rating.
+	 * @param opponentGlicko the opponent's Glicko rating.
+	 * @param opponentDeviation the opponent's Glicko rating deviation.
+	 * @param score this player's score.
+	 */
+	private void update(double opponentElo, double opponentGlicko, double opponentDeviation, double score) {
+		games++;
+		eloRating += ELO_K_FACTOR * (score - getExpectedScore(eloRating, opponentElo, 1));
+
+		double g = 1 / Math.sqrt(1 + 3 * Q * Q * opponentDeviation * opponentDeviation / (Math.PI * Math.PI));
+		double expected = getExpectedScore(glickoRating, opponentGlicko, g);
+		double inverseVariance = Q * Q * g * g * expected * (1 - expected);
+		double precision = 1 / (deviation * deviation) + inverseVariance;
+		glickoRating += Q / precision * g * (score - expected);
+		deviation = Math.max(MINIMUM_DEVIATION, Math.sqrt(1 / precision));
+	}
+
+	/**
+	 * Finds the score a player is expected to get against an opponent.
+	 *
+	 * @param rating the player's rating.
+	 * @param opponentRating the opponent's rating.
+	 * @param weight how much the rating difference counts, which Glicko lowers for uncertain opponents.
+	 * @return the expected score, between 0 and 1.
+	 */
+	private static double getExpectedScore(double rating, double opponentRating, double weight) {
+		return 1 / (1 + Math.pow(10, -weight * (rating - opponentRating) / 400));
+	}
+
+	/** @return the Elo rating. */
+	public double getEloRating() {
+		return eloRating;
+	}
+
+	/** @return the Glicko rating. */
+	public double getGlickoRating() {
+		return glickoRating;
+	}
+
+	/** @return the Glicko rating deviation. */
+	public double getDeviation() {
+		return deviation;
+	}
+
+	/** @return the number of games played. */
+	public long getGames() {
+		return games;
+	}
+
+	/** @return the Elo rating and the Glicko rating with its 95% confidence interval, as in "1532 (glicko 1528 [1460, 1596])". */
+	@Override
+	public String toString() {
+		double radius = Statistics.Z_95 * deviation;
+		return String.format("%.0f (glicko %.0f [%.0f, %.0f])", eloRating, glickoRating, glickoRating - radius, glickoRating + radius);
+	}
+}
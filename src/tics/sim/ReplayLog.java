@@ -0,0 +1,203 @@
+package tics.sim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import tics.match.Match;
+import tics.match.MatchRecorder;
+import tics.match.StateChecksum;
+import tics.match.model.Ability;
+import tics.match.model.Tile;
+
+/**
+ * The actions taken in one match, and a checksum of the match's state at the end of every turn.
+ *
+ * While it's set as a match's recorder, every move, ability and surrender is appended to a compact stream of ints,
+ * and every end of turn appends a marker and records a checksum. Replaying the stream on a match made from the same
+ * setup, seed and first player should reproduce every checksum; ReplayVerifier uses this to find the first turn where
+ * the rules started giving different results.
+ *
+ * The stream holds, one after another:
+ *   MOVE originX originY targetX targetY
+ *   ABILITY originX originY abilityOrdinal targetX targetY
+ *   SURRENDER (which also ends the turn, so the END_TURN after it is only a marker)
+ *   END_TURN
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class ReplayLog implements MatchRecorder {
+	/** The codes that start each action in the stream. */
+	static final int MOVE = 0, ABILITY = 1, SURRENDER = 2, END_TURN = 3;
+
+	/** The seed the match was created with. */
+	private final long seed;
+	/** The index of the player who moved first. */
+	private final int firstPlayerIndex;
+
+	/** The action stream. */
+	private int[] actions = new int[64];
+	private int actionCount;
+	/**
+	 * The checksums, and the round each one was taken in. The first is taken before anyone acts, one is taken at each END_TURN,
+	 * and the last is taken once the match is finished.
+	 */
+	private long[] checksums = new long[16];
+	private int[] rounds = new int[16];
+	private int checksumCount;
+
+	/**
+	 * Starts a log for a match that nobody has acted in yet, and starts recording it.
+	 *
+	 * @param match the match to record.
+	 * @param seed the seed the match was created with.
+	 */
+	public ReplayLog(Match match, long seed) {
+		this(seed, match.getFirstPlayerIndex());
+		addChecksum(match);
+		match.setRecorder(this);
+	}
+
+	/** Creates an empty log, to be filled in by read. */
+	private ReplayLog(long seed, int firstPlayerIndex) {
+		this.seed = seed;
+		this.firstPlayerIndex = firstPlayerIndex;
+	}
+
+	@Override
+	public void unitMoved(Match match, Tile origin, Tile target) {
+		addActions(MOVE, origin.getGridX(), origin.getGridY(), target.getGridX(), target.getGridY());
+	}
+
+	@Override
+	public void abilityUsed(Match match, Tile origin, Ability ability, Tile target) {
+		addActions(ABILITY, origin.getGridX(), origin.getGridY(), ability.ordinal(), target.getGridX(), target.getGridY());
+	}
+
+	@Override
+	public void surrendering(Match match) {
+		addActions(SURRENDER);
+	}
+
+	@Override
+	public void turnEnded(Match match) {
+		addActions(END_TURN);
+		addChecksum(match);
+	}
+
+	@Override
+	public void matchEnded(Match match) {
+		//The match can end partway through an action, so the final checksum waits for finish.
+	}
+
+	/**
+	 * Stops recording a match, and records the checksum of its final state.
+	 *
+	 * @param match the recorded match, once it's been played.
+	 */
+	public void finish(Match match) {
+		match.setRecorder(null);
+		addChecksum(match);
+	}
+
+	/** Appends ints to the action stream. */
+	private void addActions(int... values) {
+		if (actionCount + values.length > actions.length) {
+			actions = Arrays.copyOf(actions, Math.max(actions.length * 2, actionCount + values.length));
+		}
+		System.arraycopy(values, 0, actions, actionCount, values.length);
+		actionCount += values.length;
+	}
+
+	/** Records the checksum of a match's current state. */
+	private void addChecksum(Match match) {
+		if (checksumCount == checksums.length) {
+			checksums = Arrays.copyOf(checksums, checksumCount * 2 + 1);
+			rounds = Arrays.copyOf(rounds, checksumCount * 2 + 1);
+		}
+		checksums[checksumCount] = StateChecksum.compute(match);
+		rounds[checksumCount] = match.getCurrentRound();
+		checksumCount++;
+	}
+
+	/** @return the seed the match was created with. */
+	public long getSeed() {
+		return seed;
+	}
+
+	/** @return the index of the player who moved first. */
+	public int getFirstPlayerIndex() {
+		return firstPlayerIndex;
+	}
+
+	/** @return the number of ints in the action stream. */
+	int getActionCount() {
+		return actionCount;
+	}
+
+	/** @return an int from the action stream. */
+	int getAction(int index) {
+		return actions[index];
+	}
+
+	/** @return the number of checksums recorded. */
+	public int getChecksumCount() {
+		return checksumCount;
+	}
+
+	/** @return a recorded checksum. */
+	public long getChecksum(int index) {
+		return checksums[index];
+	}
+
+	/** @return the round a checksum was taken in. */
+	public int getRound(int index) {
+		return rounds[index];
+	}
+
+	/**
+	 * Writes the log.
+	 *
+	 * @param output the stream to write to.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void write(DataOutputStream output) throws IOException {
+		output.writeLong(seed);
+		output.writeInt(firstPlayerIndex);
+		output.writeInt(actionCount);
+		for (int index = 0; index < actionCount; index++) {
+			output.writeShort(actions[index]); //Coordinates and ordinals are all small.
+		}
+		output.writeInt(checksumCount);
+		for (int index = 0; index < checksumCount; index++) {
+			output.writeLong(checksums[index]);
+			output.writeInt(rounds[index]);
+		}
+	}
+
+	/**
+	 * Reads a log written by write.
+	 *
+	 * @param input the stream to read from.
+	 * @return the log.
+	 * @throws IOException if the stream can't be read.
+	 */
+	public static ReplayLog read(DataInputStream input) throws IOException {
+		ReplayLog log = new ReplayLog(input.readLong(), input.readInt());
+		log.actionCount = input.readInt();
+		log.actions = new int[log.actionCount];
+		for (int index = 0; index < log.actionCount; index++) {
+			log.actions[index] = input.readShort();
+		}
+		log.checksumCount = input.readInt();
+		log.checksums = new long[log.checksumCount];
+		log.rounds = new int[log.checksumCount];
+		for (int index = 0; index < log.checksumCount; index++) {
+			log.checksums[index] = input.readLong();
+			log.rounds[index] = input.readInt();
+		}
+		return log;
+	}
+}
@@ -0,0 +1,283 @@
+package tics.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tics.ai.AgentType;
+import tics.ai.Evaluator;
+import tics.ai.MatchRunner;
+import tics.match.Match;
+import tics.match.StateChecksum;
+import tics.match.model.Ability;
+import tics.match.model.Board;
+import tics.util.load.PropertiesLoader;
+
+/**
+ * A command line tool that checks that changes to the rules' code don't change how matches play out.
+ *
+ * In record mode, it plays matches between agents with a ReplayLog attached to each, and writes the logs to a file.
+ * In verify mode, it recreates each match from its setup and seed, replays the logged actions without any agents,
+ * and compares the checksum of the state at the end of every turn with the logged one.
+ * Record a file before changing something like Range, Board or Ability.affect, and verify it afterwards:
+ * for each match that plays out differently, the first turn that diverges is reported.
+ *
+ * Usage:
+ *   ReplayVerifier record (--scenario scenarios/duel.json | --generate width height players units abilities) --output replays.bin [options]
+ *   ReplayVerifier verify replays.bin [--threads 4]
+ * Record options:
+ *   --agents greedy,random, --matches 100, --seed 0, --threads 4, --rounds 100 (as for BatchRunner.)
+ *
+ * The file holds: int MAGIC, int VERSION, the setup's descriptor as modified UTF-8, int matches, then each match's ReplayLog.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class ReplayVerifier {
+	/** The first four bytes of every replay file: "TICV". */
+	private static final int MAGIC = 0x54494356;
+	/** The version of the file format. */
+	private static final int VERSION = 1;
+	/** Every ability, indexed by ordinal. */
+	private static final Ability[] ABILITIES = Ability.values();
+
+	/**
+	 * Records or verifies a replay file.
+	 *
+	 * @param args the command line arguments, as described above.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		System.setProperty("java.awt.headless", "true");
+
+		boolean recording = args.length > 0 && args[0].equals("record");
+		MatchSetup setup = null;
+		AgentType[] agentTypes = { AgentType.GREEDY };
+		long matches = 100, seed = 0;
+		int threads = Runtime.getRuntime().availableProcessors(), rounds = 100;
+		String path = null;
+
+		try {
+			if (!recording && !(args.length > 1 && args[0].equals("verify"))) {
+				throw new IllegalArgumentException("Either record or verify is needed.");
+			}
+			for (int index = recording ? 1 : 2; index < args.length; index++) {
+				String option = args[index];
+				if (option.equals("--threads")) {
+					threads = Integer.parseInt(args[++index]);
+				} else if (!recording) {
+					throw new IllegalArgumentException("Unknown option " + option + ".");
+				} else if (option.equals("--scenario")) {
+					setup = new MatchSetup(args[++index]);
+				} else if (option.equals("--generate")) {
+					setup = new MatchSetup(Integer.parseInt(args[++index]), Integer.parseInt(args[++index]), Integer.parseInt(args[++index]),
+							Integer.parseInt(args[++index]), Integer.parseInt(args[++index]));
+				} else if (option.equals("--agents")) {
+					String[] names = args[++index].split(",");
+					agentTypes = new AgentType[names.length];
+					for (int agent = 0; agent < names.length; agent++) {
+						agentTypes[agent] = AgentType.valueOf(names[agent].trim().toUpperCase());
+					}
+				} else if (option.equals("--matches")) {
+					matches = Long.parseLong(args[++index]);
+				} else if (option.equals("--seed")) {
+					seed = Long.parseLong(args[++index]);
+				} else if (option.equals("--rounds")) {
+					rounds = Integer.parseInt(args[++index]);
+				} else if (option.equals("--output")) {
+					path = args[++index];
+				} else {
+					throw new IllegalArgumentException("Unknown option " + option + ".");
+				}
+			}
+			if (recording && (setup == null || path == null)) {
+				throw new IllegalArgumentException("Recording needs --scenario or --generate, and --output.");
+			}
+		} catch (RuntimeException exception) { //Covers bad numbers, bad agent names and missing values alike.
+			System.err.println(exception.getMessage());
+			printUsage();
+			return;
+		}
+
+		PropertiesLoader.get("settings/Colours");
+		Evaluator.getDefault();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			if (recording) {
+				record(executor, setup, agentTypes, matches, seed, rounds, path);
+			} else if (!verify(executor, args[1])) {
+				System.exit(1);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** Plays and logs a batch of matches, and writes the logs in the order of their seeds. */
+	private static void record(ExecutorService executor, final MatchSetup setup, final AgentType[] agentTypes, long matches, long seed,
+			final int rounds, String path) throws IOException, InterruptedException, ExecutionException {
+		setup.preload();
+		List<Future<ReplayLog>> futures = new ArrayList<Future<ReplayLog>>();
+		for (long index = 0; index < matches; index++) {
+			final SimulatedMatch simulation = new SimulatedMatch(setup, agentTypes, index, seed + index, rounds);
+			futures.add(executor.submit(new Callable<ReplayLog>() {
+				@Override
+				public ReplayLog call() {
+					Match match = simulation.createMatch();
+					ReplayLog log = new ReplayLog(match, simulation.getSeed());
+					new MatchRunner(match, simulation.createAgents(match), rounds).run();
+					log.finish(match);
+					return log;
+				}
+			}));
+		}
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeUTF(setup.getDescriptor());
+			output.writeInt(futures.size());
+			long turns = 0;
+			for (Future<ReplayLog> future : futures) {
+				ReplayLog log = future.get();
+				log.write(output);
+				turns += log.getChecksumCount() - 2;
+			}
+			System.err.println("Recorded " + futures.size() + " matches of " + setup + ", " + turns + " turns.");
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Replays every match in a file and reports those that diverge.
+	 *
+	 * @return true if every match played out exactly as logged.
+	 */
+	private static boolean verify(ExecutorService executor, String path) throws IOException, InterruptedException, ExecutionException {
+		final MatchSetup setup;
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+		try {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException(path + " isn't a replay file of version " + VERSION + ".");
+			}
+			setup = MatchSetup.fromDescriptor(input.readUTF());
+			setup.preload();
+			int matches = input.readInt();
+			for (int index = 0; index < matches; index++) {
+				final ReplayLog log = ReplayLog.read(input);
+				futures.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						return findDivergence(setup, log);
+					}
+				}));
+			}
+		} finally {
+			input.close();
+		}
+
+		int diverged = 0;
+		for (int index = 0; index < futures.size(); index++) {
+			String divergence = futures.get(index).get();
+			if (divergence != null) {
+				diverged++;
+				System.out.println("Match " + index + ": " + divergence);
+			}
+		}
+		System.out.println(diverged == 0 ? "All " + futures.size() + " matches of " + setup + " replayed identically."
+				: diverged + " of " + futures.size() + " matches of " + setup + " diverged.");
+		return diverged == 0;
+	}
+
+	/**
+	 * Replays a logged match, comparing checksums at the end of every turn.
+	 *
+	 * @param setup the setup the match was made from.
+	 * @param log the match's log.
+	 * @return a description of the first turn that diverged, or null if the match played out exactly as logged.
+	 */
+	static String findDivergence(MatchSetup setup, ReplayLog log) {
+		Match match = setup.createMatch(log.getSeed(), log.getFirstPlayerIndex());
+		Board board = match.getBoard();
+		int turn = 0;
+		String divergence = compare(match, log, 0, "the start of the match");
+		boolean surrendered = false;
+
+		for (int index = 0; divergence == null && index < log.getActionCount(); index++) {
+			int action = log.getAction(index);
+			if (action == ReplayLog.MOVE) {
+				if (!match.moveUnit(board.getTile(log.getAction(index + 1), log.getAction(index + 2)),
+						board.getTile(log.getAction(index + 3), log.getAction(index + 4)))) {
+					divergence = describeAction(turn, match, "moving the unit at " + log.getAction(index + 1) + ", " + log.getAction(index + 2)
+							+ " to " + log.getAction(index + 3) + ", " + log.getAction(index + 4));
+				}
+				index += 4;
+			} else if (action == ReplayLog.ABILITY) {
+				Ability ability = ABILITIES[log.getAction(index + 3)];
+				if (!match.useAbility(board.getTile(log.getAction(index + 1), log.getAction(index + 2)), ability,
+						board.getTile(log.getAction(index + 4), log.getAction(index + 5)))) {
+					divergence = describeAction(turn, match, "using " + ability + " from " + log.getAction(index + 1) + ", " + log.getAction(index + 2)
+							+ " on " + log.getAction(index + 4) + ", " + log.getAction(index + 5));
+				}
+				index += 5;
+			} else if (action == ReplayLog.SURRENDER) {
+				match.surrender();
+				surrendered = true;
+			} else {
+				if (!surrendered) {
+					match.endTurn();
+				}
+				surrendered = false;
+				turn++;
+				divergence = compare(match, log, turn, "the end of turn " + turn);
+			}
+		}
+
+		if (divergence == null) {
+			divergence = compare(match, log, turn + 1, "the end of the match, after turn " + turn);
+		}
+		return divergence;
+	}
+
+	/**
+	 * Compares a match's state with a logged checksum.
+	 *
+	 * @return a description of the divergence, or null if the checksums match.
+	 */
+	private static String compare(Match match, ReplayLog log, int checksumIndex, String when) {
+		long checksum = StateChecksum.compute(match);
+		if (checksumIndex >= log.getChecksumCount() || checksum != log.getChecksum(checksumIndex)) {
+			return "diverged at " + when + " (round " + match.getCurrentRound() + ", logged round "
+					+ (checksumIndex < log.getChecksumCount() ? log.getRound(checksumIndex) : "none") + "): checksum "
+					+ Long.toHexString(checksum) + ", logged "
+					+ (checksumIndex < log.getChecksumCount() ? Long.toHexString(log.getChecksum(checksumIndex)) : "none")
+					+ ", seed " + log.getSeed();
+		}
+		return null;
+	}
+
+	/** @return a description of a logged action that can no longer be taken. */
+	private static String describeAction(int turn, Match match, String action) {
+		return "diverged during turn " + (turn + 1) + " (round " + match.getCurrentRound() + "): " + action + " is no longer allowed";
+	}
+
+	/** Prints the command line options. */
+	private static void printUsage() {
+		System.err.println("Usage: ReplayVerifier record (--scenario <file.json> | --generate <width> <height> <players> <units> <abilities>)");
+		System.err.println("       --output <file> [--agents <agent,agent,...>] [--matches <count>] [--seed <seed>] [--threads <count>] [--rounds <count>]");
+		System.err.println("       ReplayVerifier verify <file> [--threads <count>]");
+	}
+}
@@ -0,0 +1,171 @@
+package tics.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import tics.ai.Agent;
+import tics.ai.AgentType;
+import tics.ai.MatchRunner;
+import tics.match.Match;
+import tics.match.ReplayRecorder;
+
+/**
+ * A single headless match, ready to be played on a thread pool.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class SimulatedMatch implements Callable<MatchResult> {
+	/** The recipe for the match. */
+	private final MatchSetup setup;
+	/** The kind of agent that plays for each player. If there are fewer types than players, the last one plays for the rest. */
+	private final AgentType[] agentTypes;
+	/** The number of the match within its batch. */
+	private final long index;
+	/** The seed for the match. */
+	private final long seed;
+	/** The number of rounds after which the match is called a draw. */
+	private final int maximumRounds;
+	/** The index of the player who moves first, or -1 to leave it to the setup and seed. */
+	private final int firstPlayerIndex;
+	/** The folder to record a replay of the match in, or null if it isn't recorded. */
+	private String replayFolder;
+
+	/**
+	 * Prepares a match.
+	 *
+	 * @param setup the recipe for the match.
+	 * @param agentTypes the kind of agent that plays for each player.
+	 * @param index the number of the match within its batch.
+	 * @param seed the seed for the match, which decides everything random about both the board and the agents.
+	 * @param maximumRounds the number of rounds after which the match is called a draw.
+	 */
+	public SimulatedMatch(MatchSetup setup, AgentType[] agentTypes, long index, long seed, int maximumRounds) {
+		this(setup, agentTypes, index, seed, maximumRounds, -1);
+	}
+
+	/**
+	 * Prepares a match with a chosen first player.
+	 *
+	 * @param setup the recipe for the match.
+	 * @param agentTypes the kind of agent that plays for each player.
+	 * @param index the number of the match within its batch.
+	 * @param seed the seed for the match, which decides everything random about both the board and the agents.
+	 * @param maximumRounds the number of rounds after which the match is called a draw.
+	 * @param firstPlayerIndex the index of the player who moves first, or -1 to leave it to the setup and seed.
+	 */
+	public SimulatedMatch(MatchSetup setup, AgentType[] agentTypes, long index, long seed, int maximumRounds, int firstPlayerIndex) {
+		this.setup = setup;
+		this.agentTypes = agentTypes;
+		this.index = index;
+		this.seed = seed;
+		this.maximumRounds = maximumRounds;
+		this.firstPlayerIndex = firstPlayerIndex;
+	}
+
+	@Override
+	public MatchResult call() {
+		Match match = createMatch();
+		boolean finished = false;
+		try {
+			new MatchRunner(match, createAgents(match), maximumRounds).run();
+			finishMatch(match);
+			finished = true;
+		} finally {
+			if (!finished) {
+				abandonMatch(match);
+			}
+		}
+		return new MatchResult(index, seed, match);
+	}
+
+	/**
+	 * Creates the started match, without playing it. This should be called on the thread that will finish creating it,
+	 * since everything random about the board comes from that thread's random number generator.
+	 *
+	 * @return the new match.
+	 */
+	public Match createMatch() {
+		Match match = setup.createMatch(seed, firstPlayerIndex);
+		if (replayFolder != null) {
+			try {
+				new ReplayRecorder(match, new File(replayFolder, "match" + index + ".tcp").getPath(), ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL);
+			} catch (IOException exception) {
+				throw new IllegalStateException("The replay of match " + index + " couldn't be written.", exception);
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Finishes anything that was recording a match made by createMatch, once the match has been played.
+	 *
+	 * @param match the match.
+	 */
+	public void finishMatch(Match match) {
+		if (match.getRecorder() instanceof ReplayRecorder) {
+			try {
+				((ReplayRecorder) match.getRecorder()).finish(match);
+			} catch (IOException exception) {
+				throw new IllegalStateException("The replay of match " + index + " couldn't be written.", exception);
+			}
+		}
+	}
+
+	/**
+	 * Closes anything that was recording a match made by createMatch, if the match stopped with an exception before finishMatch.
+	 * Any exception from closing it is left out, so it doesn't hide the one that stopped the match.
+	 *
+	 * @param match the match.
+	 */
+	public void abandonMatch(Match match) {
+		if (match.getRecorder() instanceof ReplayRecorder) {
+			try {
+				((ReplayRecorder) match.getRecorder()).abandon(match);
+			} catch (IOException exception) {
+				//The replay is incomplete either way.
+			}
+		}
+	}
+
+	/**
+	 * Records a replay of the match when it's played, which ReplayReader can jump around in.
+	 *
+	 * @param replayFolder the folder to write the replay to, as "match<index>.tcp", or null not to record one.
+	 */
+	public void setReplayFolder(String replayFolder) {
+		this.replayFolder = replayFolder;
+	}
+
+	/**
+	 * Creates the agents for a match made by createMatch. Their random choices all come from the match's seed.
+	 *
+	 * @param match the match the agents will play.
+	 * @return the agent for each player, indexed like the match's players.
+	 */
+	public Agent[] createAgents(Match match) {
+		Random random = new Random(seed);
+		Agent[] agents = new Agent[match.getPlayers().length];
+		for (int playerIndex = 0; playerIndex < agents.length; playerIndex++) {
+			agents[playerIndex] = agentTypes[Math.min(playerIndex, agentTypes.length - 1)].create(random);
+		}
+		return agents;
+	}
+
+	/** @return the number of the match within its batch. */
+	public long getIndex() {
+		return index;
+	}
+
+	/** @return the seed for the match. */
+	public long getSeed() {
+		return seed;
+	}
+
+	/** @return the number of rounds after which the match is called a draw. */
+	public int getMaximumRounds() {
+		return maximumRounds;
+	}
+}
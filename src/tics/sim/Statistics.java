@@ -0,0 +1,99 @@
+package tics.sim;
+
+/**
+ * Static methods for the confidence intervals that batches of matches are reported with.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class Statistics {
+	/** The number of standard deviations that gives a two-sided 95% confidence interval. */
+	public static final double Z_95 = 1.96;
+
+	/**
+	 * Finds the Wilson score interval for a proportion, which behaves well even for small samples and proportions near 0 or 1.
+	 *
+	 * @param successes the number of successes, such as wins.
+	 * @param trials the number of trials, such as matches.
+	 * @param z the number of standard deviations the interval should cover.
+	 * @return the lower and upper bounds of the interval, or {0, 1} if there were no trials.
+	 */
+	public static double[] getWilsonInterval(long successes, long trials, double z) {
+		if (trials == 0) {
+			return new double[] { 0, 1 };
+		}
+
+		double proportion = (double) successes / trials;
+		double zSquared = z * z;
+		double denominator = 1 + zSquared / trials;
+		double center = (proportion + zSquared / (2 * trials)) / denominator;
+		double radius = z * Math.sqrt(proportion * (1 - proportion) / trials + zSquared / (4.0 * trials * trials)) / denominator;
+		return new double[] { Math.max(0, center - radius), Math.min(1, center + radius) };
+	}
+
+	/**
+	 * Formats a value with its confidence interval.
+	 *
+	 * @param value the estimate.
+	 * @param lower the lower bound.
+	 * @param upper the upper bound.
+	 * @return the value, as in "0.512 [0.481, 0.543]".
+	 */
+	public static String format(double value, double lower, double upper) {
+		return String.format("%.3f [%.3f, %.3f]", value, lower, upper);
+	}
+
+	/**
+	 * A running mean and variance, kept with Welford's method so that values don't have to be stored.
+	 */
+	public static class RunningMean {
+		/** The number of values added. */
+		private long count;
+		/** The mean of the values added. */
+		private double mean;
+		/** The sum of squared differences from the mean. */
+		private double squaredDeviations;
+
+		/**
+		 * Adds a value.
+		 *
+		 * @param value the value to add.
+		 */
+		public void add(double value) {
+			count++;
+			double difference = value - mean;
+			mean += difference / count;
+			squaredDeviations += difference * (value - mean);
+		}
+
+		/** @return the number of values added. */
+		public long getCount() {
+			return count;
+		}
+
+		/** @return the mean of the values added. */
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * Finds the radius of the confidence interval around the mean, using the normal approximation.
+		 *
+		 * @param z the number of standard deviations the interval should cover.
+		 * @return the radius, or 0 if fewer than two values have been added.
+		 */
+		public double getConfidenceRadius(double z) {
+			if (count < 2) {
+				return 0;
+			}
+			return z * Math.sqrt(squaredDeviations / (count - 1) / count);
+		}
+
+		/** @return the mean with its 95% confidence interval, as in "12.400 [11.900, 12.900]". */
+		@Override
+		public String toString() {
+			double radius = getConfidenceRadius(Z_95);
+			return format(mean, mean - radius, mean + radius);
+		}
+	}
+}
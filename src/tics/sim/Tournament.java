@@ -0,0 +1,337 @@
+package tics.sim;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tics.ai.AgentType;
+import tics.ai.Evaluator;
+import tics.util.load.PropertiesLoader;
+
+/**
+ * A command line tool that plays a round-robin tournament between kinds of agent, on every scenario in a folder.
+ *
+ * Each pairing of agents plays in cycles. A cycle covers every scenario, with each agent taking the even seats once
+ * and the odd seats once, and with every seat moving first once, so neither agent is favoured by the board or the turn order.
+ * Games are played on a thread pool, and Elo and Glicko ratings are updated as each one finishes.
+ *
+ * After each cycle, a pairing is settled if one agent confidently wins more than half of their decisive games,
+ * or if the win rate is confidently within a margin of even. Settled pairings stop playing, so the remaining games go
+ * to the pairings that are still close.
+ *
+ * Usage:
+ *   Tournament [options]
+ * Options:
+ *   --agents greedy,random   the agents to enter (defaults to every agent that acts.)
+ *   --scenarios scenarios    the folder of scenarios to play.
+ *   --games 480              the most games each pairing plays, rounded up to whole cycles.
+ *   --margin 0.05            how close to even a pairing's win rate must confidently be to settle it as a tie.
+ *   --seed 0, --threads 4, --rounds 100, --output standings.txt
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class Tournament {
+	/** The number of games queued per thread, which keeps threads busy without queueing games for pairings that may settle. */
+	private static final int GAMES_QUEUED_PER_THREAD = 4;
+	/** How often, in games, the standings are reported. */
+	private static final int PROGRESS_INTERVAL = 200;
+
+	/**
+	 * Plays a tournament.
+	 *
+	 * @param args the command line arguments, as described above.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		System.setProperty("java.awt.headless", "true");
+
+		ArrayList<AgentType> agentTypes = new ArrayList<AgentType>(Arrays.asList(AgentType.values()));
+		agentTypes.remove(AgentType.IDLE); //Idle agents can't win, so they'd only pad out the tournament.
+		String scenarioFolder = "scenarios", outputPath = null;
+		int games = 480, rounds = 100, threads = Runtime.getRuntime().availableProcessors();
+		long seed = 0;
+		double margin = 0.05;
+
+		try {
+			for (int index = 0; index < args.length; index++) {
+				String option = args[index];
+				if (option.equals("--agents")) {
+					agentTypes.clear();
+					for (String name : args[++index].split(",")) {
+						agentTypes.add(AgentType.valueOf(name.trim().toUpperCase()));
+					}
+				} else if (option.equals("--scenarios")) {
+					scenarioFolder = args[++index];
+				} else if (option.equals("--games")) {
+					games = Integer.parseInt(args[++index]);
+				} else if (option.equals("--margin")) {
+					margin = Double.parseDouble(args[++index]);
+				} else if (option.equals("--seed")) {
+					seed = Long.parseLong(args[++index]);
+				} else if (option.equals("--threads")) {
+					threads = Integer.parseInt(args[++index]);
+				} else if (option.equals("--rounds")) {
+					rounds = Integer.parseInt(args[++index]);
+				} else if (option.equals("--output")) {
+					outputPath = args[++index];
+				} else {
+					throw new IllegalArgumentException("Unknown option " + option + ".");
+				}
+			}
+			if (agentTypes.size() < 2) {
+				throw new IllegalArgumentException("A tournament needs at least two agents.");
+			}
+			if (games < 1 || threads < 1 || rounds < 1) {
+				throw new IllegalArgumentException("The numbers of games, threads and rounds must all be at least 1.");
+			}
+		} catch (RuntimeException exception) {
+			System.err.println(exception.getMessage());
+			System.err.println("Usage: Tournament [--agents <agent,agent,...>] [--scenarios <folder>] [--games <count>] [--margin <rate>]");
+			System.err.println("       [--seed <seed>] [--threads <count>] [--rounds <count>] [--output <file>]");
+			return;
+		}
+
+		List<Slot> cycle = createCycle(scenarioFolder);
+		ArrayList<Pairing> pairings = new ArrayList<Pairing>();
+		for (int first = 0; first < agentTypes.size(); first++) {
+			for (int second = first + 1; second < agentTypes.size(); second++) {
+				pairings.add(new Pairing(first, second));
+			}
+		}
+		int maximumGames = (games + cycle.size() - 1) / cycle.size() * cycle.size();
+
+		Rating[] ratings = new Rating[agentTypes.size()];
+		for (int index = 0; index < ratings.length; index++) {
+			ratings[index] = new Rating();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			run(executor, threads, agentTypes, cycle, pairings, ratings, maximumGames, margin, seed, rounds);
+		} finally {
+			executor.shutdown();
+		}
+
+		PrintWriter output = outputPath == null ? new PrintWriter(System.out) : new PrintWriter(new FileWriter(outputPath));
+		printStandings(output, agentTypes, ratings, pairings);
+		output.close();
+	}
+
+	/**
+	 * Plays games until every pairing is settled or has played its most games.
+	 * Ratings are updated in the order games finish, which depends on timing, so Elo ratings can differ slightly between runs.
+	 */
+	private static void run(ExecutorService executor, int threads, List<AgentType> agentTypes, List<Slot> cycle, List<Pairing> pairings,
+			Rating[] ratings, int maximumGames, double margin, long seed, int rounds) throws InterruptedException, ExecutionException {
+		CompletionService<MatchResult> completionService = new ExecutorCompletionService<MatchResult>(executor);
+		HashMap<Future<MatchResult>, Game> pendingGames = new HashMap<Future<MatchResult>, Game>();
+		long submitted = 0, finished = 0;
+		int nextPairing = 0;
+
+		while (true) {
+			while (pendingGames.size() < threads * GAMES_QUEUED_PER_THREAD) {
+				Pairing pairing = null;
+				for (int offset = 0; offset < pairings.size() && pairing == null; offset++) {
+					Pairing candidate = pairings.get((nextPairing + offset) % pairings.size());
+					if (!candidate.isSettled() && candidate.submitted < maximumGames) {
+						pairing = candidate;
+					}
+				}
+				if (pairing == null) {
+					break;
+				}
+				nextPairing = (pairings.indexOf(pairing) + 1) % pairings.size(); //Take turns, so every pairing progresses together.
+
+				Slot slot = cycle.get(pairing.submitted % cycle.size());
+				AgentType[] seats = new AgentType[slot.playerCount];
+				for (int seat = 0; seat < seats.length; seat++) {
+					seats[seat] = agentTypes.get(slot.isFirstAgentSeat(seat) ? pairing.firstAgent : pairing.secondAgent);
+				}
+				Future<MatchResult> future = completionService.submit(
+						new SimulatedMatch(slot.setup, seats, submitted, seed + submitted, rounds, slot.firstPlayerIndex));
+				pendingGames.put(future, new Game(pairing, slot));
+				pairing.submitted++;
+				submitted++;
+			}
+			if (pendingGames.isEmpty()) {
+				return;
+			}
+
+			Future<MatchResult> future = completionService.take();
+			Game game = pendingGames.remove(future);
+			MatchResult result = future.get();
+			Pairing pairing = game.pairing;
+
+			double score = 0.5;
+			if (result.getWinner() < 0) {
+				pairing.draws++;
+			} else if (game.slot.isFirstAgentSeat(result.getWinner())) {
+				pairing.wins++;
+				score = 1;
+			} else {
+				pairing.losses++;
+				score = 0;
+			}
+			Rating.update(ratings[pairing.firstAgent], ratings[pairing.secondAgent], score);
+
+			pairing.finished++;
+			if (pairing.finished % cycle.size() == 0 && !pairing.isSettled()) {
+				pairing.checkSettled(margin);
+				if (pairing.isSettled()) {
+					System.err.println(pairing.describe(agentTypes));
+				}
+			}
+
+			finished++;
+			if (finished % PROGRESS_INTERVAL == 0) {
+				System.err.println(finished + " games played.");
+				PrintWriter progress = new PrintWriter(System.err);
+				printStandings(progress, agentTypes, ratings, pairings);
+				progress.flush();
+			}
+		}
+	}
+
+	/**
+	 * Lists the games in one cycle: every two player seating on every scenario in a folder, with every first player.
+	 *
+	 * @param scenarioFolder the folder of scenarios.
+	 * @return the cycle's games.
+	 * @throws IOException if the folder has no scenarios, or one of them can't be loaded.
+	 */
+	private static List<Slot> createCycle(String scenarioFolder) throws IOException {
+		File[] files = new File(scenarioFolder).listFiles();
+		if (files == null) {
+			throw new FileNotFoundException("The scenario folder " + scenarioFolder + " could not be read.");
+		}
+		Arrays.sort(files);
+
+		PropertiesLoader.get("settings/Colours"); //Load shared files now, before the matches all wait for them at once.
+		Evaluator.getDefault();
+
+		ArrayList<Slot> cycle = new ArrayList<Slot>();
+		for (File file : files) {
+			if (!file.getName().endsWith(".json")) {
+				continue;
+			}
+			MatchSetup setup = new MatchSetup(file.getPath());
+			setup.preload();
+			int playerCount = setup.getPlayerCount();
+			for (int seatOffset = 0; seatOffset < 2; seatOffset++) {
+				for (int firstPlayerIndex = 0; firstPlayerIndex < playerCount; firstPlayerIndex++) {
+					cycle.add(new Slot(setup, playerCount, seatOffset, firstPlayerIndex));
+				}
+			}
+		}
+		if (cycle.isEmpty()) {
+			throw new FileNotFoundException("The scenario folder " + scenarioFolder + " has no scenarios.");
+		}
+		return cycle;
+	}
+
+	/** Prints the agents from best to worst, then every pairing. */
+	private static void printStandings(PrintWriter output, final List<AgentType> agentTypes, final Rating[] ratings, List<Pairing> pairings) {
+		Integer[] order = new Integer[ratings.length];
+		for (int index = 0; index < order.length; index++) {
+			order[index] = index;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return Double.compare(ratings[second].getGlickoRating(), ratings[first].getGlickoRating());
+			}
+		});
+
+		for (int index : order) {
+			output.println(String.format("%-10s %s, %d games", agentTypes.get(index).name().toLowerCase(), ratings[index], ratings[index].getGames()));
+		}
+		for (Pairing pairing : pairings) {
+			output.println(pairing.describe(agentTypes));
+		}
+	}
+
+	/** One game in a cycle: a scenario, which seats each agent takes, and who moves first. */
+	private static class Slot {
+		final MatchSetup setup;
+		final int playerCount;
+		/** 0 if the pairing's first agent takes the even seats, or 1 if it takes the odd ones. */
+		final int seatOffset;
+		final int firstPlayerIndex;
+
+		Slot(MatchSetup setup, int playerCount, int seatOffset, int firstPlayerIndex) {
+			this.setup = setup;
+			this.playerCount = playerCount;
+			this.seatOffset = seatOffset;
+			this.firstPlayerIndex = firstPlayerIndex;
+		}
+
+		/** @return true if the pairing's first agent plays in a seat. */
+		boolean isFirstAgentSeat(int seat) {
+			return (seat + seatOffset) % 2 == 0;
+		}
+	}
+
+	/** A game that has been submitted, and what its result means. */
+	private static class Game {
+		final Pairing pairing;
+		final Slot slot;
+
+		Game(Pairing pairing, Slot slot) {
+			this.pairing = pairing;
+			this.slot = slot;
+		}
+	}
+
+	/** Two agents that play each other, and their results so far, from the first agent's side. */
+	private static class Pairing {
+		final int firstAgent, secondAgent;
+		int submitted, finished;
+		long wins, losses, draws;
+		/** Why the pairing is settled, or null if it isn't. */
+		String verdict;
+
+		Pairing(int firstAgent, int secondAgent) {
+			this.firstAgent = firstAgent;
+			this.secondAgent = secondAgent;
+		}
+
+		boolean isSettled() {
+			return verdict != null;
+		}
+
+		/** Settles the pairing if the win rate among decisive games is confidently away from even, or confidently close to it. */
+		void checkSettled(double margin) {
+			double[] interval = Statistics.getWilsonInterval(wins, wins + losses, Statistics.Z_95);
+			if (wins + losses == 0) {
+				return;
+			} else if (interval[0] > 0.5) {
+				verdict = "first is stronger";
+			} else if (interval[1] < 0.5) {
+				verdict = "second is stronger";
+			} else if (interval[0] > 0.5 - margin && interval[1] < 0.5 + margin) {
+				verdict = "even";
+			}
+		}
+
+		String describe(List<AgentType> agentTypes) {
+			double[] interval = Statistics.getWilsonInterval(wins, wins + losses, Statistics.Z_95);
+			double rate = wins + losses == 0 ? 0.5 : (double) wins / (wins + losses);
+			return agentTypes.get(firstAgent).name().toLowerCase() + " vs " + agentTypes.get(secondAgent).name().toLowerCase()
+					+ ": " + wins + "-" + draws + "-" + losses + ", decisive win rate " + Statistics.format(rate, interval[0], interval[1])
+					+ (isSettled() ? ", settled (" + verdict + ")" : "");
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package tics.util;
+
+import tics.match.Match;
+import tics.match.model.Board;
+import tics.match.model.Board.Direction;
+import tics.match.model.Player;
+import tics.match.model.Tile;
+
+/**
+ * Walking distances from every tile to the nearest enemy unit, for every player at once.
+ *
+ * For each player, a single breadth-first search is started from all of their enemies' units together,
+ * so the whole board is covered in one pass rather than one search per unit.
+ * The search can't pass through tiles that are ANY_MOVEMENT_BLOCKERs for that player, just like a movement Range.
+ * Alongside the distances, each tile stores the direction of the first step along a shortest path to an enemy.
+ *
+ * The arrays are kept between builds, so a flow field can be rebuilt every turn without creating garbage.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class FlowField {
+	/** The distance given to tiles that no enemy can be reached from. */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	/** The direction code for tiles that have no first step, either because they're unreachable or because an enemy is on them. */
+	private static final byte NO_DIRECTION = -1;
+
+	/** The directions, cached because values() copies its array every time. */
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/** The board dimensions, in tiles. */
+	private int width, height;
+	/** The number of players that arrays have been allocated for. */
+	private int playerCount;
+
+	/** The distance from each tile to the nearest enemy, indexed by player and then by y * width + x. */
+	private int[][] distances;
+	/** The ordinal of the direction to step in from each tile, indexed like distances. */
+	private byte[][] directions;
+	/** The index of the player who owns the unit on each tile, -1 for no unit, or -2 for an unowned unit. */
+	private int[] owners;
+	/** The breadth-first search queue, reused for every player. */
+	private int[] queue;
+
+	/**
+	 * Builds a flow field for the current state of a match, reusing this object's arrays if they're the right size.
+	 *
+	 * @param match the match to build the flow field for.
+	 */
+	public void build(Match match) {
+		Board board = match.getBoard();
+		Player[] players = match.getPlayers();
+		allocate(board.getGridWidth(), board.getGridHeight(), players.length);
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Tile tile = board.getTile(x, y);
+				owners[y * width + x] = tile.hasUnit() ? getPlayerIndex(players, match.getTileOwner(tile)) : -1;
+			}
+		}
+
+		for (int playerIndex = 0; playerIndex < players.length; playerIndex++) {
+			search(board, players, playerIndex);
+		}
+	}
+
+	/**
+	 * Makes sure the arrays fit the board and the number of players.
+	 *
+	 * @param width the board's width in tiles.
+	 * @param height the board's height in tiles.
+	 * @param playerCount the number of players in the match.
+	 */
+	private void allocate(int width, int height, int playerCount) {
+		if (distances == null || width != this.width || height != this.height || playerCount != this.playerCount) {
+			this.width = width;
+			this.height = height;
+			this.playerCount = playerCount;
+
+			distances = new int[playerCount][width * height];
+			directions = new byte[playerCount][width * height];
+			owners = new int[width * height];
+			queue = new int[width * height];
+		}
+	}
+
+	/**
+	 * Runs the breadth-first search for one player, from all of their enemies at once.
+	 *
+	 * @param board the board being searched.
+	 * @param players the players in the match.
+	 * @param playerIndex the index of the player to search for.
+	 */
+	private void search(Board board, Player[] players, int playerIndex) {
+		int[] distance = distances[playerIndex];
+		byte[] direction = directions[playerIndex];
+		int head = 0, tail = 0;
+
+		for (int index = 0; index < distance.length; index++) {
+			direction[index] = NO_DIRECTION;
+			int owner = owners[index];
+			if (owner >= 0 && owner != playerIndex && !players[owner].isDefeated()) {
+				distance[index] = 0; //Every enemy unit is a source.
+				queue[tail++] = index;
+			} else {
+				distance[index] = UNREACHABLE;
+			}
+		}
+
+		Player player = players[playerIndex];
+		while (head < tail) {
+			int index = queue[head++];
+			int x = index % width, y = index / width;
+
+			for (Direction step : DIRECTIONS) {
+				int nextX = x - step.getXOffset(), nextY = y - step.getYOffset(); //Work backwards from the enemy.
+				if (nextX < 0 || nextX >= width || nextY < 0 || nextY >= height) {
+					continue;
+				}
+
+				int next = nextY * width + nextX;
+				if (distance[next] != UNREACHABLE) {
+					continue;
+				}
+
+				Tile tile = board.getTile(nextX, nextY);
+				Player owner = owners[next] >= 0 ? players[owners[next]] : null;
+				if (tile.isOfType(TargetType.ANY_MOVEMENT_BLOCKER, player, owner)) {
+					continue; //Enemies and barriers can't be walked through.
+				}
+
+				distance[next] = distance[index] + 1;
+				direction[next] = (byte) step.ordinal(); //Stepping this way from the next tile leads back here.
+				queue[tail++] = next;
+			}
+		}
+	}
+
+	/** @return the index of a player in an array of players, or -2 if they aren't in it. */
+	private static int getPlayerIndex(Player[] players, Player player) {
+		for (int index = 0; index < players.length; index++) {
+			if (players[index] == player) {
+				return index;
+			}
+		}
+		return -2;
+	}
+
+	/**
+	 * Finds the walking distance from a tile to the nearest enemy unit.
+	 * A unit standing next to an enemy is at distance 1.
+	 *
+	 * @param playerIndex the index of the player whose enemies are measured to.
+	 * @param x the x coordinate of the tile.
+	 * @param y the y coordinate of the tile.
+	 * @return the distance, 0 if an enemy is on the tile, or UNREACHABLE.
+	 */
+	public int getDistance(int playerIndex, int x, int y) {
+		return distances[playerIndex][y * width + x];
+	}
+
+	/**
+	 * Finds which way to step from a tile to get closer to the nearest enemy unit.
+	 *
+	 * @param playerIndex the index of the player whose enemies are being approached.
+	 * @param x the x coordinate of the tile.
+	 * @param y the y coordinate of the tile.
+	 * @return the direction of the first step, or null if there's no way to get closer.
+	 */
+	public Direction getDirection(int playerIndex, int x, int y) {
+		byte ordinal = directions[playerIndex][y * width + x];
+		return ordinal == NO_DIRECTION ? null : DIRECTIONS[ordinal];
+	}
+}
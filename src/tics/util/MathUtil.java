@@ -1,5 +1,7 @@
 package tics.util;
 
+import java.util.Random;
+
 /** 
  * A class of static mathematical methods used by Tics. 
  * 
@@ -7,6 +9,27 @@ package tics.util;
  * @author Devindra Payment
  */
 public class MathUtil {	
+	/** 
+	 * The random number generator for each thread.
+	 * Each thread has its own, so that headless matches can be replayed from a seed even when many are played at once.
+	 */
+	private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+		@Override
+		protected Random initialValue() {
+			return new Random();
+		}
+	};
+	
+	/** 
+	 * Restarts the current thread's random number generator from a seed.
+	 * Everything random that happens on this thread afterwards, such as unit placement and naming, will then be repeatable.
+	 * 
+	 * @param seed the seed to use.
+	 */
+	public static void setSeed(long seed) {
+		random.get().setSeed(seed);
+	}
+	
 	/** 
 	 * Produces a random non-negative integer.
 	 * 
@@ -27,7 +50,7 @@ public class MathUtil {
 	 * @return a random integer between min and max, inclusive. 
 	 */
 	public static int randomInteger(int minimum, int maximum) {
-		return (int) (minimum + Math.round((Math.random() * (maximum - minimum))));
+		return (int) (minimum + Math.round((random.get().nextDouble() * (maximum - minimum))));
 	}
 	
 	/**
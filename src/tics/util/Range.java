@@ -10,7 +10,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import tics.match.Match;
 import tics.match.model.Ability;
 import tics.match.model.Tile;
-import tics.util.load.PropertiesLoader;
+import tics.util.load.ColourRole;
 
 /**
  * The current range of an ability or unit movement.
@@ -289,15 +289,15 @@ public class Range {
 	public void display() {
 		// EXTRA: Make it so that when you hover over a valid target it shows you the path to it.
 		for (Tile tile : validTargetPaths.keySet()) {
-			tile.setBackground(PropertiesLoader.getColour("target_tile"));
+			tile.setBackground(ColourRole.TARGET_TILE);
 		}
 		
 		for (Tile tile : invalidTargets) {
-			tile.setBackground(PropertiesLoader.getColour("invalid_target_tile"));
+			tile.setBackground(ColourRole.INVALID_TARGET_TILE);
 		}
 		
 		for (Tile tile : blockingTiles) {
-			tile.setBackground(PropertiesLoader.getColour("range_blocking_tile"));
+			tile.setBackground(ColourRole.RANGE_BLOCKING_TILE);
 			//TODO: Get barriers (if they still exist) displaying in these.
 			//Currently, Tiles with barriers must set their own background repeatedly, so this call does nothing to them.
 		}
@@ -308,15 +308,15 @@ public class Range {
 		//TODO: Don't set BLOCKED tiles to NORMAL_TILE colour. Waiting to fix this on a decision on barriers.
 		//That, or make barriers display a graphic rather than a background.
 		for (Tile tile : validTargetPaths.keySet()) {
-			tile.setBackground(PropertiesLoader.getColour("normal_tile"));
+			tile.setBackground(null);
 		}
 		
 		for (Tile tile : invalidTargets) {
-			tile.setBackground(PropertiesLoader.getColour("normal_tile"));
+			tile.setBackground(null);
 		}
 		
 		for (Tile tile : blockingTiles) {
-			tile.setBackground(PropertiesLoader.getColour("normal_tile"));
+			tile.setBackground(null);
 		}
 	}
 	
@@ -3,6 +3,10 @@ package tics.util;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 
 import tics.match.model.Tile;
 
@@ -30,6 +34,27 @@ public abstract class Util {
 		}
 	}
 	
+	/**
+	 * Puts tiles in reading order: row by row from the top, and left to right within each row.
+	 * Ranges and radii hand back tiles in no particular order, so this is useful wherever the order has to be repeatable.
+	 * 
+	 * @param tiles the tiles to sort.
+	 * @return a new list with the tiles in reading order.
+	 */
+	public static ArrayList<Tile> sortTiles(Collection<Tile> tiles) {
+		ArrayList<Tile> sortedTiles = new ArrayList<Tile>(tiles);
+		Collections.sort(sortedTiles, new Comparator<Tile>() {
+			@Override
+			public int compare(Tile first, Tile second) {
+				if (first.getGridY() != second.getGridY()) {
+					return first.getGridY() - second.getGridY();
+				}
+				return first.getGridX() - second.getGridX();
+			}
+		});
+		return sortedTiles;
+	}
+	
 	/** 
 	 * Flips a buffered image horizontally.
 	 * 
@@ -0,0 +1,85 @@
+package tics.util.load;
+
+import java.awt.Color;
+
+/**
+ * The things that the game colours, each of which is given a colour from the palette in settings/Colours.properties.
+ *
+ * The file is only read when the palette is first needed, and again whenever it's edited:
+ * every role's colour is decoded at once into an array, which is then never changed, and replaces the old one in a single write.
+ * So finding a colour, which happens many times for every tile that's painted, is a single array read,
+ * and a reader never sees a mix of the old and new palettes.
+ *
+ * Each role's colour is the property with its name in lower case.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public enum ColourRole {
+	DEFAULT_TEXT,
+
+	// HP bars and numbers
+	HEALTH, LOW_HEALTH, LOW_HEALTH_TEXT, VERY_LOW_HEALTH, VERY_LOW_HEALTH_TEXT,
+
+	// Status effect names
+	BUFF, DEBUFF,
+
+	// Move bars and numbers
+	FULL_MOVE, PARTIAL_MOVE,
+
+	// Unit movement/activity indicators
+	FULLY_ACTIVE, PARTIALLY_ACTIVE, INACTIVE, ENEMY,
+
+	// Tiles, outside and inside targeting ranges
+	NORMAL_TILE, BLOCKED_TILE, TARGET_TILE, INVALID_TARGET_TILE, RANGE_BLOCKING_TILE;
+
+	/** The file the palette is read from. */
+	private static final String FILE_PATH = "settings/Colours.properties";
+
+	/** Each role's colour, indexed by ordinal, or null if the palette hasn't been read yet. The array itself is never changed. */
+	private static volatile Color[] palette;
+
+	static {
+		PropertiesLoader.addListener(new LoaderCache.Listener() {
+			@Override
+			public void invalidated(String filePath) {
+				if (filePath.equals(FILE_PATH)) {
+					try {
+						palette = readPalette();
+					} catch (RuntimeException exception) {
+						exception.printStackTrace(); //Keep the old palette until the file is fixed.
+					}
+				}
+			}
+		});
+	}
+
+	/** @return this role's colour. */
+	public Color get() {
+		Color[] colours = palette;
+		if (colours == null) {
+			colours = readPalette(); //Two threads may both read it the first time, but they'll read the same colours.
+			palette = colours;
+		}
+		return colours[ordinal()];
+	}
+
+	/**
+	 * Decodes every role's colour.
+	 *
+	 * @return the colours, indexed by ordinal.
+	 * @throws IllegalStateException if a role has no colour.
+	 */
+	private static Color[] readPalette() {
+		ColourRole[] roles = values();
+		Color[] colours = new Color[roles.length];
+		for (ColourRole role : roles) {
+			try {
+				colours[role.ordinal()] = PropertiesLoader.getColour(role.name().toLowerCase());
+			} catch (RuntimeException exception) { //A missing name or colour turns up as a NullPointerException from Color.decode.
+				throw new IllegalStateException(FILE_PATH + " has no usable colour for " + role.name().toLowerCase() + ".", exception);
+			}
+		}
+		return colours;
+	}
+}
@@ -1,11 +1,15 @@
 package tics.util.load;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.net.URISyntaxException;
+import java.net.URL;
 
 import javax.imageio.ImageIO;
 
+import tics.util.Util;
+
 /**
  * Static class that loads and stores all the images used in the game.
  * Other classes access images from here, so they are not duplicated, and are not loaded until they are needed.
@@ -14,11 +18,56 @@ import javax.imageio.ImageIO;
  * @author Devindra Payment
  */
 public abstract class ImageLoader {
-	/** All the game's images, mapped to the paths to their files. This static collection is pre-initialized. */
-	private static HashMap<String, BufferedImage> images = new HashMap<String, BufferedImage>();
+	/** The number of images to keep in memory at once, which is several times the number the game has. */
+	private static final int MAXIMUM_CACHED = 256;
+	
+	/** All the game's images, mapped to the paths to their files. Images that are edited are loaded again. */
+	private static final LoaderCache<BufferedImage> images = new LoaderCache<BufferedImage>(new LoaderCache.Loader<BufferedImage>() {
+		@Override
+		public BufferedImage load(String imagePath) throws IOException {
+			try {
+				return ImageIO.read(ImageLoader.class.getResource(imagePath));
+			} catch (IllegalArgumentException exception) {
+				throw new IllegalArgumentException("'" + imagePath + "' can't be used as an image classpath.", exception);
+				//TODO: Use a reasonably informative message if this error comes up.
+			}
+		}
+		
+		@Override
+		public File getSourceFile(String imagePath) {
+			return getImageFile(imagePath);
+		}
+	}, MAXIMUM_CACHED, true);
+	
+	/** 
+	 * The game's images flipped left-to-right, mapped to the paths to their files, so that they are only flipped once.
+	 * Flipped images aren't watched themselves: they're forgotten whenever the image they were flipped from is,
+	 * so that one flipped from an image that was out of date is never kept.
+	 */
+	private static final LoaderCache<BufferedImage> flippedImages = new LoaderCache<BufferedImage>(new LoaderCache.Loader<BufferedImage>() {
+		@Override
+		public BufferedImage load(String imagePath) throws IOException {
+			return Util.flipImageHorizontally(getImage(imagePath));
+		}
+		
+		@Override
+		public File getSourceFile(String imagePath) {
+			return null;
+		}
+	}, MAXIMUM_CACHED, false);
+	
+	static {
+		images.addListener(new LoaderCache.Listener() {
+			@Override
+			public void invalidated(String imagePath) {
+				flippedImages.invalidate(imagePath);
+			}
+		});
+	}
 	
 	/**
 	 * Accesses an image by path. Loads the image if it hasn't been loaded already, and returns it.
+	 * It can be called from any thread.
 	 * 
 	 * @param imagePath the path to the image to retrieve.
 	 * @return the named image, or null if no image with that name seems to exist.
@@ -26,16 +75,42 @@ public abstract class ImageLoader {
 	 * @throws IllegalArgumentException if a path to an image couldn't be constructed properly.
 	 */
 	public static BufferedImage getImage(String imagePath) throws IOException, IllegalArgumentException {
-		if (images.containsKey(imagePath)) {
-			return images.get(imagePath);
-		} else {
-			try {
-				images.put(imagePath, ImageIO.read(ImageLoader.class.getResource(imagePath)));
-			} catch (IllegalArgumentException exception) {
-				throw new IllegalArgumentException("'" + imagePath + "' can't be used as an image classpath.", exception);
-				//TODO: Use a reasonably informative message if this error comes up.
-			}
-			return images.get(imagePath);
+		return images.get(imagePath);
+	}
+	
+	/**
+	 * Accesses an image by path, flipped left-to-right. The flipped image is made once, and shared like the image itself.
+	 * It can be called from any thread.
+	 * 
+	 * @param imagePath the path to the image to retrieve.
+	 * @return the named image, flipped horizontally.
+	 * @throws IOException if an image couldn't be loaded.
+	 * @throws IllegalArgumentException if a path to an image couldn't be constructed properly.
+	 */
+	public static BufferedImage getFlippedImage(String imagePath) throws IOException, IllegalArgumentException {
+		return flippedImages.get(imagePath);
+	}
+	
+	/**
+	 * @param listener will be told whenever an image is forgotten because its file was edited, on a background thread.
+	 */
+	public static void addListener(LoaderCache.Listener listener) {
+		images.addListener(listener);
+	}
+	
+	/**
+	 * @param imagePath the path to an image.
+	 * @return the image's file, or null if it isn't a file that can be edited, such as an image inside a jar.
+	 */
+	private static File getImageFile(String imagePath) {
+		URL url = ImageLoader.class.getResource(imagePath);
+		if (url == null || !url.getProtocol().equals("file")) {
+			return null; // Images inside a jar can't change.
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException exception) {
+			return null;
 		}
 	}
 }
@@ -1,11 +1,11 @@
 package tics.util.load;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.HashMap;
+import java.io.InputStream;
 import java.util.Map;
 
 import com.json.generators.JSONGenerator;
@@ -27,13 +27,36 @@ public abstract class JSONLoader {
 	/** The object that is used to generate JSON files. */
 	private static final JSONGenerator generator = JsonGeneratorFactory.getInstance().newJsonGenerator();
 	
-	/** All previously loaded jsons, mapped to the paths to their files. */
-	private static HashMap<String, Map<String, Object>> jsonMap = new HashMap<String, Map<String, Object>>();
+	/** The number of .json files to keep in memory at once. */
+	private static final int MAXIMUM_CACHED = 64;
+	
+	/** Previously loaded jsons, mapped to the paths to their files. Files that are edited are loaded again. */
+	private static final LoaderCache<Map<String, Object>> jsonCache = new LoaderCache<Map<String, Object>>(new LoaderCache.Loader<Map<String, Object>>() {
+		@Override
+		public Map<String, Object> load(String filePath) throws IOException {
+			InputStream input = new FileInputStream(filePath);
+			try {
+				synchronized (parser) { // The parser keeps its state in fields, so only one file can be parsed at a time.
+					@SuppressWarnings("unchecked") // We know that it will always be a Map<String, Object>
+					Map<String, Object> data = parser.parseJson(input, "UTF-8");
+					return data;
+				}
+			} finally {
+				input.close();
+			}
+		}
+		
+		@Override
+		public File getSourceFile(String filePath) {
+			return new File(filePath);
+		}
+	}, MAXIMUM_CACHED, true);
 	
 	/**
 	 * Retrieve the contents of a .json file.
 	 * This function will either get the Map<String, Object> object from memory, 
-	 * or load it from the file if it hasn't already been cached.
+	 * or load it from the file if it hasn't already been cached, or if the file has changed since.
+	 * It can be called from any thread.
 	 * 
 	 * @param filePath the path to and name of the .json file.
 	 * @return the Map<String, Object> that represents the requested file.
@@ -43,20 +66,11 @@ public abstract class JSONLoader {
 			filePath += ".json";
 		}
 		
-		if (jsonMap.containsKey(filePath)) { // Check if the file is cached.
-			// If so, return the cached version of the file.
-			return jsonMap.get(filePath);
-		} else {
-			try {
-				@SuppressWarnings("unchecked") // We know that it will always be a Map<String, Object>
-				Map<String, Object> data = parser.parseJson(new FileInputStream(filePath), "UTF-8");
-				
-				jsonMap.put(filePath, data);
-				return data;
-			} catch (FileNotFoundException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		try {
+			return jsonCache.get(filePath); // Cached files are returned straight away.
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
 		}
 		
 		return null; // If the try/catch block fails, then return null. The json could not be loaded.
@@ -81,10 +95,7 @@ public abstract class JSONLoader {
 			output.write(content.getBytes()); // Convert the json string to bytes.
 			output.close(); // Close the file we're saving to.
 
-			if (jsonMap.containsKey(filePath)) { // Check if the file we are saving is cached.
-				// If so, update the cache.
-				jsonMap.put(filePath, json);
-			}
+			jsonCache.replace(filePath, json); // If the file we are saving is cached, update the cache.
 		} catch (FileNotFoundException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -0,0 +1,261 @@
+package tics.util.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The cache behind the loaders: it maps paths to whatever was loaded from them, and can be used from any thread.
+ *
+ * Each path is loaded once, even if several threads ask for it at the same time: the first one loads it, and the rest wait for it.
+ * Failed loads aren't cached, so they are tried again next time. The cache holds a limited number of entries,
+ * and forgets the least recently used one when it's full, so a long running program doesn't keep everything it has ever loaded.
+ *
+ * Entries that were loaded from a file are forgotten when the file changes, so the next request loads the new version.
+ * Every cache's files are checked by one shared background timer, which compares their modification times,
+ * since this has to run on Java 6, which has no WatchService.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ * @param <V> the type of value that's loaded.
+ */
+public class LoaderCache<V> {
+	/** The number of milliseconds between checks for changed files. */
+	public static final long WATCH_INTERVAL = 1000;
+
+	/** Loads values for a cache. */
+	public interface Loader<V> {
+		/**
+		 * Loads a value. This may be called on any thread, but never twice at once for the same key.
+		 *
+		 * @param key the path that identifies the value.
+		 * @return the value, which shouldn't be null.
+		 * @throws IOException if the value couldn't be loaded.
+		 */
+		V load(String key) throws IOException;
+
+		/**
+		 * @param key the path that identifies a value.
+		 * @return the file that the value is loaded from, which is watched for changes, or null if it can't change.
+		 */
+		File getSourceFile(String key);
+	}
+
+	/** Is told when entries are forgotten because their files have changed. */
+	public interface Listener {
+		/**
+		 * Handles a file changing. This is called on the background timer's thread.
+		 *
+		 * @param key the path of the entry that was forgotten, which will be loaded again the next time it's asked for.
+		 */
+		void invalidated(String key);
+	}
+
+	/** Every cache with entries to watch. */
+	private static final List<LoaderCache<?>> watchedCaches = new CopyOnWriteArrayList<LoaderCache<?>>();
+	/** The timer that checks the watched caches' files, which is started with the first one. */
+	private static Timer watchTimer;
+
+	private final Loader<V> loader;
+	/** The entries, in order from least to most recently used. Only accessed while synchronized on it. */
+	private final LinkedHashMap<String, CacheEntry<V>> entries;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param loader loads the values.
+	 * @param maximumSize the number of entries to hold before forgetting the least recently used.
+	 * @param watch true to forget entries when their files change.
+	 */
+	public LoaderCache(Loader<V> loader, final int maximumSize, boolean watch) {
+		this.loader = loader;
+		this.entries = new LinkedHashMap<String, CacheEntry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<V>> eldest) {
+				return size() > maximumSize;
+			}
+		};
+
+		if (watch) {
+			startWatching(this);
+		}
+	}
+
+	/**
+	 * Gets a value, loading it if it isn't cached, or waiting for it if another thread is already loading it.
+	 *
+	 * @param key the path that identifies the value.
+	 * @return the value.
+	 * @throws IOException if the value couldn't be loaded.
+	 */
+	public V get(String key) throws IOException {
+		CacheEntry<V> entry;
+		boolean loading = false;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new CacheEntry<V>(key, loader);
+				entries.put(key, entry);
+				loading = true;
+			}
+		}
+
+		if (loading) {
+			entry.task.run(); //Load it on this thread, outside of the lock, so other keys aren't held up.
+		}
+
+		try {
+			return entry.task.get();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + key + " to load.");
+		} catch (ExecutionException exception) {
+			remove(key, entry); //Try again next time.
+			Throwable cause = exception.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Replaces a cached value, for instance after it has been saved. Nothing is done if the value isn't cached.
+	 *
+	 * @param key the path that identifies the value.
+	 * @param value the new value.
+	 */
+	public void replace(String key, V value) {
+		synchronized (entries) {
+			if (entries.containsKey(key)) {
+				entries.put(key, new CacheEntry<V>(key, loader, value));
+			}
+		}
+	}
+
+	/**
+	 * Forgets a value, so it's loaded again the next time it's asked for.
+	 *
+	 * @param key the path that identifies the value.
+	 */
+	public void invalidate(String key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	/** @return the number of values cached. */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/** @param listener will be told whenever an entry is forgotten because its file changed. */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/** Forgets an entry, but only if it hasn't already been replaced by another. @return true if it was forgotten. */
+	private boolean remove(String key, CacheEntry<V> entry) {
+		synchronized (entries) {
+			if (entries.get(key) == entry) {
+				entries.remove(key);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/** Forgets the entries whose files have changed since they were loaded. */
+	private void checkSourceFiles() {
+		List<CacheEntry<V>> snapshot;
+		synchronized (entries) {
+			snapshot = new ArrayList<CacheEntry<V>>(entries.values());
+		}
+
+		for (CacheEntry<V> entry : snapshot) {
+			if (entry.sourceFile != null && entry.sourceFile.lastModified() != entry.lastModified && remove(entry.key, entry)) {
+				for (Listener listener : listeners) {
+					try {
+						listener.invalidated(entry.key);
+					} catch (RuntimeException exception) {
+						exception.printStackTrace(); //One broken listener mustn't stop the timer from watching every other file.
+					}
+				}
+			}
+		}
+	}
+
+	/** Adds a cache to those whose files are watched, and starts the timer if it isn't running. */
+	private static synchronized void startWatching(LoaderCache<?> cache) {
+		watchedCaches.add(cache);
+		if (watchTimer == null) {
+			watchTimer = new Timer("Loader cache watcher", true);
+			watchTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					for (LoaderCache<?> watchedCache : watchedCaches) {
+						watchedCache.checkSourceFiles();
+					}
+				}
+			}, WATCH_INTERVAL, WATCH_INTERVAL);
+		}
+	}
+
+	/** A value that has been, or is being, loaded. */
+	private static class CacheEntry<V> {
+		private final String key;
+		/** Loads the value, once, and holds it. */
+		private final FutureTask<V> task;
+		/** The file the value was loaded from, or null. */
+		private final File sourceFile;
+		/** The file's modification time from just before it was loaded, so a change made during the load is still noticed. */
+		private final long lastModified;
+
+		/** Creates an entry whose value still has to be loaded. */
+		private CacheEntry(final String key, final Loader<V> loader) {
+			this(key, loader, new Callable<V>() {
+				@Override
+				public V call() throws IOException {
+					return loader.load(key);
+				}
+			});
+		}
+
+		/** Creates an entry with a value that has already been loaded. */
+		private CacheEntry(String key, Loader<V> loader, final V value) {
+			this(key, loader, new Callable<V>() {
+				@Override
+				public V call() {
+					return value;
+				}
+			});
+			task.run();
+		}
+
+		private CacheEntry(String key, Loader<V> loader, Callable<V> load) {
+			this.key = key;
+			this.sourceFile = loader.getSourceFile(key);
+			this.lastModified = sourceFile != null ? sourceFile.lastModified() : 0;
+			this.task = new FutureTask<V>(load);
+		}
+	}
+}
@@ -1,13 +1,13 @@
 package tics.util.load;
 
 import java.awt.Color;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
 import java.util.Properties;
 
 /**
@@ -23,13 +23,34 @@ import java.util.Properties;
  * @author Devindra Payment
  */
 public abstract class PropertiesLoader {
-	/** All the game's properties, mapped to the paths to their files. */
-	private static HashMap<String, Properties> propertiesMap = new HashMap<String, Properties>();
+	/** The number of .properties files to keep in memory at once. */
+	private static final int MAXIMUM_CACHED = 64;
+	
+	/** All the game's properties, mapped to the paths to their files. Files that are edited are loaded again. */
+	private static final LoaderCache<Properties> propertiesCache = new LoaderCache<Properties>(new LoaderCache.Loader<Properties>() {
+		@Override
+		public Properties load(String filePath) throws IOException {
+			InputStream input = new FileInputStream(filePath); // Open the requested file
+			try {
+				Properties properties = new Properties(); // Create a new Properties object.
+				properties.load(input); // Populate the properties object with the input file.
+				return properties;
+			} finally {
+				input.close(); // Close the requested file.
+			}
+		}
+		
+		@Override
+		public File getSourceFile(String filePath) {
+			return new File(filePath);
+		}
+	}, MAXIMUM_CACHED, true);
 	
 	/**
 	 * Retrieve the contents of a .properties file.
 	 * This function will either get the Properties object from memory, 
-	 * or load it from the file if it hasn't already been cached.
+	 * or load it from the file if it hasn't already been cached, or if the file has changed since.
+	 * It can be called from any thread.
 	 * 
 	 * @param filePath the path to and name of the .properties file.
 	 * @return the Properties object that represents the requested file.
@@ -39,31 +60,23 @@ public abstract class PropertiesLoader {
 			filePath += ".properties";
 		}
 		
-		if (propertiesMap.containsKey(filePath)) { // Check if the file is cached.
-			// If so, return the cached version of the file.
-			return propertiesMap.get(filePath);
-		} else {
-			try {
-				InputStream input = new FileInputStream(filePath); // Open the requested file
-				Properties properties = new Properties(); // Create a new Properties object.
-				properties.load(input); // Populate the properties object with the input file.
-				input.close(); // Close the requested file.
-				
-				propertiesMap.put(filePath, properties); // Cache the file, so that it can be quickly loaded in the future.
-				
-				return properties; // Return our new properties object.
-			} catch (FileNotFoundException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		try {
+			return propertiesCache.get(filePath); // Cached files are returned straight away.
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
 		}
 		
 		return null; // If the try/catch block fails, then return null. The properties could not be loaded.
 	}
 	
+	/**
+	 * @param listener will be told whenever a file is forgotten because it was edited, on a background thread.
+	 */
+	public static void addListener(LoaderCache.Listener listener) {
+		propertiesCache.addListener(listener);
+	}
+	
 	/**
 	 * This function is used to save a .properties file.
 	 * 
@@ -80,10 +93,7 @@ public abstract class PropertiesLoader {
 			properties.store(output, ""); // Save the properties file to the output stream.
 			output.close(); // Close the file we're saving to.
 
-			if (propertiesMap.containsKey(filePath)) { // Check if the file we are saving is cached.
-				// If so, update the cache.
-				propertiesMap.put(filePath, properties);
-			}
+			propertiesCache.replace(filePath, properties); // If the file we are saving is cached, update the cache.
 		} catch (FileNotFoundException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -104,6 +114,7 @@ public abstract class PropertiesLoader {
 	 * 
 	 * This function should not be used to retrieve the colours directly from the palette.
 	 * If you wish to do that, use the PropertiesLoader.get() method.
+	 * The game's own colours should be found through ColourRole, which decodes them all once rather than on every call.
 	 * 
 	 * @param property the name of the property that we want to retrieve from Colours.properties
 	 * @return the Color object that corresponds to the requested property.
@@ -0,0 +1,599 @@
+package tics.util.load;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import tics.match.Match;
+import tics.match.model.Ability;
+import tics.match.model.Player;
+import tics.match.model.PlayerTheme;
+import tics.match.model.Tile;
+import tics.match.model.TileStatus;
+import tics.match.model.Unit;
+import tics.match.model.UnitStatus;
+import tics.util.MathUtil;
+
+/**
+ * A scenario compiled from its .json file: the header that describes it, and a packed table of its setup instructions.
+ *
+ * Compiling a scenario means reading its json, so the compiled form is cached in a .tsc file next to the .json,
+ * keyed by a hash of the json's contents. As long as the json doesn't change, loading the scenario only reads the cache,
+ * and starting a match from it only walks the table. A scenario is never changed once it's been loaded,
+ * so the same one can create matches on several threads.
+ *
+ * The setup table holds one entry per setup instruction, as a run of ints:
+ *   x y owner
+ *   if owner isn't 0: abilityCount abilityOrdinal... unitStatusCount (typeOrdinal duration)... health move active
+ *   tileStatusCount (typeOrdinal duration)...
+ * where health and move are -1 to leave them full, and active is -1 to leave it to the match, or 0 or 1.
+ *
+ * The cache file is int MAGIC, long key, the header, then the table as zigzag varints.
+ * The key also covers the format's VERSION and the names of every Ability and status type,
+ * so a cache is recompiled if the ordinals in its table could have changed meaning.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class Scenario {
+	/** The extension of compiled scenario files. */
+	public static final String CACHE_FILE_EXTENSION = "tsc";
+	/** The first four bytes of every compiled scenario: "TICC". */
+	private static final int MAGIC = 0x54494343;
+	/** The version of the compiled format, which changes the key of every cache when it's changed. */
+	private static final int VERSION = 1;
+	/** The hash of everything besides the json that a cache depends on. */
+	private static final long SCHEMA_HASH = hashSchema();
+
+	private String title, author, description;
+	private int players, width, height, abilityCount;
+	/** The player to go first, numbered from 1, and the round to start on, or 0 if the scenario doesn't set them. */
+	private int currentPlayer, currentRound;
+	/** The setup table, which is only valid up to setupLength. */
+	private int[] setup;
+	private int setupLength;
+
+	/** Creates an empty scenario, to be filled in by compile or readCache. */
+	private Scenario() {
+		setup = new int[64];
+	}
+
+	/** @return the scenario's title. */
+	public String getTitle() {
+		return title;
+	}
+
+	/** @return the scenario's author. */
+	public String getAuthor() {
+		return author;
+	}
+
+	/** @return the scenario's description. */
+	public String getDescription() {
+		return description;
+	}
+
+	/** @return the number of players. */
+	public int getPlayerCount() {
+		return players;
+	}
+
+	/** @return the board's width in tiles. */
+	public int getWidth() {
+		return width;
+	}
+
+	/** @return the board's height in tiles. */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Creates a started match from the scenario.
+	 * Any abilities that the scenario leaves to chance are drawn from MathUtil, in the order of the setup.
+	 *
+	 * @param displayed false to create the match without a panel, for matches that are played by Agents.
+	 * @return the started match.
+	 * @throws IllegalStateException if the setup places something outside the board, or gives a unit to a player that doesn't exist.
+	 */
+	public Match createMatch(boolean displayed) {
+		Player[] playerArray = new Player[players];
+		for (int index = 0; index < players; index++) {
+			playerArray[index] = new Player(new LinkedHashSet<Unit>(), PlayerTheme.getThemeForIndex(index));
+		}
+		Match match = new Match(width, height, playerArray, displayed);
+
+		Ability[] abilities = Ability.values();
+		UnitStatus.Type[] unitStatusTypes = UnitStatus.Type.values();
+		TileStatus.Type[] tileStatusTypes = TileStatus.Type.values();
+		int position = 0;
+		try {
+			while (position < setupLength) {
+				Tile tile = match.getBoard().getTile(setup[position++], setup[position++]);
+				int owner = setup[position++];
+
+				if (owner > 0) {
+					Player player = playerArray[owner-1];
+
+					ArrayList<Ability> unitAbilities = new ArrayList<Ability>();
+					ArrayList<Ability> possibleAbilities = new ArrayList<Ability>(Arrays.asList(abilities));
+
+					unitAbilities.add(Ability.ATTACK);
+					possibleAbilities.remove(Ability.ATTACK); //Every unit can ATTACK, so don't generate it as a random ability.
+
+					for (int count = setup[position++]; count > 0; count--) {
+						Ability ability = abilities[setup[position++]];
+						unitAbilities.add(ability);
+						possibleAbilities.remove(ability);
+					}
+
+					for (int i = unitAbilities.size(); i <= abilityCount;) {
+						int abilityIndex = MathUtil.randomInteger(0, possibleAbilities.size()-1);
+						Ability ability = possibleAbilities.get(abilityIndex);
+						possibleAbilities.remove(ability);
+
+						unitAbilities.add(ability);
+						i++;
+					}
+
+					Unit unit = new Unit(player.getTheme(), unitAbilities);
+					player.getUnits().add(unit);
+					tile.setUnit(unit);
+
+					for (int count = setup[position++]; count > 0; count--) {
+						unit.applyStatus(new UnitStatus(unitStatusTypes[setup[position++]], setup[position++], 0)); // TODO: Change this 0 to whatever it is supposed to be.
+					}
+
+					int health = setup[position++], move = setup[position++], active = setup[position++];
+					if (health >= 0) {
+						unit.setCurrentHealth(health);
+					}
+					if (move >= 0) {
+						unit.setCurrentMove(move);
+					}
+					if (active >= 0) {
+						unit.setActive(active == 1);
+					}
+				}
+
+				for (int count = setup[position++]; count > 0; count--) {
+					tile.applyStatus(new TileStatus(tileStatusTypes[setup[position++]], setup[position++], 0));
+				}
+			}
+		} catch (IndexOutOfBoundsException exception) {
+			throw new IllegalStateException("The scenario " + title + " places something outside of its board or players.", exception);
+		}
+
+		// Only start the match once every unit is on the board, so that the first player's units are activated.
+		if (currentPlayer > 0) {
+			match.startMatch(currentPlayer - 1); // Players are numbered from 1, like unit owners.
+		} else {
+			match.startMatch();
+		}
+
+		if (currentRound > 0) {
+			match.setCurrentRound(currentRound);
+		}
+
+		return match;
+	}
+
+	// ================================= LOADING =======================================
+
+	/**
+	 * Loads a scenario, from its cache if the cache is for the json as it is now, or else by compiling the json and caching it.
+	 *
+	 * @param filePath the path to the scenario's .json file.
+	 * @return the scenario.
+	 * @throws IOException if the json couldn't be read, or isn't well formed.
+	 */
+	public static Scenario load(String filePath) throws IOException {
+		if (! filePath.endsWith(".json")) {
+			filePath += ".json";
+		}
+
+		byte[] json = readFile(new File(filePath));
+		long key = hash(SCHEMA_HASH, json);
+		File cacheFile = getCacheFile(filePath);
+
+		if (cacheFile.isFile()) {
+			Scenario cached = readCache(cacheFile, key, true);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		Scenario scenario = compile(json, true);
+		try {
+			scenario.writeCache(cacheFile, key);
+		} catch (IOException exception) {
+			//If the folder can't be written to, the scenario is just compiled again next time.
+		}
+		return scenario;
+	}
+
+	/**
+	 * Reads only the header of a scenario, for listing it, which reads as little of the cache as it can.
+	 * If the scenario hasn't been compiled, its json is read without building the setup table, and nothing is cached.
+	 *
+	 * @param filePath the path to the scenario's .json file.
+	 * @return the scenario's header.
+	 * @throws IOException if the json couldn't be read, or isn't well formed.
+	 */
+	public static ScenarioHeader loadHeader(String filePath) throws IOException {
+		if (! filePath.endsWith(".json")) {
+			filePath += ".json";
+		}
+
+		byte[] json = readFile(new File(filePath));
+		long key = hash(SCHEMA_HASH, json);
+		File cacheFile = getCacheFile(filePath);
+
+		Scenario scenario = null;
+		if (cacheFile.isFile()) {
+			scenario = readCache(cacheFile, key, false);
+		}
+		if (scenario == null) {
+			scenario = compile(json, false);
+		}
+		return new ScenarioHeader(filePath, scenario.title, scenario.author, scenario.description, scenario.players, scenario.width, scenario.height);
+	}
+
+	/** @return the cache file for a scenario's .json file. */
+	public static File getCacheFile(String filePath) {
+		return new File(filePath.substring(0, filePath.length() - ".json".length()) + "." + CACHE_FILE_EXTENSION);
+	}
+
+	/**
+	 * Reads a scenario's json a token at a time, straight into the setup table.
+	 *
+	 * @param json the contents of the .json file.
+	 * @param withSetup false to skip over the setup, so only the header is read.
+	 * @throws IOException if the json isn't well formed, or names an unknown ability or status.
+	 */
+	private static Scenario compile(byte[] json, boolean withSetup) throws IOException {
+		Scenario scenario = new Scenario();
+		ScenarioReader reader = new ScenarioReader(new InputStreamReader(new ByteArrayInputStream(json), "UTF-8"));
+		try {
+			scenario.readHeader(reader, withSetup);
+		} catch (IllegalArgumentException exception) { // Thrown by valueOf for unknown abilities and statuses.
+			throw reader.error(exception.getMessage());
+		} finally {
+			reader.close();
+		}
+
+		if (scenario.players <= 0 || scenario.width <= 0 || scenario.height <= 0) {
+			throw new IOException("The scenario must give its players, width and height.");
+		}
+		return scenario;
+	}
+
+	/** Reads the scenario's outermost object, whose names can come in any order. */
+	private void readHeader(ScenarioReader reader, boolean withSetup) throws IOException {
+		reader.expect(ScenarioReader.Token.BEGIN_OBJECT);
+		while (reader.next() == ScenarioReader.Token.NAME) {
+			if (reader.textEquals("setup") && !withSetup) {
+				reader.skipValue();
+			} else if (reader.textEquals("setup")) {
+				reader.expect(ScenarioReader.Token.BEGIN_ARRAY);
+				while (reader.next() == ScenarioReader.Token.BEGIN_OBJECT) {
+					readInstruction(reader);
+				}
+			} else if (reader.textEquals("abilities")) {
+				abilityCount = reader.nextInt();
+			} else if (reader.textEquals("players")) {
+				players = reader.nextInt();
+			} else if (reader.textEquals("width")) {
+				width = reader.nextInt();
+			} else if (reader.textEquals("height")) {
+				height = reader.nextInt();
+			} else if (reader.textEquals("currentPlayer")) {
+				currentPlayer = reader.nextInt();
+			} else if (reader.textEquals("currentRound")) {
+				currentRound = reader.nextInt();
+			} else if (reader.textEquals("title")) {
+				title = reader.nextString();
+			} else if (reader.textEquals("author")) {
+				author = reader.nextString();
+			} else if (reader.textEquals("description")) {
+				description = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+	}
+
+	/**
+	 * Reads one setup instruction, whose opening brace has already been read, and adds it to the table.
+	 * Its names can come in any order, so the parts are read into a small scratch table before being appended in order.
+	 */
+	private void readInstruction(ScenarioReader reader) throws IOException {
+		int x = -1, y = -1;
+		int[] unit = null;
+		int[] tileStatuses = new int[1];
+
+		while (reader.next() == ScenarioReader.Token.NAME) {
+			if (reader.textEquals("x")) {
+				x = reader.nextInt();
+			} else if (reader.textEquals("y")) {
+				y = reader.nextInt();
+			} else if (reader.textEquals("unit")) {
+				unit = readUnit(reader);
+			} else if (reader.textEquals("status")) {
+				tileStatuses = readStatuses(reader, false);
+			} else {
+				reader.skipValue();
+			}
+		}
+
+		if (x < 0 || y < 0) {
+			throw reader.error("A setup instruction is missing its x or y.");
+		}
+		append(x);
+		append(y);
+		if (unit == null) {
+			append(0);
+		} else {
+			for (int value : unit) {
+				append(value);
+			}
+		}
+		for (int value : tileStatuses) {
+			append(value);
+		}
+	}
+
+	/** @return a unit's part of the table, from owner to active. */
+	private static int[] readUnit(ScenarioReader reader) throws IOException {
+		int owner = 0, health = -1, move = -1, active = -1;
+		int[] abilities = new int[] { 0 };
+		int[] statuses = new int[] { 0 };
+
+		reader.expect(ScenarioReader.Token.BEGIN_OBJECT);
+		while (reader.next() == ScenarioReader.Token.NAME) {
+			if (reader.textEquals("owner")) {
+				owner = reader.nextInt();
+			} else if (reader.textEquals("abilities")) {
+				ArrayList<Ability> list = new ArrayList<Ability>();
+				reader.expect(ScenarioReader.Token.BEGIN_ARRAY);
+				while (reader.next() == ScenarioReader.Token.VALUE) {
+					list.add(Ability.valueOf(reader.getText()));
+				}
+				abilities = new int[list.size() + 1];
+				abilities[0] = list.size();
+				for (int index = 0; index < list.size(); index++) {
+					abilities[index + 1] = list.get(index).ordinal();
+				}
+			} else if (reader.textEquals("status")) {
+				statuses = readStatuses(reader, true);
+			} else if (reader.textEquals("hp")) {
+				health = reader.nextInt();
+			} else if (reader.textEquals("move")) {
+				move = reader.nextInt();
+			} else if (reader.textEquals("active")) {
+				active = reader.nextBoolean() ? 1 : 0;
+			} else {
+				reader.skipValue();
+			}
+		}
+
+		if (owner <= 0) {
+			throw reader.error("A unit is missing its owner.");
+		}
+		int[] unit = new int[1 + abilities.length + statuses.length + 3];
+		unit[0] = owner;
+		System.arraycopy(abilities, 0, unit, 1, abilities.length);
+		System.arraycopy(statuses, 0, unit, 1 + abilities.length, statuses.length);
+		unit[unit.length - 3] = health;
+		unit[unit.length - 2] = move;
+		unit[unit.length - 1] = active;
+		return unit;
+	}
+
+	/** @return a map of statuses to durations, as a count followed by pairs of type ordinal and duration. */
+	private static int[] readStatuses(ScenarioReader reader, boolean unitStatuses) throws IOException {
+		int[] statuses = new int[9];
+		int count = 0;
+		reader.expect(ScenarioReader.Token.BEGIN_OBJECT);
+		while (reader.next() == ScenarioReader.Token.NAME) {
+			if (1 + count * 2 + 2 > statuses.length) {
+				statuses = Arrays.copyOf(statuses, statuses.length * 2);
+			}
+			statuses[1 + count * 2] = unitStatuses ? UnitStatus.Type.valueOf(reader.getText()).ordinal() : TileStatus.Type.valueOf(reader.getText()).ordinal();
+			statuses[2 + count * 2] = reader.nextInt();
+			count++;
+		}
+		statuses[0] = count;
+		return Arrays.copyOf(statuses, 1 + count * 2);
+	}
+
+	/** Adds a value to the end of the setup table. */
+	private void append(int value) {
+		if (setupLength == setup.length) {
+			setup = Arrays.copyOf(setup, setup.length * 2);
+		}
+		setup[setupLength++] = value;
+	}
+
+	// ================================= CACHING =======================================
+
+	/**
+	 * Reads a compiled scenario.
+	 *
+	 * @param withSetup false to read only the header, which is at the start of the file.
+	 * @return the scenario, or null if the cache is for a different version of the json, or is damaged.
+	 */
+	private static Scenario readCache(File cacheFile, long key, boolean withSetup) {
+		try {
+			InputStream file = withSetup ? new ByteArrayInputStream(readFile(cacheFile)) : new BufferedInputStream(new FileInputStream(cacheFile), 1024);
+			try {
+				DataInputStream input = new DataInputStream(file);
+				if (input.readInt() != MAGIC || input.readLong() != key) {
+					return null;
+				}
+
+				Scenario scenario = new Scenario();
+				scenario.title = readString(input);
+				scenario.author = readString(input);
+				scenario.description = readString(input);
+				scenario.players = input.readInt();
+				scenario.width = input.readInt();
+				scenario.height = input.readInt();
+				scenario.abilityCount = input.readInt();
+				scenario.currentPlayer = input.readInt();
+				scenario.currentRound = input.readInt();
+				if (!withSetup) {
+					return scenario;
+				}
+
+				scenario.setupLength = input.readInt();
+				if (scenario.setupLength < 0 || scenario.setupLength > input.available()) {
+					return null; //Every value takes at least a byte.
+				}
+				scenario.setup = new int[scenario.setupLength];
+				for (int index = 0; index < scenario.setupLength; index++) {
+					scenario.setup[index] = readSignedVarInt(input);
+				}
+				return scenario;
+			} finally {
+				file.close();
+			}
+		} catch (IOException exception) {
+			return null; //A damaged cache is compiled again.
+		}
+	}
+
+	/**
+	 * Writes the compiled scenario next to its json.
+	 * It's written to a temporary file and renamed into place, so that other programs loading it never see half a cache.
+	 */
+	private void writeCache(File cacheFile, long key) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + setupLength * 2);
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(MAGIC);
+		output.writeLong(key);
+		writeString(output, title);
+		writeString(output, author);
+		writeString(output, description);
+		output.writeInt(players);
+		output.writeInt(width);
+		output.writeInt(height);
+		output.writeInt(abilityCount);
+		output.writeInt(currentPlayer);
+		output.writeInt(currentRound);
+
+		output.writeInt(setupLength);
+		for (int index = 0; index < setupLength; index++) {
+			writeSignedVarInt(output, setup[index]);
+		}
+
+		File folder = cacheFile.getAbsoluteFile().getParentFile();
+		File temporaryFile = File.createTempFile(cacheFile.getName(), ".tmp", folder);
+		try {
+			FileOutputStream file = new FileOutputStream(temporaryFile);
+			try {
+				bytes.writeTo(file);
+			} finally {
+				file.close();
+			}
+			if (!temporaryFile.renameTo(cacheFile)) {
+				cacheFile.delete(); //Some platforms can't rename over an existing file.
+				if (!temporaryFile.renameTo(cacheFile)) {
+					throw new IOException("Could not replace " + cacheFile + ".");
+				}
+			}
+		} finally {
+			temporaryFile.delete();
+		}
+	}
+
+	/** Writes a string that may be null. */
+	private static void writeString(DataOutput output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	/** @return a string that may be null. */
+	private static String readString(DataInput input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	/** Writes an int as a zigzag encoded varint, so that the small numbers that make up most of the table take a single byte. */
+	private static void writeSignedVarInt(DataOutput output, int value) throws IOException {
+		int zigzag = (value << 1) ^ (value >> 31);
+		while ((zigzag & ~0x7f) != 0) {
+			output.writeByte((zigzag & 0x7f) | 0x80);
+			zigzag >>>= 7;
+		}
+		output.writeByte(zigzag);
+	}
+
+	/** @return an int written by writeSignedVarInt. */
+	private static int readSignedVarInt(DataInput input) throws IOException {
+		int zigzag = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int next = input.readUnsignedByte();
+			zigzag |= (next & 0x7f) << shift;
+			if ((next & 0x80) == 0) {
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+		}
+		throw new IOException("Malformed number.");
+	}
+
+	/** @return the whole contents of a file. */
+	private static byte[] readFile(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			byte[] contents = new byte[(int) input.length()];
+			input.readFully(contents);
+			return contents;
+		} finally {
+			input.close();
+		}
+	}
+
+	/** @return a 64 bit FNV-1a hash of some bytes, continuing from a previous hash. */
+	private static long hash(long hash, byte[] bytes) {
+		for (byte value : bytes) {
+			hash ^= value & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/** @return the hash of the format version, and of the names that the table's ordinals refer to. */
+	private static long hashSchema() {
+		StringBuilder names = new StringBuilder().append(VERSION);
+		for (Ability ability : Ability.values()) {
+			names.append(',').append(ability.name());
+		}
+		for (UnitStatus.Type type : UnitStatus.Type.values()) {
+			names.append(',').append(type.name());
+		}
+		for (TileStatus.Type type : TileStatus.Type.values()) {
+			names.append(',').append(type.name());
+		}
+		try {
+			return hash(0xcbf29ce484222325L, names.toString().getBytes("UTF-8"));
+		} catch (IOException exception) {
+			throw new IllegalStateException(exception); //Every Java platform supports UTF-8.
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package tics.util.load;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Lists the scenarios in a folder on a background thread, so that a large library of scenarios never holds up the interface.
+ * Only each scenario's header is read. The full setup is loaded by MatchLoader when the scenario is started.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public abstract class ScenarioCatalog {
+	/** Is told about the scenarios as they're found, on the event dispatch thread. */
+	public interface Listener {
+		/**
+		 * Handles a scenario being found. Scenarios are found in order of their file names.
+		 *
+		 * @param header the scenario's header.
+		 */
+		void scenarioFound(ScenarioHeader header);
+
+		/** Handles every scenario in the folder having been found. */
+		void catalogFinished();
+	}
+
+	/**
+	 * Starts listing the scenarios in a folder. Scenarios that can't be read are skipped.
+	 *
+	 * @param folderPath the path to the folder, which may not exist.
+	 * @param listener told about each scenario as it's found.
+	 */
+	public static void load(final String folderPath, final Listener listener) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				String[] fileNames = new File(folderPath).list(new FilenameFilter() {
+					@Override
+					public boolean accept(File dir, String name) {
+						return name.endsWith(".json");
+					}
+				});
+				if (fileNames == null) {
+					fileNames = new String[0];
+				}
+				Arrays.sort(fileNames);
+
+				for (String fileName : fileNames) {
+					try {
+						final ScenarioHeader header = Scenario.loadHeader(new File(folderPath, fileName).getPath());
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								listener.scenarioFound(header);
+							}
+						});
+					} catch (IOException exception) {
+						System.err.println("The scenario " + fileName + " could not be loaded: " + exception.getMessage());
+					}
+				}
+
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						listener.catalogFinished();
+					}
+				});
+			}
+		}, "Scenario catalog");
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
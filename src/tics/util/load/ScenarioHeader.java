@@ -0,0 +1,69 @@
+package tics.util.load;
+
+/**
+ * The part of a scenario that describes it, without its setup, for listing scenarios to choose from.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class ScenarioHeader {
+	private final String filePath;
+	private final String title, author, description;
+	private final int players, width, height;
+
+	/**
+	 * Creates a header. Headers are read with Scenario.loadHeader.
+	 *
+	 * @param filePath the path to the scenario's .json file.
+	 */
+	ScenarioHeader(String filePath, String title, String author, String description, int players, int width, int height) {
+		this.filePath = filePath;
+		this.title = title;
+		this.author = author;
+		this.description = description;
+		this.players = players;
+		this.width = width;
+		this.height = height;
+	}
+
+	/** @return the path to the scenario's .json file, which MatchLoader.loadFromJSON loads the full scenario from. */
+	public String getFilePath() {
+		return filePath;
+	}
+
+	/** @return the scenario's title. */
+	public String getTitle() {
+		return title;
+	}
+
+	/** @return the scenario's author. */
+	public String getAuthor() {
+		return author;
+	}
+
+	/** @return the scenario's description. */
+	public String getDescription() {
+		return description;
+	}
+
+	/** @return the number of players. */
+	public int getPlayerCount() {
+		return players;
+	}
+
+	/** @return the board's width in tiles. */
+	public int getWidth() {
+		return width;
+	}
+
+	/** @return the board's height in tiles. */
+	public int getHeight() {
+		return height;
+	}
+
+	/** @return the title, so headers can be listed directly in a JComboBox. */
+	@Override
+	public String toString() {
+		return title != null ? title : filePath;
+	}
+}
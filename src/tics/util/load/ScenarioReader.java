@@ -0,0 +1,341 @@
+package tics.util.load;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a scenario file one token at a time, so that it can be acted on as it's read, without building a tree of maps and lists.
+ *
+ * Scenarios are written in a relaxed form of json: names and values don't have to be quoted, and commas are optional.
+ * The reader accepts exactly that, and only ever holds the current token in memory, however large the file is.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class ScenarioReader implements Closeable {
+	/** The kinds of token that next can return. */
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, VALUE, END_DOCUMENT
+	}
+
+	/** The file being read. */
+	private final Reader input;
+	/** The characters read from the file but not yet tokenized. */
+	private final char[] buffer = new char[8192];
+	private int position, limit;
+	/** The line that the reader is on, for error messages. */
+	private int lineNumber = 1;
+
+	/** The text of the current NAME or VALUE. */
+	private final StringBuilder text = new StringBuilder();
+	/** For each object or array that is open, whether it's an object. */
+	private boolean[] inObject = new boolean[16];
+	private int depth;
+	/** True if the next token in the current object is a value, because a name has just been read. */
+	private boolean expectingValue;
+	/** The token returned by peek, which next will return again, or null. */
+	private Token peeked;
+
+	/**
+	 * Starts reading a scenario.
+	 *
+	 * @param input the scenario's characters, which are read in blocks, so they don't need to be buffered.
+	 */
+	public ScenarioReader(Reader input) {
+		this.input = input;
+	}
+
+	/**
+	 * Reads the next token.
+	 *
+	 * @return the token, or END_DOCUMENT once the outermost object or array has ended.
+	 * @throws IOException if the file can't be read, or isn't well formed.
+	 */
+	public Token next() throws IOException {
+		if (peeked != null) {
+			Token token = peeked;
+			peeked = null;
+			return token;
+		}
+
+		int next = skipSeparators();
+		if (next == -1) {
+			if (depth > 0) {
+				throw error("The file ends before every object and array is closed.");
+			}
+			return Token.END_DOCUMENT;
+		}
+
+		boolean object = depth > 0 && inObject[depth - 1];
+		if (next == '}' || next == ']') {
+			if (depth == 0 || object != (next == '}') || expectingValue) {
+				throw error("Unexpected '" + (char) next + "'.");
+			}
+			position++;
+			depth--;
+			return object ? Token.END_OBJECT : Token.END_ARRAY;
+		}
+
+		if (object && !expectingValue) {
+			readText(next);
+			if (skipSeparators() != ':') {
+				throw error("Expected ':' after " + text + ".");
+			}
+			position++;
+			expectingValue = true;
+			return Token.NAME;
+		}
+		expectingValue = false;
+
+		if (next == '{' || next == '[') {
+			position++;
+			if (depth == inObject.length) {
+				boolean[] grown = new boolean[depth * 2];
+				System.arraycopy(inObject, 0, grown, 0, depth);
+				inObject = grown;
+			}
+			inObject[depth++] = next == '{';
+			return next == '{' ? Token.BEGIN_OBJECT : Token.BEGIN_ARRAY;
+		}
+		readText(next);
+		return Token.VALUE;
+	}
+
+	/**
+	 * Looks at the next token without moving past it.
+	 *
+	 * @return the token that next will return.
+	 */
+	public Token peek() throws IOException {
+		if (peeked == null) {
+			peeked = next();
+		}
+		return peeked;
+	}
+
+	/**
+	 * Reads the next token, and checks that it's the one expected.
+	 *
+	 * @throws IOException if it's a different token.
+	 */
+	public void expect(Token expected) throws IOException {
+		Token token = next();
+		if (token != expected) {
+			throw error("Expected " + expected + " but found " + token + ".");
+		}
+	}
+
+	/** @return the text of the NAME or VALUE that was just read. */
+	public String getText() {
+		return text.toString();
+	}
+
+	/** @return true if the text of the NAME or VALUE that was just read is a particular string, without creating a new string. */
+	public boolean textEquals(String value) {
+		if (text.length() != value.length()) {
+			return false;
+		}
+		for (int index = 0; index < value.length(); index++) {
+			if (text.charAt(index) != value.charAt(index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a VALUE as a string.
+	 *
+	 * @throws IOException if the next token is an object or array instead.
+	 */
+	public String nextString() throws IOException {
+		expect(Token.VALUE);
+		return getText();
+	}
+
+	/**
+	 * Reads a VALUE as an integer, accepting the same forms as Integer.decode.
+	 *
+	 * @throws IOException if the next token isn't a number.
+	 */
+	public int nextInt() throws IOException {
+		expect(Token.VALUE);
+		int value = 0;
+		boolean negative = text.length() > 1 && text.charAt(0) == '-';
+		int index = negative ? 1 : 0;
+		if (text.length() > 9 || index == text.length() || (text.charAt(index) == '0' && text.length() > index + 1)) {
+			return decode(); //Long, hexadecimal or octal numbers are left to Integer.decode.
+		}
+		for (; index < text.length(); index++) {
+			int digit = text.charAt(index) - '0';
+			if (digit < 0 || digit > 9) {
+				return decode();
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads a VALUE as a boolean, where anything but "true" is false, as with Boolean.parseBoolean.
+	 *
+	 * @throws IOException if the next token is an object or array instead.
+	 */
+	public boolean nextBoolean() throws IOException {
+		expect(Token.VALUE);
+		return Boolean.parseBoolean(getText());
+	}
+
+	/**
+	 * Moves past the next value, including everything inside it if it's an object or array.
+	 * This is how names that the caller doesn't recognise are ignored.
+	 */
+	public void skipValue() throws IOException {
+		Token token = next();
+		if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+			int open = 1;
+			while (open > 0) {
+				token = next();
+				if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+					open++;
+				} else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+					open--;
+				}
+			}
+		} else if (token != Token.VALUE) {
+			throw error("Expected a value but found " + token + ".");
+		}
+	}
+
+	/** @return the line that the reader is on. */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Creates an exception for a problem with the file, which says where the problem is.
+	 *
+	 * @param message a description of the problem.
+	 * @return the exception, for the caller to throw.
+	 */
+	public IOException error(String message) {
+		return new IOException("Line " + lineNumber + ": " + message);
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+	/** @return the current VALUE as an integer, using Integer.decode. */
+	private int decode() throws IOException {
+		try {
+			return Integer.decode(getText());
+		} catch (NumberFormatException exception) {
+			throw error("Expected a number but found " + text + ".");
+		}
+	}
+
+	/**
+	 * Reads a quoted or unquoted name or value into text.
+	 *
+	 * @param first the first character, which hasn't been consumed yet.
+	 */
+	private void readText(int first) throws IOException {
+		text.setLength(0);
+		if (first == '"' || first == '\'') {
+			position++;
+			while (true) {
+				int next = read();
+				if (next == -1 || next == '\n') {
+					throw error("A string is missing its closing quote.");
+				} else if (next == first) {
+					return;
+				} else if (next == '\\') {
+					text.append(readEscape());
+				} else {
+					text.append((char) next);
+				}
+			}
+		}
+
+		while (true) {
+			int next = peekChar();
+			if (next == -1 || next == ',' || next == ':' || next == '{' || next == '}' || next == '[' || next == ']' || Character.isWhitespace(next)) {
+				break;
+			}
+			text.append((char) next);
+			position++;
+		}
+		if (text.length() == 0) {
+			throw error("Unexpected '" + (char) first + "'.");
+		}
+	}
+
+	/** @return the character represented by an escape sequence, whose backslash has just been read. */
+	private char readEscape() throws IOException {
+		int next = read();
+		switch (next) {
+		case 'n':
+			return '\n';
+		case 't':
+			return '\t';
+		case 'r':
+			return '\r';
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'u':
+			int value = 0;
+			for (int index = 0; index < 4; index++) {
+				int digit = Character.digit(read(), 16);
+				if (digit < 0) {
+					throw error("Malformed unicode escape.");
+				}
+				value = (value << 4) | digit;
+			}
+			return (char) value;
+		case -1:
+			throw error("The file ends inside a string.");
+		default:
+			return (char) next; //Covers \" \' \\ and \/.
+		}
+	}
+
+	/** Moves past whitespace and commas, which are only separators. @return the next character, not consumed, or -1 at the end of the file. */
+	private int skipSeparators() throws IOException {
+		while (true) {
+			int next = peekChar();
+			if (next == '\n') {
+				lineNumber++;
+			} else if (next != ',' && (next == -1 || !Character.isWhitespace(next))) {
+				return next;
+			}
+			position++;
+		}
+	}
+
+	/** @return the next character, consumed, or -1 at the end of the file. */
+	private int read() throws IOException {
+		int next = peekChar();
+		if (next != -1) {
+			position++;
+		}
+		return next;
+	}
+
+	/** @return the next character, not consumed, or -1 at the end of the file. */
+	private int peekChar() throws IOException {
+		if (position == limit) {
+			limit = input.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position];
+	}
+}
@@ -0,0 +1,251 @@
+package tics.util.load;
+
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tics.match.model.Ability;
+import tics.match.model.PlayerTheme;
+
+/**
+ * Every torso and tool image, packed into one image, so that units are drawn as parts of a single image
+ * that's decoded once, at startup, rather than image by image the first time each unit is drawn.
+ *
+ * The images are decoded on several threads at once, and packed into rows, tallest first, in an image that's
+ * compatible with the screen, so that drawing from it can be accelerated. The atlas is made again the next time
+ * it's asked for after one of its image files has been edited.
+ *
+ * Images that aren't in the atlas, such as a torso named by a scenario, are drawn straight from ImageLoader instead.
+ *
+ * @author Michael D'Andrea
+ * @author Devindra Payment
+ */
+public class SpriteAtlas {
+	/** The widest the atlas gets before starting a new row, in pixels. */
+	private static final int MAXIMUM_WIDTH = 512;
+	/** The space left around each image, so that drawing one never picks up the edge of its neighbour. */
+	private static final int SPACING = 1;
+	/** The atlas's key in its cache, since there's only ever one. */
+	private static final String KEY = "sprites";
+
+	/** Holds the atlas, and makes sure only one thread makes it at a time. */
+	private static final LoaderCache<SpriteAtlas> atlasCache = new LoaderCache<SpriteAtlas>(new LoaderCache.Loader<SpriteAtlas>() {
+		@Override
+		public SpriteAtlas load(String key) throws IOException {
+			return new SpriteAtlas(getSpritePaths());
+		}
+
+		@Override
+		public File getSourceFile(String key) {
+			return null; //The atlas is forgotten whenever ImageLoader forgets one of its images instead.
+		}
+	}, 1, false);
+
+	static {
+		ImageLoader.addListener(new LoaderCache.Listener() {
+			@Override
+			public void invalidated(String imagePath) {
+				atlasCache.invalidate(KEY);
+			}
+		});
+	}
+
+	/** The packed images. */
+	private final BufferedImage image;
+	/** The position of each image in the atlas, mapped to the image's path. */
+	private final Map<String, Rectangle> regions = new HashMap<String, Rectangle>();
+
+	/**
+	 * Decodes and packs a set of images.
+	 *
+	 * @param imagePaths the paths to the images.
+	 * @throws IOException if an image couldn't be loaded.
+	 */
+	private SpriteAtlas(List<String> imagePaths) throws IOException {
+		final BufferedImage[] images = decode(imagePaths);
+
+		//Pack the images in rows, tallest first, so each row wastes as little height as possible.
+		Integer[] order = new Integer[images.length];
+		for (int index = 0; index < order.length; index++) {
+			order[index] = index;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return images[second].getHeight() - images[first].getHeight();
+			}
+		});
+		int x = 0, y = 0, rowHeight = 0, width = 0;
+		for (int index : order) {
+			int imageWidth = images[index].getWidth(), imageHeight = images[index].getHeight();
+			if (x > 0 && x + imageWidth + SPACING > MAXIMUM_WIDTH) {
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
+			}
+			regions.put(imagePaths.get(index), new Rectangle(x, y, imageWidth, imageHeight));
+			x += imageWidth + SPACING;
+			rowHeight = Math.max(rowHeight, imageHeight + SPACING);
+			width = Math.max(width, x);
+		}
+
+		image = createImage(Math.max(1, width), Math.max(1, y + rowHeight));
+		Graphics graphics = image.createGraphics();
+		for (int index = 0; index < images.length; index++) {
+			Rectangle region = regions.get(imagePaths.get(index));
+			graphics.drawImage(images[index], region.x, region.y, null);
+		}
+		graphics.dispose();
+	}
+
+	/**
+	 * Gets the atlas, making it if it hasn't been made, or waiting for it if it's being made. It can be called from any thread.
+	 *
+	 * @return the atlas.
+	 * @throws IOException if one of the images couldn't be loaded.
+	 */
+	public static SpriteAtlas get() throws IOException {
+		return atlasCache.get(KEY);
+	}
+
+	/** Starts making the atlas on a background thread, so that it's ready by the time the first match is drawn. */
+	public static void preload() {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					get();
+				} catch (IOException exception) {
+					exception.printStackTrace(); //It will be tried again when it's needed.
+				}
+			}
+		}, "Sprite atlas");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Draws one of the images.
+	 *
+	 * @param graphics the graphics to draw with.
+	 * @param imagePath the path to the image.
+	 * @param x the x coordinate to draw the image's left edge at.
+	 * @param y the y coordinate to draw the image's top edge at.
+	 * @param flipped true to draw the image flipped left-to-right.
+	 * @throws IOException if the image isn't in the atlas, and couldn't be loaded.
+	 */
+	public void drawImage(Graphics graphics, String imagePath, int x, int y, boolean flipped) throws IOException {
+		Rectangle region = regions.get(imagePath);
+		if (region == null) {
+			graphics.drawImage(flipped ? ImageLoader.getFlippedImage(imagePath) : ImageLoader.getImage(imagePath), x, y, null);
+		} else if (flipped) { //Swapping the destination's sides flips the image, without another copy of it.
+			graphics.drawImage(image, x + region.width, y, x, y + region.height,
+					region.x, region.y, region.x + region.width, region.y + region.height, null);
+		} else {
+			graphics.drawImage(image, x, y, x + region.width, y + region.height,
+					region.x, region.y, region.x + region.width, region.y + region.height, null);
+		}
+	}
+
+	/**
+	 * @param imagePath the path to an image.
+	 * @return the image's width in pixels.
+	 * @throws IOException if the image isn't in the atlas, and couldn't be loaded.
+	 */
+	public int getWidth(String imagePath) throws IOException {
+		Rectangle region = regions.get(imagePath);
+		return region != null ? region.width : ImageLoader.getImage(imagePath).getWidth();
+	}
+
+	/**
+	 * @param imagePath the path to an image.
+	 * @return the image's height in pixels.
+	 * @throws IOException if the image isn't in the atlas, and couldn't be loaded.
+	 */
+	public int getHeight(String imagePath) throws IOException {
+		Rectangle region = regions.get(imagePath);
+		return region != null ? region.height : ImageLoader.getImage(imagePath).getHeight();
+	}
+
+	/** @return the packed image, mostly for checking how the images were packed. */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/** @return the paths to every torso and tool image, in a repeatable order. */
+	private static List<String> getSpritePaths() {
+		LinkedHashSet<String> imagePaths = new LinkedHashSet<String>(); //Several themes or abilities could share an image.
+		for (PlayerTheme theme : PlayerTheme.values()) {
+			Collections.addAll(imagePaths, theme.getImagePaths());
+		}
+		for (Ability ability : Ability.values()) {
+			imagePaths.add(ability.getImagePath());
+		}
+		return new ArrayList<String>(imagePaths);
+	}
+
+	/** Decodes images through ImageLoader, on as many threads as there are processors. */
+	private static BufferedImage[] decode(List<String> imagePaths) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(imagePaths.size(), Runtime.getRuntime().availableProcessors())));
+		try {
+			List<Future<BufferedImage>> futures = new ArrayList<Future<BufferedImage>>();
+			for (final String imagePath : imagePaths) {
+				futures.add(executor.submit(new Callable<BufferedImage>() {
+					@Override
+					public BufferedImage call() throws IOException {
+						BufferedImage image = ImageLoader.getImage(imagePath);
+						if (image == null) {
+							throw new IOException("The image " + imagePath + " couldn't be read.");
+						}
+						return image;
+					}
+				}));
+			}
+
+			BufferedImage[] images = new BufferedImage[imagePaths.size()];
+			for (int index = 0; index < images.length; index++) {
+				images[index] = futures.get(index).get();
+			}
+			return images;
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding the sprites.", exception);
+		} catch (ExecutionException exception) {
+			Throwable cause = exception.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** @return an empty, transparent image, in the screen's own format if there is a screen. */
+	private static BufferedImage createImage(int width, int height) {
+		if (GraphicsEnvironment.isHeadless()) {
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		}
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+				.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+}